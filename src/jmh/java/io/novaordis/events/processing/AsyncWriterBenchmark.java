@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * How much a slow consumer downstream stalls the thread that produces the output. Each invocation writes one line,
+ * the way a TextOutputProcedure in interactive mode does, to an output stream that burns "consumerCostNanos" per write
+ * (per flush, in practice), which simulates a slow pipe.
+ *
+ * "writer=sync" writes and flushes on the producing thread. "writer=async" hands the line over to an AsyncWriter, with
+ * the given overflow policy; with "policy=DROP" the producer never waits, and the drop rate can be inferred from the
+ * difference between the throughput and the consumer's rate.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AsyncWriterBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final String LINE = "10/18/26 12:00:00.000, 0123456789abcdef, 0123456789abcdef, 0123456789abcdef\n";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    /**
+     * "sync" or "async".
+     */
+    @Param({"sync", "async"})
+    public String writer;
+
+    @Param({"BLOCK", "DROP"})
+    public String policy;
+
+    @Param({"2000"})
+    public long consumerCostNanos;
+
+    private Writer w;
+
+    private AsyncWriter asyncWriter;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        OutputStream os = new SlowOutputStream(consumerCostNanos);
+
+        if ("async".equals(writer)) {
+
+            asyncWriter = new AsyncWriter(
+                    os, AsyncWriter.DEFAULT_QUEUE_CAPACITY, AsyncWriter.OverflowPolicy.valueOf(policy),
+                    TextOutputProcedure.DEFAULT_BUFFER_SIZE, "benchmark writer");
+            w = asyncWriter;
+        }
+        else {
+
+            w = new OutputStreamWriter(os);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        w.close();
+
+        if (asyncWriter != null) {
+
+            System.out.println("\nmax queue depth: " + asyncWriter.getMaxQueueDepth() +
+                    ", stalls: " + asyncWriter.getStallCount() +
+                    ", stall time: " + TimeUnit.NANOSECONDS.toMillis(asyncWriter.getStallTimeNanos()) + " ms" +
+                    ", dropped chunks: " + asyncWriter.getDroppedChunks());
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void throughput() throws Exception {
+
+        w.write(LINE);
+        w.flush();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void latency() throws Exception {
+
+        w.write(LINE);
+        w.flush();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class SlowOutputStream extends OutputStream {
+
+        private final long costNanos;
+
+        private SlowOutputStream(long costNanos) {
+
+            this.costNanos = costNanos;
+        }
+
+        @Override
+        public void write(int b) {
+
+            Blackhole.consumeCPU(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+
+            long deadline = System.nanoTime() + costNanos;
+
+            while(System.nanoTime() < deadline) {
+
+                Blackhole.consumeCPU(10);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.processing.count.Count;
+import io.novaordis.utilities.time.TimestampImpl;
+
+/**
+ * Compares per-event dispatch (process(Event) invoked for each event) with batched dispatch (process(List<Event>)).
+ * Each benchmark invocation pushes EVENTS events through the procedure, so the results are reported in events/sec,
+ * irrespective of the batch size.
+ *
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="BatchDispatchBenchmark"
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchDispatchBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int EVENTS = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    /**
+     * Must divide EVENTS.
+     */
+    @Param({"1", "16", "256", "4096"})
+    public int batchSize;
+
+    @Param({"noop", "count"})
+    public String procedure;
+
+    private Procedure p;
+
+    private List<Event> events;
+
+    private List<List<Event>> batches;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        if ("count".equals(procedure)) {
+
+            p = new Count(new NullOutputStream());
+        }
+        else {
+
+            p = new NoopProcedure();
+        }
+
+        events = new ArrayList<>(EVENTS);
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            events.add(new GenericTimedEvent(new TimestampImpl(i)));
+        }
+
+        batches = new ArrayList<>();
+
+        for(int i = 0; i < EVENTS; i += batchSize) {
+
+            batches.add(new ArrayList<>(events.subList(i, i + batchSize)));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long perEvent() throws Exception {
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < EVENTS; i ++) {
+
+            p.process(events.get(i));
+        }
+
+        return p.getInvocationCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long batched() throws Exception {
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < batches.size(); i ++) {
+
+            p.process(batches.get(i));
+        }
+
+        return p.getInvocationCount();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Isolates the ProcedureBase dispatch overhead.
+     */
+    public static class NoopProcedure extends ProcedureBase {
+
+        private long processed;
+
+        @Override
+        public List<String> getCommandLineLabels() {
+
+            return null;
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+            processed ++;
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+            processed += events.size();
+        }
+
+        public long getProcessed() {
+
+            return processed;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.count.Count;
+import io.novaordis.events.processing.describe.Describe;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.timegaps.TimeGaps;
+
+/**
+ * Runs the same procedures over the same stream sequentially, on the calling thread, and in parallel, via
+ * PipelineExecutor. On a multi-core box, parallel() should approach 'procedures' times the throughput of sequential(),
+ * as long as the procedures have comparable costs.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PipelineExecutorBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int EVENTS = 65536;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    /**
+     * 1 to 4: output, describe, count, time-gaps.
+     */
+    @Param({"1", "2", "4"})
+    public int procedures;
+
+    @Param({"16"})
+    public int propertyCount;
+
+    private List<Event> events;
+
+    private List<Procedure> procedureList;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUpEvents() {
+
+        events = SyntheticEvents.generate(EVENTS, true, propertyCount, 16);
+    }
+
+    /**
+     * Procedures do not accept events after EndOfStream, so we need fresh ones for each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void setUpProcedures() {
+
+        procedureList = new ArrayList<>();
+
+        List<String> args = new ArrayList<>();
+        args.add(Output.OUTPUT_FORMAT_OPTION);
+        args.add(SyntheticEvents.PROPERTY_NAME_PREFIX + "0");
+        args.add(SyntheticEvents.PROPERTY_NAME_PREFIX + "1");
+
+        TextOutputProcedure[] all = new TextOutputProcedure[] {
+                new Output(null, null, 0, args), new Describe(), new Count(), new TimeGaps()
+        };
+
+        for(int i = 0; i < procedures; i ++) {
+
+            all[i].setOutputStream(new NullOutputStream());
+            all[i].setInteractive(TextOutputProcedure.BUFFERED);
+            procedureList.add(all[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Object sequential() throws Exception {
+
+        EndOfStreamEvent eos = new EndOfStreamEvent();
+
+        for(Procedure p: procedureList) {
+
+            //noinspection ForLoopReplaceableByForEach
+            for(int i = 0; i < EVENTS; i ++) {
+
+                p.process(events.get(i));
+            }
+
+            p.process(eos);
+        }
+
+        return procedureList;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public Object parallel() throws Exception {
+
+        PipelineExecutor pe = new PipelineExecutor(procedureList);
+
+        pe.start();
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < EVENTS; i ++) {
+
+            pe.process(events.get(i));
+        }
+
+        pe.process(new EndOfStreamEvent());
+
+        if (!pe.awaitTermination(1, TimeUnit.MINUTES)) {
+
+            throw new IllegalStateException("pipeline did not terminate");
+        }
+
+        return procedureList;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
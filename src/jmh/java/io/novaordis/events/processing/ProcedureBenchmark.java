@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * Base class for per-procedure benchmarks. Each benchmark invocation processes one event from a pre-generated
+ * synthetic stream, cycling through the stream. throughput() reports events/sec, latency() reports the per-event
+ * latency distribution, including p99. Run with "-prof gc" (the default for the "benchmarks" profile) to get the
+ * allocation rate per event.
+ *
+ * The shape of the stream is controlled with JMH parameters, which can be overridden on command line:
+ *
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="CountBenchmark -p propertyCount=64 -p propertyWidth=128"
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public abstract class ProcedureBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Must be a power of two.
+     */
+    public static final int STREAM_LENGTH = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({"true", "false"})
+    public boolean timed;
+
+    @Param({"4", "32"})
+    public int propertyCount;
+
+    @Param({"16"})
+    public int propertyWidth;
+
+    /**
+     * Only relevant for TextOutputProcedures: "buffered", "interactive", "async-buffered" or "async-interactive".
+     */
+    @Param({"buffered"})
+    public String outputMode;
+
+    /**
+     * Whether the procedure collects metrics. Compare the "true" and "false" results to measure the overhead.
+     */
+    @Param({"false", "true"})
+    public boolean metrics;
+
+    protected List<Event> events;
+
+    private int cursor;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        events = SyntheticEvents.generate(STREAM_LENGTH, timed, propertyCount, propertyWidth);
+
+        setUpProcedure();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public Object throughput() throws Exception {
+
+        return process(next());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Object latency() throws Exception {
+
+        return process(next());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds and configures the procedure under test. The event stream is available when this method is invoked.
+     */
+    protected abstract void setUpProcedure() throws Exception;
+
+    /**
+     * Process the event with the procedure under test.
+     *
+     * @return something that depends on the processing, to prevent dead code elimination.
+     */
+    protected abstract Object process(Event e) throws Exception;
+
+    /**
+     * Configures the output mode of a TextOutputProcedure according to the "outputMode" parameter, and directs its
+     * output to a NullOutputStream. Enables the procedure's metrics according to the "metrics" parameter.
+     */
+    protected void configureOutput(TextOutputProcedure p) {
+
+        p.setOutputStream(new NullOutputStream());
+        p.setInteractive(outputMode.endsWith("interactive"));
+        p.setAsynchronous(outputMode.startsWith("async"));
+
+        if (metrics) {
+
+            p.enableMetrics();
+        }
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private Event next() {
+
+        return events.get(cursor ++ & (STREAM_LENGTH - 1));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
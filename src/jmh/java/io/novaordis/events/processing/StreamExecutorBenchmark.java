@@ -0,0 +1,214 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.source.MappedFileEventSource;
+import io.novaordis.events.processing.source.RawLineParser;
+
+/**
+ * Runs 'streams' independent file-to-output chains to completion, on a fixed pool of as many platform threads as
+ * processors (PLATFORM) or on a virtual thread per chain (VIRTUAL, Java 21+ only; the VIRTUAL runs fail on older JVMs).
+ * The output stream blocks for 'writeLatencyMicros' on each write, to stand in for a slow pipe or disk: with blocking
+ * output, the platform pool keeps at most 'processors' chains in progress, while virtual threads overlap all of them.
+ * With writeLatencyMicros=0 the chains are CPU bound, and the two modes should be close.
+ *
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="StreamExecutorBenchmark"
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamExecutorBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int LINES = 1024;
+
+    // flushed every 4 KB, so each stream performs a few dozen writes
+    public static final int BUFFER_SIZE = 4096;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({"10", "100", "1000"})
+    public int streams;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public StreamExecutor.Mode mode;
+
+    @Param({"0", "100"})
+    public int writeLatencyMicros;
+
+    private List<Path> files;
+
+    private List<Output> procedures;
+
+    private StreamExecutor executor;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUpFiles() throws Exception {
+
+        StringBuilder content = new StringBuilder();
+
+        for(int i = 0; i < LINES; i ++) {
+
+            content.append("10.0.0.").append(i % 256).append(" GET /resource/").append(i).append(" 200 ")
+                    .append(i * 31).append('\n');
+        }
+
+        byte[] bytes = content.toString().getBytes(StandardCharsets.UTF_8);
+
+        files = new ArrayList<>();
+
+        for(int i = 0; i < streams; i ++) {
+
+            File f = File.createTempFile("stream-executor-benchmark", ".log");
+            f.deleteOnExit();
+            Files.write(f.toPath(), bytes);
+            files.add(f.toPath());
+        }
+
+        executor = new StreamExecutor(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        executor.shutdown();
+
+        for(Path p: files) {
+
+            Files.deleteIfExists(p);
+        }
+    }
+
+    /**
+     * Procedures do not accept events after EndOfStream, so we need fresh ones for each invocation.
+     */
+    @Setup(Level.Invocation)
+    public void setUpProcedures() {
+
+        procedures = new ArrayList<>();
+
+        for(int i = 0; i < streams; i ++) {
+
+            Output o = new Output(new LatentOutputStream(writeLatencyMicros * 1000L));
+            o.setInteractive(TextOutputProcedure.BUFFERED);
+            o.setBufferSize(BUFFER_SIZE);
+            procedures.add(o);
+        }
+    }
+
+    @Benchmark
+    public long allStreams() throws Exception {
+
+        List<Future<Long>> futures = new ArrayList<>(streams);
+
+        for(int i = 0; i < streams; i ++) {
+
+            futures.add(executor.submit(new MappedFileEventSource(files.get(i), new RawLineParser()), procedures.get(i)));
+        }
+
+        long events = 0;
+
+        for(Future<Long> f: futures) {
+
+            events += f.get();
+        }
+
+        return events;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Discards what is written, after blocking the writing thread for the configured latency.
+     */
+    private static class LatentOutputStream extends OutputStream {
+
+        private final long latencyNanos;
+
+        LatentOutputStream(long latencyNanos) {
+
+            this.latencyNanos = latencyNanos;
+        }
+
+        @Override
+        public void write(int b) {
+
+            block();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+
+            block();
+        }
+
+        private void block() {
+
+            if (latencyNanos > 0) {
+
+                LockSupport.parkNanos(latencyNanos);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.utilities.time.TimestampImpl;
+
+/**
+ * Synthetic event stream generator, used by benchmarks. The streams are deterministic: the same arguments always
+ * produce the same events.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class SyntheticEvents {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String PROPERTY_NAME_PREFIX = "p";
+
+    public static final long START_TIME = 1500000000000L;
+
+    private static final long SEED = 20170719L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param count the number of events.
+     * @param timed if true, the stream consists of TimedEvents with increasing timestamps (on average 10 ms apart, with
+     *              a small amount of jitter). Otherwise, the events are not timed.
+     * @param propertyCount the number of String properties of each event. The properties are named "p0", "p1", ...
+     * @param propertyWidth the length of each property value. The values are random lowercase letters.
+     */
+    public static List<Event> generate(int count, boolean timed, int propertyCount, int propertyWidth) {
+
+        Random random = new Random(SEED);
+
+        List<Event> events = new ArrayList<>(count);
+
+        long time = START_TIME;
+
+        char[] value = new char[propertyWidth];
+
+        for(int i = 0; i < count; i ++) {
+
+            GenericEvent e;
+
+            if (timed) {
+
+                time += 5 + random.nextInt(10);
+                e = new GenericTimedEvent(new TimestampImpl(time));
+            }
+            else {
+
+                e = new GenericEvent();
+            }
+
+            for(int j = 0; j < propertyCount; j ++) {
+
+                for(int k = 0; k < propertyWidth; k ++) {
+
+                    value[k] = (char)('a' + random.nextInt(26));
+                }
+
+                e.setProperty(new StringProperty(PROPERTY_NAME_PREFIX + j, new String(value)));
+            }
+
+            events.add(e);
+        }
+
+        return events;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private SyntheticEvents() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
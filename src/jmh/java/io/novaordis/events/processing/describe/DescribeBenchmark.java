@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing.describe;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.ProcedureBenchmark;
+
+/**
+ * Describe throughput and per-event latency.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class DescribeBenchmark extends ProcedureBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Describe procedure;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ProcedureBenchmark implementation -------------------------------------------------------------------------------
+
+    @Override
+    protected void setUpProcedure() throws Exception {
+
+        procedure = new Describe();
+        configureOutput(procedure);
+    }
+
+    @Override
+    protected Object process(Event e) throws Exception {
+
+        procedure.process(e);
+        return procedure;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing.exclude;
+
+import java.util.Arrays;
+
+import org.openjdk.jmh.annotations.Param;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.ProcedureBenchmark;
+import io.novaordis.events.processing.SyntheticEvents;
+import io.novaordis.events.query.Query;
+
+/**
+ * Exclude throughput and per-event latency. The query is parsed from command line arguments, the same way the
+ * command line tools build it, and consists of a field clause on each of the first two properties, with values taken
+ * from an event of the stream, so the query excludes that event and lets the others pass.
+ *
+ * "path=query" evaluates the parsed Query as is, through its own selects(Event) implementation. "path=compiled"
+ * translates the same Query into an EventPredicate tree, which re-orders the clauses by cost and resolves the
+ * properties per event class.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ExcludeBenchmark extends ProcedureBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    /**
+     * "query" or "compiled".
+     */
+    @Param({"query", "compiled"})
+    public String path;
+
+    private Exclude procedure;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ProcedureBenchmark implementation -------------------------------------------------------------------------------
+
+    @Override
+    protected void setUpProcedure() throws Exception {
+
+        procedure = new Exclude();
+        configureOutput(procedure);
+
+        Event excluded = events.get(events.size() / 2);
+
+        String first = SyntheticEvents.PROPERTY_NAME_PREFIX + "0";
+        String second = SyntheticEvents.PROPERTY_NAME_PREFIX + "1";
+
+        Query query = Query.fromArguments(Arrays.asList(
+                first + ":" + excluded.getProperty(first).getValue(),
+                second + ":" + excluded.getProperty(second).getValue()), 0);
+
+        if ("compiled".equals(path)) {
+
+            procedure.setQuery(query);
+        }
+        else {
+
+            query.compile();
+            procedure.setPredicate(EventPredicates.opaque(query));
+        }
+    }
+
+    @Override
+    protected Object process(Event e) throws Exception {
+
+        procedure.process(e);
+        return procedure;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
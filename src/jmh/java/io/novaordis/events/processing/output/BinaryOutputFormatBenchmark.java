@@ -0,0 +1,251 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.nio.ByteBuffer;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+
+/**
+ * Compares the compact binary format with the comma-separated text produced by OutputFormatImpl, on both sides of the
+ * pipe: how fast the "output" procedure produces the representation (encodeBinary, encodeText), and how fast a
+ * downstream program turns it back into events (decodeBinary, parseText). The stream resembles a log: timed events with
+ * a level and a component drawn from small sets, a latency and a ratio, and a message that does not repeat. Reports
+ * events/sec.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinaryOutputFormatBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int EVENTS = 4096;
+
+    private static final String[] PROPERTIES = { "level", "component", "latency", "ratio", "message" };
+
+    private static final String[] LEVELS = { "INFO", "DEBUG", "WARN", "ERROR" };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private List<Event> events;
+
+    private byte[] binary;
+
+    private String[] text;
+
+    private ByteBuffer encodingBuffer;
+
+    private StringBuilder encodingBuilder;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        Random random = new Random(20171018L);
+
+        events = new ArrayList<>(EVENTS);
+
+        long time = 1500000000000L;
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            time += random.nextInt(20);
+
+            GenericTimedEvent e = new GenericTimedEvent(time);
+            e.setStringProperty("level", LEVELS[random.nextInt(LEVELS.length)]);
+            e.setStringProperty("component", "io.novaordis.Component" + random.nextInt(16));
+            e.setLongProperty("latency", random.nextInt(100000));
+            e.setProperty(new DoubleProperty("ratio", random.nextDouble()));
+            e.setStringProperty("message", "request " + random.nextLong() + " completed");
+
+            events.add(e);
+        }
+
+        encodingBuffer = ByteBuffer.allocate(1024 * 1024);
+        encodingBuilder = new StringBuilder(1024 * 1024);
+
+        BinaryOutputFormat bf = binaryFormat();
+
+        for(Event e: events) {
+
+            bf.format(e, encodingBuffer);
+        }
+
+        binary = new byte[encodingBuffer.position()];
+        encodingBuffer.flip();
+        encodingBuffer.get(binary);
+
+        OutputFormatImpl tf = new OutputFormatImpl((Object[])PROPERTIES);
+
+        text = new String[EVENTS];
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            text[i] = tf.format(events.get(i));
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public int encodeBinary() {
+
+        BinaryOutputFormat f = binaryFormat();
+
+        encodingBuffer.clear();
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            f.format(events.get(i), encodingBuffer);
+        }
+
+        return encodingBuffer.position();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public int encodeText() {
+
+        OutputFormatImpl f = new OutputFormatImpl((Object[])PROPERTIES);
+
+        encodingBuilder.setLength(0);
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            f.format(events.get(i), encodingBuilder);
+        }
+
+        return encodingBuilder.length();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public long decodeBinary() throws Exception {
+
+        BinaryEventReader r = new BinaryEventReader();
+
+        ByteBuffer b = ByteBuffer.wrap(binary);
+
+        long sum = 0L;
+
+        Event e;
+
+        while((e = r.next(b)) != null) {
+
+            sum += e.getProperties().size();
+        }
+
+        return sum;
+    }
+
+    /**
+     * What a downstream program has to do to get the same events out of the text: split the fields, parse the
+     * timestamp and the numbers.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(EVENTS)
+    public long parseText() {
+
+        SimpleDateFormat df = new SimpleDateFormat("MM/dd/yy HH:mm:ss.SSS");
+        ParsePosition pp = new ParsePosition(0);
+
+        long sum = 0L;
+
+        for(int i = 0; i < EVENTS; i ++) {
+
+            String line = text[i];
+
+            String[] fields = line.substring(0, line.length() - 1).split(", ");
+
+            pp.setIndex(0);
+            Date d = df.parse(fields[0], pp);
+
+            GenericEvent e = new GenericTimedEvent(d.getTime());
+            e.setStringProperty(PROPERTIES[0], fields[1]);
+            e.setStringProperty(PROPERTIES[1], fields[2]);
+            e.setLongProperty(PROPERTIES[2], Long.parseLong(fields[3]));
+            e.setProperty(new DoubleProperty(PROPERTIES[3], Double.parseDouble(fields[4])));
+            e.setStringProperty(PROPERTIES[4], fields[5]);
+
+            sum += e.getProperties().size();
+        }
+
+        return sum;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static BinaryOutputFormat binaryFormat() {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        for(String p: PROPERTIES) {
+
+            f.addPropertyName(p);
+        }
+
+        return f;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing.output;
+
+import java.util.ArrayList;
+
+import org.openjdk.jmh.annotations.Param;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.ProcedureBenchmark;
+
+/**
+ * Output throughput and per-event latency, with a command-line configured format that renders "formatProperties"
+ * properties.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class OutputBenchmark extends ProcedureBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({"3"})
+    public int formatProperties;
+
+    private Output procedure;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ProcedureBenchmark implementation -------------------------------------------------------------------------------
+
+    @Override
+    protected void setUpProcedure() throws Exception {
+
+        procedure = new Output(null, null, 0, new ArrayList<>(OutputFormatBenchmark.formatArguments(formatProperties)));
+        configureOutput(procedure);
+    }
+
+    @Override
+    protected Object process(Event e) throws Exception {
+
+        procedure.process(e);
+        return procedure;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing.output;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.ProcedureBenchmark;
+import io.novaordis.events.processing.SyntheticEvents;
+
+/**
+ * The cost of OutputFormatImpl.format(), isolated from the I/O performed by Output. "rendering=string" measures
+ * format(Event), which produces one String per event; "rendering=builder" measures format(Event, StringBuilder) into a
+ * reused builder, the way Output uses it. Compare gc.alloc.rate.norm between the two.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class OutputFormatBenchmark extends ProcedureBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the "-o" argument list that renders the first 'count' synthetic properties.
+     */
+    static List<String> formatArguments(int count) {
+
+        List<String> args = new ArrayList<>();
+
+        args.add(Output.OUTPUT_FORMAT_OPTION);
+
+        for(int i = 0; i < count; i ++) {
+
+            args.add(SyntheticEvents.PROPERTY_NAME_PREFIX + i);
+        }
+
+        return args;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    @Param({"3"})
+    public int formatProperties;
+
+    /**
+     * "string" or "builder".
+     */
+    @Param({"string", "builder"})
+    public String rendering;
+
+    private OutputFormatImpl format;
+
+    private StringBuilder builder;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // ProcedureBenchmark implementation -------------------------------------------------------------------------------
+
+    @Override
+    protected void setUpProcedure() throws Exception {
+
+        format = new OutputFormatImpl();
+
+        for(int i = 0; i < formatProperties; i ++) {
+
+            format.addPropertyName(SyntheticEvents.PROPERTY_NAME_PREFIX + i);
+        }
+
+        builder = new StringBuilder();
+    }
+
+    @Override
+    protected Object process(Event e) throws Exception {
+
+        if ("builder".equals(rendering)) {
+
+            builder.setLength(0);
+            return format.format(e, builder);
+        }
+
+        return format.format(e);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
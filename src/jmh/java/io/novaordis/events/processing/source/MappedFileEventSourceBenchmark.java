@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.processing.ProcedureBase;
+
+/**
+ * Read throughput of MappedFileEventSource over a generated log file. Each invocation reads the whole file; the "bytes"
+ * auxiliary counter reports bytes/sec, which is the number to compare with the sequential bandwidth of the device.
+ *
+ * "reader=mapped" reads through MappedFileEventSource, "reader=buffered" reads through a BufferedReader, as a baseline.
+ * "parser=split" only splits the lines, without building events, so it measures the source itself, "parser=raw" builds
+ * a RawLineEvent per line.
+ *
+ * The file is generated once per trial, in the directory specified by the "benchmark.dir" system property, or in the
+ * default temporary directory, and it is deleted at the end of the trial. For a multi-GB file that is larger than the
+ * page cache, or after dropping the page cache, the benchmark measures the disk; otherwise, it measures the memory
+ * bandwidth:
+ *
+ * mvn -Pbenchmarks test-compile exec:exec -Djmh.args="MappedFileEventSourceBenchmark -p fileSize=4096"
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MappedFileEventSourceBenchmark {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int LINE_WIDTH = 120;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    /**
+     * The file size, in MB.
+     */
+    @Param({"256"})
+    public int fileSize;
+
+    /**
+     * "mapped" or "buffered".
+     */
+    @Param({"mapped", "buffered"})
+    public String reader;
+
+    /**
+     * "split" or "raw".
+     */
+    @Param({"split", "raw"})
+    public String parser;
+
+    @Param({"1024"})
+    public int batchSize;
+
+    private Path path;
+
+    private MappedFileEventSource source;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+
+        String dir = System.getProperty("benchmark.dir");
+
+        File f = File.createTempFile("mapped-source-benchmark", ".log", dir == null ? null : new File(dir));
+        f.deleteOnExit();
+
+        path = f.toPath();
+
+        generate(path, (long)fileSize * 1024 * 1024);
+
+        source = new MappedFileEventSource(path, "raw".equals(parser) ? new RawLineParser() : new SplitOnlyParser());
+        source.setBatchSize(batchSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+
+        Files.deleteIfExists(path);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long read(Bytes bytes) throws Exception {
+
+        long events;
+
+        if ("mapped".equals(reader)) {
+
+            CountingProcedure p = new CountingProcedure();
+
+            events = source.feed(p);
+
+            bytes.bytes += source.getBytesRead();
+        }
+        else {
+
+            events = readBuffered(bytes);
+        }
+
+        return events;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private long readBuffered(Bytes bytes) throws IOException {
+
+        boolean raw = "raw".equals(parser);
+
+        long events = 0L;
+        long read = 0L;
+        long lineNumber = 0L;
+        Object sink = null;
+
+        try (BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+
+            String line;
+
+            while((line = br.readLine()) != null) {
+
+                lineNumber ++;
+
+                //
+                // the file is ASCII, so the length in characters is the length in bytes
+                //
+
+                read += line.length() + 1;
+
+                sink = raw ? new RawLineEvent(line, lineNumber, read, line.length() + 1) : line;
+
+                events ++;
+            }
+        }
+
+        bytes.bytes += read;
+
+        return sink == null ? events : events + 1;
+    }
+
+    /**
+     * Writes ASCII lines that resemble log entries, until the file reaches the given size.
+     */
+    private static void generate(Path path, long size) throws IOException {
+
+        String[] levels = { "INFO", "DEBUG", "WARN", "ERROR" };
+
+        try (BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.US_ASCII)) {
+
+            StringBuilder sb = new StringBuilder(LINE_WIDTH + 16);
+
+            long written = 0L;
+            long i = 0L;
+
+            while(written < size) {
+
+                sb.setLength(0);
+                sb.append("2026-10-18 12:00:").append(10 + (i % 50)).append('.').append(100 + (i % 900));
+                sb.append(' ').append(levels[(int)(i % levels.length)]).append(" [thread-").append(i % 16);
+                sb.append("] io.novaordis.Component - message ").append(i).append(' ');
+
+                while(sb.length() < LINE_WIDTH - (int)(i % 40)) {
+
+                    sb.append((char)('a' + (sb.length() % 26)));
+                }
+
+                sb.append('\n');
+
+                w.write(sb.toString());
+
+                written += sb.length();
+                i ++;
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Reported as bytes/sec.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Bytes {
+
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+
+            bytes = 0L;
+        }
+    }
+
+    /**
+     * Returns the same event for every line, so only the splitting is measured.
+     */
+    private static class SplitOnlyParser implements LineParser {
+
+        private final Event event = new GenericEvent();
+
+        @Override
+        public Event parse(Line line) {
+
+            return line.getLength() >= 0 ? event : null;
+        }
+
+        @Override
+        public Event close() {
+
+            return null;
+        }
+    }
+
+    private static class CountingProcedure extends ProcedureBase {
+
+        private long count;
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) {
+
+            count ++;
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, List<Event> events) {
+
+            count += events.size();
+        }
+
+        @Override
+        public List<String> getCommandLineLabels() {
+
+            return Collections.emptyList();
+        }
+    }
+
+}
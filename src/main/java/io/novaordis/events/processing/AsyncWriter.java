@@ -0,0 +1,636 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Writer that decouples the thread that produces text from the thread that writes it to the output stream.
+ *
+ * The text is accumulated in a chunk, and the chunk is handed over to a dedicated I/O thread when it reaches the chunk
+ * size, or when the writer is flushed. The chunks travel through a bounded, lock-free, single-producer/single-consumer
+ * ring. The I/O thread writes them to the output stream and flushes the stream every time it catches up with the
+ * producer, so a fast consumer sees the text with little delay, while a slow consumer gets it in large writes.
+ *
+ * When the ring is full, the producer either waits for space (BLOCK) or discards the chunk (DROP), according to the
+ * overflow policy. The time spent waiting, the number of discarded chunks and the queue depth are available as metrics.
+ *
+ * flush() only hands over the current chunk; drain() also waits until everything handed over so far is written and
+ * the output stream is flushed. close() drains and stops the I/O thread, but it does not close the output stream,
+ * which belongs to the caller. A writer that was closed restarts its I/O thread if more text is written.
+ *
+ * If the I/O thread fails to write or flush, the first failure is kept, and it is rethrown, as the cause of an
+ * IOException, by every subsequent write(), flush(), drain() and close(), so the producer learns that output is being
+ * lost. close() stops the I/O thread even if it throws.
+ *
+ * The instance is intended to be used by a single producer thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class AsyncWriter extends Writer {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncWriter.class);
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    public static final int DEFAULT_CHUNK_SIZE = 8 * 1024;
+
+    // the I/O thread re-checks the ring at this interval even if nobody wakes it up
+    private static final long IDLE_PARK_NANOS = 100L * 1000 * 1000;
+
+    // the producer re-checks the ring at this interval while it waits for space or for a drain
+    private static final long WAIT_PARK_NANOS = 1000L * 1000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    public enum OverflowPolicy {
+
+        /**
+         * The producer waits until the I/O thread makes room in the queue.
+         */
+        BLOCK,
+
+        /**
+         * The chunk that does not fit in the queue is discarded.
+         */
+        DROP
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String name;
+    private final Writer target;
+    private final OverflowPolicy overflowPolicy;
+    private final int chunkSize;
+
+    private final String[] ring;
+    private final int mask;
+
+    // the index of the next chunk the I/O thread will take
+    private final AtomicLong head;
+
+    // the index of the next chunk the producer will put
+    private final AtomicLong tail;
+
+    // the number of chunks written to the target and flushed
+    private volatile long completed;
+
+    private volatile boolean ioThreadWaiting;
+    private volatile Thread producerWaiting;
+    private volatile boolean stopping;
+
+    private Thread ioThread;
+
+    private StringBuilder chunk;
+
+    //
+    // metrics
+    //
+
+    private volatile long maxQueueDepth;
+    private final AtomicLong stallNanos;
+    private final AtomicLong stalls;
+    private final AtomicLong droppedChunks;
+    private final AtomicLong droppedCharacters;
+    private final AtomicLong writeFailures;
+
+    // the first failure encountered by the I/O thread
+    private volatile IOException failure;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public AsyncWriter(OutputStream os) {
+
+        this(os, DEFAULT_QUEUE_CAPACITY, OverflowPolicy.BLOCK, DEFAULT_CHUNK_SIZE, null);
+    }
+
+    /**
+     * @param queueCapacity the maximum number of chunks waiting to be written. Rounded up to a power of two.
+     * @param chunkSize the number of characters accumulated before they are handed over to the I/O thread.
+     * @param name used to name the I/O thread. May be null.
+     *
+     * @exception IllegalArgumentException on null output stream or policy, or invalid sizes.
+     */
+    public AsyncWriter(OutputStream os, int queueCapacity, OverflowPolicy overflowPolicy, int chunkSize, String name) {
+
+        if (os == null) {
+
+            throw new IllegalArgumentException("null output stream");
+        }
+
+        if (overflowPolicy == null) {
+
+            throw new IllegalArgumentException("null overflow policy");
+        }
+
+        if (queueCapacity <= 0 || queueCapacity > (1 << 30)) {
+
+            throw new IllegalArgumentException("invalid queue capacity: " + queueCapacity);
+        }
+
+        if (chunkSize <= 0) {
+
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+
+        int capacity = Integer.highestOneBit(queueCapacity);
+
+        if (capacity < queueCapacity) {
+
+            capacity <<= 1;
+        }
+
+        this.name = name == null ? "async-writer" : name;
+        this.target = new BufferedWriter(new OutputStreamWriter(os));
+        this.overflowPolicy = overflowPolicy;
+        this.chunkSize = chunkSize;
+        this.ring = new String[capacity];
+        this.mask = capacity - 1;
+        this.head = new AtomicLong(0L);
+        this.tail = new AtomicLong(0L);
+        this.chunk = new StringBuilder(Math.min(chunkSize, 64 * 1024));
+        this.stallNanos = new AtomicLong(0L);
+        this.stalls = new AtomicLong(0L);
+        this.droppedChunks = new AtomicLong(0L);
+        this.droppedCharacters = new AtomicLong(0L);
+        this.writeFailures = new AtomicLong(0L);
+    }
+
+    // Writer overrides ------------------------------------------------------------------------------------------------
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+
+        checkFailure();
+
+        chunk.append(buffer, offset, length);
+
+        if (chunk.length() >= chunkSize) {
+
+            handOff();
+        }
+    }
+
+    @Override
+    public void write(String s, int offset, int length) throws IOException {
+
+        checkFailure();
+
+        chunk.append(s, offset, offset + length);
+
+        if (chunk.length() >= chunkSize) {
+
+            handOff();
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+
+        checkFailure();
+
+        chunk.append((char)c);
+
+        if (chunk.length() >= chunkSize) {
+
+            handOff();
+        }
+    }
+
+    /**
+     * Hands over the current chunk to the I/O thread, without waiting for it to be written.
+     */
+    @Override
+    public void flush() throws IOException {
+
+        checkFailure();
+        handOff();
+    }
+
+    /**
+     * Drains the queue and stops the I/O thread. Does not close the underlying output stream.
+     */
+    @Override
+    public void close() throws IOException {
+
+        try {
+
+            drain();
+        }
+        finally {
+
+            stop();
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Hands over the current chunk and waits until all chunks handed over so far are written to the output stream, and
+     * the stream is flushed. Returns early if the calling thread is interrupted, with the interrupt status set.
+     *
+     * @exception IOException if the I/O thread failed to write or flush, now or earlier.
+     */
+    public void drain() throws IOException {
+
+        checkFailure();
+        handOff();
+
+        long target = tail.get();
+
+        while(completed < target) {
+
+            Thread t = ioThread;
+
+            if (t == null || !t.isAlive()) {
+
+                throw new IOException(name + " I/O thread is not running");
+            }
+
+            producerWaiting = Thread.currentThread();
+
+            if (completed < target) {
+
+                LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+            }
+
+            producerWaiting = null;
+
+            if (Thread.interrupted()) {
+
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        checkFailure();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the maximum number of chunks that can wait to be written.
+     */
+    public int getQueueCapacity() {
+
+        return ring.length;
+    }
+
+    public int getChunkSize() {
+
+        return chunkSize;
+    }
+
+    /**
+     * @return the number of chunks currently waiting to be written.
+     */
+    public int getQueueDepth() {
+
+        return (int)(tail.get() - head.get());
+    }
+
+    /**
+     * @return the maximum queue depth observed by the producer.
+     */
+    public long getMaxQueueDepth() {
+
+        return maxQueueDepth;
+    }
+
+    /**
+     * @return the total time, in nanoseconds, the producer spent waiting for space in the queue.
+     */
+    public long getStallTimeNanos() {
+
+        return stallNanos.get();
+    }
+
+    /**
+     * @return the number of times the producer found the queue full and had to wait.
+     */
+    public long getStallCount() {
+
+        return stalls.get();
+    }
+
+    /**
+     * @return the number of chunks discarded because the queue was full.
+     */
+    public long getDroppedChunks() {
+
+        return droppedChunks.get();
+    }
+
+    /**
+     * @return the number of characters discarded because the queue was full.
+     */
+    public long getDroppedCharacters() {
+
+        return droppedCharacters.get();
+    }
+
+    /**
+     * @return the number of chunks handed over to the I/O thread so far.
+     */
+    public long getQueuedChunks() {
+
+        return tail.get();
+    }
+
+    /**
+     * @return the number of write or flush failures encountered by the I/O thread. The chunks that failed to be written
+     * are lost.
+     */
+    public long getWriteFailures() {
+
+        return writeFailures.get();
+    }
+
+    @Override
+    public String toString() {
+
+        return name + "[" + overflowPolicy + ", " + getQueueDepth() + "/" + ring.length + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    boolean isRunning() {
+
+        Thread t = ioThread;
+
+        return t != null && t.isAlive();
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IOException wrapping the first failure of the I/O thread, if any.
+     */
+    private void checkFailure() throws IOException {
+
+        IOException f = failure;
+
+        if (f != null) {
+
+            throw new IOException(name + " failed to write: " + f.getMessage(), f);
+        }
+    }
+
+    private void stop() {
+
+        Thread t = ioThread;
+
+        if (t == null) {
+
+            return;
+        }
+
+        stopping = true;
+
+        LockSupport.unpark(t);
+
+        try {
+
+            t.join();
+        }
+        catch(InterruptedException e) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        ioThread = null;
+        stopping = false;
+    }
+
+    /**
+     * Places the current chunk, if not empty, in the queue, applying the overflow policy if the queue is full.
+     */
+    private void handOff() {
+
+        if (chunk.length() == 0) {
+
+            return;
+        }
+
+        String s = chunk.toString();
+
+        chunk.setLength(0);
+
+        if (ioThread == null) {
+
+            start();
+        }
+
+        long t = tail.get();
+
+        if (t - head.get() >= ring.length) {
+
+            if (overflowPolicy == OverflowPolicy.DROP) {
+
+                droppedChunks.incrementAndGet();
+                droppedCharacters.addAndGet(s.length());
+                return;
+            }
+
+            stalls.incrementAndGet();
+
+            long start = System.nanoTime();
+
+            while(t - head.get() >= ring.length) {
+
+                producerWaiting = Thread.currentThread();
+
+                if (t - head.get() >= ring.length) {
+
+                    LockSupport.parkNanos(this, WAIT_PARK_NANOS);
+                }
+
+                producerWaiting = null;
+            }
+
+            stallNanos.addAndGet(System.nanoTime() - start);
+        }
+
+        ring[(int)(t & mask)] = s;
+
+        //
+        // volatile write, so it is ordered with the read of ioThreadWaiting below
+        //
+
+        tail.set(t + 1);
+
+        long depth = t + 1 - head.get();
+
+        if (depth > maxQueueDepth) {
+
+            maxQueueDepth = depth;
+        }
+
+        if (ioThreadWaiting) {
+
+            LockSupport.unpark(ioThread);
+        }
+    }
+
+    private void start() {
+
+        Runnable r = new Runnable() {
+
+            @Override
+            public void run() {
+
+                loop();
+            }
+        };
+
+        Thread t;
+
+        if (VirtualThreads.isVirtual(Thread.currentThread())) {
+
+            //
+            // a producer running on a virtual thread is one of possibly many streams, do not pair it with a platform
+            // thread; virtual threads are always daemon threads
+            //
+
+            t = VirtualThreads.newThread(name, r);
+        }
+        else {
+
+            t = new Thread(r, name);
+            t.setDaemon(true);
+        }
+
+        ioThread = t;
+
+        t.start();
+    }
+
+    /**
+     * The I/O thread's loop.
+     */
+    private void loop() {
+
+        boolean dirty = false;
+
+        while(true) {
+
+            long h = head.get();
+
+            if (h < tail.get()) {
+
+                int index = (int)(h & mask);
+
+                String s = ring[index];
+                ring[index] = null;
+
+                head.set(h + 1);
+
+                wakeUpProducer();
+
+                try {
+
+                    target.write(s);
+                    dirty = true;
+                }
+                catch(IOException e) {
+
+                    failed("write", e);
+                }
+
+                continue;
+            }
+
+            //
+            // caught up with the producer
+            //
+
+            if (dirty) {
+
+                try {
+
+                    target.flush();
+                }
+                catch(IOException e) {
+
+                    failed("flush", e);
+                }
+
+                dirty = false;
+            }
+
+            completed = h;
+
+            wakeUpProducer();
+
+            if (stopping) {
+
+                return;
+            }
+
+            ioThreadWaiting = true;
+
+            if (head.get() == tail.get() && !stopping) {
+
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+
+            ioThreadWaiting = false;
+        }
+    }
+
+    private void wakeUpProducer() {
+
+        Thread p = producerWaiting;
+
+        if (p != null) {
+
+            LockSupport.unpark(p);
+        }
+    }
+
+    private void failed(String operation, IOException e) {
+
+        if (writeFailures.getAndIncrement() == 0) {
+
+            failure = e;
+            log.warn(name + " failed to " + operation + ": " + e.getMessage());
+        }
+
+        log.debug(name + " failed to " + operation, e);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
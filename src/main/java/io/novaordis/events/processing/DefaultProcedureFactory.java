@@ -16,23 +16,35 @@
 
 package io.novaordis.events.processing;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import io.novaordis.events.processing.count.Count;
-import io.novaordis.events.processing.describe.Describe;
-import io.novaordis.events.processing.exclude.Exclude;
-import io.novaordis.events.processing.help.Help;
-import io.novaordis.events.processing.output.Output;
-import io.novaordis.events.processing.timegaps.TimeGaps;
+import io.novaordis.events.processing.metrics.MetricsRegistry;
+import io.novaordis.utilities.UserErrorException;
 import io.novaordis.utilities.appspec.ApplicationSpecificBehavior;
 
 /**
  * The procedure factory that builds procedures shipped with this package. The factory give the standard procedures
  * a chance to configure themselves with application-specific behavior, if that is possible for a specific procedure.
  *
+ * The procedures are looked up in a ProcedureRegistry, by default the one that holds the ProcedureProviders
+ * discovered in the classpath, so procedures shipped in other jars are found as well.
+ *
+ * Procedures can be chained on the command line with the pipe separator, which must be quoted to get past the shell:
+ *
+ *      exclude <query> '|' time-gaps '|' output
+ *
+ * Each procedure only sees its own arguments, up to the next separator. The factory installs each procedure as the
+ * downstream procedure of the previous one, and returns the first procedure in the chain. The events are passed
+ * between procedures by reference, in batches. A procedure that does not produce events cannot be followed by another
+ * procedure, and the chain is rejected with a UserErrorException.
+ *
+ * If a MetricsRegistry is installed (by default, the one configured with system properties, if any), the procedures
+ * built by the factory are registered with it.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/19/17
  */
@@ -42,13 +54,17 @@ public class DefaultProcedureFactory implements ProcedureFactory {
 
     private static final Logger log = LoggerFactory.getLogger(DefaultProcedureFactory.class);
 
+    public static final String PIPE = "|";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private ApplicationSpecificBehavior applicationSpecificBehavior;
 
-    private Help helpReference;
+    private ProcedureRegistry registry;
+
+    private MetricsRegistry metricsRegistry;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -58,81 +74,150 @@ public class DefaultProcedureFactory implements ProcedureFactory {
      */
     public DefaultProcedureFactory(ApplicationSpecificBehavior asb) {
 
+        this(asb, ProcedureRegistry.getDefault());
+    }
+
+    /**
+     * @param asb may be null, see above.
+     */
+    public DefaultProcedureFactory(ApplicationSpecificBehavior asb, ProcedureRegistry registry) {
+
+        if (registry == null) {
+
+            throw new IllegalArgumentException("null registry");
+        }
+
         this.applicationSpecificBehavior = asb;
-        this.helpReference = new Help();
+        this.registry = registry;
+        this.metricsRegistry = MetricsRegistry.fromSystemProperties();
     }
 
     // ProcedureFactory implementation ---------------------------------------------------------------------------------
 
+    /**
+     * The procedures are registered with the metrics registry only after the whole pipe was built and validated, so a
+     * rejected command line does not leave registered procedures behind.
+     */
     @Override
-    public Procedure find(String commandLineLabel, int from, List<String> arguments) {
+    public Procedure find(String commandLineLabel, int from, List<String> arguments) throws UserErrorException {
 
-        //
-        // TODO: we currently only return the procedures we know of, but this is a hack, use an annotation and
-        // annotation scanning instead.
-        //
+        Procedure procedure = build(commandLineLabel, from, arguments);
 
-        if (helpReference.getCommandLineLabels().contains(commandLineLabel)) {
+        for(Procedure p = procedure; p != null; p = p.getDownstream()) {
 
-            return new Help();
+            register(p);
         }
-        else if (Describe.COMMAND_LINE_LABEL.equals(commandLineLabel)) {
 
-            //
-            // unless configured otherwise, write to System.out
-            //
+        return procedure;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public ProcedureRegistry getRegistry() {
+
+        return registry;
+    }
+
+    /**
+     * @return the registry the procedures built by this factory are registered with, may be null.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+
+        return metricsRegistry;
+    }
+
+    /**
+     * @param metricsRegistry may be null, in which case the procedures built by this factory do not collect metrics.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+
+        this.metricsRegistry = metricsRegistry;
+    }
 
-            return new Describe(System.out);
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds the procedure and, recursively, the procedures that follow it in the pipe, without registering them.
+     */
+    private Procedure build(String commandLineLabel, int from, List<String> arguments) throws UserErrorException {
+
+        ProcedureProvider provider = registry.find(commandLineLabel);
+
+        if (provider == null) {
+
+            log.debug("unknown command line label: \"" + commandLineLabel + "\"");
+            return null;
         }
-        else if (TimeGaps.COMMAND_LINE_LABEL.equals(commandLineLabel)) {
 
-            //
-            // unless configured otherwise, write to System.out
-            //
+        //
+        // a separator that precedes the procedure arguments is none of our business
+        //
+
+        int pipe = from < arguments.size() ? arguments.subList(from, arguments.size()).indexOf(PIPE) : -1;
 
-            return new TimeGaps(System.out);
+        if (pipe == -1) {
+
+            return provider.newProcedure(commandLineLabel, from, arguments, applicationSpecificBehavior);
         }
-        else if (Count.ABBREVIATED_COMMAND_LINE_LABEL.equals(commandLineLabel) ||
-                Count.COMMAND_LINE_LABEL.equals(commandLineLabel)) {
 
-            //
-            // unless configured otherwise, write to System.out
-            //
+        //
+        // the procedure only gets to see the arguments up to the separator
+        //
+
+        pipe += from;
+
+        List<String> procedureArguments = new ArrayList<>(arguments.subList(0, pipe));
+
+        Procedure procedure =
+                provider.newProcedure(commandLineLabel, from, procedureArguments, applicationSpecificBehavior);
+
+        List<String> head = arguments.subList(0, pipe);
+        head.clear();
+        head.addAll(procedureArguments);
 
-            return new Count(System.out);
+        pipe = procedureArguments.size();
+
+        arguments.remove(pipe);
+
+        if (pipe >= arguments.size()) {
+
+            throw new UserErrorException("missing procedure after '" + PIPE + "'");
         }
-        else if (Exclude.ABBREVIATED_COMMAND_LINE_LABEL.equals(commandLineLabel) ||
-                Exclude.COMMAND_LINE_LABEL.equals(commandLineLabel)) {
 
-            //
-            // unless configured otherwise, write to System.out
-            //
+        String downstreamLabel = arguments.remove(pipe);
+
+        Procedure downstream = build(downstreamLabel, pipe, arguments);
 
-            return new Exclude(System.out);
+        if (downstream == null) {
+
+            throw new UserErrorException("unknown procedure: " + downstreamLabel);
         }
-        else if (Output.COMMAND_LINE_LABEL.equals(commandLineLabel)) {
 
-            //
-            // unless configured otherwise, write to System.out
-            //
+        try {
 
-            return new Output(System.out, applicationSpecificBehavior, from, arguments);
+            procedure.setDownstream(downstream);
         }
-        else {
+        catch(UnsupportedOperationException e) {
 
-            log.debug("unknown command line label: \"" + commandLineLabel + "\"");
+            throw new UserErrorException(commandLineLabel + " cannot be followed by another procedure");
         }
 
-        return null;
+        return procedure;
     }
 
-    // Public ----------------------------------------------------------------------------------------------------------
+    private void register(Procedure p) {
 
-    // Package protected -----------------------------------------------------------------------------------------------
+        MetricsRegistry r = metricsRegistry;
 
-    // Protected -------------------------------------------------------------------------------------------------------
+        if (r != null && p instanceof ProcedureBase) {
 
-    // Private ---------------------------------------------------------------------------------------------------------
+            r.register((ProcedureBase)p);
+        }
+    }
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
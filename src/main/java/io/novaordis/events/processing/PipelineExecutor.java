@@ -0,0 +1,427 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+
+/**
+ * Fans out a single event stream to N procedures, each running on its own worker thread, so several procedures
+ * (for example count, describe and output) can process the same stream at the same time, without reading the input
+ * several times.
+ *
+ * The events submitted by the producer are accumulated in batches, and each batch is placed in the bounded ring buffer
+ * of every branch. The same batch instance is shared, read-only, by all branches. When a ring buffer is full, the
+ * producer blocks, so the ingestion rate adapts to the slowest branch.
+ *
+ * A branch whose procedure signals isExitLoop() stops receiving events, but it still receives the EndOfStreamEvent,
+ * if it did not process it already. The EndOfStreamEvent is delivered to every branch, and the worker threads exit
+ * after they process it.
+ *
+ * The instance is intended to be used by a single producer thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PipelineExecutor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(PipelineExecutor.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    /**
+     * The default ring buffer capacity, in batches.
+     */
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final long OFFER_TIMEOUT_MS = 100L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final List<Branch> branches;
+
+    private final int batchSize;
+
+    private final CountDownLatch terminated;
+
+    private List<Event> pending;
+
+    private boolean started;
+
+    private boolean endOfStream;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PipelineExecutor(List<? extends Procedure> procedures) {
+
+        this(procedures, DEFAULT_BATCH_SIZE, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param batchSize the number of events accumulated before they are handed over to the branches.
+     * @param capacity the capacity, in batches, of each branch's ring buffer.
+     *
+     * @exception IllegalArgumentException on null or empty procedure list, or invalid sizes.
+     */
+    public PipelineExecutor(List<? extends Procedure> procedures, int batchSize, int capacity) {
+
+        if (procedures == null || procedures.isEmpty()) {
+
+            throw new IllegalArgumentException("null or empty procedure list");
+        }
+
+        if (batchSize <= 0) {
+
+            throw new IllegalArgumentException("invalid batch size: " + batchSize);
+        }
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.batchSize = batchSize;
+        this.pending = new ArrayList<>(batchSize);
+        this.terminated = new CountDownLatch(procedures.size());
+        this.branches = new ArrayList<>(procedures.size());
+
+        for(Procedure p: procedures) {
+
+            if (p == null) {
+
+                throw new IllegalArgumentException("null procedure");
+            }
+
+            branches.add(new Branch(p, capacity));
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts the worker threads.
+     *
+     * @exception IllegalStateException if already started.
+     */
+    public void start() {
+
+        if (started) {
+
+            throw new IllegalStateException(this + " already started");
+        }
+
+        started = true;
+
+        for(Branch b: branches) {
+
+            b.thread.start();
+        }
+
+        log.debug(this + " started");
+    }
+
+    /**
+     * Submits an event to all branches. The event may not reach the branches until a full batch is accumulated, the
+     * EndOfStreamEvent is submitted or flush() is invoked.
+     *
+     * @exception IllegalStateException if the executor was not started, or if the event is submitted after the
+     * EndOfStreamEvent.
+     * @exception InterruptedException if interrupted while waiting for space in a ring buffer.
+     */
+    public void process(Event e) throws InterruptedException {
+
+        if (!started) {
+
+            throw new IllegalStateException(this + " not started");
+        }
+
+        if (endOfStream) {
+
+            throw new IllegalStateException("event beyond EndOfStream");
+        }
+
+        pending.add(e);
+
+        if (e instanceof EndOfStreamEvent) {
+
+            endOfStream = true;
+            publish();
+        }
+        else if (pending.size() >= batchSize) {
+
+            publish();
+        }
+    }
+
+    /**
+     * Convenience method, has the same semantics as process(Event).
+     */
+    public void process(List<Event> events) throws InterruptedException {
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < events.size(); i ++) {
+
+            process(events.get(i));
+        }
+    }
+
+    /**
+     * Hands over the events accumulated so far to the branches, without waiting for a full batch.
+     */
+    public void flush() throws InterruptedException {
+
+        if (!pending.isEmpty()) {
+
+            publish();
+        }
+    }
+
+    /**
+     * @return true if all branches signaled they want to exit the loop, so there is no point in submitting more events,
+     * except the EndOfStreamEvent.
+     */
+    public boolean isExitLoop() {
+
+        for(Branch b: branches) {
+
+            if (!b.exitLoop) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Waits until all worker threads exit, which happens after they process the EndOfStreamEvent.
+     *
+     * @return true if all worker threads exited, false if the timeout elapsed.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return terminated.await(timeout, unit);
+    }
+
+    /**
+     * Interrupts the worker threads. Events still in the ring buffers are not processed.
+     */
+    public void shutdownNow() {
+
+        for(Branch b: branches) {
+
+            b.thread.interrupt();
+        }
+    }
+
+    /**
+     * @return the procedures, in the order they were provided at construction.
+     */
+    public List<Procedure> getProcedures() {
+
+        List<Procedure> result = new ArrayList<>(branches.size());
+
+        for(Branch b: branches) {
+
+            result.add(b.procedure);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the failures that terminated branches abnormally, in branch order. May be empty, never null.
+     */
+    public List<Throwable> getFailures() {
+
+        List<Throwable> result = new ArrayList<>();
+
+        for(Branch b: branches) {
+
+            if (b.failure != null) {
+
+                result.add(b.failure);
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public String toString() {
+
+        return "PipelineExecutor[" + Integer.toHexString(System.identityHashCode(this)) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void publish() throws InterruptedException {
+
+        List<Event> batch = pending;
+
+        pending = new ArrayList<>(batchSize);
+
+        boolean containsEndOfStream = batch.get(batch.size() - 1) instanceof EndOfStreamEvent;
+
+        for(Branch b: branches) {
+
+            if (b.terminated) {
+
+                continue;
+            }
+
+            if (b.exitLoop && !containsEndOfStream) {
+
+                //
+                // the branch does not want more events
+                //
+
+                continue;
+            }
+
+            //
+            // block while the ring buffer is full, but do not wait forever on a branch that terminated abnormally
+            //
+
+            while(!b.ringBuffer.offer(batch, OFFER_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+
+                if (b.terminated) {
+
+                    break;
+                }
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class Branch implements Runnable {
+
+        private final Procedure procedure;
+
+        private final BlockingQueue<List<Event>> ringBuffer;
+
+        private final Thread thread;
+
+        private volatile boolean exitLoop;
+
+        private volatile boolean terminated;
+
+        private volatile Throwable failure;
+
+        private boolean endOfStreamDelivered;
+
+        Branch(Procedure procedure, int capacity) {
+
+            this.procedure = procedure;
+            this.ringBuffer = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this, "pipeline-" + procedure);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+
+            try {
+
+                while(true) {
+
+                    List<Event> batch = ringBuffer.take();
+
+                    Event last = batch.get(batch.size() - 1);
+
+                    boolean endOfStream = last instanceof EndOfStreamEvent;
+
+                    if (!exitLoop) {
+
+                        try {
+
+                            procedure.process(batch);
+
+                            endOfStreamDelivered = endOfStream;
+                        }
+                        catch(EventProcessingException e) {
+
+                            String msg = procedure + " failed to process event";
+                            log.warn(msg);
+                            log.debug(msg, e);
+
+                            if (endOfStream) {
+
+                                //
+                                // the procedure did not get to consume the EndOfStreamEvent, send it alone
+                                //
+
+                                procedure.process(Collections.singletonList(last));
+                                endOfStreamDelivered = true;
+                            }
+                        }
+
+                        if (procedure.isExitLoop()) {
+
+                            exitLoop = true;
+                        }
+                    }
+                    else if (endOfStream && !endOfStreamDelivered) {
+
+                        procedure.process(Collections.singletonList(last));
+                        endOfStreamDelivered = true;
+                    }
+
+                    if (endOfStream) {
+
+                        break;
+                    }
+                }
+            }
+            catch(InterruptedException e) {
+
+                log.debug(procedure + " worker interrupted");
+            }
+            catch(Throwable t) {
+
+                failure = t;
+                log.error(procedure + " failed", t);
+            }
+            finally {
+
+                exitLoop = true;
+                terminated = true;
+                PipelineExecutor.this.terminated.countDown();
+            }
+        }
+    }
+}
@@ -23,6 +23,10 @@ import java.util.List;
 /**
  * The implementations must have a public no-argument constructor, as they will be instantiated via reflection.
  *
+ * Procedures can be chained in process: the events a procedure produces are handed over, by reference, to the
+ * downstream procedure installed with setDownstream(), so a chain like "exclude | time-gaps | output" does not have to
+ * render the events as text and parse them again. ProcedureBase implements the downstream contract.
+ *
  * @see DefaultProcedureFactory#find(String, int, List)
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -45,7 +49,8 @@ public interface Procedure {
 
     /**
      * Process an incoming event. If corresponding output events are produced, they will be offered for consumption
-     * though means particular to a specific implementation.
+     * to the downstream procedure, if one is installed, and otherwise though means particular to a specific
+     * implementation.
      *
      * The implementation should be prepared to handle special events such as EndOfStreamEvent, etc.
      *
@@ -57,7 +62,9 @@ public interface Procedure {
     void process(Event in) throws EventProcessingException;
 
     /**
-     * Convenience method, has the same semantics as process(Event), just that it processes events in batches.
+     * Has the same semantics as process(Event), just that it processes events in batches. Implementations may process
+     * a batch more efficiently than the equivalent sequence of process(Event) invocations. If present, the
+     * EndOfStreamEvent is expected to be the last event in the batch.
      *
      * @exception EventProcessingException if processing of an individual event fail, but the procedure is able to
      * continue processing events.
@@ -67,7 +74,8 @@ public interface Procedure {
     void process(List<Event> in) throws EventProcessingException;
 
     /**
-     * The number of individual process() invocations since the instance was constructed.
+     * The number of individual process() invocations since the instance was constructed. An event processed as part of
+     * a batch counts as an individual invocation.
      */
     long getInvocationCount();
 
@@ -78,5 +86,27 @@ public interface Procedure {
      */
     boolean isExitLoop();
 
+    /**
+     * Installs the procedure that will receive the events produced by this procedure. The EndOfStreamEvent is always
+     * forwarded downstream, after the procedure processed it, even if the procedure produces no other events.
+     *
+     * @param downstream may be null, which disconnects the current downstream procedure.
+     *
+     * @exception UnsupportedOperationException if the procedure cannot be followed by other procedures. This is the
+     * default behavior.
+     * @exception IllegalArgumentException if the downstream procedure is this procedure.
+     */
+    default void setDownstream(Procedure downstream) {
+
+        throw new UnsupportedOperationException(this + " cannot be followed by another procedure");
+    }
+
+    /**
+     * @return the downstream procedure, or null if none was installed.
+     */
+    default Procedure getDownstream() {
+
+        return null;
+    }
 
 }
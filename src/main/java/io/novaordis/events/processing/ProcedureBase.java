@@ -16,13 +16,24 @@
 
 package io.novaordis.events.processing;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.metrics.ProcedureMetrics;
 
 /**
+ * Downstream procedures: the events a subclass produces with emit() are accumulated in batches and handed over to the
+ * downstream procedure with process(List). A batch is handed over when it fills up, at the end of each incoming batch,
+ * and after EndOfStream. The EndOfStreamEvent is forwarded downstream after the subclass processed it, unless the
+ * subclass emitted it already. Events emitted without a downstream procedure are discarded. Chaining is opt-in: only
+ * the subclasses that emit events and say so by overriding isChainable() accept a downstream procedure.
+ *
+ * Metrics: once enableMetrics() is invoked, usually by a MetricsRegistry, the procedure times its process() invocations
+ * and counts the exceptions they throw. Until then, the only cost is a volatile read per invocation.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/19/17
  */
@@ -30,6 +41,8 @@ public abstract class ProcedureBase implements Procedure {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
+    public static final int DEFAULT_EMIT_BATCH_SIZE = 256;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -37,21 +50,119 @@ public abstract class ProcedureBase implements Procedure {
     protected final AtomicLong invocationCount;
     protected volatile boolean endOfStream;
 
+    private volatile Procedure downstream;
+
+    private int emitBatchSize;
+
+    private List<Event> emitted;
+
+    private boolean endOfStreamEmitted;
+
+    private volatile ProcedureMetrics metrics;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     protected ProcedureBase() {
 
         this.invocationCount = new AtomicLong(0L);
+        this.emitBatchSize = DEFAULT_EMIT_BATCH_SIZE;
     }
 
     // Procedure implementation ----------------------------------------------------------------------------------------
 
+    /**
+     * Override that does EOS accounting and invocation count update once per batch, as opposed to once per event, and
+     * hands over the batch to subclasses via process(AtomicLong, List). The method *will* send the EndOfStream to
+     * subclass, but on its own, via process(AtomicLong, Event), and only after the events that precede it in the batch
+     * were processed successfully. If they were not, the EndOfStreamEvent is not delivered and the procedure does not
+     * consider the stream ended, so the caller can send the EndOfStreamEvent again, alone.
+     */
     @Override
     public void process(List<Event> events) throws EventProcessingException {
 
-        for(Event e: events) {
+        int size = events.size();
+
+        if (size == 0) {
+
+            return;
+        }
+
+        if (endOfStream) {
+
+            invocationCount.incrementAndGet();
+            throw new IllegalStateException("event beyond EndOfStream");
+        }
+
+        //
+        // a single EndOfStream detection pass, without volatile reads or atomic updates
+        //
+
+        int endOfStreamIndex = -1;
+
+        for(int i = 0; i < size; i ++) {
+
+            if (events.get(i) instanceof EndOfStreamEvent) {
+
+                endOfStreamIndex = i;
+                break;
+            }
+        }
+
+        //
+        // events that follow EndOfStream in the batch are not processed
+        //
+
+        List<Event> batch = endOfStreamIndex == -1 ? events : events.subList(0, endOfStreamIndex);
+
+        ProcedureMetrics m = metrics;
+
+        if (!batch.isEmpty()) {
+
+            invocationCount.addAndGet(batch.size());
+
+            if (m == null) {
+
+                process(invocationCount, batch);
+            }
+            else {
+
+                process(m, batch);
+            }
+        }
+
+        Event endOfStreamEvent = null;
+
+        if (endOfStreamIndex != -1) {
 
-            process(e);
+            endOfStreamEvent = events.get(endOfStreamIndex);
+
+            invocationCount.incrementAndGet();
+            endOfStream = true;
+
+            //
+            // like the rest of the batch, the EndOfStreamEvent is always timed
+            //
+
+            if (m == null) {
+
+                process(invocationCount, endOfStreamEvent);
+            }
+            else {
+
+                timedProcess(m, endOfStreamEvent);
+            }
+        }
+
+        forwardDownstream(endOfStreamEvent);
+
+        if (endOfStreamIndex != -1 && endOfStreamIndex < size - 1) {
+
+            //
+            // account for the first event beyond EndOfStream, as the per-event process() would
+            //
+
+            invocationCount.incrementAndGet();
+            throw new IllegalStateException("event beyond EndOfStream");
         }
     }
 
@@ -69,12 +180,40 @@ public abstract class ProcedureBase implements Procedure {
             throw new IllegalStateException("event beyond EndOfStream");
         }
 
-        if (e instanceof EndOfStreamEvent) {
+        boolean endOfStreamEvent = e instanceof EndOfStreamEvent;
+
+        if (endOfStreamEvent) {
 
             endOfStream = true;
         }
 
-        process(invocationCount, e);
+        ProcedureMetrics m = metrics;
+
+        if (m == null || !m.sample()) {
+
+            try {
+
+                process(invocationCount, e);
+            }
+            catch(EventProcessingException | RuntimeException x) {
+
+                if (m != null) {
+
+                    m.exception();
+                }
+
+                throw x;
+            }
+        }
+        else {
+
+            timedProcess(m, e);
+        }
+
+        if (endOfStreamEvent) {
+
+            forwardDownstream(e);
+        }
     }
 
     @Override
@@ -91,11 +230,87 @@ public abstract class ProcedureBase implements Procedure {
         // they want a different behavior.
         //
 
-        return endOfStream;
+        if (endOfStream) {
+
+            return true;
+        }
+
+        //
+        // there is no point in producing events the downstream procedure does not want
+        //
+
+        Procedure d = downstream;
+
+        return d != null && d.isExitLoop();
+    }
+
+    @Override
+    public void setDownstream(Procedure downstream) {
+
+        if (downstream == this) {
+
+            throw new IllegalArgumentException("a procedure cannot be its own downstream procedure");
+        }
+
+        if (downstream != null && !isChainable()) {
+
+            throw new UnsupportedOperationException(this + " cannot be followed by another procedure");
+        }
+
+        this.downstream = downstream;
+    }
+
+    @Override
+    public Procedure getDownstream() {
+
+        return downstream;
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @param size the maximum number of emitted events handed over to the downstream procedure in one batch.
+     *
+     * @exception IllegalArgumentException on zero or negative size.
+     */
+    public void setEmitBatchSize(int size) {
+
+        if (size <= 0) {
+
+            throw new IllegalArgumentException("invalid emit batch size: " + size);
+        }
+
+        this.emitBatchSize = size;
+    }
+
+    public int getEmitBatchSize() {
+
+        return emitBatchSize;
+    }
+
+    /**
+     * Starts collecting metrics. Invoking it again has no effect.
+     *
+     * @return the procedure's metrics.
+     */
+    public synchronized ProcedureMetrics enableMetrics() {
+
+        if (metrics == null) {
+
+            metrics = new ProcedureMetrics(this);
+        }
+
+        return metrics;
+    }
+
+    /**
+     * @return the procedure's metrics, or null if metrics were not enabled.
+     */
+    public ProcedureMetrics getMetrics() {
+
+        return metrics;
+    }
+
     @Override
     public String toString() {
 
@@ -128,8 +343,185 @@ public abstract class ProcedureBase implements Procedure {
      */
     protected abstract void process(AtomicLong invocationCount, Event e) throws EventProcessingException;
 
+    /**
+     * Batch processing hook. The default implementation hands over the events one by one to process(AtomicLong, Event)
+     * and, like a caller that processes the events one by one, it keeps going after an event fails: the first
+     * EventProcessingException is thrown after the whole batch was handed over, with the later ones suppressed.
+     * Subclasses that can process a batch more efficiently than event by event should override it.
+     *
+     * @param invocationCount is updated by the base class, with the size of the batch, before invoking this method.
+     * @param events a non-empty batch, which never contains the EndOfStreamEvent: that is always handed over on its
+     *               own, to process(AtomicLong, Event).
+     */
+    protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+        EventProcessingException failure = null;
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < events.size(); i ++) {
+
+            try {
+
+                process(invocationCount, events.get(i));
+            }
+            catch(EventProcessingException e) {
+
+                if (failure == null) {
+
+                    failure = e;
+                }
+                else {
+
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+
+        if (failure != null) {
+
+            throw failure;
+        }
+    }
+
+    /**
+     * @return true if the procedure emits events, so it makes sense to follow it with a downstream procedure. The
+     * default is false, which makes setDownstream() throw UnsupportedOperationException: the events would otherwise be
+     * silently lost.
+     */
+    protected boolean isChainable() {
+
+        return false;
+    }
+
+    /**
+     * @return true if there is a downstream procedure, so the subclass knows whether producing events is worth the
+     * effort, or it should use its own means of output instead.
+     */
+    protected boolean hasDownstream() {
+
+        return downstream != null;
+    }
+
+    /**
+     * Offers an event to the downstream procedure. The event is handed over by reference, the subclass must not modify
+     * it afterwards. The event may not reach the downstream procedure until a full batch is accumulated, the incoming
+     * batch is processed, or EndOfStream. Emitting the EndOfStreamEvent hands over the pending batch immediately.
+     *
+     * @exception EventProcessingException if the downstream procedure fails to process the event.
+     * @exception IllegalStateException if an event is emitted after the EndOfStreamEvent was emitted.
+     */
+    protected void emit(Event e) throws EventProcessingException {
+
+        if (endOfStreamEmitted) {
+
+            throw new IllegalStateException("event emitted beyond EndOfStream");
+        }
+
+        if (downstream == null) {
+
+            return;
+        }
+
+        if (emitted == null) {
+
+            emitted = new ArrayList<>(emitBatchSize);
+        }
+
+        emitted.add(e);
+
+        if (e instanceof EndOfStreamEvent) {
+
+            endOfStreamEmitted = true;
+            flushEmitted();
+        }
+        else if (emitted.size() >= emitBatchSize) {
+
+            flushEmitted();
+        }
+    }
+
+    /**
+     * Hands over the emitted events accumulated so far to the downstream procedure, without waiting for a full batch.
+     */
+    protected void flushEmitted() throws EventProcessingException {
+
+        List<Event> batch = emitted;
+
+        if (batch == null || batch.isEmpty()) {
+
+            return;
+        }
+
+        //
+        // the downstream procedure may keep the batch, so we do not reuse it
+        //
+
+        emitted = null;
+
+        Procedure d = downstream;
+
+        if (d != null) {
+
+            d.process(batch);
+        }
+    }
+
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private void timedProcess(ProcedureMetrics m, Event e) throws EventProcessingException {
+
+        try {
+
+            long start = System.nanoTime();
+
+            process(invocationCount, e);
+
+            m.record(start, System.nanoTime(), 1);
+        }
+        catch(EventProcessingException | RuntimeException x) {
+
+            m.exception();
+            throw x;
+        }
+    }
+
+    private void process(ProcedureMetrics m, List<Event> batch) throws EventProcessingException {
+
+        try {
+
+            long start = System.nanoTime();
+
+            process(invocationCount, batch);
+
+            m.record(start, System.nanoTime(), batch.size());
+        }
+        catch(EventProcessingException | RuntimeException x) {
+
+            m.exception();
+            throw x;
+        }
+    }
+
+    /**
+     * @param endOfStream the EndOfStreamEvent the subclass just processed, or null.
+     */
+    private void forwardDownstream(Event endOfStream) throws EventProcessingException {
+
+        if (downstream == null) {
+
+            return;
+        }
+
+        if (endOfStream != null && !endOfStreamEmitted) {
+
+            emit(endOfStream);
+        }
+        else {
+
+            flushEmitted();
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
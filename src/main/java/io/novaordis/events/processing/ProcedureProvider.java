@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.List;
+
+import io.novaordis.utilities.UserErrorException;
+import io.novaordis.utilities.appspec.ApplicationSpecificBehavior;
+
+/**
+ * A lightweight descriptor of a procedure: it declares the procedure's command line labels and knows how to build
+ * configured instances. Providers are discovered with java.util.ServiceLoader, so they must have a public no-argument
+ * constructor and be listed in META-INF/services/io.novaordis.events.processing.ProcedureProvider. Procedures shipped
+ * in third-party jars are plugged in the same way.
+ *
+ * Providers are instantiated once, when the ProcedureRegistry is built, so construction must be cheap and must not
+ * instantiate the procedure.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface ProcedureProvider {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the command line labels of the procedure, including the abbreviated ones. Must be the same as the
+     * labels returned by the procedure's getCommandLineLabels().
+     */
+    List<String> getCommandLineLabels();
+
+    /**
+     * Builds a procedure instance, configured from the command line, and writing to System.out, unless configured
+     * otherwise. The contract is the same as ProcedureFactory.find()'s.
+     *
+     * @param asb may be null.
+     *
+     * @exception UserErrorException if the procedure arguments lead to an initialization failure.
+     */
+    Procedure newProcedure(String commandLineLabel, int from, List<String> commandLineArguments,
+                           ApplicationSpecificBehavior asb) throws UserErrorException;
+
+}
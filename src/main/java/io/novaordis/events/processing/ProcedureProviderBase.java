@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import io.novaordis.utilities.UserErrorException;
+import io.novaordis.utilities.appspec.ApplicationSpecificBehavior;
+
+/**
+ * Base class for the providers that declare a fixed list of command line labels, usually the procedure's label
+ * constants, and build the procedure with a factory function. A concrete provider only needs a public no-argument
+ * constructor that passes both to this class:
+ *
+ *      public CountProvider() {
+ *
+ *          super((from, arguments, asb) -> new Count(System.out, from, arguments),
+ *                  Count.COMMAND_LINE_LABEL, Count.ABBREVIATED_COMMAND_LINE_LABEL);
+ *      }
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public abstract class ProcedureProviderBase implements ProcedureProvider {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final ProcedureFactoryFunction factory;
+
+    private final List<String> commandLineLabels;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param factory builds configured procedure instances.
+     * @param commandLineLabels the procedure's command line labels, including the abbreviated ones.
+     *
+     * @exception IllegalArgumentException on null factory or if no label is specified.
+     */
+    protected ProcedureProviderBase(ProcedureFactoryFunction factory, String... commandLineLabels) {
+
+        if (factory == null) {
+
+            throw new IllegalArgumentException("null factory");
+        }
+
+        if (commandLineLabels == null || commandLineLabels.length == 0) {
+
+            throw new IllegalArgumentException("no command line labels");
+        }
+
+        this.factory = factory;
+        this.commandLineLabels = Collections.unmodifiableList(Arrays.asList(commandLineLabels.clone()));
+    }
+
+    // ProcedureProvider implementation --------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return commandLineLabels;
+    }
+
+    @Override
+    public Procedure newProcedure(String commandLineLabel, int from, List<String> commandLineArguments,
+                                  ApplicationSpecificBehavior asb) throws UserErrorException {
+
+        return factory.newProcedure(from, commandLineArguments, asb);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return getClass().getSimpleName();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Builds a procedure instance. The contract is the same as ProcedureProvider.newProcedure()'s.
+     */
+    @FunctionalInterface
+    public interface ProcedureFactoryFunction {
+
+        Procedure newProcedure(int from, List<String> commandLineArguments, ApplicationSpecificBehavior asb)
+                throws UserErrorException;
+    }
+
+}
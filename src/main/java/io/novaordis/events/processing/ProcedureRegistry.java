@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Indexes ProcedureProviders by command line label. The default registry discovers the providers available in the
+ * classpath once, with java.util.ServiceLoader, the first time it is needed. The lookup is a hash map access, and no
+ * procedure is instantiated until it is requested, so the startup cost does not depend on the number of available
+ * procedures.
+ *
+ * If two providers declare the same label, the first one discovered wins, and a warning is logged.
+ *
+ * The instance is immutable after construction and thus thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureRegistry {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ProcedureRegistry.class);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the registry of the providers discovered in the classpath.
+     */
+    public static ProcedureRegistry getDefault() {
+
+        return DefaultHolder.INSTANCE;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Map<String, ProcedureProvider> providers;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcedureRegistry(Iterable<? extends ProcedureProvider> providers) {
+
+        if (providers == null) {
+
+            throw new IllegalArgumentException("null providers");
+        }
+
+        Map<String, ProcedureProvider> m = new HashMap<>();
+
+        for(ProcedureProvider p: providers) {
+
+            for(String label: p.getCommandLineLabels()) {
+
+                ProcedureProvider existing = m.putIfAbsent(label, p);
+
+                if (existing != null && existing != p) {
+
+                    log.warn("command line label \"" + label + "\" is claimed by both " + existing + " and " + p +
+                            ", using " + existing);
+                }
+            }
+        }
+
+        this.providers = Collections.unmodifiableMap(m);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the provider that declared the label, or null.
+     */
+    public ProcedureProvider find(String commandLineLabel) {
+
+        if (commandLineLabel == null) {
+
+            return null;
+        }
+
+        return providers.get(commandLineLabel);
+    }
+
+    /**
+     * @return all known command line labels.
+     */
+    public Set<String> getCommandLineLabels() {
+
+        return providers.keySet();
+    }
+
+    @Override
+    public String toString() {
+
+        return "ProcedureRegistry" + providers.keySet();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Lazy, thread safe initialization of the default registry.
+     */
+    private static final class DefaultHolder {
+
+        private static final ProcedureRegistry INSTANCE =
+                new ProcedureRegistry(ServiceLoader.load(ProcedureProvider.class, classLoader()));
+
+        private static ClassLoader classLoader() {
+
+            ClassLoader cl = Thread.currentThread().getContextClassLoader();
+
+            return cl != null ? cl : ProcedureRegistry.class.getClassLoader();
+        }
+    }
+
+}
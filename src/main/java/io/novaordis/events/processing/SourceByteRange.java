@@ -0,0 +1,46 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+/**
+ * Implemented by events that know where their representation starts and ends in the source they were parsed from.
+ * The range is expected to cover the complete representation of the event, including its line terminator, so that
+ * procedures that copy source bytes verbatim (see Exclude) produce well-formed output.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface SourceByteRange {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the offset of the first byte of the event in the source, or a negative value if unknown.
+     */
+    long getSourceOffset();
+
+    /**
+     * @return the number of bytes of the event in the source, or a negative value if unknown.
+     */
+    long getSourceLength();
+
+}
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.processing.source.MappedFileEventSource;
+
+/**
+ * Runs many independent source-to-procedure chains (for example one per log file) at the same time, each chain on its
+ * own thread.
+ *
+ * In PLATFORM mode the chains share a fixed pool of platform threads, so at most 'threads' chains make progress at the
+ * same time and the rest wait in the pool's queue. In VIRTUAL mode, available on Java 21 and newer, each chain runs on
+ * its own virtual thread, so hundreds or thousands of chains can be in progress at the same time, and a chain blocked
+ * on I/O does not hold a platform thread. The procedures and the writers they use do not hold monitors while they
+ * block, so they do not pin the carrier threads.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class StreamExecutor {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(StreamExecutor.class);
+
+    public static final String THREAD_NAME_PREFIX = "events-stream-";
+
+    public enum Mode {
+
+        /**
+         * A fixed pool of platform threads.
+         */
+        PLATFORM,
+
+        /**
+         * A virtual thread per chain. Requires Java 21 or newer.
+         */
+        VIRTUAL
+    }
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return true if the JVM supports virtual threads, so VIRTUAL mode can be used.
+     */
+    public static boolean isVirtualThreadSupported() {
+
+        return VirtualThreads.isSupported();
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Mode mode;
+
+    // the size of the pool in PLATFORM mode, 0 in VIRTUAL mode
+    private final int threads;
+
+    private final ExecutorService executor;
+
+    private final AtomicInteger activeStreams;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * Uses virtual threads if the JVM supports them, and a pool of as many platform threads as processors otherwise.
+     */
+    public StreamExecutor() {
+
+        this(isVirtualThreadSupported() ? Mode.VIRTUAL : Mode.PLATFORM);
+    }
+
+    /**
+     * In PLATFORM mode, the pool has as many threads as processors.
+     */
+    public StreamExecutor(Mode mode) {
+
+        this(mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads the size of the pool in PLATFORM mode; ignored in VIRTUAL mode.
+     *
+     * @exception IllegalArgumentException on null mode or invalid thread count.
+     * @exception UnsupportedOperationException if VIRTUAL mode is requested and the JVM does not support virtual
+     * threads.
+     */
+    public StreamExecutor(Mode mode, int threads) {
+
+        if (mode == null) {
+
+            throw new IllegalArgumentException("null mode");
+        }
+
+        if (mode == Mode.PLATFORM && threads <= 0) {
+
+            throw new IllegalArgumentException("invalid thread count: " + threads);
+        }
+
+        this.mode = mode;
+        this.activeStreams = new AtomicInteger(0);
+
+        if (mode == Mode.VIRTUAL) {
+
+            this.threads = 0;
+            this.executor = VirtualThreads.newThreadPerTaskExecutor(THREAD_NAME_PREFIX);
+        }
+        else {
+
+            this.threads = threads;
+            this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+                private final AtomicInteger counter = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable r) {
+
+                    Thread t = new Thread(r, THREAD_NAME_PREFIX + counter.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        log.debug(this + " created");
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Starts a chain that reads the whole source and delivers its events to the procedure.
+     *
+     * @return the future number of events delivered, not counting the EndOfStreamEvent.
+     *
+     * @exception IllegalArgumentException on null source or procedure.
+     * @exception java.util.concurrent.RejectedExecutionException if the executor was shut down.
+     */
+    public Future<Long> submit(final MappedFileEventSource source, final Procedure procedure) {
+
+        if (source == null) {
+
+            throw new IllegalArgumentException("null source");
+        }
+
+        if (procedure == null) {
+
+            throw new IllegalArgumentException("null procedure");
+        }
+
+        return submit(new Callable<Long>() {
+
+            @Override
+            public Long call() throws Exception {
+
+                return source.feed(procedure);
+            }
+        });
+    }
+
+    /**
+     * Starts an arbitrary chain. The chain is responsible for delivering the EndOfStreamEvent to its procedures.
+     *
+     * @exception IllegalArgumentException on null chain.
+     * @exception java.util.concurrent.RejectedExecutionException if the executor was shut down.
+     */
+    public <T> Future<T> submit(final Callable<T> chain) {
+
+        if (chain == null) {
+
+            throw new IllegalArgumentException("null chain");
+        }
+
+        return executor.submit(new Callable<T>() {
+
+            @Override
+            public T call() throws Exception {
+
+                activeStreams.incrementAndGet();
+
+                try {
+
+                    return chain.call();
+                }
+                finally {
+
+                    activeStreams.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * No new chains are accepted, the chains already submitted run to completion.
+     */
+    public void shutdown() {
+
+        executor.shutdown();
+    }
+
+    /**
+     * @return true if all chains completed after shutdown(), false if the timeout elapsed.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return executor.awaitTermination(timeout, unit);
+    }
+
+    public Mode getMode() {
+
+        return mode;
+    }
+
+    /**
+     * @return the size of the pool in PLATFORM mode, 0 in VIRTUAL mode.
+     */
+    public int getThreadCount() {
+
+        return threads;
+    }
+
+    /**
+     * @return the number of chains currently running. Chains waiting for a pool thread are not counted.
+     */
+    public int getActiveStreamCount() {
+
+        return activeStreams.get();
+    }
+
+    @Override
+    public String toString() {
+
+        return "StreamExecutor[" + (mode == Mode.VIRTUAL ? "virtual" : "platform, " + threads + " threads") + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -16,17 +16,47 @@
 
 package io.novaordis.events.processing;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import io.novaordis.events.processing.metrics.ProcedureMetrics;
 
 /**
  * A procedure that looks at a stream of events as they arrive and text at a configurable output stream.
  *
+ * The procedure can write in two modes:
+ *
+ * 1. Interactive (the default): each print*() invocation flushes the underlying stream, so the output becomes visible
+ * immediately. This is what a user watching a terminal expects, but it costs at least one system call per line.
+ *
+ * 2. Buffered: the text accumulates in a buffer of configurable size and it is sent to the underlying stream when the
+ * buffer fills up, when the optional flush interval expires, on explicit flush() and always on EndOfStreamEvent. This
+ * is the mode to use when large event streams are processed and the output is redirected to a file or a pipe.
+ *
+ * Independently of the mode, the output can be made asynchronous: the text is handed over, in chunks, to an AsyncWriter,
+ * which writes it to the underlying stream on its own I/O thread, so a slow consumer downstream does not stall the
+ * processing thread. What "flush" means does not change: in interactive mode each print*() invocation hands its text
+ * over immediately, in buffered mode the text is handed over in chunks of the buffer size. The queue is bounded both in
+ * chunks and in characters. When the queue is full, the processing thread either waits or drops the output, according
+ * to the overflow policy. flush() and EndOfStreamEvent wait until everything handed over so far was written. A failure
+ * of the I/O thread is reported by the next print*() invocation and by the EndOfStreamEvent processing.
+ *
+ * The procedure counts the bytes written to the underlying stream, and the time the processing thread spent blocked on
+ * output: writing to the underlying stream in synchronous mode, waiting for queue space in asynchronous mode. Both are
+ * published with the procedure's metrics.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/28/17
  */
@@ -38,12 +68,64 @@ public abstract class TextOutputProcedure extends ProcedureBase {
 
     private static final String NULL = "null";
 
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    // the size of the array used to hand over CharSequence content to the writer without a String copy
+    private static final int TRANSFER_CHUNK_SIZE = 8 * 1024;
+
+    public static final boolean INTERACTIVE = true;
+
+    public static final boolean BUFFERED = false;
+
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * In asynchronous mode, the queue never holds more chunks than needed to reach this many characters, whatever the
+     * configured queue capacity, so large buffers do not multiply into hundreds of megabytes of queued output.
+     */
+    public static final int MAX_QUEUED_CHARACTERS = 8 * 1024 * 1024;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private OutputStream os;
-    private PrintWriter pw;
+
+    //
+    // not a PrintWriter: PrintWriter holds its monitor while the writers behind it block, which pins the carrier
+    // thread when the procedure runs on a virtual thread. The procedure is driven by one thread at a time, so the
+    // print*() methods need no locking of their own
+    //
+
+    private Writer writer;
+
+    // not null only in asynchronous mode, after initialization
+    private AsyncWriter asyncWriter;
+
+    private boolean asynchronous;
+    private int queueCapacity;
+    private AsyncWriter.OverflowPolicy overflowPolicy;
+
+    private boolean interactive;
+
+    // the size of the buffer, in characters, used in buffered mode
+    private int bufferSize;
+
+    // the maximum interval, in milliseconds, buffered output is allowed to stay unflushed. 0 means "no time-driven
+    // flushing", the buffer is only flushed when full, on explicit flush() and on EndOfStreamEvent
+    private long flushInterval;
+
+    private long lastFlushTimestamp;
+
+    // allocated on first print(CharSequence) invocation
+    private char[] transferChunk;
+
+    private final AtomicLong bytesWritten;
+
+    private final AtomicLong outputBlockedNanos;
+
+    // the stall time of the AsyncWriters discarded so far
+    private long retiredStallNanos;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -60,12 +142,109 @@ public abstract class TextOutputProcedure extends ProcedureBase {
      */
     protected TextOutputProcedure(OutputStream os) {
 
+        this.interactive = INTERACTIVE;
+        this.bufferSize = DEFAULT_BUFFER_SIZE;
+        this.queueCapacity = AsyncWriter.DEFAULT_QUEUE_CAPACITY;
+        this.overflowPolicy = AsyncWriter.OverflowPolicy.BLOCK;
+        this.bytesWritten = new AtomicLong(0L);
+        this.outputBlockedNanos = new AtomicLong(0L);
+
         if (os != null) {
 
             setOutputStream(os);
         }
     }
 
+    // ProcedureBase overrides -----------------------------------------------------------------------------------------
+
+    /**
+     * Insures that the buffered output, if any, makes it to the underlying stream when the stream ends.
+     *
+     * @exception EventProcessingException also if the output cannot be written when the stream ends.
+     */
+    @Override
+    public void process(Event e) throws EventProcessingException {
+
+        try {
+
+            super.process(e);
+        }
+        catch(EventProcessingException | RuntimeException x) {
+
+            if (e instanceof EndOfStreamEvent && writer != null) {
+
+                endOfStream(x);
+            }
+
+            throw x;
+        }
+
+        if (e instanceof EndOfStreamEvent && writer != null) {
+
+            endOfStream(null);
+        }
+    }
+
+    /**
+     * Insures that the buffered output, if any, makes it to the underlying stream when the stream ends.
+     *
+     * @exception EventProcessingException also if the output cannot be written when the stream ends.
+     */
+    @Override
+    public void process(List<Event> events) throws EventProcessingException {
+
+        try {
+
+            super.process(events);
+        }
+        catch(EventProcessingException | RuntimeException x) {
+
+            if (endOfStream && writer != null) {
+
+                endOfStream(x);
+            }
+
+            throw x;
+        }
+
+        if (endOfStream && writer != null) {
+
+            endOfStream(null);
+        }
+    }
+
+    /**
+     * Also publishes the output metrics.
+     */
+    @Override
+    public synchronized ProcedureMetrics enableMetrics() {
+
+        ProcedureMetrics m = super.enableMetrics();
+
+        if (!m.hasOutputCounters()) {
+
+            m.setOutputCounters(
+                    new LongSupplier() {
+
+                        @Override
+                        public long getAsLong() {
+
+                            return getBytesWritten();
+                        }
+                    },
+                    new LongSupplier() {
+
+                        @Override
+                        public long getAsLong() {
+
+                            return getOutputBlockedNanos();
+                        }
+                    });
+        }
+
+        return m;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     /**
@@ -83,6 +262,17 @@ public abstract class TextOutputProcedure extends ProcedureBase {
             throw new IllegalArgumentException("null output stream");
         }
 
+        if (writer != null) {
+
+            //
+            // do not lose buffered content
+            //
+
+            flushWriter();
+        }
+
+        closeAsyncWriter();
+
         if (this.os != null) {
 
             try {
@@ -97,39 +287,277 @@ public abstract class TextOutputProcedure extends ProcedureBase {
             }
         }
 
-        if (pw != null) {
+        if (writer != null) {
+
+            try {
+
+                writer.close();
+            }
+            catch(IOException e) {
+
+                //
+                // the underlying stream was already closed
+                //
 
-            pw.close();
+                log.debug("failed to close the current writer", e);
+            }
         }
 
         this.os = os;
-        this.pw = new PrintWriter(new OutputStreamWriter(os));
+        this.writer = buildWriter();
+        this.lastFlushTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * @see TextOutputProcedure#INTERACTIVE
+     * @see TextOutputProcedure#BUFFERED
+     */
+    public boolean isInteractive() {
+
+        return interactive;
+    }
+
+    /**
+     * Switches between the interactive mode (every print*() invocation flushes the underlying stream) and the buffered
+     * mode. Any content buffered so far is flushed when the mode changes.
+     *
+     * @see TextOutputProcedure#INTERACTIVE
+     * @see TextOutputProcedure#BUFFERED
+     */
+    public void setInteractive(boolean interactive) {
+
+        if (this.interactive == interactive) {
+
+            return;
+        }
+
+        this.interactive = interactive;
+
+        rebuildWriter();
+    }
+
+    /**
+     * @return the size, in characters, of the buffer used in buffered mode.
+     */
+    public int getBufferSize() {
+
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size, in characters, of the buffer used in buffered mode. Any content buffered so far is flushed.
+     *
+     * @exception IllegalArgumentException on zero or negative values.
+     */
+    public void setBufferSize(int bufferSize) {
+
+        if (bufferSize <= 0) {
+
+            throw new IllegalArgumentException("invalid buffer size: " + bufferSize);
+        }
+
+        this.bufferSize = bufferSize;
+
+        if (!interactive) {
+
+            rebuildWriter();
+        }
+    }
+
+    /**
+     * @return the maximum interval, in milliseconds, buffered output is allowed to stay unflushed. 0 means time-driven
+     * flushing is disabled.
+     */
+    public long getFlushInterval() {
+
+        return flushInterval;
+    }
+
+    /**
+     * Sets the maximum interval, in milliseconds, buffered output is allowed to stay unflushed. The interval is checked
+     * when text is written, there is no background thread that flushes the buffer. 0 disables time-driven flushing.
+     * Ignored in interactive mode.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setFlushInterval(long ms) {
+
+        if (ms < 0) {
+
+            throw new IllegalArgumentException("invalid flush interval: " + ms);
+        }
+
+        this.flushInterval = ms;
+    }
+
+    public boolean isAsynchronous() {
+
+        return asynchronous;
+    }
+
+    /**
+     * Switches the asynchronous output on or off. Any content buffered or queued so far is written before the switch.
+     */
+    public void setAsynchronous(boolean asynchronous) {
+
+        if (this.asynchronous == asynchronous) {
+
+            return;
+        }
+
+        this.asynchronous = asynchronous;
+
+        rebuildWriter();
+    }
+
+    /**
+     * @return the maximum number of chunks that may wait to be written, in asynchronous mode. The queue that is
+     * actually built may be smaller, as it is also bounded by MAX_QUEUED_CHARACTERS.
+     *
+     * @see TextOutputProcedure#MAX_QUEUED_CHARACTERS
+     */
+    public int getQueueCapacity() {
+
+        return queueCapacity;
+    }
+
+    /**
+     * @exception IllegalArgumentException on zero or negative values.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+
+        if (queueCapacity <= 0) {
+
+            throw new IllegalArgumentException("invalid queue capacity: " + queueCapacity);
+        }
+
+        this.queueCapacity = queueCapacity;
+
+        if (asynchronous) {
+
+            rebuildWriter();
+        }
+    }
+
+    public AsyncWriter.OverflowPolicy getOverflowPolicy() {
+
+        return overflowPolicy;
+    }
+
+    /**
+     * @exception IllegalArgumentException on null policy.
+     */
+    public void setOverflowPolicy(AsyncWriter.OverflowPolicy overflowPolicy) {
+
+        if (overflowPolicy == null) {
+
+            throw new IllegalArgumentException("null overflow policy");
+        }
+
+        this.overflowPolicy = overflowPolicy;
+
+        if (asynchronous) {
+
+            rebuildWriter();
+        }
+    }
+
+    /**
+     * @return the asynchronous writer, which exposes the queue depth, stall time and drop metrics, or null if the
+     * instance is not in asynchronous mode, or it was not initialized.
+     */
+    public AsyncWriter getAsyncWriter() {
+
+        return asyncWriter;
+    }
+
+    /**
+     * Sends the buffered content, if any, to the underlying stream and flushes the stream. In asynchronous mode, waits
+     * until the I/O thread has written everything queued so far.
+     *
+     * @exception IllegalStateException if an OutputStream was not installed.
+     */
+    public void flush() {
+
+        insureInitialized();
+
+        flushWriter();
+
+        if (asyncWriter != null) {
+
+            try {
+
+                asyncWriter.drain();
+            }
+            catch(IOException e) {
+
+                String msg = "failed to drain " + asyncWriter;
+                log.warn(msg);
+                log.debug(msg, e);
+            }
+        }
+
+        lastFlushTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the number of bytes written to the underlying stream so far, over all the streams installed.
+     */
+    public long getBytesWritten() {
+
+        return bytesWritten.get();
+    }
+
+    /**
+     * @return the time, in nanoseconds, the processing thread spent blocked on output so far.
+     */
+    public long getOutputBlockedNanos() {
+
+        AsyncWriter w = asyncWriter;
+
+        return outputBlockedNanos.get() + retiredStallNanos + (w == null ? 0L : w.getStallTimeNanos());
     }
 
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
 
+    /**
+     * Accounts for output subclasses write to the underlying stream directly, bypassing the print*() methods.
+     *
+     * @param bytes the number of bytes written.
+     * @param nanos the time spent writing.
+     */
+    protected void outputWritten(long bytes, long nanos) {
+
+        bytesWritten.addAndGet(bytes);
+        outputBlockedNanos.addAndGet(nanos);
+    }
+
     /**
      * API for subclasses to use when they need to output text.
      *
      * Converts the given object to string (or to the "null" string, if the object is null) and sends the text to the
-     * underlying output stream, followed by a new line, flushing it after that.
+     * underlying output stream, followed by a new line. In interactive mode, the stream is flushed after that.
      *
      * @exception IllegalStateException if an OutputStream was not installed.
      */
     protected void println(Object o) throws IOException {
 
-        print(o);
-        pw.println();
-        pw.flush();
+        insureInitialized();
+
+        String s = o == null ? NULL : o.toString();
+
+        writer.write(s);
+        writer.write(LINE_SEPARATOR);
+        written();
     }
 
     /**
      * API for subclasses to use when they need to output text.
      *
      * Converts the given object to string (or to the "null" string, if the object is null) and sends the text to the
-     * underlying output stream, flushing it after that.
+     * underlying output stream. In interactive mode, the stream is flushed after that.
      *
      * @exception IllegalStateException if an OutputStream was not installed.
      */
@@ -139,8 +567,33 @@ public abstract class TextOutputProcedure extends ProcedureBase {
 
         String s = o == null ? NULL : o.toString();
 
-        pw.print(s);
-        pw.flush();
+        writer.write(s);
+        written();
+    }
+
+    /**
+     * API for subclasses to use when they need to output text.
+     *
+     * Sends the given character sequence (or the "null" string, if the argument is null) to the underlying output
+     * stream. Unlike print(Object), a mutable sequence such as a reused StringBuilder is not copied into a String
+     * first: its content is handed over in fixed size chunks. In interactive mode, the stream is flushed after that.
+     *
+     * @exception IllegalStateException if an OutputStream was not installed.
+     */
+    protected void print(CharSequence s) throws IOException {
+
+        insureInitialized();
+
+        if (s == null || s instanceof String) {
+
+            writer.write(s == null ? NULL : (String)s);
+        }
+        else {
+
+            write(s);
+        }
+
+        written();
     }
 
     /**
@@ -151,8 +604,8 @@ public abstract class TextOutputProcedure extends ProcedureBase {
     protected void println() throws IOException {
 
         insureInitialized();
-        pw.println();
-        pw.flush();
+        writer.write(LINE_SEPARATOR);
+        written();
     }
 
     /**
@@ -161,7 +614,8 @@ public abstract class TextOutputProcedure extends ProcedureBase {
      *
      * https://docs.oracle.com/javase/8/docs/api/java/util/Formatter.html#syntax
      *
-     * Sends the given argument to the underlying stream via printf() and flushes the stream after that.
+     * Sends the given argument to the underlying stream via printf(). In interactive mode, the stream is flushed after
+     * that.
      *
      * @exception IllegalStateException if an OutputStream was not installed.
      */
@@ -169,15 +623,242 @@ public abstract class TextOutputProcedure extends ProcedureBase {
 
         insureInitialized();
 
-        pw.printf(format, o);
-        pw.flush();
+        writer.write(String.format(format, o));
+        written();
     }
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Flushing policy, applied after each write.
+     */
+    private void write(CharSequence s) throws IOException {
+
+        char[] chunk = transferChunk;
+
+        if (chunk == null) {
+
+            transferChunk = chunk = new char[TRANSFER_CHUNK_SIZE];
+        }
+
+        int length = s.length();
+
+        for(int start = 0; start < length; start += chunk.length) {
+
+            int end = Math.min(length, start + chunk.length);
+
+            if (s instanceof StringBuilder) {
+
+                ((StringBuilder)s).getChars(start, end, chunk, 0);
+            }
+            else {
+
+                for(int i = start; i < end; i ++) {
+
+                    chunk[i - start] = s.charAt(i);
+                }
+            }
+
+            writer.write(chunk, 0, end - start);
+        }
+    }
+
+    private void written() throws IOException {
+
+        if (interactive) {
+
+            writer.flush();
+            return;
+        }
+
+        if (flushInterval > 0) {
+
+            long now = System.currentTimeMillis();
+
+            if (now - lastFlushTimestamp >= flushInterval) {
+
+                writer.flush();
+                lastFlushTimestamp = now;
+            }
+        }
+
+        //
+        // otherwise the BufferedWriter sends its content downstream when it fills up
+        //
+    }
+
+    private Writer buildWriter() {
+
+        if (asynchronous) {
+
+            //
+            // the AsyncWriter accumulates the text itself, there is no need for a BufferedWriter in front of it
+            //
+
+            //
+            // the I/O thread's writes do not block the processing thread, only the stalls do
+            //
+
+            int chunkSize = interactive ? DEFAULT_BUFFER_SIZE : bufferSize;
+
+            //
+            // bound the queue by characters as well, but keep at least two chunks, so the processing thread can fill
+            // one while the I/O thread writes the other
+            //
+
+            int capacity = Math.min(queueCapacity, Math.max(2, MAX_QUEUED_CHARACTERS / chunkSize));
+
+            asyncWriter = new AsyncWriter(
+                    new MeteredOutputStream(os, false), capacity, overflowPolicy, chunkSize, this + " writer");
+
+            return asyncWriter;
+        }
+
+        OutputStream metered = new MeteredOutputStream(os, true);
+
+        if (interactive) {
+
+            return new OutputStreamWriter(metered);
+        }
+
+        return new BufferedWriter(new OutputStreamWriter(metered), bufferSize);
+    }
+
+    /**
+     * Flushes the current writer, if any, and replaces it with one that reflects the current configuration.
+     */
+    private void rebuildWriter() {
+
+        if (writer == null) {
+
+            return;
+        }
+
+        //
+        // we don't close the old writer, as it would close the underlying stream
+        //
+
+        flushWriter();
+        closeAsyncWriter();
+        writer = buildWriter();
+        lastFlushTimestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Writes everything queued so far, stops the I/O thread, if any, and discards the AsyncWriter. The underlying stream
+     * is not closed.
+     */
+    private void closeAsyncWriter() {
+
+        stopAsyncWriter();
+
+        if (asyncWriter != null) {
+
+            retiredStallNanos += asyncWriter.getStallTimeNanos();
+            asyncWriter = null;
+        }
+    }
+
+    /**
+     * Writes everything queued so far and stops the I/O thread, if any. The AsyncWriter restarts its thread if more text
+     * is written.
+     */
+    private void stopAsyncWriter() {
+
+        if (asyncWriter == null) {
+
+            return;
+        }
+
+        try {
+
+            asyncWriter.close();
+        }
+        catch(IOException e) {
+
+            String msg = "failed to close " + asyncWriter;
+            log.warn(msg);
+            log.debug(msg, e);
+        }
+    }
+
+    /**
+     * Flushes the writer, logging, rather than throwing, the failure.
+     */
+    private void flushWriter() {
+
+        try {
+
+            writer.flush();
+        }
+        catch(IOException e) {
+
+            String msg = "failed to flush " + writer;
+            log.warn(msg);
+            log.debug(msg, e);
+        }
+    }
+
+    /**
+     * Makes sure that everything written so far makes it to the underlying stream, and that no I/O thread outlives the
+     * stream. Unlike flush(), reports the output failures, including those of the asynchronous I/O thread.
+     *
+     * @param failure the exception the processing already failed with, if any. An output failure is attached to it as
+     *                a suppressed exception, rather than thrown, so it does not mask the original failure.
+     *
+     * @exception EventProcessingException if the output cannot be written, and there was no previous failure.
+     */
+    private void endOfStream(Exception failure) throws EventProcessingException {
+
+        IOException outputFailure = null;
+
+        try {
+
+            writer.flush();
+        }
+        catch(IOException e) {
+
+            outputFailure = e;
+        }
+
+        if (asyncWriter != null) {
+
+            try {
+
+                //
+                // drains and stops the I/O thread even if the writer failed
+                //
+
+                asyncWriter.close();
+            }
+            catch(IOException e) {
+
+                if (outputFailure == null) {
+
+                    outputFailure = e;
+                }
+            }
+        }
+
+        lastFlushTimestamp = System.currentTimeMillis();
+
+        if (outputFailure == null) {
+
+            return;
+        }
+
+        if (failure != null) {
+
+            failure.addSuppressed(outputFailure);
+            return;
+        }
+
+        throw new EventProcessingException(outputFailure);
+    }
+
     private void insureInitialized() {
 
-        if (pw == null) {
+        if (writer == null) {
 
             throw new IllegalStateException(this + " was not initialized: no output stream");
         }
@@ -185,4 +866,61 @@ public abstract class TextOutputProcedure extends ProcedureBase {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * Counts the bytes written to the underlying stream and, optionally, the time spent writing them.
+     */
+    private class MeteredOutputStream extends FilterOutputStream {
+
+        private final boolean timed;
+
+        MeteredOutputStream(OutputStream os, boolean timed) {
+
+            super(os);
+            this.timed = timed;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+
+            long start = timed ? System.nanoTime() : 0L;
+
+            out.write(b);
+
+            written(1, start);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            long start = timed ? System.nanoTime() : 0L;
+
+            out.write(b, off, len);
+
+            written(len, start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+
+            long start = timed ? System.nanoTime() : 0L;
+
+            out.flush();
+
+            written(0, start);
+        }
+
+        private void written(int bytes, long start) {
+
+            if (bytes > 0) {
+
+                bytesWritten.addAndGet(bytes);
+            }
+
+            if (timed) {
+
+                outputBlockedNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,199 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to virtual threads from code compiled for Java 8.
+ *
+ * This version looks the Java 21 API up reflectively, so virtual threads are also available when the classes are loaded
+ * from a directory and not from the jar. The jar is multi-release: on Java 21 and newer, the version of this class under
+ * META-INF/versions/21, built from src/main/java21, is loaded instead, and it calls the API directly.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+final class VirtualThreads {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final String UNSUPPORTED = "virtual threads require Java 21 or newer";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FIXED_NAME;
+    private static final Method UNSTARTED;
+    private static final Method FACTORY;
+    private static final Method IS_VIRTUAL;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+
+        Method ofVirtual = null;
+        Method name = null;
+        Method fixedName = null;
+        Method unstarted = null;
+        Method factory = null;
+        Method isVirtual = null;
+        Method newThreadPerTaskExecutor = null;
+
+        try {
+
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            fixedName = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+            factory = builder.getMethod("factory");
+            isVirtual = Thread.class.getMethod("isVirtual");
+            newThreadPerTaskExecutor =
+                    java.util.concurrent.Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+
+            //
+            // on Java 19 and 20 the API is present, but it fails unless preview features are enabled
+            //
+
+            ofVirtual.invoke(null);
+        }
+        catch(Throwable t) {
+
+            ofVirtual = null;
+        }
+
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FIXED_NAME = fixedName;
+        UNSTARTED = unstarted;
+        FACTORY = factory;
+        IS_VIRTUAL = isVirtual;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    static boolean isSupported() {
+
+        return OF_VIRTUAL != null;
+    }
+
+    static boolean isVirtual(Thread t) {
+
+        if (OF_VIRTUAL == null) {
+
+            return false;
+        }
+
+        try {
+
+            return (Boolean)IS_VIRTUAL.invoke(t);
+        }
+        catch(Exception e) {
+
+            return false;
+        }
+    }
+
+    /**
+     * @param prefix the thread names are the prefix followed by a counter.
+     *
+     * @exception UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    static ThreadFactory factory(String prefix) {
+
+        if (OF_VIRTUAL == null) {
+
+            throw new UnsupportedOperationException(UNSUPPORTED);
+        }
+
+        try {
+
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = NAME.invoke(builder, prefix, 0L);
+            return (ThreadFactory)FACTORY.invoke(builder);
+        }
+        catch(Exception e) {
+
+            throw new UnsupportedOperationException(UNSUPPORTED, e);
+        }
+    }
+
+    /**
+     * @return a new, unstarted, virtual thread.
+     *
+     * @exception UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    static Thread newThread(String name, Runnable r) {
+
+        if (OF_VIRTUAL == null) {
+
+            throw new UnsupportedOperationException(UNSUPPORTED);
+        }
+
+        try {
+
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = FIXED_NAME.invoke(builder, name);
+            return (Thread)UNSTARTED.invoke(builder, r);
+        }
+        catch(Exception e) {
+
+            throw new UnsupportedOperationException(UNSUPPORTED, e);
+        }
+    }
+
+    /**
+     * @return an executor that starts a new virtual thread for each task.
+     *
+     * @exception UnsupportedOperationException if the JVM does not support virtual threads.
+     */
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+
+        ThreadFactory f = factory(prefix);
+
+        try {
+
+            return (ExecutorService)NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, f);
+        }
+        catch(Exception e) {
+
+            throw new UnsupportedOperationException(UNSUPPORTED, e);
+        }
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private VirtualThreads() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -18,18 +18,42 @@ package io.novaordis.events.processing.count;
 
 import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
 import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureBase;
 import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.utilities.UserErrorException;
 
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A procedure that looks at a stream of incoming events and counts events. The instance is thread safe, and the
- * getCount() invocation correctly returns the number of events counted up to the moment the method was invoked.
+ * getCount() invocation returns the number of events counted by process() invocations that completed before the
+ * method was invoked.
+ *
+ * The counters are striped (LongAdder), but the ingestion threads that share the instance still contend on its
+ * invocation accounting. For concurrent ingestion without contention, each ingestion thread uses its own shard (see
+ * newShard()): the shards count independently, and their counts are merged into this instance's when the
+ * EndOfStreamEvent is sent to this instance, after all shards are done; the results are reported then.
+ *
+ * Optionally, the events can be counted per event class (--by-class) or per value of a property (--by <name>). The
+ * per-group counts are reported after the total, sorted by group key, so the report is deterministic irrespective of
+ * the order in which the concurrent ingestion threads counted the events.
  *
  * The EndOfStream event is NOT included in the returned count.
  *
@@ -43,11 +67,27 @@ public class Count extends TextOutputProcedure {
     public static final String COMMAND_LINE_LABEL = "count";
     public static final String ABBREVIATED_COMMAND_LINE_LABEL = "-c";
 
+    public static final String BY_CLASS_OPTION = "--by-class";
+    public static final String BY_PROPERTY_OPTION = "--by";
+
+    /**
+     * The group key for events that do not carry the property we group by, or carry it with a null value.
+     */
+    public static final String NULL_GROUP_KEY = "null";
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
-    private final AtomicLong count;
+    private final LongAdder count;
+
+    private final ConcurrentMap<String, LongAdder> groups;
+
+    private final List<Shard> shards;
+
+    private boolean groupByEventClass;
+
+    private String groupByPropertyName;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -62,7 +102,19 @@ public class Count extends TextOutputProcedure {
     public Count(OutputStream os) {
 
         super(os);
-        this.count = new AtomicLong(0);
+        this.count = new LongAdder();
+        this.groups = new ConcurrentHashMap<>();
+        this.shards = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public Count(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
     }
 
     // Procedure implementation ----------------------------------------------------------------------------------------
@@ -81,14 +133,24 @@ public class Count extends TextOutputProcedure {
         if (in instanceof EndOfStreamEvent) {
 
             //
-            // report and exit
+            // merge the shards, report and exit
             //
 
-            long countValue = count.get();
+            for(Shard s: shards) {
+
+                count.add(s.count.sum());
+
+                for(Map.Entry<String, LongAdder> e: s.groups.entrySet()) {
+
+                    group(groups, e.getKey()).add(e.getValue().sum());
+                }
+            }
+
+            shards.clear();
 
             try {
 
-                println(countValue);
+                report();
             }
             catch(IOException e) {
 
@@ -97,25 +159,244 @@ public class Count extends TextOutputProcedure {
         }
         else {
 
-            count.incrementAndGet();
+            count(in, count, groups);
         }
     }
 
+    /**
+     * Counts the whole batch with a single update, unless we count per group.
+     */
+    @Override
+    protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+        countBatch(events, count, groups);
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return the number of events counted so far. The shards' counts are merged in when the EndOfStreamEvent is
+     * processed.
+     */
     public long getCount() {
 
-        return count.get();
+        return count.sum();
+    }
+
+    /**
+     * @return a snapshot of the per-group counts, sorted by group key. Empty if the events are not counted per group.
+     */
+    public SortedMap<String, Long> getCounts() {
+
+        SortedMap<String, Long> result = new TreeMap<>();
+
+        for(Map.Entry<String, LongAdder> e: groups.entrySet()) {
+
+            result.put(e.getKey(), e.getValue().sum());
+        }
+
+        return result;
+    }
+
+    public boolean isGroupByEventClass() {
+
+        return groupByEventClass;
+    }
+
+    /**
+     * Count events per event class (simple name). Must be configured before the first event is processed.
+     */
+    public void setGroupByEventClass(boolean b) {
+
+        this.groupByEventClass = b;
+
+        if (b) {
+
+            this.groupByPropertyName = null;
+        }
+    }
+
+    /**
+     * @return the name of the property whose values we group by, or null.
+     */
+    public String getGroupByPropertyName() {
+
+        return groupByPropertyName;
+    }
+
+    /**
+     * Count events per value of the given property. Must be configured before the first event is processed.
+     *
+     * @param name null disables per-property counting.
+     */
+    public void setGroupByPropertyName(String name) {
+
+        this.groupByPropertyName = name;
+
+        if (name != null) {
+
+            this.groupByEventClass = false;
+        }
+    }
+
+    /**
+     * @return a procedure an ingestion thread can use exclusively. The shard counts into its own counters, which are
+     * merged into this instance's when this instance processes the EndOfStreamEvent. The shards do not report, the
+     * EndOfStreamEvent sent to a shard only ends the shard. The EndOfStreamEvent must be sent to this instance, after
+     * all shards are done.
+     */
+    public Procedure newShard() {
+
+        Shard s = new Shard();
+        shards.add(s);
+        return s;
     }
 
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * Process the command line argument list and remove arguments if recognized as our own.
+     */
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (BY_CLASS_OPTION.equals(arg)) {
+
+                si.remove();
+                setGroupByEventClass(true);
+            }
+            else if (BY_PROPERTY_OPTION.equals(arg)) {
+
+                si.remove();
+
+                if (!si.hasNext()) {
+
+                    throw new UserErrorException("missing property name after " + BY_PROPERTY_OPTION);
+                }
+
+                String name = si.next();
+                si.remove();
+                setGroupByPropertyName(name);
+            }
+        }
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Static Protected ------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private void count(Event e, LongAdder count, Map<String, LongAdder> groups) {
+
+        count.increment();
+
+        if (groupByEventClass || groupByPropertyName != null) {
+
+            group(groups, groupKey(e)).increment();
+        }
+    }
+
+    /**
+     * @param events must not contain EndOfStream.
+     */
+    private void countBatch(List<Event> events, LongAdder count, Map<String, LongAdder> groups) {
+
+        if (groupByEventClass || groupByPropertyName != null) {
+
+            //noinspection ForLoopReplaceableByForEach
+            for(int i = 0; i < events.size(); i ++) {
+
+                count(events.get(i), count, groups);
+            }
+        }
+        else if (!events.isEmpty()) {
+
+            count.add(events.size());
+        }
+    }
+
+    private String groupKey(Event e) {
+
+        if (groupByEventClass) {
+
+            return e.getClass().getSimpleName();
+        }
+
+        Property p = e.getProperty(groupByPropertyName);
+
+        Object value = p == null ? null : p.getValue();
+
+        return value == null ? NULL_GROUP_KEY : value.toString();
+    }
+
+    private static LongAdder group(Map<String, LongAdder> groups, String key) {
+
+        //
+        // avoid computeIfAbsent() on the fast path, it locks the bin even if the key is present
+        //
+
+        LongAdder a = groups.get(key);
+
+        if (a == null) {
+
+            a = groups.computeIfAbsent(key, k -> new LongAdder());
+        }
+
+        return a;
+    }
+
+    private void report() throws IOException {
+
+        println(count.sum());
+
+        for(Map.Entry<String, Long> e: getCounts().entrySet()) {
+
+            println(e.getKey() + ": " + e.getValue());
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    private class Shard extends ProcedureBase {
+
+        //
+        // only updated by the ingestion thread that owns the shard, read by the parent after the shard is done
+        //
+
+        private final LongAdder count = new LongAdder();
+
+        private final Map<String, LongAdder> groups = new HashMap<>();
+
+        @Override
+        public List<String> getCommandLineLabels() {
+
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+            if (!(e instanceof EndOfStreamEvent)) {
+
+                count(e, count, groups);
+            }
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+            countBatch(events, count, groups);
+        }
+    }
 }
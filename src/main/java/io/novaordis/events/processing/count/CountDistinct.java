@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.count;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureBase;
+import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.output.PropertySelection;
+import io.novaordis.utilities.UserErrorException;
+
+/**
+ * A procedure that counts the distinct values of one or more properties (user names, session IDs, hosts ...) with a
+ * HyperLogLog counter per property. The counts are exact up to a threshold, and estimated in fixed memory above it.
+ * The counts are reported on EndOfStreamEvent, one line per property. Events that do not carry the property, or carry it
+ * with a null value, are not counted.
+ *
+ * All events are passed on to the downstream procedure, if any, as they arrive.
+ *
+ * The instance is not thread safe. For concurrent ingestion, each ingestion thread uses its own shard (see newShard()):
+ * the shards count independently, and their counters are merged into this instance's when the EndOfStreamEvent is
+ * sent to this instance, after all shards are done.
+ *
+ * Command line options:
+ *
+ * -o <property-list> - the properties, specified the same way as for the output procedure: names, or 0-based indices,
+ * separated by spaces or commas.
+ *
+ * --precision <p> - 2^p registers per property, between 4 and 18. Default 12: 4 KB, 1.6% standard error.
+ *
+ * --exact-threshold <n> - the number of distinct values counted exactly. Default 2^p/8, 0 always estimates.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class CountDistinct extends TextOutputProcedure {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String COMMAND_LINE_LABEL = "count-distinct";
+
+    public static final String PROPERTIES_OPTION = Output.OUTPUT_FORMAT_OPTION;
+    public static final String PRECISION_OPTION = "--precision";
+    public static final String EXACT_THRESHOLD_OPTION = "--exact-threshold";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertySelection properties;
+
+    private int precision;
+
+    // null means the HyperLogLog default for the precision
+    private Integer exactThreshold;
+
+    // built when the first event arrives
+    private HyperLogLog[] counters;
+
+    private final List<Shard> shards;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CountDistinct() {
+
+        this(null);
+    }
+
+    public CountDistinct(OutputStream os) {
+
+        super(os);
+
+        this.properties = new PropertySelection();
+        this.precision = HyperLogLog.DEFAULT_PRECISION;
+        this.shards = new CopyOnWriteArrayList<>();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public CountDistinct(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.singletonList(COMMAND_LINE_LABEL);
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
+
+        if (counters == null) {
+
+            counters = newCounters();
+        }
+
+        if (in instanceof EndOfStreamEvent) {
+
+            for(Shard s: shards) {
+
+                if (s.counters != null) {
+
+                    for(int i = 0; i < counters.length; i ++) {
+
+                        counters[i].merge(s.counters[i]);
+                    }
+                }
+            }
+
+            shards.clear();
+
+            report();
+
+            return;
+        }
+
+        emit(in);
+
+        count(in, counters);
+    }
+
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The selection can be modified before processing starts, and before shards are created.
+     */
+    public PropertySelection getProperties() {
+
+        return properties;
+    }
+
+    public int getPrecision() {
+
+        return precision;
+    }
+
+    /**
+     * Must be invoked before processing starts, and before shards are created.
+     *
+     * @exception IllegalArgumentException on invalid values, see HyperLogLog.
+     */
+    public void setPrecision(int precision) {
+
+        if (precision < HyperLogLog.MIN_PRECISION || precision > HyperLogLog.MAX_PRECISION) {
+
+            throw new IllegalArgumentException("invalid precision: " + precision);
+        }
+
+        this.precision = precision;
+    }
+
+    /**
+     * @return the number of distinct values counted exactly.
+     */
+    public int getExactThreshold() {
+
+        return exactThreshold == null ? HyperLogLog.defaultExactThreshold(precision) : exactThreshold;
+    }
+
+    /**
+     * Must be invoked before processing starts, and before shards are created.
+     *
+     * @param n 0 always estimates.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setExactThreshold(int n) {
+
+        if (n < 0) {
+
+            throw new IllegalArgumentException("invalid exact threshold: " + n);
+        }
+
+        this.exactThreshold = n;
+    }
+
+    /**
+     * @return the counter of the property at the given position in the selection, or null if processing did not
+     * start. The shards' counters are merged in when the EndOfStreamEvent is processed.
+     */
+    public HyperLogLog getCounter(int position) {
+
+        return counters == null ? null : counters[position];
+    }
+
+    /**
+     * @return a procedure an ingestion thread can use exclusively. The shard counts into its own counters, which are
+     * merged into this instance's when this instance processes the EndOfStreamEvent. The shards do not report, the
+     * EndOfStreamEvent sent to a shard only ends the shard. The EndOfStreamEvent must be sent to this instance, after
+     * all shards are done.
+     */
+    public Procedure newShard() {
+
+        Shard s = new Shard();
+        shards.add(s);
+        return s;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        PropertySelection selection = PropertySelection.fromCommandLine(
+                PROPERTIES_OPTION, from, mutableCommandLineArgumentsList);
+
+        if (selection != null) {
+
+            properties = selection;
+        }
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (PRECISION_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(PRECISION_OPTION, si);
+
+                try {
+
+                    setPrecision(Integer.parseInt(value));
+                }
+                catch(IllegalArgumentException e) {
+
+                    //
+                    // NumberFormatException is an IllegalArgumentException
+                    //
+
+                    throw new UserErrorException("invalid " + PRECISION_OPTION + " value: " + value);
+                }
+            }
+            else if (EXACT_THRESHOLD_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(EXACT_THRESHOLD_OPTION, si);
+
+                try {
+
+                    setExactThreshold(Integer.parseInt(value));
+                }
+                catch(IllegalArgumentException e) {
+
+                    throw new UserErrorException("invalid " + EXACT_THRESHOLD_OPTION + " value: " + value);
+                }
+            }
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Consumes and removes the value that follows the option.
+     */
+    private static String optionValue(String option, Iterator<String> si) throws UserErrorException {
+
+        if (!si.hasNext()) {
+
+            throw new UserErrorException("missing value after " + option);
+        }
+
+        String s = si.next();
+        si.remove();
+        return s;
+    }
+
+    private HyperLogLog[] newCounters() {
+
+        HyperLogLog[] c = new HyperLogLog[properties.size()];
+
+        for(int i = 0; i < c.length; i ++) {
+
+            c[i] = new HyperLogLog(precision, getExactThreshold());
+        }
+
+        return c;
+    }
+
+    private void count(Event e, HyperLogLog[] c) {
+
+        for(int i = 0; i < c.length; i ++) {
+
+            Property p = properties.select(e, i);
+
+            if (p != null) {
+
+                c[i].add(p.getValue());
+            }
+        }
+    }
+
+    /**
+     * An exact count is reported as is, an estimate with its standard error.
+     */
+    private void report() throws EventProcessingException {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < counters.length; i ++) {
+
+            HyperLogLog c = counters[i];
+
+            sb.append(properties.getLabel(i)).append(": ");
+
+            if (c.isExact()) {
+
+                sb.append(c.getCount()).append('\n');
+                continue;
+            }
+
+            long hundredths = Math.round(c.getStandardError() * 10000d);
+
+            sb.append('~').append(c.getCount()).append(" (standard error ");
+            sb.append(hundredths / 100).append('.');
+
+            if (hundredths % 100 < 10) {
+
+                sb.append('0');
+            }
+
+            sb.append(hundredths % 100).append("%)\n");
+        }
+
+        try {
+
+            print(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class Shard extends ProcedureBase {
+
+        // built when the first event arrives, read by the parent after the shard is done
+        private volatile HyperLogLog[] counters;
+
+        @Override
+        public List<String> getCommandLineLabels() {
+
+            return Collections.emptyList();
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+            if (e instanceof EndOfStreamEvent) {
+
+                return;
+            }
+
+            HyperLogLog[] c = counters;
+
+            if (c == null) {
+
+                counters = c = newCounters();
+            }
+
+            count(e, c);
+        }
+    }
+
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.count;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable distinct-value counter: exact below a threshold, a HyperLogLog sketch above it.
+ *
+ * Values are reduced to 64-bit hashes. While the number of distinct hashes does not exceed the exact threshold, they are
+ * kept in an open-addressing table and the count is exact (modulo 64-bit hash collisions). When the threshold is
+ * exceeded, the hashes are replayed into 2^precision one-byte registers, the table is discarded, and from then on the
+ * memory does not grow: 4 KB at the default precision of 12, for a standard error of 1.04/sqrt(2^precision), 1.6%. The
+ * estimate is computed with Ertl's improved estimator, which needs neither bias correction tables nor a switch to
+ * linear counting for small cardinalities.
+ *
+ * Two counters with the same precision can be merged, the result is the counter of the union of the two streams, so
+ * shards can count independently and be combined at the end.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class HyperLogLog {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int MIN_PRECISION = 4;
+    public static final int MAX_PRECISION = 18;
+
+    public static final int DEFAULT_PRECISION = 12;
+
+    private static final int INITIAL_TABLE_LENGTH = 16;
+
+    // the empty slot marker in the exact table; a 0 hash is stored as 1
+    private static final long EMPTY = 0L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return one eighth of the register count, which keeps the exact table at about the size of the registers.
+     */
+    public static int defaultExactThreshold(int precision) {
+
+        return (1 << precision) / 8;
+    }
+
+    /**
+     * @return the 64-bit hash of the value. Integral numbers hash by value, so an Integer and a Long with the same value
+     * count as one. Other values hash by their string representation.
+     */
+    public static long hash(Object value) {
+
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+
+            return mix(((Number)value).longValue());
+        }
+
+        if (value instanceof Double || value instanceof Float) {
+
+            double d = ((Number)value).doubleValue();
+
+            if (d == (long)d) {
+
+                return mix((long)d);
+            }
+
+            return mix(Double.doubleToLongBits(d));
+        }
+
+        return hash(value.toString());
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-16 code units, followed by the MurmurHash3 finalizer, so all bits avalanche.
+     */
+    public static long hash(CharSequence s) {
+
+        long h = 0xcbf29ce484222325L;
+
+        for(int i = 0; i < s.length(); i ++) {
+
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+
+        return mix(h);
+    }
+
+    /**
+     * The MurmurHash3 64-bit finalizer.
+     */
+    static long mix(long h) {
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int precision;
+
+    private final int exactThreshold;
+
+    //
+    // exact mode: table != null, registers == null
+    //
+
+    private long[] table;
+
+    private int size;
+
+    //
+    // estimating mode: table == null, registers != null
+    //
+
+    private byte[] registers;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public HyperLogLog() {
+
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Counts exactly up to the default threshold.
+     *
+     * @exception IllegalArgumentException on invalid precision.
+     *
+     * @see HyperLogLog#defaultExactThreshold(int)
+     */
+    public HyperLogLog(int precision) {
+
+        this(precision, defaultExactThreshold(precision));
+    }
+
+    /**
+     * @param precision in [MIN_PRECISION, MAX_PRECISION]; the sketch has 2^precision registers.
+     * @param exactThreshold the number of distinct values counted exactly, 0 estimates from the start.
+     *
+     * @exception IllegalArgumentException on invalid precision or threshold.
+     */
+    public HyperLogLog(int precision, int exactThreshold) {
+
+        if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+
+            throw new IllegalArgumentException("invalid precision: " + precision);
+        }
+
+        if (exactThreshold < 0) {
+
+            throw new IllegalArgumentException("invalid exact threshold: " + exactThreshold);
+        }
+
+        this.precision = precision;
+        this.exactThreshold = exactThreshold;
+
+        clear();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Null is ignored.
+     */
+    public void add(Object value) {
+
+        if (value == null) {
+
+            return;
+        }
+
+        addHash(hash(value));
+    }
+
+    public void addHash(long hash) {
+
+        if (registers != null) {
+
+            update(registers, hash);
+            return;
+        }
+
+        if (!insert(hash == EMPTY ? 1L : hash)) {
+
+            return;
+        }
+
+        if (size > exactThreshold) {
+
+            toRegisters();
+        }
+    }
+
+    /**
+     * @return the exact count in exact mode, the rounded estimate otherwise.
+     */
+    public long getCount() {
+
+        if (registers == null) {
+
+            return size;
+        }
+
+        return Math.round(estimate(registers, precision));
+    }
+
+    /**
+     * @return true while the count is exact.
+     */
+    public boolean isExact() {
+
+        return registers == null;
+    }
+
+    /**
+     * @return the relative standard error of the estimate, 0 while the count is exact.
+     */
+    public double getStandardError() {
+
+        return registers == null ? 0d : 1.04d / Math.sqrt(1 << precision);
+    }
+
+    /**
+     * Adds the content of the given counter to this one. The given counter is not modified.
+     *
+     * @exception IllegalArgumentException on null counter or counter with a different precision.
+     */
+    public void merge(HyperLogLog other) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null counter");
+        }
+
+        if (other == this) {
+
+            return;
+        }
+
+        if (other.precision != precision) {
+
+            throw new IllegalArgumentException(
+                    "incompatible precision: " + other.precision + ", expected " + precision);
+        }
+
+        if (other.registers == null) {
+
+            for(long h: other.table) {
+
+                if (h != EMPTY) {
+
+                    addHash(h);
+                }
+            }
+
+            return;
+        }
+
+        if (registers == null) {
+
+            toRegisters();
+        }
+
+        for(int i = 0; i < registers.length; i ++) {
+
+            if (other.registers[i] > registers[i]) {
+
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public void clear() {
+
+        table = new long[INITIAL_TABLE_LENGTH];
+        size = 0;
+        registers = null;
+
+        if (exactThreshold == 0) {
+
+            registers = new byte[1 << precision];
+        }
+    }
+
+    public int getPrecision() {
+
+        return precision;
+    }
+
+    public int getExactThreshold() {
+
+        return exactThreshold;
+    }
+
+    @Override
+    public String toString() {
+
+        return "HyperLogLog[" + precision + ", " + (isExact() ? "exact" : "estimating") + ", " + getCount() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of bytes held by the table or the registers.
+     */
+    int getAllocatedBytes() {
+
+        return registers == null ? table.length * 8 : registers.length;
+    }
+
+    /**
+     * Ertl, "New cardinality estimation algorithms for HyperLogLog sketches", 2017, algorithm 6.
+     */
+    static double estimate(byte[] registers, int precision) {
+
+        int m = registers.length;
+        int q = 64 - precision;
+
+        int[] histogram = new int[q + 2];
+
+        for(byte r: registers) {
+
+            histogram[r] ++;
+        }
+
+        double z = m * tau(1d - (double)histogram[q + 1] / m);
+
+        for(int k = q; k >= 1; k --) {
+
+            z = 0.5d * (z + histogram[k]);
+        }
+
+        z += m * sigma((double)histogram[0] / m);
+
+        return m / (2d * Math.log(2d)) * m / z;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * The register index is given by the highest precision bits, the register value by the position of the first 1 bit
+     * in the rest.
+     */
+    private void update(byte[] r, long hash) {
+
+        int index = (int)(hash >>> (64 - precision));
+        long w = hash << precision;
+        int rho = w == 0L ? 64 - precision + 1 : Long.numberOfLeadingZeros(w) + 1;
+
+        if (rho > r[index]) {
+
+            r[index] = (byte)rho;
+        }
+    }
+
+    /**
+     * @return true if the hash was not already in the table.
+     */
+    private boolean insert(long hash) {
+
+        int mask = table.length - 1;
+        int i = (int)hash & mask;
+
+        while(table[i] != EMPTY) {
+
+            if (table[i] == hash) {
+
+                return false;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        table[i] = hash;
+        size ++;
+
+        //
+        // keep the load factor at most 1/2
+        //
+
+        if (2 * size > table.length && size <= exactThreshold) {
+
+            rehash(table.length * 2);
+        }
+
+        return true;
+    }
+
+    private void rehash(int length) {
+
+        long[] old = table;
+        table = new long[length];
+
+        int mask = length - 1;
+
+        for(long h: old) {
+
+            if (h != EMPTY) {
+
+                int i = (int)h & mask;
+
+                while(table[i] != EMPTY) {
+
+                    i = (i + 1) & mask;
+                }
+
+                table[i] = h;
+            }
+        }
+    }
+
+    private void toRegisters() {
+
+        byte[] r = new byte[1 << precision];
+
+        for(long h: table) {
+
+            if (h != EMPTY) {
+
+                update(r, h);
+            }
+        }
+
+        registers = r;
+        table = null;
+        size = 0;
+    }
+
+    private static double sigma(double x) {
+
+        if (x == 1d) {
+
+            return Double.POSITIVE_INFINITY;
+        }
+
+        double y = 1d;
+        double z = x;
+        double previous;
+
+        do {
+
+            x *= x;
+            previous = z;
+            z += x * y;
+            y += y;
+        }
+        while(z != previous);
+
+        return z;
+    }
+
+    private static double tau(double x) {
+
+        if (x == 0d || x == 1d) {
+
+            return 0d;
+        }
+
+        double y = 1d;
+        double z = 1d - x;
+        double previous;
+
+        do {
+
+            x = Math.sqrt(x);
+            previous = z;
+            y *= 0.5d;
+            z -= (1d - x) * (1d - x) * y;
+        }
+        while(z != previous);
+
+        return z / 3d;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
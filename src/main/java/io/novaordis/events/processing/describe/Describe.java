@@ -37,6 +37,9 @@ import java.util.concurrent.atomic.AtomicLong;
  * A procedure that looks at a stream of incoming events, and writes to the given OutputStream a description of distinct
  * events, as they arrive.
  *
+ * Events whose shape was already seen are recognized by a ShapeCache lookup, without building signatures. The
+ * signatures are only built for shapes that are not cached yet.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/19/17
  */
@@ -127,6 +130,8 @@ public class Describe extends TextOutputProcedure {
 
     private Set<String> signatures;
 
+    private ShapeCache shapes;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public Describe() {
@@ -138,6 +143,7 @@ public class Describe extends TextOutputProcedure {
 
         super(os);
         this.signatures = new HashSet<>();
+        this.shapes = new ShapeCache();
     }
 
     // Procedure implementation ----------------------------------------------------------------------------------------
@@ -153,11 +159,20 @@ public class Describe extends TextOutputProcedure {
     @Override
     public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
 
+        if (shapes.contains(in)) {
+
+            return;
+        }
+
+        //
+        // the signature remains the authority on what is distinct; the cache only short-circuits known shapes
+        //
+
         String signature = getSignature(in, YAML_INLINE);
 
-        if (!signatures.contains(signature)) {
+        shapes.add(in);
 
-            signatures.add(signature);
+        if (signatures.add(signature)) {
 
             String yamlSignature = getSignature(in, YAML);
 
@@ -0,0 +1,388 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.describe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.MapProperty;
+import io.novaordis.events.api.event.Property;
+
+/**
+ * A set of known event shapes. The shape of an event is its class, its property names and types and, for Map
+ * properties, the map key set.
+ *
+ * The lookup is meant for the case of long streams of identically shaped events: it computes an order-independent
+ * fingerprint of the event in one pass over its properties, without copying, sorting or building strings, and then
+ * verifies the candidate shapes with the same fingerprint exactly, by binary searching the sorted names of the cached
+ * shape. A fingerprint collision can never make a new shape look known.
+ *
+ * Events with duplicate property names (or map keys with identical string representations) are never cached, and
+ * contains() always returns false for them.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+class ShapeCache {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The order-independent fingerprint: the sum of the mixed per-property hashes.
+     */
+    static int fingerprint(Event e) {
+
+        int h = e.getClass().hashCode();
+
+        List<Property> properties = e.getProperties();
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < properties.size(); i ++) {
+
+            Property p = properties.get(i);
+
+            int ph = p.getName().hashCode() * 31 + p.getType().hashCode();
+
+            if (Map.class.equals(p.getType())) {
+
+                Map map = ((MapProperty)p).getMap();
+
+                if (map != null) {
+
+                    for(Object key: map.keySet()) {
+
+                        ph += mix(String.valueOf(key).hashCode());
+                    }
+                }
+            }
+
+            h += mix(ph);
+        }
+
+        return h;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private Shape[] table;
+
+    private int size;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    ShapeCache() {
+
+        this.table = new Shape[INITIAL_CAPACITY];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    boolean contains(Event e) {
+
+        int fingerprint = fingerprint(e);
+
+        for(Shape s = table[fingerprint & (table.length - 1)]; s != null; s = s.next) {
+
+            if (s.fingerprint == fingerprint && s.matches(e)) {
+
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Caches the shape of the event, unless it cannot be cached or it is already cached.
+     */
+    void add(Event e) {
+
+        if (contains(e)) {
+
+            return;
+        }
+
+        Shape s = Shape.of(e, fingerprint(e));
+
+        if (s == null) {
+
+            return;
+        }
+
+        if (size + 1 > table.length * 3 / 4) {
+
+            resize();
+        }
+
+        int index = s.fingerprint & (table.length - 1);
+
+        s.next = table[index];
+        table[index] = s;
+
+        size ++;
+    }
+
+    int size() {
+
+        return size;
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static int mix(int h) {
+
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private void resize() {
+
+        Shape[] old = table;
+
+        table = new Shape[old.length * 2];
+
+        for(Shape s: old) {
+
+            while(s != null) {
+
+                Shape next = s.next;
+                int index = s.fingerprint & (table.length - 1);
+                s.next = table[index];
+                table[index] = s;
+                s = next;
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static final class Shape {
+
+        /**
+         * @return null if the event has duplicate property names or duplicate map key representations.
+         */
+        static Shape of(Event e, int fingerprint) {
+
+            List<Property> properties = new ArrayList<>(e.getProperties());
+
+            properties.sort(new Comparator<Property>() {
+
+                @Override
+                public int compare(Property p1, Property p2) {
+
+                    return p1.getName().compareTo(p2.getName());
+                }
+            });
+
+            int n = properties.size();
+
+            String[] names = new String[n];
+            Class[] types = new Class[n];
+            String[][] keys = new String[n][];
+
+            for(int i = 0; i < n; i ++) {
+
+                Property p = properties.get(i);
+
+                names[i] = p.getName();
+                types[i] = p.getType();
+
+                if (i > 0 && names[i].equals(names[i - 1])) {
+
+                    return null;
+                }
+
+                if (Map.class.equals(types[i])) {
+
+                    Map map = ((MapProperty)p).getMap();
+
+                    String[] k = new String[map == null ? 0 : map.size()];
+
+                    int j = 0;
+
+                    if (map != null) {
+
+                        for(Object key: map.keySet()) {
+
+                            k[j ++] = String.valueOf(key);
+                        }
+                    }
+
+                    Arrays.sort(k);
+
+                    for(j = 1; j < k.length; j ++) {
+
+                        if (k[j].equals(k[j - 1])) {
+
+                            return null;
+                        }
+                    }
+
+                    keys[i] = k;
+                }
+            }
+
+            return new Shape(e.getClass(), names, types, keys, fingerprint);
+        }
+
+        private final Class eventType;
+        private final String[] names;
+        private final Class[] types;
+        private final String[][] keys;
+        private final int fingerprint;
+
+        private Shape next;
+
+        private Shape(Class eventType, String[] names, Class[] types, String[][] keys, int fingerprint) {
+
+            this.eventType = eventType;
+            this.names = names;
+            this.types = types;
+            this.keys = keys;
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * The cached names are distinct, so equal counts and every cached name being hit exactly once means the event
+         * has exactly the cached property names.
+         */
+        boolean matches(Event e) {
+
+            if (e.getClass() != eventType) {
+
+                return false;
+            }
+
+            List<Property> properties = e.getProperties();
+
+            if (properties.size() != names.length) {
+
+                return false;
+            }
+
+            Hits hits = new Hits(names.length);
+
+            //noinspection ForLoopReplaceableByForEach
+            for(int i = 0; i < properties.size(); i ++) {
+
+                Property p = properties.get(i);
+
+                int index = Arrays.binarySearch(names, p.getName());
+
+                if (index < 0 || types[index] != p.getType() || !hits.hit(index)) {
+
+                    return false;
+                }
+
+                String[] k = keys[index];
+
+                if (k != null && !keysMatch(((MapProperty)p).getMap(), k)) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * The map keys are distinct objects, but their string representations may not be, so each cached key must be
+         * hit exactly once.
+         */
+        private static boolean keysMatch(Map map, String[] sortedKeys) {
+
+            int size = map == null ? 0 : map.size();
+
+            if (size != sortedKeys.length) {
+
+                return false;
+            }
+
+            if (size == 0) {
+
+                return true;
+            }
+
+            Hits hits = new Hits(size);
+
+            for(Object key: map.keySet()) {
+
+                int index = Arrays.binarySearch(sortedKeys, String.valueOf(key));
+
+                if (index < 0 || !hits.hit(index)) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Tracks the indices already hit. Up to 64 indices are tracked in a long, which escape analysis keeps off the heap.
+     */
+    private static final class Hits {
+
+        private long mask;
+        private final boolean[] large;
+
+        private Hits(int size) {
+
+            this.large = size > 64 ? new boolean[size] : null;
+        }
+
+        /**
+         * @return false if the index was already hit.
+         */
+        private boolean hit(int index) {
+
+            if (large != null) {
+
+                if (large[index]) {
+
+                    return false;
+                }
+
+                large[index] = true;
+                return true;
+            }
+
+            long bit = 1L << index;
+
+            if ((mask & bit) != 0) {
+
+                return false;
+            }
+
+            mask |= bit;
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.exclude;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * A compiled, side-effect-free condition on events. Predicates are built with EventPredicates, which flattens and
+ * re-orders composite predicates so the cheapest clauses are evaluated first.
+ *
+ * Predicates may cache per-event-class lookup state, so they are not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface EventPredicate {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    boolean test(Event e);
+
+    /**
+     * @return the relative cost of an evaluation, used to order the clauses of a composite predicate. Only the order
+     * of magnitude matters.
+     */
+    int getCost();
+
+}
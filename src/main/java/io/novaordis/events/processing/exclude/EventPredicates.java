@@ -0,0 +1,763 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.exclude;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.TimedEvent;
+import io.novaordis.events.query.FieldQuery;
+import io.novaordis.events.query.MatchAll;
+import io.novaordis.events.query.MatchNone;
+import io.novaordis.events.query.MixedQuery;
+import io.novaordis.events.query.Query;
+import io.novaordis.events.query.QueryException;
+import io.novaordis.events.query.TimeQuery;
+
+/**
+ * Builds EventPredicate trees. Composite predicates are compiled when built: nested conjunctions and disjunctions are
+ * flattened, constant clauses are folded, and the remaining clauses are sorted by cost, so the cheapest clauses are
+ * evaluated, and get a chance to short-circuit, first. Property clauses resolve their property per event class, with a
+ * PropertyLocator.
+ *
+ * Queries are translated into trees (see of()): field and time queries become clauses of their own, mixed queries become
+ * conjunctions of their translated components. Queries of other types are evaluated through Query.selects(), as opaque
+ * clauses that are evaluated last.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public final class EventPredicates {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int CONSTANT_COST = 0;
+    public static final int TIME_COST = 1;
+    public static final int PROPERTY_EXISTS_COST = 2;
+    public static final int PROPERTY_EQUALS_COST = 3;
+    public static final int FIELD_QUERY_COST = 4;
+    public static final int PROPERTY_MATCHES_COST = 10;
+    public static final int QUERY_COST = 100;
+
+    public static final EventPredicate TRUE = new Constant(true);
+    public static final EventPredicate FALSE = new Constant(false);
+
+    private static final Comparator<EventPredicate> BY_COST = new Comparator<EventPredicate>() {
+
+        @Override
+        public int compare(EventPredicate p1, EventPredicate p2) {
+
+            return Integer.compare(p1.getCost(), p2.getCost());
+        }
+    };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Translates the query into a predicate. The queries that are translated are compiled first, if they were not:
+     *
+     * MatchAll and MatchNone become TRUE and FALSE.
+     *
+     * A MixedQuery becomes the conjunction of its translated components, so its clauses are re-ordered by cost.
+     *
+     * A FieldQuery becomes a clause that resolves the field per event class, and selects the events that carry it with
+     * a value whose string representation is the string representation of the query's value.
+     *
+     * A TimeQuery becomes a clause that hands the timestamp of timed events to Query.selects(long), so the query's own
+     * boundary semantics apply. Non-timed events are not selected.
+     *
+     * Any other query is evaluated through Query.selects(), last.
+     *
+     * @exception IllegalArgumentException on null query, or if the query fails to compile.
+     */
+    public static EventPredicate of(Query query) {
+
+        if (query == null) {
+
+            throw new IllegalArgumentException("null query");
+        }
+
+        if (query instanceof MatchAll) {
+
+            return TRUE;
+        }
+
+        if (query instanceof MatchNone) {
+
+            return FALSE;
+        }
+
+        if (query instanceof MixedQuery) {
+
+            compile(query);
+
+            List<Query> components = ((MixedQuery)query).getQueries();
+
+            EventPredicate[] clauses = new EventPredicate[components.size()];
+
+            for(int i = 0; i < clauses.length; i ++) {
+
+                clauses[i] = of(components.get(i));
+            }
+
+            return and(clauses);
+        }
+
+        if (query instanceof FieldQuery) {
+
+            compile(query);
+
+            FieldQuery q = (FieldQuery)query;
+
+            return new FieldEquals(q.getFieldName(), q.getValue());
+        }
+
+        if (query instanceof TimeQuery) {
+
+            compile(query);
+
+            return new TimeClause(query);
+        }
+
+        return opaque(query);
+    }
+
+    public static EventPredicate and(EventPredicate... clauses) {
+
+        List<EventPredicate> flattened = new ArrayList<>();
+
+        for(EventPredicate c: clauses) {
+
+            if (c == null) {
+
+                throw new IllegalArgumentException("null clause");
+            }
+
+            if (c == FALSE) {
+
+                return FALSE;
+            }
+
+            if (c == TRUE) {
+
+                continue;
+            }
+
+            if (c instanceof And) {
+
+                flattened.addAll(Arrays.asList(((And)c).clauses));
+            }
+            else {
+
+                flattened.add(c);
+            }
+        }
+
+        if (flattened.isEmpty()) {
+
+            return TRUE;
+        }
+
+        if (flattened.size() == 1) {
+
+            return flattened.get(0);
+        }
+
+        return new And(sort(flattened));
+    }
+
+    public static EventPredicate or(EventPredicate... clauses) {
+
+        List<EventPredicate> flattened = new ArrayList<>();
+
+        for(EventPredicate c: clauses) {
+
+            if (c == null) {
+
+                throw new IllegalArgumentException("null clause");
+            }
+
+            if (c == TRUE) {
+
+                return TRUE;
+            }
+
+            if (c == FALSE) {
+
+                continue;
+            }
+
+            if (c instanceof Or) {
+
+                flattened.addAll(Arrays.asList(((Or)c).clauses));
+            }
+            else {
+
+                flattened.add(c);
+            }
+        }
+
+        if (flattened.isEmpty()) {
+
+            return FALSE;
+        }
+
+        if (flattened.size() == 1) {
+
+            return flattened.get(0);
+        }
+
+        return new Or(sort(flattened));
+    }
+
+    public static EventPredicate not(EventPredicate clause) {
+
+        if (clause == null) {
+
+            throw new IllegalArgumentException("null clause");
+        }
+
+        if (clause == TRUE) {
+
+            return FALSE;
+        }
+
+        if (clause == FALSE) {
+
+            return TRUE;
+        }
+
+        if (clause instanceof Not) {
+
+            return ((Not)clause).clause;
+        }
+
+        return new Not(clause);
+    }
+
+    /**
+     * Selects timed events whose timestamp is in [from, to). Non-timed events are not selected.
+     */
+    public static EventPredicate timeBetween(long from, long to) {
+
+        return new TimeBetween(from, to);
+    }
+
+    /**
+     * Selects events that carry the property with a non-null value.
+     */
+    public static EventPredicate propertyExists(String name) {
+
+        return new PropertyExists(name);
+    }
+
+    /**
+     * Selects events that carry the property with a value equal to the given value.
+     */
+    public static EventPredicate propertyEquals(String name, Object value) {
+
+        if (value == null) {
+
+            throw new IllegalArgumentException("null value");
+        }
+
+        return new PropertyEquals(name, value);
+    }
+
+    /**
+     * Selects events that carry the property with a value whose string representation matches the pattern.
+     */
+    public static EventPredicate propertyMatches(String name, Pattern pattern) {
+
+        if (pattern == null) {
+
+            throw new IllegalArgumentException("null pattern");
+        }
+
+        return new PropertyMatches(name, pattern);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private EventPredicates() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return a clause that evaluates the query through Query.selects(), without translating it.
+     */
+    static EventPredicate opaque(Query query) {
+
+        return new QueryClause(query);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void compile(Query query) {
+
+        if (query.isCompiled()) {
+
+            return;
+        }
+
+        try {
+
+            query.compile();
+        }
+        catch(QueryException e) {
+
+            throw new IllegalArgumentException("invalid query: " + e.getMessage(), e);
+        }
+    }
+
+    private static EventPredicate[] sort(List<EventPredicate> clauses) {
+
+        //
+        // stable, clauses with the same cost keep the order they were specified in
+        //
+
+        Collections.sort(clauses, BY_COST);
+
+        return clauses.toArray(new EventPredicate[clauses.size()]);
+    }
+
+    private static int sumOfCosts(EventPredicate[] clauses) {
+
+        int cost = 0;
+
+        for(EventPredicate c: clauses) {
+
+            cost += c.getCost();
+        }
+
+        return cost;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static final class Constant implements EventPredicate {
+
+        private final boolean value;
+
+        private Constant(boolean value) {
+
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            return value;
+        }
+
+        @Override
+        public int getCost() {
+
+            return CONSTANT_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return Boolean.toString(value);
+        }
+    }
+
+    static final class And implements EventPredicate {
+
+        private final EventPredicate[] clauses;
+        private final int cost;
+
+        private And(EventPredicate[] clauses) {
+
+            this.clauses = clauses;
+            this.cost = sumOfCosts(clauses);
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            for(EventPredicate c: clauses) {
+
+                if (!c.test(e)) {
+
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        @Override
+        public int getCost() {
+
+            return cost;
+        }
+
+        List<EventPredicate> getClauses() {
+
+            return Arrays.asList(clauses);
+        }
+
+        @Override
+        public String toString() {
+
+            return "and" + Arrays.toString(clauses);
+        }
+    }
+
+    static final class Or implements EventPredicate {
+
+        private final EventPredicate[] clauses;
+        private final int cost;
+
+        private Or(EventPredicate[] clauses) {
+
+            this.clauses = clauses;
+            this.cost = sumOfCosts(clauses);
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            for(EventPredicate c: clauses) {
+
+                if (c.test(e)) {
+
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        @Override
+        public int getCost() {
+
+            return cost;
+        }
+
+        List<EventPredicate> getClauses() {
+
+            return Arrays.asList(clauses);
+        }
+
+        @Override
+        public String toString() {
+
+            return "or" + Arrays.toString(clauses);
+        }
+    }
+
+    private static final class Not implements EventPredicate {
+
+        private final EventPredicate clause;
+
+        private Not(EventPredicate clause) {
+
+            this.clause = clause;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            return !clause.test(e);
+        }
+
+        @Override
+        public int getCost() {
+
+            return clause.getCost();
+        }
+
+        @Override
+        public String toString() {
+
+            return "not(" + clause + ")";
+        }
+    }
+
+    private static final class TimeBetween implements EventPredicate {
+
+        private final long from;
+        private final long to;
+
+        private TimeBetween(long from, long to) {
+
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            if (!(e instanceof TimedEvent)) {
+
+                return false;
+            }
+
+            Long t = ((TimedEvent)e).getTime();
+
+            return t != null && t >= from && t < to;
+        }
+
+        @Override
+        public int getCost() {
+
+            return TIME_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return "time[" + from + ", " + to + ")";
+        }
+    }
+
+    private static final class PropertyExists implements EventPredicate {
+
+        private final PropertyLocator locator;
+
+        private PropertyExists(String name) {
+
+            this.locator = new PropertyLocator(name);
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            Property p = locator.locate(e);
+
+            return p != null && p.getValue() != null;
+        }
+
+        @Override
+        public int getCost() {
+
+            return PROPERTY_EXISTS_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return locator.getName() + " exists";
+        }
+    }
+
+    private static final class PropertyEquals implements EventPredicate {
+
+        private final PropertyLocator locator;
+        private final Object value;
+
+        private PropertyEquals(String name, Object value) {
+
+            this.locator = new PropertyLocator(name);
+            this.value = value;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            Property p = locator.locate(e);
+
+            return p != null && value.equals(p.getValue());
+        }
+
+        @Override
+        public int getCost() {
+
+            return PROPERTY_EQUALS_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return locator.getName() + " == " + value;
+        }
+    }
+
+    private static final class PropertyMatches implements EventPredicate {
+
+        private final PropertyLocator locator;
+        private final Pattern pattern;
+
+        // reused, the predicate is not thread safe anyway
+        private final Matcher matcher;
+
+        private PropertyMatches(String name, Pattern pattern) {
+
+            this.locator = new PropertyLocator(name);
+            this.pattern = pattern;
+            this.matcher = pattern.matcher("");
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            Property p = locator.locate(e);
+
+            if (p == null) {
+
+                return false;
+            }
+
+            Object v = p.getValue();
+
+            if (v == null) {
+
+                return false;
+            }
+
+            return matcher.reset(v instanceof CharSequence ? (CharSequence)v : v.toString()).matches();
+        }
+
+        @Override
+        public int getCost() {
+
+            return PROPERTY_MATCHES_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return locator.getName() + " ~ " + pattern;
+        }
+    }
+
+    private static final class FieldEquals implements EventPredicate {
+
+        private final PropertyLocator locator;
+        private final String value;
+
+        private FieldEquals(String name, Object value) {
+
+            this.locator = new PropertyLocator(name);
+            this.value = String.valueOf(value);
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            Property p = locator.locate(e);
+
+            if (p == null) {
+
+                return false;
+            }
+
+            Object v = p.getValue();
+
+            if (v == null) {
+
+                return false;
+            }
+
+            return v instanceof String ? value.equals(v) : value.equals(v.toString());
+        }
+
+        @Override
+        public int getCost() {
+
+            return FIELD_QUERY_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return locator.getName() + ":" + value;
+        }
+    }
+
+    private static final class TimeClause implements EventPredicate {
+
+        private final Query query;
+
+        private TimeClause(Query query) {
+
+            this.query = query;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            if (!(e instanceof TimedEvent)) {
+
+                return false;
+            }
+
+            Long t = ((TimedEvent)e).getTime();
+
+            return t != null && query.selects(t);
+        }
+
+        @Override
+        public int getCost() {
+
+            return TIME_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return query.toString();
+        }
+    }
+
+    private static final class QueryClause implements EventPredicate {
+
+        private final Query query;
+
+        private QueryClause(Query query) {
+
+            this.query = query;
+        }
+
+        @Override
+        public boolean test(Event e) {
+
+            return query.selects(e);
+        }
+
+        @Override
+        public int getCost() {
+
+            return QUERY_COST;
+        }
+
+        @Override
+        public String toString() {
+
+            return query.toString();
+        }
+    }
+
+}
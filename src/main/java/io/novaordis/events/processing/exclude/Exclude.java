@@ -16,15 +16,21 @@
 
 package io.novaordis.events.processing.exclude;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.SourceByteRange;
 import io.novaordis.events.processing.TextOutputProcedure;
 import io.novaordis.events.query.Query;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
@@ -33,6 +39,18 @@ import java.util.concurrent.atomic.AtomicLong;
  * A procedure that looks at a stream of incoming events, and writes to the given OutputStream the raw represenation
  * of the events that DO NOT match the query.
  *
+ * The query is compiled into an EventPredicate when it is installed. Alternatively, a predicate tree built with
+ * EventPredicates can be installed directly, with setPredicate().
+ *
+ * Passthrough mode: if the events were parsed from a file, the file channel is installed with setPassthroughSource(),
+ * and the events know their source byte range (SourceByteRange), the procedure copies the original bytes of the events
+ * that are not excluded straight to the output, without decoding, re-encoding or building Strings. Adjacent ranges are
+ * coalesced and copied with a single FileChannel.transferTo(), which avoids the user space copy when the output is a
+ * file. Events that do not know their range are written as usual, in order.
+ *
+ * If a downstream procedure is installed, the events that are not excluded are passed on to it instead of being
+ * written, and the passthrough mode does not apply.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/19/17
  */
@@ -51,6 +69,22 @@ public class Exclude extends TextOutputProcedure {
 
     private Query query;
 
+    private EventPredicate predicate;
+
+    private FileChannel passthroughSource;
+
+    //
+    // the coalesced source range not yet copied to the output
+    //
+
+    private long pendingOffset;
+    private long pendingLength;
+
+    private OutputStream channelStream;
+    private WritableByteChannel outputChannel;
+
+    private long transferCount;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public Exclude() {
@@ -76,17 +110,50 @@ public class Exclude extends TextOutputProcedure {
     @Override
     public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
 
-        try {
+        EventPredicate p = predicate;
+
+        if (p == null) {
+
+            throw new IllegalStateException(this + " was not initialized: no query");
+        }
+
+        if (in instanceof EndOfStreamEvent) {
+
+            transferPending();
+
+            return;
+        }
+
+        if (p.test(in)) {
+
+            return;
+        }
+
+        if (hasDownstream()) {
+
+            emit(in);
+            return;
+        }
+
+        if (passthroughSource != null && in instanceof SourceByteRange) {
 
-            if (query.selects(in)) {
+            SourceByteRange r = (SourceByteRange)in;
 
+            long offset = r.getSourceOffset();
+            long length = r.getSourceLength();
+
+            if (offset >= 0 && length >= 0) {
+
+                passthrough(offset, length);
                 return;
             }
         }
-        catch(NullPointerException e) {
 
-            throw new IllegalStateException(this + " was not initialized: no query", e);
-        }
+        //
+        // preserve the order of the output
+        //
+
+        transferPending();
 
         String s = in.getRawRepresentation();
 
@@ -105,6 +172,12 @@ public class Exclude extends TextOutputProcedure {
         }
     }
 
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public void setQuery(Query query) {
@@ -115,21 +188,158 @@ public class Exclude extends TextOutputProcedure {
         }
 
         this.query = query;
+        this.predicate = EventPredicates.of(query);
     }
 
+    /**
+     * @return the query installed with setQuery(), or null if no query was installed, or a predicate was installed
+     * directly.
+     */
     public Query getQuery() {
 
         return query;
     }
 
+    /**
+     * Installs the predicate directly. Replaces the query, if any.
+     */
+    public void setPredicate(EventPredicate predicate) {
+
+        if (predicate == null) {
+
+            throw new IllegalArgumentException("null predicate");
+        }
+
+        this.query = null;
+        this.predicate = predicate;
+    }
+
+    public EventPredicate getPredicate() {
+
+        return predicate;
+    }
+
+    /**
+     * Enables the passthrough mode.
+     *
+     * @param source the channel of the file the events were parsed from. The procedure does not close it.
+     */
+    public void setPassthroughSource(FileChannel source) {
+
+        if (source == null) {
+
+            throw new IllegalArgumentException("null passthrough source");
+        }
+
+        this.passthroughSource = source;
+    }
+
+    /**
+     * @return null if the passthrough mode is not enabled.
+     */
+    public FileChannel getPassthroughSource() {
+
+        return passthroughSource;
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * @return the number of coalesced ranges copied to the output so far.
+     */
+    long getTransferCount() {
+
+        return transferCount;
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Static Protected ------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private void passthrough(long offset, long length) throws EventProcessingException {
+
+        if (pendingLength > 0 && pendingOffset + pendingLength == offset) {
+
+            pendingLength += length;
+            return;
+        }
+
+        transferPending();
+
+        pendingOffset = offset;
+        pendingLength = length;
+    }
+
+    private void transferPending() throws EventProcessingException {
+
+        if (pendingLength == 0) {
+
+            return;
+        }
+
+        //
+        // whatever was printed before must precede the bytes we copy
+        //
+
+        flush();
+
+        try {
+
+            WritableByteChannel target = outputChannel();
+
+            long position = pendingOffset;
+            long remaining = pendingLength;
+
+            long start = System.nanoTime();
+
+            while(remaining > 0) {
+
+                long transferred = passthroughSource.transferTo(position, remaining, target);
+
+                if (transferred <= 0) {
+
+                    throw new IOException(
+                            "passthrough source ended at offset " + position + ", " + remaining + " bytes short");
+                }
+
+                position += transferred;
+                remaining -= transferred;
+            }
+
+            outputWritten(pendingLength, System.nanoTime() - start);
+
+            transferCount ++;
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+        finally {
+
+            pendingLength = 0;
+        }
+    }
+
+    /**
+     * A file output stream's own channel allows transferTo() to copy in kernel space.
+     */
+    private WritableByteChannel outputChannel() {
+
+        OutputStream os = getOutputStream();
+
+        if (os != channelStream) {
+
+            channelStream = os;
+
+            outputChannel = os instanceof FileOutputStream ?
+                    ((FileOutputStream)os).getChannel() : Channels.newChannel(os);
+        }
+
+        return outputChannel;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.exclude;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+
+/**
+ * Looks up a property by name, remembering, per event class, the index the property was found at. Events of the same
+ * class usually carry their properties in the same order, so after the first event of a class, a lookup is an index
+ * access and a name comparison. If the hint misses, the index is re-learned.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+class PropertyLocator {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int UNKNOWN = -1;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String name;
+
+    private Class<?> lastClass;
+    private int lastIndex;
+
+    private final Map<Class<?>, Integer> hints;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    PropertyLocator(String name) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        this.name = name;
+        this.lastIndex = UNKNOWN;
+        this.hints = new HashMap<>();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the property, or null if the event does not carry it.
+     */
+    Property locate(Event e) {
+
+        Class<?> c = e.getClass();
+
+        if (c != lastClass) {
+
+            Integer hint = hints.get(c);
+
+            lastClass = c;
+            lastIndex = hint == null ? UNKNOWN : hint;
+        }
+
+        if (lastIndex != UNKNOWN) {
+
+            Property p = e.getProperty(lastIndex);
+
+            if (p != null && name.equals(p.getName())) {
+
+                return p;
+            }
+        }
+
+        //
+        // first event of this class, or the hint missed
+        //
+
+        for(int i = 0; ; i ++) {
+
+            Property p = e.getProperty(i);
+
+            if (p == null) {
+
+                return null;
+            }
+
+            if (name.equals(p.getName())) {
+
+                lastIndex = i;
+                hints.put(c, i);
+                return p;
+            }
+        }
+    }
+
+    String getName() {
+
+        return name;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
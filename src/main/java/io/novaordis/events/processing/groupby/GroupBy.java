@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.groupby;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.novaordis.events.api.event.BooleanProperty;
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.IntegerProperty;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.events.processing.output.OutputFormat;
+import io.novaordis.events.processing.output.OutputFormatImpl;
+import io.novaordis.events.processing.output.PropertySelection;
+import io.novaordis.utilities.UserErrorException;
+
+/**
+ * A procedure that groups events by the values of one or more key properties and reports, per group, the number of
+ * events and the sum, average, minimum and maximum of one or more numeric value properties. Events that do not carry
+ * a key property are grouped under a missing value for it. Non-numeric values are ignored.
+ *
+ * The aggregation state is kept in a GroupTable, in primitive arrays, so counting an event does not allocate unless it
+ * starts a new group. On EndOfStreamEvent, each group is turned into an event - the key properties, "count", and
+ * "sum(<value>)", "avg(<value>)", "min(<value>)", "max(<value>)" for each value property - and the events are rendered,
+ * in the order in which the groups first appeared, with an OutputFormat over those properties, after a header line.
+ *
+ * All events are passed on to the downstream procedure, if any, as they arrive.
+ *
+ * Command line options:
+ *
+ * --key <property-list> - the key properties, specified the same way as for the output procedure: names, or 0-based
+ * indices, separated by spaces or commas. Without keys, all events are aggregated in a single group.
+ *
+ * --value <property-list> - the value properties, specified the same way.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class GroupBy extends TextOutputProcedure {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String COMMAND_LINE_LABEL = "group-by";
+
+    public static final String KEY_OPTION = "--key";
+    public static final String VALUE_OPTION = "--value";
+
+    public static final String COUNT_PROPERTY_NAME = "count";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertySelection keys;
+
+    private PropertySelection values;
+
+    // built when the first event arrives
+    private GroupTable table;
+
+    // reused for each event
+    private Object[] key;
+
+    //
+    // the names of the properties found at the selected positions, from the first event that carries them; the result
+    // properties are named after them
+    //
+
+    private String[] keyNames;
+
+    private String[] valueNames;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public GroupBy() {
+
+        this(null);
+    }
+
+    public GroupBy(OutputStream os) {
+
+        super(os);
+
+        this.keys = new PropertySelection();
+        this.values = new PropertySelection();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public GroupBy(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.singletonList(COMMAND_LINE_LABEL);
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
+
+        if (table == null) {
+
+            table = new GroupTable(keys.size(), values.size());
+            key = new Object[keys.size()];
+            keyNames = new String[keys.size()];
+            valueNames = new String[values.size()];
+        }
+
+        if (in instanceof EndOfStreamEvent) {
+
+            report();
+            return;
+        }
+
+        emit(in);
+
+        for(int i = 0; i < key.length; i ++) {
+
+            Property p = keys.select(in, i);
+
+            if (p == null) {
+
+                key[i] = null;
+                continue;
+            }
+
+            if (keyNames[i] == null) {
+
+                keyNames[i] = p.getName();
+            }
+
+            key[i] = p.getValue();
+        }
+
+        int group = table.add(key);
+
+        for(int i = 0; i < valueNames.length; i ++) {
+
+            Property p = values.select(in, i);
+
+            if (p == null) {
+
+                continue;
+            }
+
+            if (valueNames[i] == null) {
+
+                valueNames[i] = p.getName();
+            }
+
+            Object v = p.getValue();
+
+            if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+
+                table.addValue(group, i, ((Number)v).longValue());
+            }
+            else if (v instanceof Number) {
+
+                table.addValue(group, i, ((Number)v).doubleValue());
+            }
+        }
+    }
+
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The selection can be modified before processing starts.
+     */
+    public PropertySelection getKeys() {
+
+        return keys;
+    }
+
+    /**
+     * The selection can be modified before processing starts.
+     */
+    public PropertySelection getValues() {
+
+        return values;
+    }
+
+    /**
+     * @return the aggregation state, or null if processing did not start.
+     */
+    public GroupTable getTable() {
+
+        return table;
+    }
+
+    /**
+     * @return the events the groups are rendered from, in the order in which the groups first appeared. Empty if
+     * processing did not start.
+     */
+    public List<Event> getResults() {
+
+        if (table == null) {
+
+            return Collections.emptyList();
+        }
+
+        List<Event> result = new ArrayList<>(table.size());
+
+        for(int g = 0; g < table.size(); g ++) {
+
+            result.add(toEvent(g));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the format the results are rendered with: the key properties, "count", and the aggregates of each value
+     * property, in this order.
+     */
+    public OutputFormat getOutputFormat() {
+
+        OutputFormatImpl format = new OutputFormatImpl();
+
+        for(int i = 0; i < keys.size(); i ++) {
+
+            format.addPropertyName(keyName(i));
+        }
+
+        format.addPropertyName(COUNT_PROPERTY_NAME);
+
+        for(int i = 0; i < values.size(); i ++) {
+
+            String name = valueName(i);
+
+            format.addPropertyName("sum(" + name + ")");
+            format.addPropertyName("avg(" + name + ")");
+            format.addPropertyName("min(" + name + ")");
+            format.addPropertyName("max(" + name + ")");
+        }
+
+        return format;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        PropertySelection selection = PropertySelection.fromCommandLine(
+                KEY_OPTION, from, mutableCommandLineArgumentsList);
+
+        if (selection != null) {
+
+            if (selection.isEmpty()) {
+
+                throw new UserErrorException("missing value after " + KEY_OPTION);
+            }
+
+            keys = selection;
+        }
+
+        selection = PropertySelection.fromCommandLine(VALUE_OPTION, from, mutableCommandLineArgumentsList);
+
+        if (selection != null) {
+
+            if (selection.isEmpty()) {
+
+                throw new UserErrorException("missing value after " + VALUE_OPTION);
+            }
+
+            values = selection;
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void report() throws EventProcessingException {
+
+        if (table.size() == 0) {
+
+            return;
+        }
+
+        OutputFormat format = getOutputFormat();
+
+        StringBuilder sb = new StringBuilder();
+
+        try {
+
+            for(int g = 0; g < table.size(); g ++) {
+
+                Event e = toEvent(g);
+
+                if (g == 0) {
+
+                    sb.append(format.formatHeader(e));
+                }
+
+                //
+                // always matches, the count is always present
+                //
+
+                format.format(e, sb);
+
+                if (sb.length() >= 8192) {
+
+                    print(sb);
+                    sb.setLength(0);
+                }
+            }
+
+            print(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    private Event toEvent(int group) {
+
+        GenericEvent e = new GenericEvent();
+
+        for(int i = 0; i < keys.size(); i ++) {
+
+            Object v = table.getKey(group, i);
+
+            if (v != null) {
+
+                e.setProperty(property(keyName(i), v));
+            }
+        }
+
+        e.setProperty(new LongProperty(COUNT_PROPERTY_NAME, table.getCount(group)));
+
+        for(int i = 0; i < values.size(); i ++) {
+
+            long n = table.getValueCount(group, i);
+
+            if (n == 0) {
+
+                continue;
+            }
+
+            String name = valueName(i);
+
+            if (table.isIntegral(group, i)) {
+
+                long sum = table.getLongSum(group, i);
+
+                e.setProperty(new LongProperty("sum(" + name + ")", sum));
+                e.setProperty(new DoubleProperty("avg(" + name + ")", (double)sum / n));
+                e.setProperty(new LongProperty("min(" + name + ")", (long)table.getMin(group, i)));
+                e.setProperty(new LongProperty("max(" + name + ")", (long)table.getMax(group, i)));
+            }
+            else {
+
+                double sum = table.getSum(group, i);
+
+                e.setProperty(new DoubleProperty("sum(" + name + ")", sum));
+                e.setProperty(new DoubleProperty("avg(" + name + ")", sum / n));
+                e.setProperty(new DoubleProperty("min(" + name + ")", table.getMin(group, i)));
+                e.setProperty(new DoubleProperty("max(" + name + ")", table.getMax(group, i)));
+            }
+        }
+
+        return e;
+    }
+
+    private String keyName(int position) {
+
+        return resolvedName(keyNames == null ? null : keyNames[position], keys.getLabel(position));
+    }
+
+    private String valueName(int position) {
+
+        return resolvedName(valueNames == null ? null : valueNames[position], values.getLabel(position));
+    }
+
+    /**
+     * A position selected by index that never matched a property is named after the index, in a form OutputFormatImpl
+     * does not mistake for an index.
+     */
+    private static String resolvedName(String name, String label) {
+
+        if (name != null) {
+
+            return name;
+        }
+
+        try {
+
+            Integer.parseInt(label);
+            return "field[" + label + "]";
+        }
+        catch(NumberFormatException e) {
+
+            return label;
+        }
+    }
+
+    private static Property property(String name, Object value) {
+
+        if (value instanceof Long) {
+
+            return new LongProperty(name, (Long)value);
+        }
+        else if (value instanceof Integer) {
+
+            return new IntegerProperty(name, (Integer)value);
+        }
+        else if (value instanceof Double) {
+
+            return new DoubleProperty(name, (Double)value);
+        }
+        else if (value instanceof Boolean) {
+
+            return new BooleanProperty(name, (Boolean)value);
+        }
+        else {
+
+            return new StringProperty(name, value.toString());
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,413 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.groupby;
+
+import java.util.Arrays;
+
+/**
+ * The aggregation state of a group-by: a group per distinct key tuple, and for each group an event count and, for each
+ * value column, the count, sum, minimum and maximum of the numeric values.
+ *
+ * The groups are numbered densely, in the order they are created, and their state is kept in parallel primitive
+ * arrays indexed by the group number (and the value column), so there are no per-group or per-value objects beyond the
+ * key tuple itself. The key tuples are found through an open-addressing index of 64-bit hashes, with linear probing;
+ * the full hash is compared before the key values, so a lookup usually costs one equals() per key value. Integral
+ * values are summed as longs, so sums of integral values are exact, and only non-integral values are summed as doubles.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class GroupTable {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final int INITIAL_GROUP_CAPACITY = 16;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int keyCount;
+
+    private final int valueCount;
+
+    //
+    // the index: slots[i] is 0 if the slot is empty, or the group number + 1; hashes[i] is the hash of that group's key
+    //
+
+    private long[] hashes;
+
+    private int[] slots;
+
+    private int size;
+
+    //
+    // per group
+    //
+
+    // the key tuples, keyCount entries per group
+    private Object[] keys;
+
+    private long[] counts;
+
+    //
+    // per group and value column, valueCount entries per group
+    //
+
+    private long[] valueCounts;
+
+    private long[] longSums;
+
+    private double[] doubleSums;
+
+    // whether at least one non-integral value was seen
+    private boolean[] fractional;
+
+    private double[] mins;
+
+    private double[] maxs;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on negative counts.
+     */
+    public GroupTable(int keyCount, int valueCount) {
+
+        if (keyCount < 0) {
+
+            throw new IllegalArgumentException("invalid key count: " + keyCount);
+        }
+
+        if (valueCount < 0) {
+
+            throw new IllegalArgumentException("invalid value count: " + valueCount);
+        }
+
+        this.keyCount = keyCount;
+        this.valueCount = valueCount;
+
+        this.hashes = new long[2 * INITIAL_GROUP_CAPACITY];
+        this.slots = new int[2 * INITIAL_GROUP_CAPACITY];
+
+        this.keys = new Object[INITIAL_GROUP_CAPACITY * keyCount];
+        this.counts = new long[INITIAL_GROUP_CAPACITY];
+
+        int cells = INITIAL_GROUP_CAPACITY * valueCount;
+
+        this.valueCounts = new long[cells];
+        this.longSums = new long[cells];
+        this.doubleSums = new double[cells];
+        this.fractional = new boolean[cells];
+        this.mins = new double[cells];
+        this.maxs = new double[cells];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Counts an event for the given key tuple, creating the group if it does not exist.
+     *
+     * @param key keyCount values, nulls allowed. The array is not retained, so callers can reuse it.
+     *
+     * @return the group number.
+     */
+    public int add(Object[] key) {
+
+        long hash = hash(key, keyCount);
+
+        int mask = slots.length - 1;
+        int i = (int)hash & mask;
+
+        int slot;
+
+        while((slot = slots[i]) != 0) {
+
+            int group = slot - 1;
+
+            if (hashes[i] == hash && keyEquals(group, key)) {
+
+                counts[group] ++;
+                return group;
+            }
+
+            i = (i + 1) & mask;
+        }
+
+        int group = newGroup(key);
+
+        slots[i] = group + 1;
+        hashes[i] = hash;
+
+        counts[group] ++;
+
+        //
+        // keep the load factor at most 1/2
+        //
+
+        if (2 * size > slots.length) {
+
+            rehash(slots.length * 2);
+        }
+
+        return group;
+    }
+
+    public void addValue(int group, int column, long value) {
+
+        int cell = group * valueCount + column;
+
+        longSums[cell] += value;
+        update(cell, value);
+    }
+
+    public void addValue(int group, int column, double value) {
+
+        if (value != value) {
+
+            return;
+        }
+
+        int cell = group * valueCount + column;
+
+        doubleSums[cell] += value;
+        fractional[cell] = true;
+        update(cell, value);
+    }
+
+    /**
+     * @return the number of groups.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    public int getKeyCount() {
+
+        return keyCount;
+    }
+
+    public int getValueCount() {
+
+        return valueCount;
+    }
+
+    public Object getKey(int group, int position) {
+
+        return keys[group * keyCount + position];
+    }
+
+    /**
+     * @return the number of events counted for the group.
+     */
+    public long getCount(int group) {
+
+        return counts[group];
+    }
+
+    /**
+     * @return the number of numeric values of the column, counted for the group.
+     */
+    public long getValueCount(int group, int column) {
+
+        return valueCounts[group * valueCount + column];
+    }
+
+    /**
+     * @return true if all the values of the column counted for the group were integral, in which case getLongSum()
+     * is the exact sum.
+     */
+    public boolean isIntegral(int group, int column) {
+
+        return !fractional[group * valueCount + column];
+    }
+
+    public long getLongSum(int group, int column) {
+
+        return longSums[group * valueCount + column];
+    }
+
+    public double getSum(int group, int column) {
+
+        int cell = group * valueCount + column;
+
+        return longSums[cell] + doubleSums[cell];
+    }
+
+    /**
+     * @return the minimum, or NaN if no value was counted.
+     */
+    public double getMin(int group, int column) {
+
+        int cell = group * valueCount + column;
+
+        return valueCounts[cell] == 0 ? Double.NaN : mins[cell];
+    }
+
+    /**
+     * @return the maximum, or NaN if no value was counted.
+     */
+    public double getMax(int group, int column) {
+
+        int cell = group * valueCount + column;
+
+        return valueCounts[cell] == 0 ? Double.NaN : maxs[cell];
+    }
+
+    @Override
+    public String toString() {
+
+        return "GroupTable[" + keyCount + " keys, " + valueCount + " values, " + size + " groups]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * The Object.hashCode()s of the key values, combined and finished with the MurmurHash3 64-bit finalizer, so all
+     * bits avalanche. String hash codes are cached, so hashing an interned key does not touch its characters.
+     */
+    static long hash(Object[] key, int length) {
+
+        long h = 1L;
+
+        for(int i = 0; i < length; i ++) {
+
+            Object o = key[i];
+
+            h = 31L * h + (o == null ? 0 : o.hashCode());
+        }
+
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+
+        return h;
+    }
+
+    int getIndexCapacity() {
+
+        return slots.length;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private boolean keyEquals(int group, Object[] key) {
+
+        int offset = group * keyCount;
+
+        for(int i = 0; i < keyCount; i ++) {
+
+            Object o = keys[offset + i];
+            Object o2 = key[i];
+
+            if (o == null ? o2 != null : !o.equals(o2)) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int newGroup(Object[] key) {
+
+        int group = size;
+
+        if (group == counts.length) {
+
+            int capacity = counts.length * 2;
+
+            keys = Arrays.copyOf(keys, capacity * keyCount);
+            counts = Arrays.copyOf(counts, capacity);
+
+            int cells = capacity * valueCount;
+
+            valueCounts = Arrays.copyOf(valueCounts, cells);
+            longSums = Arrays.copyOf(longSums, cells);
+            doubleSums = Arrays.copyOf(doubleSums, cells);
+            fractional = Arrays.copyOf(fractional, cells);
+            mins = Arrays.copyOf(mins, cells);
+            maxs = Arrays.copyOf(maxs, cells);
+        }
+
+        System.arraycopy(key, 0, keys, group * keyCount, keyCount);
+
+        size ++;
+
+        return group;
+    }
+
+    private void update(int cell, double value) {
+
+        if (valueCounts[cell] ++ == 0) {
+
+            mins[cell] = value;
+            maxs[cell] = value;
+            return;
+        }
+
+        if (value < mins[cell]) {
+
+            mins[cell] = value;
+        }
+
+        if (value > maxs[cell]) {
+
+            maxs[cell] = value;
+        }
+    }
+
+    private void rehash(int length) {
+
+        long[] oldHashes = hashes;
+        int[] oldSlots = slots;
+
+        hashes = new long[length];
+        slots = new int[length];
+
+        int mask = length - 1;
+
+        for(int j = 0; j < oldSlots.length; j ++) {
+
+            if (oldSlots[j] == 0) {
+
+                continue;
+            }
+
+            int i = (int)oldHashes[j] & mask;
+
+            while(slots[i] != 0) {
+
+                i = (i + 1) & mask;
+            }
+
+            slots[i] = oldSlots[j];
+            hashes[i] = oldHashes[j];
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A latency histogram with buckets bounded by powers of two nanoseconds: bucket 0 counts zero latencies, bucket b > 0
+ * counts the latencies in the [2^(b-1), 2^b) ns interval. The memory footprint is constant and recording is a few
+ * array updates, with no allocation. Percentiles are reported as the upper bound of the bucket that contains them, so
+ * they are accurate within a factor of two.
+ *
+ * The histogram has a single writer: record() must not be invoked concurrently. Any number of threads may read it
+ * while it is written; the values they read are not necessarily consistent with each other.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class LatencyHistogram {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int BUCKET_COUNT = 64;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the index of the bucket the latency belongs to. Negative values are counted as zero.
+     */
+    public static int bucket(long nanos) {
+
+        return nanos <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(nanos);
+    }
+
+    /**
+     * @return the exclusive upper bound, in nanoseconds, of the given bucket. The upper bound of the last bucket is
+     * Long.MAX_VALUE.
+     */
+    public static long upperBound(int bucket) {
+
+        if (bucket == 0) {
+
+            return 1L;
+        }
+
+        return bucket >= BUCKET_COUNT - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final AtomicLongArray buckets;
+
+    private final AtomicLong count;
+
+    private final AtomicLong sum;
+
+    private final AtomicLong max;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public LatencyHistogram() {
+
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new AtomicLong(0L);
+        this.sum = new AtomicLong(0L);
+        this.max = new AtomicLong(0L);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Records the same latency for a number of events. Single writer.
+     *
+     * @param nanos the latency, in nanoseconds.
+     * @param events the number of events that had this latency.
+     */
+    public void record(long nanos, long events) {
+
+        if (nanos < 0) {
+
+            nanos = 0;
+        }
+
+        //
+        // single writer, so we can get away with ordered writes instead of atomic updates
+        //
+
+        int b = bucket(nanos);
+
+        buckets.lazySet(b, buckets.get(b) + events);
+        count.lazySet(count.get() + events);
+        sum.lazySet(sum.get() + nanos * events);
+
+        if (nanos > max.get()) {
+
+            max.lazySet(nanos);
+        }
+    }
+
+    /**
+     * Adds the content of the given histogram to this histogram. Must be invoked by the writer, or on a histogram that
+     * is not written anymore.
+     */
+    public void add(LatencyHistogram other) {
+
+        for(int b = 0; b < BUCKET_COUNT; b ++) {
+
+            buckets.lazySet(b, buckets.get(b) + other.buckets.get(b));
+        }
+
+        count.lazySet(count.get() + other.count.get());
+        sum.lazySet(sum.get() + other.sum.get());
+
+        if (other.max.get() > max.get()) {
+
+            max.lazySet(other.max.get());
+        }
+    }
+
+    /**
+     * @return the number of recorded events.
+     */
+    public long getCount() {
+
+        return count.get();
+    }
+
+    /**
+     * @return the sum of the recorded latencies, in nanoseconds.
+     */
+    public long getSum() {
+
+        return sum.get();
+    }
+
+    /**
+     * @return the largest recorded latency, in nanoseconds.
+     */
+    public long getMax() {
+
+        return max.get();
+    }
+
+    /**
+     * @return the mean latency, in nanoseconds, or 0 if nothing was recorded.
+     */
+    public double getMean() {
+
+        long c = count.get();
+
+        return c == 0 ? 0d : (double)sum.get() / c;
+    }
+
+    public long getBucketCount(int bucket) {
+
+        return buckets.get(bucket);
+    }
+
+    /**
+     * @param percentile a value between 0 and 100.
+     *
+     * @return the upper bound, in nanoseconds, of the bucket that contains the given percentile, capped to the largest
+     * recorded latency, or 0 if nothing was recorded.
+     *
+     * @exception IllegalArgumentException if the percentile is out of range.
+     */
+    public long getPercentile(double percentile) {
+
+        if (percentile < 0d || percentile > 100d) {
+
+            throw new IllegalArgumentException("invalid percentile: " + percentile);
+        }
+
+        long total = 0;
+
+        long[] counts = new long[BUCKET_COUNT];
+
+        for(int b = 0; b < BUCKET_COUNT; b ++) {
+
+            counts[b] = buckets.get(b);
+            total += counts[b];
+        }
+
+        if (total == 0) {
+
+            return 0L;
+        }
+
+        long rank = (long)Math.ceil(total * percentile / 100d);
+
+        if (rank == 0) {
+
+            rank = 1;
+        }
+
+        long seen = 0;
+
+        for(int b = 0; b < BUCKET_COUNT; b ++) {
+
+            seen += counts[b];
+
+            if (seen >= rank) {
+
+                return b == 0 ? 0L : Math.min(upperBound(b), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    @Override
+    public String toString() {
+
+        return "LatencyHistogram[count=" + getCount() + ", mean=" + (long)getMean() + " ns, max=" + getMax() + " ns]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,543 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.processing.ProcedureBase;
+
+/**
+ * Collects the metrics of the procedures registered with it, and publishes them as JMX MBeans (one per procedure,
+ * under the "io.novaordis.events.processing" domain) and, optionally, as a Prometheus text exposition file that is
+ * periodically rewritten on local disk. The file is written next to its final location and then moved in place, so a
+ * node exporter's textfile collector never reads a partial file.
+ *
+ * The registry built from system properties is shared, and DefaultProcedureFactory registers the procedures it builds
+ * with it:
+ *
+ * -Devents.processing.metrics=true - enables the registry, with JMX publishing.
+ *
+ * -Devents.processing.metrics.file=<path> - also rewrites the Prometheus text file at the given path. Implies the
+ * registry is enabled.
+ *
+ * -Devents.processing.metrics.period=<ms> - the file rewrite period. Default 10 seconds.
+ *
+ * The instance is thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class MetricsRegistry {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    public static final String ENABLED_PROPERTY = "events.processing.metrics";
+    public static final String FILE_PROPERTY = "events.processing.metrics.file";
+    public static final String PERIOD_PROPERTY = "events.processing.metrics.period";
+
+    public static final long DEFAULT_PERIOD_MS = 10000L;
+
+    public static final String JMX_DOMAIN = "io.novaordis.events.processing";
+
+    private static final String PREFIX = "events_procedure_";
+
+    // ConcurrentHashMap does not accept null values; marks the metrics not published over JMX
+    private static final ObjectName NO_NAME = ObjectName.WILDCARD;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    private static MetricsRegistry fromSystemProperties;
+    private static boolean systemPropertiesChecked;
+
+    /**
+     * @return the shared registry configured from system properties, or null if metrics are not enabled.
+     */
+    public static synchronized MetricsRegistry fromSystemProperties() {
+
+        if (systemPropertiesChecked) {
+
+            return fromSystemProperties;
+        }
+
+        systemPropertiesChecked = true;
+
+        String file = System.getProperty(FILE_PROPERTY);
+
+        if (file == null && !Boolean.getBoolean(ENABLED_PROPERTY)) {
+
+            return null;
+        }
+
+        fromSystemProperties = new MetricsRegistry(true);
+
+        if (file != null) {
+
+            long period = DEFAULT_PERIOD_MS;
+
+            String s = System.getProperty(PERIOD_PROPERTY);
+
+            if (s != null) {
+
+                try {
+
+                    period = Long.parseLong(s);
+                }
+                catch(NumberFormatException e) {
+
+                    log.warn("invalid " + PERIOD_PROPERTY + " value \"" + s + "\", using " + period + " ms");
+                }
+            }
+
+            try {
+
+                fromSystemProperties.startExporter(new File(file), period);
+            }
+            catch(IllegalArgumentException e) {
+
+                log.warn("metrics file not exported: " + e.getMessage());
+            }
+        }
+
+        return fromSystemProperties;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final boolean jmx;
+
+    private final Map<ProcedureMetrics, ObjectName> metrics;
+
+    private ScheduledExecutorService exporter;
+
+    private File file;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @param jmx whether to register the procedure metrics as MBeans with the platform MBean server.
+     */
+    public MetricsRegistry(boolean jmx) {
+
+        this.jmx = jmx;
+        this.metrics = new ConcurrentHashMap<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Enables the procedure's metrics and starts publishing them. Registering the same procedure twice has no effect.
+     *
+     * @return the procedure's metrics.
+     */
+    public ProcedureMetrics register(ProcedureBase procedure) {
+
+        if (procedure == null) {
+
+            throw new IllegalArgumentException("null procedure");
+        }
+
+        ProcedureMetrics m = procedure.enableMetrics();
+
+        if (metrics.containsKey(m)) {
+
+            return m;
+        }
+
+        ObjectName name = null;
+
+        if (jmx) {
+
+            try {
+
+                name = new ObjectName(JMX_DOMAIN + ":type=Procedure,name=" + ObjectName.quote(m.getProcedure()));
+
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+                if (!server.isRegistered(name)) {
+
+                    server.registerMBean(m, name);
+                }
+            }
+            catch(JMException e) {
+
+                String msg = "failed to register " + m + " with the MBean server";
+                log.warn(msg);
+                log.debug(msg, e);
+                name = null;
+            }
+        }
+
+        metrics.put(m, name == null ? NO_NAME : name);
+
+        return m;
+    }
+
+    /**
+     * Stops publishing the procedure's metrics. The procedure keeps collecting them.
+     */
+    public void unregister(ProcedureBase procedure) {
+
+        ProcedureMetrics m = procedure == null ? null : procedure.getMetrics();
+
+        if (m == null) {
+
+            return;
+        }
+
+        ObjectName name = metrics.remove(m);
+
+        if (name != null && name != NO_NAME) {
+
+            try {
+
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            }
+            catch(JMException e) {
+
+                String msg = "failed to unregister " + name;
+                log.warn(msg);
+                log.debug(msg, e);
+            }
+        }
+    }
+
+    /**
+     * @return the metrics of the registered procedures, sorted by procedure.
+     */
+    public List<ProcedureMetrics> getMetrics() {
+
+        List<ProcedureMetrics> result = new ArrayList<>(metrics.keySet());
+
+        result.sort(new Comparator<ProcedureMetrics>() {
+
+            @Override
+            public int compare(ProcedureMetrics a, ProcedureMetrics b) {
+
+                return a.getProcedure().compareTo(b.getProcedure());
+            }
+        });
+
+        return result;
+    }
+
+    /**
+     * @return the JMX name of the procedure's metrics MBean, or null if the metrics are not published over JMX.
+     */
+    public ObjectName getObjectName(ProcedureMetrics m) {
+
+        ObjectName name = metrics.get(m);
+
+        return name == NO_NAME ? null : name;
+    }
+
+    /**
+     * Writes the metrics of all registered procedures in the Prometheus text exposition format.
+     */
+    public void writeText(Writer w) throws IOException {
+
+        List<ProcedureMetrics> all = getMetrics();
+
+        header(w, "events_total", "counter", "Events processed.");
+
+        for(ProcedureMetrics m: all) {
+
+            sample(w, "events_total", m, null, m.getEventCount());
+        }
+
+        header(w, "events_per_second", "gauge", "Event processing rate.");
+
+        for(ProcedureMetrics m: all) {
+
+            sample(w, "events_per_second", m, null, m.getEventsPerSecond());
+        }
+
+        header(w, "exceptions_total", "counter", "Exceptions thrown while processing events.");
+
+        for(ProcedureMetrics m: all) {
+
+            sample(w, "exceptions_total", m, null, m.getExceptionCount());
+        }
+
+        header(w, "output_bytes_total", "counter", "Bytes written to the output.");
+
+        for(ProcedureMetrics m: all) {
+
+            if (m.hasOutputCounters()) {
+
+                sample(w, "output_bytes_total", m, null, m.getBytesWritten());
+            }
+        }
+
+        header(w, "output_blocked_seconds_total", "counter", "Time the processing thread was blocked on output.");
+
+        for(ProcedureMetrics m: all) {
+
+            if (m.hasOutputCounters()) {
+
+                sample(w, "output_blocked_seconds_total", m, null, m.getOutputBlockedNanos() / 1e9d);
+            }
+        }
+
+        header(w, "latency_seconds", "histogram", "Per-event process() latency, sampled, since start.");
+
+        for(ProcedureMetrics m: all) {
+
+            histogram(w, "latency_seconds", m, m.getCumulativeLatency());
+        }
+
+        header(w, "recent_latency_seconds", "histogram", "Per-event process() latency, sampled, recent window.");
+
+        for(ProcedureMetrics m: all) {
+
+            histogram(w, "recent_latency_seconds", m, m.getRecentLatency());
+        }
+    }
+
+    /**
+     * Rewrites the Prometheus text file: the content is written to a temporary file in the same directory, which is
+     * then moved in place.
+     */
+    public void writeText(File f) throws IOException {
+
+        Path target = f.toPath().toAbsolutePath();
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try(Writer w = new OutputStreamWriter(Files.newOutputStream(tmp), StandardCharsets.UTF_8)) {
+
+            writeText(w);
+        }
+
+        try {
+
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch(AtomicMoveNotSupportedException e) {
+
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Starts rewriting the Prometheus text file periodically, on a daemon thread. The file is also rewritten when
+     * stop() is invoked, so it reflects the final values.
+     *
+     * @exception IllegalArgumentException on null file or invalid period.
+     * @exception IllegalStateException if the exporter is already started.
+     */
+    public synchronized void startExporter(File f, long periodMs) {
+
+        if (f == null) {
+
+            throw new IllegalArgumentException("null file");
+        }
+
+        if (periodMs <= 0) {
+
+            throw new IllegalArgumentException("invalid period: " + periodMs);
+        }
+
+        if (exporter != null) {
+
+            throw new IllegalStateException(this + " exporter already started");
+        }
+
+        this.file = f;
+
+        exporter = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+
+                Thread t = new Thread(r, "metrics-exporter");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        Runnable export = new Runnable() {
+
+            @Override
+            public void run() {
+
+                export();
+            }
+        };
+
+        exporter.scheduleAtFixedRate(export, periodMs, periodMs, TimeUnit.MILLISECONDS);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(export, "metrics-exporter-shutdown"));
+    }
+
+    /**
+     * Stops the exporter, if started, after rewriting the file one last time. Does not unregister the MBeans.
+     */
+    public void stop() {
+
+        ScheduledExecutorService e;
+
+        synchronized (this) {
+
+            e = exporter;
+            exporter = null;
+        }
+
+        if (e == null) {
+
+            return;
+        }
+
+        e.shutdownNow();
+
+        try {
+
+            e.awaitTermination(1L, TimeUnit.SECONDS);
+        }
+        catch(InterruptedException ie) {
+
+            Thread.currentThread().interrupt();
+        }
+
+        export();
+    }
+
+    /**
+     * @return the exported file, or null if the exporter was never started.
+     */
+    public synchronized File getFile() {
+
+        return file;
+    }
+
+    @Override
+    public String toString() {
+
+        return "MetricsRegistry[" + metrics.size() + " procedures]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void export() {
+
+        File f = getFile();
+
+        if (f == null) {
+
+            return;
+        }
+
+        try {
+
+            writeText(f);
+        }
+        catch(IOException e) {
+
+            String msg = "failed to write metrics to " + f;
+            log.warn(msg);
+            log.debug(msg, e);
+        }
+    }
+
+    private static void header(Writer w, String metric, String type, String help) throws IOException {
+
+        w.write("# HELP " + PREFIX + metric + " " + help + "\n");
+        w.write("# TYPE " + PREFIX + metric + " " + type + "\n");
+    }
+
+    private static void sample(Writer w, String metric, ProcedureMetrics m, String extraLabel, Object value)
+            throws IOException {
+
+        w.write(PREFIX);
+        w.write(metric);
+        w.write("{procedure=\"");
+        w.write(escape(m.getLabel()));
+        w.write("\",id=\"");
+        w.write(m.getId());
+        w.write('"');
+
+        if (extraLabel != null) {
+
+            w.write(',');
+            w.write(extraLabel);
+        }
+
+        w.write("} ");
+        w.write(String.valueOf(value));
+        w.write('\n');
+    }
+
+    private static void histogram(Writer w, String metric, ProcedureMetrics m, LatencyHistogram h) throws IOException {
+
+        //
+        // the empty buckets above the largest recorded latency are not worth a line each
+        //
+
+        int last = LatencyHistogram.bucket(h.getMax());
+
+        long cumulative = 0;
+
+        for(int b = 0; b <= last && b < LatencyHistogram.BUCKET_COUNT - 1; b ++) {
+
+            cumulative += h.getBucketCount(b);
+
+            sample(w, metric + "_bucket", m, "le=\"" + LatencyHistogram.upperBound(b) / 1e9d + "\"", cumulative);
+        }
+
+        sample(w, metric + "_bucket", m, "le=\"+Inf\"", h.getCount());
+        sample(w, metric + "_sum", m, null, h.getSum() / 1e9d);
+        sample(w, metric + "_count", m, null, h.getCount());
+    }
+
+    private static String escape(String s) {
+
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
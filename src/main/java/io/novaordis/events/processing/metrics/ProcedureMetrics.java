@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import io.novaordis.events.processing.Procedure;
+
+/**
+ * The live metrics of a procedure: event count and rate, per-event process() latency, cumulative and over a recent
+ * window, exception count and, for procedures that write output, bytes written and the time the processing thread was
+ * blocked on output.
+ *
+ * Timing every event would cost more than the processing of a cheap procedure, so the per-event path only times one
+ * in every samplingInterval events. A batch is always timed, and each of its events is recorded with the batch's mean
+ * latency. The latency histograms count the timed events, the event count and rate count all events.
+ *
+ * The instance is written by the thread that processes events (there must be only one at a time) and can be read by
+ * any thread, including JMX and the exporter threads.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureMetrics implements ProcedureMetricsMBean {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_SAMPLING_INTERVAL = 256;
+
+    public static final long DEFAULT_RECENT_WINDOW_MS = 60000L;
+
+    // the minimum interval between two event rate measurements
+    private static final long RATE_INTERVAL_NS = TimeUnit.SECONDS.toNanos(1L);
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Procedure procedure;
+
+    private final String label;
+
+    private final String id;
+
+    private final int samplingMask;
+
+    private final long recentWindowNanos;
+
+    private final LatencyHistogram cumulative;
+
+    //
+    // the recent latency is recorded in the current window; the previous window is kept so the recent view always
+    // covers at least a full window
+    //
+
+    private volatile LatencyHistogram current;
+    private volatile LatencyHistogram previous;
+    private volatile long windowStart;
+
+    // written by the processing thread only
+    private long sampleCounter;
+
+    private final AtomicLong exceptions;
+
+    private volatile LongSupplier bytesWritten;
+    private volatile LongSupplier outputBlockedNanos;
+
+    // rate measurement state, guarded by this
+    private long rateTimestamp;
+    private long rateEventCount;
+    private double rate;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcedureMetrics(Procedure procedure) {
+
+        this(procedure, DEFAULT_SAMPLING_INTERVAL, DEFAULT_RECENT_WINDOW_MS);
+    }
+
+    /**
+     * @param samplingInterval one in samplingInterval events processed individually is timed. Must be a power of two.
+     * @param recentWindowMs the length of the recent latency window.
+     *
+     * @exception IllegalArgumentException on null procedure, or invalid interval values.
+     */
+    public ProcedureMetrics(Procedure procedure, int samplingInterval, long recentWindowMs) {
+
+        if (procedure == null) {
+
+            throw new IllegalArgumentException("null procedure");
+        }
+
+        if (samplingInterval <= 0 || Integer.bitCount(samplingInterval) != 1) {
+
+            throw new IllegalArgumentException("invalid sampling interval: " + samplingInterval);
+        }
+
+        if (recentWindowMs <= 0) {
+
+            throw new IllegalArgumentException("invalid recent window: " + recentWindowMs);
+        }
+
+        this.procedure = procedure;
+        this.label = label(procedure);
+        this.id = Integer.toHexString(System.identityHashCode(procedure));
+        this.samplingMask = samplingInterval - 1;
+        this.recentWindowNanos = TimeUnit.MILLISECONDS.toNanos(recentWindowMs);
+        this.cumulative = new LatencyHistogram();
+        this.current = new LatencyHistogram();
+        this.previous = new LatencyHistogram();
+        this.windowStart = System.nanoTime();
+        this.exceptions = new AtomicLong(0L);
+        this.rateTimestamp = windowStart;
+    }
+
+    // ProcedureMetricsMBean implementation ----------------------------------------------------------------------------
+
+    /**
+     * @return the procedure's first command line label, followed by its identity hash code, which tells apart several
+     * instances of the same procedure.
+     */
+    @Override
+    public String getProcedure() {
+
+        return label + "-" + id;
+    }
+
+    @Override
+    public long getEventCount() {
+
+        return procedure.getInvocationCount();
+    }
+
+    /**
+     * @return the event rate measured since the previous measurement, which is taken at most once a second. The
+     * first measurement covers the interval since the instance was created.
+     */
+    @Override
+    public synchronized double getEventsPerSecond() {
+
+        long now = System.nanoTime();
+        long elapsed = now - rateTimestamp;
+
+        if (elapsed >= RATE_INTERVAL_NS || rateEventCount == 0) {
+
+            long events = procedure.getInvocationCount();
+
+            if (elapsed > 0) {
+
+                rate = (events - rateEventCount) * 1e9d / elapsed;
+            }
+
+            rateTimestamp = now;
+            rateEventCount = events;
+        }
+
+        return rate;
+    }
+
+    @Override
+    public long getExceptionCount() {
+
+        return exceptions.get();
+    }
+
+    @Override
+    public long getBytesWritten() {
+
+        LongSupplier s = bytesWritten;
+
+        return s == null ? 0L : s.getAsLong();
+    }
+
+    @Override
+    public long getOutputBlockedNanos() {
+
+        LongSupplier s = outputBlockedNanos;
+
+        return s == null ? 0L : s.getAsLong();
+    }
+
+    @Override
+    public long getLatencySampleCount() {
+
+        return cumulative.getCount();
+    }
+
+    @Override
+    public double getLatencyMeanNanos() {
+
+        return cumulative.getMean();
+    }
+
+    @Override
+    public long getLatencyP50Nanos() {
+
+        return cumulative.getPercentile(50d);
+    }
+
+    @Override
+    public long getLatencyP99Nanos() {
+
+        return cumulative.getPercentile(99d);
+    }
+
+    @Override
+    public long getLatencyMaxNanos() {
+
+        return cumulative.getMax();
+    }
+
+    @Override
+    public double getRecentLatencyMeanNanos() {
+
+        return getRecentLatency().getMean();
+    }
+
+    @Override
+    public long getRecentLatencyP50Nanos() {
+
+        return getRecentLatency().getPercentile(50d);
+    }
+
+    @Override
+    public long getRecentLatencyP99Nanos() {
+
+        return getRecentLatency().getPercentile(99d);
+    }
+
+    @Override
+    public long getRecentLatencyMaxNanos() {
+
+        return getRecentLatency().getMax();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Processing thread API. Invoked for each event processed individually.
+     *
+     * @return true if the event should be timed.
+     */
+    public boolean sample() {
+
+        return (sampleCounter ++ & samplingMask) == 0;
+    }
+
+    /**
+     * Processing thread API.
+     *
+     * @param start the System.nanoTime() value taken before processing.
+     * @param end the System.nanoTime() value taken after processing.
+     * @param events the number of events processed in the interval.
+     */
+    public void record(long start, long end, int events) {
+
+        if (events <= 0) {
+
+            return;
+        }
+
+        long perEvent = (end - start) / events;
+
+        if (end - windowStart >= recentWindowNanos) {
+
+            previous = current;
+            current = new LatencyHistogram();
+            windowStart = end;
+        }
+
+        cumulative.record(perEvent, events);
+        current.record(perEvent, events);
+    }
+
+    /**
+     * Processing thread API. Counts an exception thrown by the procedure.
+     */
+    public void exception() {
+
+        exceptions.incrementAndGet();
+    }
+
+    /**
+     * Installs the sources of the output metrics, for procedures that write output.
+     *
+     * @param bytesWritten the number of bytes written so far.
+     * @param outputBlockedNanos the time, in nanoseconds, the processing thread was blocked on output so far.
+     */
+    public void setOutputCounters(LongSupplier bytesWritten, LongSupplier outputBlockedNanos) {
+
+        this.bytesWritten = bytesWritten;
+        this.outputBlockedNanos = outputBlockedNanos;
+    }
+
+    /**
+     * @return true if the output counters were installed.
+     */
+    public boolean hasOutputCounters() {
+
+        return bytesWritten != null;
+    }
+
+    /**
+     * @return the per-event latency since the instance was created. The instance is live, not a copy.
+     */
+    public LatencyHistogram getCumulativeLatency() {
+
+        return cumulative;
+    }
+
+    /**
+     * @return a copy of the per-event latency recorded during the last one or two recent windows.
+     */
+    public LatencyHistogram getRecentLatency() {
+
+        LatencyHistogram p = previous;
+        LatencyHistogram c = current;
+        long age = System.nanoTime() - windowStart;
+
+        LatencyHistogram result = new LatencyHistogram();
+
+        if (age < 2 * recentWindowNanos) {
+
+            result.add(c);
+
+            if (age < recentWindowNanos) {
+
+                result.add(p);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the procedure's first command line label, or its simple class name if it has no labels.
+     */
+    public String getLabel() {
+
+        return label;
+    }
+
+    /**
+     * @return the procedure's identity hash code, in hexadecimal.
+     */
+    public String getId() {
+
+        return id;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ProcedureMetrics[" + getProcedure() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static String label(Procedure procedure) {
+
+        List<String> labels = procedure.getCommandLineLabels();
+
+        return labels == null || labels.isEmpty() || labels.get(0) == null ?
+                procedure.getClass().getSimpleName() : labels.get(0);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
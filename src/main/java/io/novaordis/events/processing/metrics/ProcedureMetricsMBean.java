@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+/**
+ * The JMX view of a procedure's metrics. Latencies are in nanoseconds, and they are per event.
+ *
+ * @see ProcedureMetrics
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface ProcedureMetricsMBean {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    String getProcedure();
+
+    long getEventCount();
+
+    double getEventsPerSecond();
+
+    long getExceptionCount();
+
+    long getBytesWritten();
+
+    long getOutputBlockedNanos();
+
+    long getLatencySampleCount();
+
+    double getLatencyMeanNanos();
+
+    long getLatencyP50Nanos();
+
+    long getLatencyP99Nanos();
+
+    long getLatencyMaxNanos();
+
+    double getRecentLatencyMeanNanos();
+
+    long getRecentLatencyP50Nanos();
+
+    long getRecentLatencyP99Nanos();
+
+    long getRecentLatencyMaxNanos();
+
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and primitive encodings shared by BinaryOutputFormat and BinaryEventReader.
+ *
+ * A stream starts with the MAGIC bytes and the VERSION byte, followed by records. A record is:
+ *
+ *   flags (1 byte, FLAG_TIMESTAMP)
+ *   [zigzag varint: the timestamp, as a delta from the previous timestamp in the stream, initially 0]
+ *   varint: the number of fields
+ *   fields, each: string reference (the name), type (1 byte), value
+ *
+ * Values: TYPE_NULL, TYPE_TRUE and TYPE_FALSE have none; TYPE_LONG is a zigzag varint; TYPE_DOUBLE is 8 bytes, big
+ * endian; TYPE_STRING is a string reference.
+ *
+ * A string reference is a varint: LITERAL followed by a varint length and UTF-8 bytes; DEFINE followed by the same, and
+ * the string becomes the next dictionary entry; any other value n is the dictionary entry n - FIRST_ENTRY.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+final class BinaryCodec {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final byte[] MAGIC = { 'N', 'O', 'E', 'V' };
+
+    static final byte VERSION = 1;
+
+    static final int FLAG_TIMESTAMP = 0x01;
+
+    static final byte TYPE_NULL = 0;
+    static final byte TYPE_LONG = 1;
+    static final byte TYPE_DOUBLE = 2;
+    static final byte TYPE_STRING = 3;
+    static final byte TYPE_TRUE = 4;
+    static final byte TYPE_FALSE = 5;
+
+    static final int LITERAL = 0;
+    static final int DEFINE = 1;
+    static final int FIRST_ENTRY = 2;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static void putVarLong(ByteBuffer b, long v) {
+
+        while((v & ~0x7FL) != 0) {
+
+            b.put((byte)((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+
+        b.put((byte)v);
+    }
+
+    static void putZigZag(ByteBuffer b, long v) {
+
+        putVarLong(b, (v << 1) ^ (v >> 63));
+    }
+
+    /**
+     * @exception BufferUnderflowException if the buffer ends in the middle of the varint.
+     * @exception IllegalStateException on a malformed varint.
+     */
+    static long getVarLong(ByteBuffer b) {
+
+        long v = 0L;
+
+        for(int shift = 0; shift < 64; shift += 7) {
+
+            byte x = b.get();
+
+            v |= (long)(x & 0x7F) << shift;
+
+            if (x >= 0) {
+
+                return v;
+            }
+        }
+
+        throw new IllegalStateException("malformed varint");
+    }
+
+    static long getZigZag(ByteBuffer b) {
+
+        long v = getVarLong(b);
+
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static int getVarInt(ByteBuffer b) {
+
+        long v = getVarLong(b);
+
+        if (v < 0 || v > Integer.MAX_VALUE) {
+
+            throw new IllegalStateException("varint out of range: " + v);
+        }
+
+        return (int)v;
+    }
+
+    /**
+     * Writes the varint UTF-8 length of the string, followed by its UTF-8 bytes, without intermediate allocations.
+     */
+    static void putString(ByteBuffer b, String s) {
+
+        int length = s.length();
+        int utf8Length = 0;
+
+        for(int i = 0; i < length; i ++) {
+
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+
+                utf8Length ++;
+            }
+            else if (c < 0x800) {
+
+                utf8Length += 2;
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+
+                utf8Length += 4;
+                i ++;
+            }
+            else if (Character.isSurrogate(c)) {
+
+                utf8Length ++;
+            }
+            else {
+
+                utf8Length += 3;
+            }
+        }
+
+        putVarLong(b, utf8Length);
+
+        if (utf8Length == length) {
+
+            //
+            // ASCII
+            //
+
+            if (b.remaining() < length) {
+
+                throw new BufferOverflowException();
+            }
+
+            for(int i = 0; i < length; i ++) {
+
+                b.put((byte)s.charAt(i));
+            }
+
+            return;
+        }
+
+        for(int i = 0; i < length; i ++) {
+
+            char c = s.charAt(i);
+
+            if (c < 0x80) {
+
+                b.put((byte)c);
+            }
+            else if (c < 0x800) {
+
+                b.put((byte)(0xC0 | (c >> 6)));
+                b.put((byte)(0x80 | (c & 0x3F)));
+            }
+            else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+
+                int cp = Character.toCodePoint(c, s.charAt(++ i));
+
+                b.put((byte)(0xF0 | (cp >> 18)));
+                b.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                b.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                b.put((byte)(0x80 | (cp & 0x3F)));
+            }
+            else {
+
+                //
+                // unpaired surrogates are encoded as '?', the same as String.getBytes(UTF_8) does
+                //
+
+                if (Character.isSurrogate(c)) {
+
+                    b.put((byte)'?');
+                    continue;
+                }
+
+                b.put((byte)(0xE0 | (c >> 12)));
+                b.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+                b.put((byte)(0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /**
+     * @exception BufferUnderflowException if the buffer ends in the middle of the string.
+     */
+    static String getString(ByteBuffer b) {
+
+        int length = getVarInt(b);
+
+        if (b.remaining() < length) {
+
+            throw new BufferUnderflowException();
+        }
+
+        String s;
+
+        if (b.hasArray()) {
+
+            s = new String(b.array(), b.arrayOffset() + b.position(), length, StandardCharsets.UTF_8);
+            b.position(b.position() + length);
+        }
+        else {
+
+            byte[] bytes = new byte[length];
+            b.get(bytes);
+            s = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        return s;
+    }
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private BinaryCodec() {
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.novaordis.events.api.event.BooleanProperty;
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+
+/**
+ * Decodes the stream produced by BinaryOutputFormat back into events. Timestamped records become GenericTimedEvents,
+ * the others GenericEvents. Null values are not restored, the corresponding properties are omitted.
+ *
+ * The stream can be supplied in pieces: next() returns null if the buffer does not contain a complete record, and leaves
+ * the buffer positioned at the beginning of the incomplete record, so the caller can compact the buffer, read more
+ * bytes and retry.
+ *
+ * The instance is stateful and is meant to read a single stream.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class BinaryEventReader {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final List<String> dictionary;
+
+    private boolean preambleRead;
+
+    private long lastTimestamp;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public BinaryEventReader() {
+
+        this.dictionary = new ArrayList<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the next event, or null if the buffer does not contain a complete record.
+     *
+     * @exception IOException if the stream is not a valid binary event stream.
+     */
+    public Event next(ByteBuffer buffer) throws IOException {
+
+        if (buffer == null) {
+
+            throw new IllegalArgumentException("null buffer");
+        }
+
+        int position = buffer.position();
+        boolean preamble = preambleRead;
+        long timestamp = lastTimestamp;
+        int dictionarySize = dictionary.size();
+
+        try {
+
+            if (!preambleRead) {
+
+                readPreamble(buffer);
+                preambleRead = true;
+            }
+
+            if (!buffer.hasRemaining()) {
+
+                return null;
+            }
+
+            int flags = buffer.get();
+
+            GenericEvent e;
+
+            if ((flags & BinaryCodec.FLAG_TIMESTAMP) != 0) {
+
+                lastTimestamp += BinaryCodec.getZigZag(buffer);
+                e = new GenericTimedEvent(lastTimestamp);
+            }
+            else {
+
+                e = new GenericEvent();
+            }
+
+            int fieldCount = BinaryCodec.getVarInt(buffer);
+
+            for(int i = 0; i < fieldCount; i ++) {
+
+                readField(e, buffer);
+            }
+
+            return e;
+        }
+        catch(BufferUnderflowException ex) {
+
+            buffer.position(position);
+            preambleRead = preamble;
+            lastTimestamp = timestamp;
+
+            while(dictionary.size() > dictionarySize) {
+
+                dictionary.remove(dictionary.size() - 1);
+            }
+
+            return null;
+        }
+        catch(IllegalStateException ex) {
+
+            throw new IOException("invalid binary event stream: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * @return the number of dictionary entries read so far.
+     */
+    public int getDictionarySize() {
+
+        return dictionary.size();
+    }
+
+    @Override
+    public String toString() {
+
+        return "BinaryEventReader[" + Integer.toHexString(System.identityHashCode(this)) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void readPreamble(ByteBuffer buffer) throws IOException {
+
+        for(byte b: BinaryCodec.MAGIC) {
+
+            if (buffer.get() != b) {
+
+                throw new IOException("not a binary event stream");
+            }
+        }
+
+        byte version = buffer.get();
+
+        if (version != BinaryCodec.VERSION) {
+
+            throw new IOException("unsupported binary event stream version: " + version);
+        }
+    }
+
+    private void readField(GenericEvent e, ByteBuffer buffer) {
+
+        String name = readReference(buffer);
+
+        byte type = buffer.get();
+
+        switch (type) {
+
+            case BinaryCodec.TYPE_NULL:
+                break;
+            case BinaryCodec.TYPE_LONG:
+                e.setLongProperty(name, BinaryCodec.getZigZag(buffer));
+                break;
+            case BinaryCodec.TYPE_DOUBLE:
+                e.setProperty(new DoubleProperty(name, buffer.getDouble()));
+                break;
+            case BinaryCodec.TYPE_STRING:
+                e.setStringProperty(name, readReference(buffer));
+                break;
+            case BinaryCodec.TYPE_TRUE:
+                e.setProperty(new BooleanProperty(name, Boolean.TRUE));
+                break;
+            case BinaryCodec.TYPE_FALSE:
+                e.setProperty(new BooleanProperty(name, Boolean.FALSE));
+                break;
+            default:
+                throw new IllegalStateException("unknown value type " + type);
+        }
+    }
+
+    private String readReference(ByteBuffer buffer) {
+
+        int reference = BinaryCodec.getVarInt(buffer);
+
+        if (reference == BinaryCodec.LITERAL) {
+
+            return BinaryCodec.getString(buffer);
+        }
+
+        if (reference == BinaryCodec.DEFINE) {
+
+            String s = BinaryCodec.getString(buffer);
+            dictionary.add(s);
+            return s;
+        }
+
+        int entry = reference - BinaryCodec.FIRST_ENTRY;
+
+        if (entry >= dictionary.size()) {
+
+            throw new IllegalStateException("undefined dictionary entry " + entry);
+        }
+
+        return dictionary.get(entry);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
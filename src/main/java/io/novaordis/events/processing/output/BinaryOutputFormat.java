@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.text.DateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.TimedEvent;
+
+/**
+ * A compact binary record format, intended to be consumed by other programs, which can decode it with
+ * BinaryEventReader much faster than they could parse the equivalent comma-separated text.
+ *
+ * Timestamps are written as zigzag varint deltas from the previous timestamp. Integral values are written as zigzag
+ * varints, floating point values as 8-byte doubles, booleans as a type tag only. Property names and short string values
+ * are dictionary-encoded: the first occurrence carries the string and defines the dictionary entry, the following
+ * occurrences only carry the entry number. The stream starts with a magic number and a version, written before the
+ * first record. The layout is described in BinaryCodec.
+ *
+ * By default all properties of an event are written, except the timestamp property of timed events, which is written
+ * as the record timestamp. If property names or indices are added, only those properties are written, in the order they
+ * were added, and an event that carries none of them does not match the format.
+ *
+ * The instance is stateful and is meant to produce a single stream. The String-oriented OutputFormat methods produce
+ * the same stream, each record rendered as a line of hexadecimal digits, which is useful for inspection and for
+ * callers that can only handle text; BinaryEventReader decodes the bytes, not the hexadecimal rendering.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class BinaryOutputFormat implements OutputFormat, ByteOutputFormat {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    /**
+     * The first output format argument that selects this format: "-o binary [property ...]".
+     */
+    public static final String LABEL = "binary";
+
+    public static final int DEFAULT_DICTIONARY_CAPACITY = 64 * 1024;
+
+    /**
+     * String values longer than this are written literally, they are unlikely to repeat.
+     */
+    public static final int MAX_DICTIONARY_STRING_LENGTH = 64;
+
+    private static final int INITIAL_TEXT_BUFFER_SIZE = 1024;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int dictionaryCapacity;
+
+    private final Map<String, Integer> dictionary;
+
+    // the dictionary entries in definition order, so definitions can be rolled back
+    private final List<String> definitions;
+
+    private String[] names;
+
+    private int[] indices;
+
+    // the properties selected from the current event, reused
+    private Property[] selected;
+
+    private boolean preambleWritten;
+
+    private long lastTimestamp;
+
+    private DateFormat timestampFormat;
+
+    // the scratch buffer used by the String-oriented methods, allocated on first use
+    private ByteBuffer textBuffer;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public BinaryOutputFormat() {
+
+        this(DEFAULT_DICTIONARY_CAPACITY);
+    }
+
+    /**
+     * @exception IllegalArgumentException on negative capacity. 0 disables the dictionary.
+     */
+    public BinaryOutputFormat(int dictionaryCapacity) {
+
+        if (dictionaryCapacity < 0) {
+
+            throw new IllegalArgumentException("invalid dictionary capacity: " + dictionaryCapacity);
+        }
+
+        this.dictionaryCapacity = dictionaryCapacity;
+        this.dictionary = new HashMap<>();
+        this.definitions = new ArrayList<>();
+        this.names = new String[0];
+        this.indices = new int[0];
+        this.selected = new Property[0];
+        this.timestampFormat = DefaultOutputFormat.newDefaultTimestampFormat();
+    }
+
+    // ByteOutputFormat implementation ---------------------------------------------------------------------------------
+
+    /**
+     * The format carries its schema inline, there is no header.
+     */
+    @Override
+    public boolean formatHeader(Event e, ByteBuffer buffer) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (buffer == null) {
+
+            throw new IllegalArgumentException("null buffer");
+        }
+
+        return false;
+    }
+
+    @Override
+    public boolean format(Event e, ByteBuffer buffer) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (buffer == null) {
+
+            throw new IllegalArgumentException("null buffer");
+        }
+
+        int fieldCount = names.length == 0 ? -1 : select(e);
+
+        if (fieldCount == 0) {
+
+            return false;
+        }
+
+        int position = buffer.position();
+        boolean preamble = preambleWritten;
+        long timestamp = lastTimestamp;
+        int definitionCount = definitions.size();
+
+        try {
+
+            if (!preambleWritten) {
+
+                buffer.put(BinaryCodec.MAGIC);
+                buffer.put(BinaryCodec.VERSION);
+                preambleWritten = true;
+            }
+
+            Long time = e instanceof TimedEvent ? ((TimedEvent)e).getTime() : null;
+
+            if (time == null) {
+
+                buffer.put((byte)0);
+            }
+            else {
+
+                buffer.put((byte)BinaryCodec.FLAG_TIMESTAMP);
+                BinaryCodec.putZigZag(buffer, time - lastTimestamp);
+                lastTimestamp = time;
+            }
+
+            if (fieldCount < 0) {
+
+                writeAll(e, time != null, buffer);
+            }
+            else {
+
+                writeSelected(fieldCount, buffer);
+            }
+
+            return true;
+        }
+        catch(BufferOverflowException ex) {
+
+            //
+            // roll back, so the invocation can be retried
+            //
+
+            buffer.position(position);
+            preambleWritten = preamble;
+            lastTimestamp = timestamp;
+
+            for(int i = definitions.size() - 1; i >= definitionCount; i --) {
+
+                dictionary.remove(definitions.remove(i));
+            }
+
+            throw ex;
+        }
+    }
+
+    // OutputFormat implementation -------------------------------------------------------------------------------------
+
+    /**
+     * @return an empty string, the format carries its schema inline and has no header.
+     */
+    @Override
+    public String formatHeader(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        return "";
+    }
+
+    /**
+     * @return the binary record of the event, including the stream preamble for the first record, as a line of
+     * hexadecimal digits, or null if the event does not match the format.
+     */
+    @Override
+    public String format(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (textBuffer == null) {
+
+            textBuffer = ByteBuffer.allocate(INITIAL_TEXT_BUFFER_SIZE);
+        }
+
+        textBuffer.clear();
+
+        while(true) {
+
+            try {
+
+                if (!format(e, textBuffer)) {
+
+                    return null;
+                }
+
+                break;
+            }
+            catch(BufferOverflowException ex) {
+
+                //
+                // the format rolled back its state, retry with a larger buffer
+                //
+
+                textBuffer = ByteBuffer.allocate(textBuffer.capacity() * 2);
+            }
+        }
+
+        int length = textBuffer.position();
+
+        char[] hex = new char[2 * length + 1];
+
+        for(int i = 0; i < length; i ++) {
+
+            int b = textBuffer.get(i) & 0xff;
+
+            hex[2 * i] = HEX_DIGITS[b >>> 4];
+            hex[2 * i + 1] = HEX_DIGITS[b & 0x0f];
+        }
+
+        hex[2 * length] = '\n';
+
+        return new String(hex);
+    }
+
+    /**
+     * @return null, the binary format has no separator.
+     */
+    @Override
+    public String getSeparator() {
+
+        return null;
+    }
+
+    /**
+     * Not used for rendering, the timestamps are written as milliseconds.
+     */
+    @Override
+    public DateFormat getTimestampFormat() {
+
+        return timestampFormat;
+    }
+
+    @Override
+    public void setTimestampFormat(DateFormat df) {
+
+        this.timestampFormat = df;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @see OutputFormatImpl#addPropertyName(String)
+     */
+    public void addPropertyName(String name) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        compile(name, -1);
+    }
+
+    /**
+     * @see OutputFormatImpl#addPropertyIndex(int)
+     */
+    public void addPropertyIndex(int index) {
+
+        if (index < 0) {
+
+            throw new IllegalArgumentException("invalid property index: "  + index);
+        }
+
+        compile(null, index);
+    }
+
+    public int getDictionaryCapacity() {
+
+        return dictionaryCapacity;
+    }
+
+    /**
+     * @return the number of dictionary entries defined so far.
+     */
+    public int getDictionarySize() {
+
+        return definitions.size();
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder("BinaryOutputFormat[");
+
+        for(int i = 0; i < names.length; i ++) {
+
+            if (i > 0) {
+
+                sb.append(", ");
+            }
+
+            if (names[i] == null) {
+
+                sb.append("field[").append(indices[i]).append("]");
+            }
+            else {
+
+                sb.append('"').append(names[i]).append('"');
+            }
+        }
+
+        return sb.append("]").toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void compile(String name, int index) {
+
+        int n = names.length;
+
+        names = Arrays.copyOf(names, n + 1);
+        indices = Arrays.copyOf(indices, n + 1);
+
+        names[n] = name;
+        indices[n] = index;
+
+        selected = new Property[n + 1];
+    }
+
+    /**
+     * Looks up the selected properties of the event.
+     *
+     * @return the number of selected properties the event carries.
+     */
+    private int select(Event e) {
+
+        int count = 0;
+
+        for(int i = 0; i < names.length; i ++) {
+
+            Property p = names[i] != null ? e.getProperty(names[i]) : e.getProperty(indices[i]);
+
+            selected[i] = p;
+
+            if (p != null) {
+
+                count ++;
+            }
+        }
+
+        return count;
+    }
+
+    private void writeSelected(int fieldCount, ByteBuffer buffer) {
+
+        BinaryCodec.putVarLong(buffer, fieldCount);
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < selected.length; i ++) {
+
+            if (selected[i] != null) {
+
+                writeField(selected[i], buffer);
+            }
+        }
+    }
+
+    private void writeAll(Event e, boolean timed, ByteBuffer buffer) {
+
+        List<Property> properties = e.getProperties();
+
+        int fieldCount = properties.size();
+
+        if (timed) {
+
+            for(int i = 0; i < properties.size(); i ++) {
+
+                if (TimedEvent.TIME_PROPERTY_NAME.equals(properties.get(i).getName())) {
+
+                    fieldCount --;
+                }
+            }
+        }
+
+        BinaryCodec.putVarLong(buffer, fieldCount);
+
+        //noinspection ForLoopReplaceableByForEach
+        for(int i = 0; i < properties.size(); i ++) {
+
+            Property p = properties.get(i);
+
+            if (timed && TimedEvent.TIME_PROPERTY_NAME.equals(p.getName())) {
+
+                continue;
+            }
+
+            writeField(p, buffer);
+        }
+    }
+
+    private void writeField(Property p, ByteBuffer buffer) {
+
+        writeReference(p.getName(), true, buffer);
+
+        Object v = p.getValue();
+
+        if (v == null) {
+
+            buffer.put(BinaryCodec.TYPE_NULL);
+        }
+        else if (v instanceof Long || v instanceof Integer || v instanceof Short || v instanceof Byte) {
+
+            buffer.put(BinaryCodec.TYPE_LONG);
+            BinaryCodec.putZigZag(buffer, ((Number)v).longValue());
+        }
+        else if (v instanceof Double || v instanceof Float) {
+
+            buffer.put(BinaryCodec.TYPE_DOUBLE);
+            buffer.putDouble(((Number)v).doubleValue());
+        }
+        else if (v instanceof Boolean) {
+
+            buffer.put((Boolean)v ? BinaryCodec.TYPE_TRUE : BinaryCodec.TYPE_FALSE);
+        }
+        else {
+
+            String s = v.toString();
+
+            buffer.put(BinaryCodec.TYPE_STRING);
+            writeReference(s, s.length() <= MAX_DICTIONARY_STRING_LENGTH, buffer);
+        }
+    }
+
+    private void writeReference(String s, boolean cacheable, ByteBuffer buffer) {
+
+        if (cacheable) {
+
+            Integer entry = dictionary.get(s);
+
+            if (entry != null) {
+
+                BinaryCodec.putVarLong(buffer, entry + BinaryCodec.FIRST_ENTRY);
+                return;
+            }
+
+            if (definitions.size() < dictionaryCapacity) {
+
+                dictionary.put(s, definitions.size());
+                definitions.add(s);
+
+                BinaryCodec.putVarLong(buffer, BinaryCodec.DEFINE);
+                BinaryCodec.putString(buffer, s);
+                return;
+            }
+        }
+
+        BinaryCodec.putVarLong(buffer, BinaryCodec.LITERAL);
+        BinaryCodec.putString(buffer, s);
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * The byte-oriented sibling of OutputFormat: it writes the representation of events directly into a ByteBuffer, without
+ * going through Strings and charset encoding. When the "output" procedure is configured with an OutputFormat that also
+ * implements this interface, it uses the byte-oriented methods.
+ *
+ * Implementations may be stateful (for example, they may encode values relative to previous events), so the bytes
+ * produced for an event are only meaningful in the sequence they were produced in.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface ByteOutputFormat {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Writes the header that corresponds to the given event, if the format has one.
+     *
+     * @return false if the format does not write a header for the event, in which case nothing is written.
+     *
+     * @exception BufferOverflowException if the buffer does not have enough space. The buffer position and the state
+     * of the format are left unchanged, so the invocation can be retried with a larger, or a drained, buffer.
+     * @exception IllegalArgumentException if the event or the buffer is null.
+     */
+    boolean formatHeader(Event e, ByteBuffer buffer);
+
+    /**
+     * Writes the representation of the event, following the same rules as OutputFormat.format(Event).
+     *
+     * @return false if the event does not match the format, in which case nothing is written.
+     *
+     * @exception BufferOverflowException if the buffer does not have enough space. The buffer position and the state
+     * of the format are left unchanged, so the invocation can be retried with a larger, or a drained, buffer.
+     * @exception IllegalArgumentException if the event or the buffer is null.
+     */
+    boolean format(Event e, ByteBuffer buffer);
+
+}
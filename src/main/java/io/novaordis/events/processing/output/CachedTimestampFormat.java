@@ -0,0 +1,392 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing.output;
+
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.DateFormatSymbols;
+import java.text.FieldPosition;
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * A SimpleDateFormat that is safe under concurrent use, and that caches the rendering of the current second.
+ *
+ * Event streams are dense in time, so consecutive timestamps usually fall within the same second. The instance keeps
+ * the rendering of the last second seen, split around the millisecond field, and for a timestamp within that second
+ * it only renders the milliseconds. A pattern without a millisecond field caches the whole rendering. A pattern with
+ * more than one millisecond field is not cached, every timestamp is rendered by SimpleDateFormat.
+ *
+ * All methods that go to the underlying SimpleDateFormat state are serialized; the cache is an immutable snapshot read
+ * without locking. Methods that change the rendering (pattern, time zone, calendar, symbols) invalidate the cache.
+ * Changes applied directly to the instance returned by getCalendar() are not detected.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class CachedTimestampFormat extends SimpleDateFormat {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final long serialVersionUID = 1L;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // the number of 'S' characters in the pattern's only millisecond field, 0 if the pattern has no millisecond field,
+    // -1 if the pattern has more than one millisecond field and it cannot be cached
+    //
+
+    private volatile int millisecondDigits;
+
+    private volatile boolean eraField;
+
+    private transient volatile Second cached;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public CachedTimestampFormat(String pattern) {
+
+        super(pattern);
+
+        analyzePattern();
+    }
+
+    // SimpleDateFormat overrides --------------------------------------------------------------------------------------
+
+    @Override
+    public StringBuffer format(Date date, StringBuffer toAppendTo, FieldPosition pos) {
+
+        //
+        // the cache does not track field positions, so we only use it for the position DateFormat.format(Date) uses,
+        // and only if the pattern has no era field, which would have been reported
+        //
+
+        if (pos.getField() != DateFormat.ERA_FIELD || pos.getFieldAttribute() != null || eraField) {
+
+            synchronized (this) {
+
+                return super.format(date, toAppendTo, pos);
+            }
+        }
+
+        Second s = second(date.getTime());
+
+        if (s == null) {
+
+            synchronized (this) {
+
+                return super.format(date, toAppendTo, pos);
+            }
+        }
+
+        toAppendTo.append(s.prefix);
+        appendMilliseconds(Math.floorMod(date.getTime(), 1000L), s.millisecondDigits, toAppendTo);
+        toAppendTo.append(s.suffix);
+
+        return toAppendTo;
+    }
+
+    @Override
+    public synchronized Date parse(String text, ParsePosition pos) {
+
+        return super.parse(text, pos);
+    }
+
+    @Override
+    public synchronized void applyPattern(String pattern) {
+
+        super.applyPattern(pattern);
+
+        analyzePattern();
+    }
+
+    @Override
+    public synchronized void applyLocalizedPattern(String pattern) {
+
+        super.applyLocalizedPattern(pattern);
+
+        analyzePattern();
+    }
+
+    @Override
+    public synchronized void setTimeZone(TimeZone zone) {
+
+        super.setTimeZone(zone);
+
+        cached = null;
+    }
+
+    @Override
+    public synchronized void setCalendar(Calendar newCalendar) {
+
+        super.setCalendar(newCalendar);
+
+        cached = null;
+    }
+
+    @Override
+    public synchronized void setNumberFormat(NumberFormat newNumberFormat) {
+
+        super.setNumberFormat(newNumberFormat);
+
+        cached = null;
+    }
+
+    @Override
+    public synchronized void setDateFormatSymbols(DateFormatSymbols newFormatSymbols) {
+
+        super.setDateFormatSymbols(newFormatSymbols);
+
+        cached = null;
+    }
+
+    @Override
+    public synchronized void set2DigitYearStart(Date startDate) {
+
+        super.set2DigitYearStart(startDate);
+
+        cached = null;
+    }
+
+    @Override
+    public synchronized void setLenient(boolean lenient) {
+
+        super.setLenient(lenient);
+    }
+
+    @Override
+    public synchronized String toPattern() {
+
+        return super.toPattern();
+    }
+
+    @Override
+    public synchronized Object clone() {
+
+        return super.clone();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Appends the rendering of the timestamp to the given StringBuilder. For a timestamp within the cached second, this
+     * does not allocate.
+     */
+    public void format(long timestamp, StringBuilder sb) {
+
+        Second s = eraField ? null : second(timestamp);
+
+        if (s == null) {
+
+            StringBuffer buffer = new StringBuffer();
+
+            synchronized (this) {
+
+                super.format(new Date(timestamp), buffer, new FieldPosition(DateFormat.ERA_FIELD));
+            }
+
+            sb.append(buffer);
+            return;
+        }
+
+        sb.append(s.prefix);
+        appendMilliseconds(Math.floorMod(timestamp, 1000L), s.millisecondDigits, sb);
+        sb.append(s.suffix);
+    }
+
+    @Override
+    public String toString() {
+
+        return "CachedTimestampFormat[" + toPattern() + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the number of 'S' characters in the only millisecond field of the given pattern, 0 if the pattern has no
+     * millisecond field, -1 if the pattern has more than one millisecond field. Quoted text is skipped.
+     */
+    static int millisecondDigits(String pattern) {
+
+        int digits = 0;
+        int fields = 0;
+        boolean quoted = false;
+        char previous = 0;
+
+        for(int i = 0; i < pattern.length(); i ++) {
+
+            char c = pattern.charAt(i);
+
+            if (c == '\'') {
+
+                quoted = !quoted;
+            }
+            else if (!quoted && c == 'S') {
+
+                if (previous != 'S') {
+
+                    fields ++;
+                }
+
+                digits ++;
+            }
+
+            previous = quoted ? 0 : c;
+        }
+
+        return fields > 1 ? -1 : digits;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void analyzePattern() {
+
+        String pattern = super.toPattern();
+
+        millisecondDigits = millisecondDigits(pattern);
+        eraField = pattern.indexOf('G') != -1;
+
+        cached = null;
+    }
+
+    /**
+     * @return the cached rendering of the second the timestamp belongs to, rendering it if necessary, or null if the
+     * pattern cannot be cached.
+     */
+    private Second second(long timestamp) {
+
+        int digits = millisecondDigits;
+
+        if (digits < 0) {
+
+            return null;
+        }
+
+        long second = Math.floorDiv(timestamp, 1000L);
+
+        Second s = cached;
+
+        if (s != null && s.second == second) {
+
+            return s;
+        }
+
+        synchronized (this) {
+
+            digits = millisecondDigits;
+
+            if (digits < 0) {
+
+                return null;
+            }
+
+            s = cached;
+
+            if (s != null && s.second == second) {
+
+                return s;
+            }
+
+            StringBuffer rendering = new StringBuffer();
+            FieldPosition millis = new FieldPosition(DateFormat.MILLISECOND_FIELD);
+
+            super.format(new Date(second * 1000L), rendering, millis);
+
+            if (digits == 0) {
+
+                s = new Second(second, rendering.toString(), "", 0);
+            }
+            else {
+
+                s = new Second(second, rendering.substring(0, millis.getBeginIndex()),
+                        rendering.substring(millis.getEndIndex()), digits);
+            }
+
+            cached = s;
+
+            return s;
+        }
+    }
+
+    /**
+     * Zero-pads to the given number of digits, the same way SimpleDateFormat renders a millisecond field.
+     *
+     * @param a a StringBuilder or a StringBuffer, which do not throw IOException.
+     */
+    private static void appendMilliseconds(long millis, int digits, Appendable a) {
+
+        if (digits == 0) {
+
+            return;
+        }
+
+        try {
+
+            for(int i = digits; i > 3; i --) {
+
+                a.append('0');
+            }
+
+            if (digits >= 3 || millis >= 100) {
+
+                a.append((char)('0' + millis / 100));
+            }
+
+            if (digits >= 2 || millis >= 10) {
+
+                a.append((char)('0' + (millis / 10) % 10));
+            }
+
+            a.append((char)('0' + millis % 10));
+        }
+        catch(IOException e) {
+
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Immutable rendering of one second, split around the millisecond field.
+     */
+    private static final class Second {
+
+        private final long second;
+        private final String prefix;
+        private final String suffix;
+        private final int millisecondDigits;
+
+        private Second(long second, String prefix, String suffix, int millisecondDigits) {
+
+            this.second = second;
+            this.prefix = prefix;
+            this.suffix = suffix;
+            this.millisecondDigits = millisecondDigits;
+        }
+    }
+
+}
@@ -27,6 +27,10 @@ import io.novaordis.events.api.event.Event;
  * type, as reflected by its class. This is most likely useless in most of the cases, so Output users should replace
  * it with something more useful.
  *
+ * Not thread safe. formatHeader(Event) and format(Event) are meant to be invoked as a pair, for the same event and
+ * with no change to the event in between: formatHeader() keeps the event's preferred representation for the format()
+ * invocation that follows, which then discards it.
+ *
  * For the description of the sequence, see https://kb.novaordis.com/index.php/Events-processing_output#Overview.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -36,25 +40,62 @@ public class DefaultOutputFormat implements OutputFormat {
 
     // Constants -------------------------------------------------------------------------------------------------------
 
-    public static final SimpleDateFormat DEFAULT_TIMESTAMP_FORMAT = new SimpleDateFormat("MM/dd/yy HH:mm:ss.SSS");
+    /**
+     * The pattern of the timestamp format used by the formats that are not explicitly configured otherwise.
+     *
+     * @see DefaultOutputFormat#newDefaultTimestampFormat()
+     */
+    public static final String DEFAULT_TIMESTAMP_PATTERN = "MM/dd/yy HH:mm:ss.SSS";
+
+    /**
+     * Shared by all callers that reference it; safe under concurrent use, but configuring it affects all of them.
+     *
+     * @deprecated formats no longer share a timestamp format instance, use newDefaultTimestampFormat() instead.
+     */
+    @Deprecated
+    public static final SimpleDateFormat DEFAULT_TIMESTAMP_FORMAT =
+            new CachedTimestampFormat(DEFAULT_TIMESTAMP_PATTERN);
 
     public static final String DEFAULT_FIELD_SEPARATOR = ", ";
 
     // Static ----------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return a new timestamp format with the default pattern. Each caller gets its own instance, so configuring it
+     * does not affect other formats.
+     */
+    public static CachedTimestampFormat newDefaultTimestampFormat() {
+
+        return new CachedTimestampFormat(DEFAULT_TIMESTAMP_PATTERN);
+    }
+
     // Attributes ------------------------------------------------------------------------------------------------------
 
     private DateFormat timestampFormat;
 
+    //
+    // formatHeader() needs the preferred representation to decide what header to return, and Output invokes format()
+    // for the same event right after; the representation is kept for that invocation only, so it is not rendered
+    // twice. The event is recognized by identity, so it must not change between the two invocations
+    //
+
+    private Event rendered;
+
+    private String renderedPreferredRepresentation;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public DefaultOutputFormat() {
 
-        setTimestampFormat(DEFAULT_TIMESTAMP_FORMAT);
+        setTimestampFormat(newDefaultTimestampFormat());
     }
 
     // OutputFormat implementation -------------------------------------------------------------------------------------
 
+    /**
+     * Keeps the event's preferred representation for the format(Event) invocation that must follow, for the same
+     * event.
+     */
     @Override
     public String formatHeader(Event e) {
 
@@ -69,6 +110,9 @@ public class DefaultOutputFormat implements OutputFormat {
 
         String s = e.getPreferredRepresentation(DEFAULT_FIELD_SEPARATOR);
 
+        rendered = e;
+        renderedPreferredRepresentation = s;
+
         if (s != null) {
 
             return e.getPreferredRepresentationHeader(DEFAULT_FIELD_SEPARATOR);
@@ -91,6 +135,10 @@ public class DefaultOutputFormat implements OutputFormat {
         return "event type";
     }
 
+    /**
+     * Uses the preferred representation kept by the preceding formatHeader(Event) invocation, if it was made for the
+     * same event, and discards it in any case, so a later invocation renders the event again.
+     */
     @Override
     public String format(Event e) {
 
@@ -100,10 +148,22 @@ public class DefaultOutputFormat implements OutputFormat {
         }
 
         //
-        // start with preferred implementation
+        // start with preferred implementation, which may have been rendered already by formatHeader()
         //
 
-        String s = e.getPreferredRepresentation(DEFAULT_FIELD_SEPARATOR);
+        String s;
+
+        if (e == rendered) {
+
+            s = renderedPreferredRepresentation;
+        }
+        else {
+
+            s = e.getPreferredRepresentation(DEFAULT_FIELD_SEPARATOR);
+        }
+
+        rendered = null;
+        renderedPreferredRepresentation = null;
 
         if (s != null) {
 
@@ -23,6 +23,10 @@ import java.util.Iterator;
 import java.util.List;
 
 /**
+ * Builds a DefaultOutputFormat if there are no arguments, a BinaryOutputFormat if the first argument is
+ * BinaryOutputFormat.LABEL, and an OutputFormatImpl otherwise. The arguments other than the format label are
+ * interpreted as property indices, if they can be converted to ints, and as property names otherwise.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 8/1/17
  */
@@ -70,6 +74,32 @@ public class DefaultOutputFormatFactory implements OutputFormatFactory {
 
             result = new DefaultOutputFormat();
         }
+        else if (BinaryOutputFormat.LABEL.equals(mutableCommandLineArguments.get(0))) {
+
+            mutableCommandLineArguments.remove(0);
+
+            BinaryOutputFormat outputFormat = new BinaryOutputFormat();
+
+            for (Iterator<String> i = mutableCommandLineArguments.iterator(); i.hasNext(); ) {
+
+                String propertyIdentifier = i.next();
+
+                i.remove();
+
+                Integer propertyIndex = toPropertyIndex(propertyIdentifier);
+
+                if (propertyIndex != null) {
+
+                    outputFormat.addPropertyIndex(propertyIndex);
+                }
+                else {
+
+                    outputFormat.addPropertyName(propertyIdentifier);
+                }
+            }
+
+            result = outputFormat;
+        }
         else {
 
             //
@@ -126,6 +156,21 @@ public class DefaultOutputFormatFactory implements OutputFormatFactory {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * @return the property index, or null if the identifier cannot be converted to an int, so it is a property name.
+     */
+    private static Integer toPropertyIndex(String propertyIdentifier) {
+
+        try {
+
+            return Integer.parseInt(propertyIdentifier);
+        }
+        catch (NumberFormatException e) {
+
+            return null;
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+
+/**
+ * The shape of an event: its class, and the names of its properties, in order. Immutable.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+final class EventShape {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static EventShape of(Event e) {
+
+        List<Property> properties = e.getProperties();
+
+        String[] names = new String[properties.size()];
+
+        for(int i = 0; i < names.length; i ++) {
+
+            names[i] = properties.get(i).getName();
+        }
+
+        return new EventShape(e.getClass(), names);
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Class<?> type;
+
+    private final String[] names;
+
+    private final int hashCode;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private EventShape(Class<?> type, String[] names) {
+
+        this.type = type;
+        this.names = names;
+        this.hashCode = 31 * type.hashCode() + Arrays.hashCode(names);
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Compares the shape with the event's shape without building the event's shape.
+     */
+    boolean matches(Event e) {
+
+        if (e.getClass() != type) {
+
+            return false;
+        }
+
+        for(int i = 0; i < names.length; i ++) {
+
+            Property p = e.getProperty(i);
+
+            if (p == null || !names[i].equals(p.getName())) {
+
+                return false;
+            }
+        }
+
+        return e.getProperty(names.length) == null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+
+        if (this == o) {
+
+            return true;
+        }
+
+        if (!(o instanceof EventShape)) {
+
+            return false;
+        }
+
+        EventShape that = (EventShape)o;
+
+        return hashCode == that.hashCode && type == that.type && Arrays.equals(names, that.names);
+    }
+
+    @Override
+    public int hashCode() {
+
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+
+        return type.getSimpleName() + Arrays.toString(names);
+    }
+
+}
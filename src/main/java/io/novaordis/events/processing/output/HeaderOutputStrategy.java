@@ -45,4 +45,22 @@ public interface HeaderOutputStrategy {
      */
     void headerDisplayed(Event e);
 
+    /**
+     * Obtains the header for the event, after shouldDisplayHeader() returned true. The default implementation delegates
+     * to the format; strategies that know more about the stream may return cached headers.
+     *
+     * @return the header, or null if the format does not produce a header for the event.
+     *
+     * @exception IllegalArgumentException on null events or formats.
+     */
+    default String formatHeader(Event e, OutputFormat format) {
+
+        if (format == null) {
+
+            throw new IllegalArgumentException("null output format");
+        }
+
+        return format.formatHeader(e);
+    }
+
 }
@@ -16,7 +16,11 @@
 
 package io.novaordis.events.processing.output;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -38,6 +42,11 @@ import io.novaordis.utilities.appspec.ApplicationSpecificBehavior;
  * instance. The OutputFormat instance drives header logic generation, the Output procedure will displays whatever
  * the OutputFormat decides.
  *
+ * If the OutputFormat is also a ByteOutputFormat, the events are rendered directly into bytes, which are written to the
+ * output stream, bypassing the character writer. In interactive mode, the bytes are written after each invocation; in
+ * buffered mode, they accumulate until the buffer size is reached, flush() is invoked or the stream ends. A failure to
+ * write the bytes is never swallowed: process() throws EventProcessingException and flush() throws UncheckedIOException.
+ *
  * More details: https://kb.novaordis.com/index.php/Events-processing_output#Overview
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -53,6 +62,8 @@ public class Output extends TextOutputProcedure {
 
     private static final Logger log = LoggerFactory.getLogger(Output.class);
 
+    private static final int INITIAL_BYTE_BUFFER_SIZE = 8 * 1024;
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
@@ -63,6 +74,12 @@ public class Output extends TextOutputProcedure {
 
     private HeaderOutputStrategy headerOutputStrategy;
 
+    // reused rendering buffer
+    private final StringBuilder buffer;
+
+    // reused rendering buffer for ByteOutputFormats, allocated on first use
+    private ByteBuffer bytes;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     /**
@@ -89,6 +106,8 @@ public class Output extends TextOutputProcedure {
      */
     public Output(OutputStream os, ApplicationSpecificBehavior asb, int from, List<String> commandlineArguments) {
 
+        this.buffer = new StringBuilder();
+
         if (os != null) {
 
             setOutputStream(os);
@@ -171,50 +190,133 @@ public class Output extends TextOutputProcedure {
 
         if (in instanceof EndOfStreamEvent) {
 
+            if (log.isDebugEnabled()) { log.debug(this + " got EndOfStreamEvent"); }
+
             //
-            // we don't do anything special on EndOfStream
+            // the accumulated bytes are written here rather than by flush(), so a write failure reaches the caller
             //
 
-            if (log.isDebugEnabled()) { log.debug(this + " got EndOfStreamEvent"); }
-            return;
-        }
+            try {
 
-        try {
+                writeAllBytes();
+            }
+            catch(IOException e) {
 
-            if (headerOutputStrategy.shouldDisplayHeader(in)) {
+                throw new EventProcessingException(e);
+            }
 
-                String header = format.formatHeader(in);
+            return;
+        }
 
-                if (header != null) {
+        if (format instanceof ByteOutputFormat) {
 
-                    print(header);
+            try {
 
-                    headerOutputStrategy.headerDisplayed(in);
-                }
+                renderBytes(in);
+                writeBytesIfNeeded();
             }
+            catch(Exception e) {
 
-            String s = format.format(in);
+                throw new EventProcessingException(e);
+            }
 
-            if (s == null) {
+            return;
+        }
 
-                if (log.isDebugEnabled()) {
+        buffer.setLength(0);
 
-                    log.debug(this + "'s output format did not match the event, ignoring ...");
-                }
+        try {
 
-                return;
-            }
+            render(in);
 
             //
             // the format is responsible for managing the new lines; an empty string returned by the format means
             // "print nothing", not even a new line
             //
-            print(s);
+
+            if (buffer.length() > 0) {
+
+                print(buffer);
+            }
+        }
+        catch(Exception e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    /**
+     * Formats the whole batch into a single buffer and sends it to the output stream with a single print() invocation.
+     */
+    @Override
+    protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+        if (format instanceof ByteOutputFormat) {
+
+            processBytes(events);
+            return;
+        }
+
+        buffer.setLength(0);
+
+        try {
+
+            //noinspection ForLoopReplaceableByForEach
+            for(int i = 0; i < events.size(); i ++) {
+
+                render(events.get(i));
+            }
         }
         catch(Exception e) {
 
             throw new EventProcessingException(e);
         }
+        finally {
+
+            //
+            // whatever was rendered before a failure still makes it to the output
+            //
+
+            if (buffer.length() > 0) {
+
+                try {
+
+                    print(buffer);
+                }
+                catch(Exception e) {
+
+                    //noinspection ThrowFromFinallyBlock
+                    throw new EventProcessingException(e);
+                }
+            }
+        }
+    }
+
+    // TextOutputProcedure overrides -----------------------------------------------------------------------------------
+
+    /**
+     * Also writes the bytes accumulated by a ByteOutputFormat, if any.
+     *
+     * @exception UncheckedIOException if the accumulated bytes cannot be written. Unlike text, which stays buffered in
+     * the writer, the bytes are lost.
+     */
+    @Override
+    public void flush() {
+
+        if (bytes == null || bytes.position() == 0) {
+
+            super.flush();
+            return;
+        }
+
+        try {
+
+            writeBytes();
+        }
+        catch(IOException e) {
+
+            throw new UncheckedIOException("failed to write binary output", e);
+        }
     }
 
     // Public ----------------------------------------------------------------------------------------------------------
@@ -405,6 +507,163 @@ public class Output extends TextOutputProcedure {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Appends the header, if needed, and the representation of the event to the rendering buffer.
+     */
+    private void render(Event in) {
+
+        if (headerOutputStrategy.shouldDisplayHeader(in)) {
+
+            String header = headerOutputStrategy.formatHeader(in, format);
+
+            if (header != null) {
+
+                buffer.append(header);
+
+                headerOutputStrategy.headerDisplayed(in);
+            }
+        }
+
+        if (!format.format(in, buffer)) {
+
+            if (log.isDebugEnabled()) {
+
+                log.debug(this + "'s output format did not match the event, ignoring ...");
+            }
+        }
+    }
+
+    /**
+     * The ByteOutputFormat equivalent of the batch processing: the whole batch is rendered into the byte buffer.
+     */
+    private void processBytes(List<Event> events) throws EventProcessingException {
+
+        try {
+
+            //noinspection ForLoopReplaceableByForEach
+            for(int i = 0; i < events.size(); i ++) {
+
+                renderBytes(events.get(i));
+            }
+        }
+        catch(Exception e) {
+
+            throw new EventProcessingException(e);
+        }
+        finally {
+
+            //
+            // whatever was rendered before a failure still makes it to the output
+            //
+
+            try {
+
+                writeBytesIfNeeded();
+            }
+            catch(Exception e) {
+
+                //noinspection ThrowFromFinallyBlock
+                throw new EventProcessingException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the header, if needed, and the representation of the event to the byte buffer, writing the buffer out or
+     * growing it if the representation does not fit.
+     */
+    private void renderBytes(Event in) throws IOException {
+
+        ByteOutputFormat f = (ByteOutputFormat)format;
+
+        if (bytes == null) {
+
+            bytes = ByteBuffer.allocate(INITIAL_BYTE_BUFFER_SIZE);
+        }
+
+        while(true) {
+
+            try {
+
+                if (headerOutputStrategy.shouldDisplayHeader(in) && f.formatHeader(in, bytes)) {
+
+                    headerOutputStrategy.headerDisplayed(in);
+                }
+
+                if (!f.format(in, bytes) && log.isDebugEnabled()) {
+
+                    log.debug(this + "'s output format did not match the event, ignoring ...");
+                }
+
+                return;
+            }
+            catch(BufferOverflowException e) {
+
+                //
+                // the format rolled back; make room and retry
+                //
+
+                if (bytes.position() > 0) {
+
+                    writeBytes();
+                }
+                else {
+
+                    bytes = ByteBuffer.allocate(bytes.capacity() * 2);
+                }
+            }
+        }
+    }
+
+    private void writeAllBytes() throws IOException {
+
+        if (bytes != null && bytes.position() > 0) {
+
+            writeBytes();
+        }
+    }
+
+    private void writeBytesIfNeeded() throws IOException {
+
+        if (bytes == null || bytes.position() == 0) {
+
+            return;
+        }
+
+        if (isInteractive() || bytes.position() >= getBufferSize()) {
+
+            writeBytes();
+        }
+    }
+
+    /**
+     * Writes the byte buffer to the output stream, after any text that might have been written before.
+     */
+    private void writeBytes() throws IOException {
+
+        super.flush();
+
+        OutputStream os = getOutputStream();
+
+        long start = System.nanoTime();
+
+        try {
+
+            os.write(bytes.array(), bytes.arrayOffset(), bytes.position());
+            os.flush();
+
+            outputWritten(bytes.position(), System.nanoTime() - start);
+        }
+        finally {
+
+            //
+            // the bytes are discarded even if the write fails, the format state cannot be rolled back that far
+            //
+
+            bytes.clear();
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -64,6 +64,35 @@ public interface OutputFormat {
      */
     String format(Event e);
 
+    /**
+     * Appends the representation of the event, following the same rules as format(Event), to the given StringBuilder.
+     * Intended for callers that accumulate output, so they can render events without intermediate Strings. The default
+     * implementation delegates to format(Event); implementations are encouraged to override it.
+     *
+     * @return false if the event does not match the format (the equivalent of format(Event) returning null), in which
+     * case nothing is appended.
+     *
+     * @exception IllegalArgumentException if the event or the StringBuilder is null.
+     */
+    default boolean format(Event e, StringBuilder sb) {
+
+        if (sb == null) {
+
+            throw new IllegalArgumentException("null StringBuilder");
+        }
+
+        String s = format(e);
+
+        if (s == null) {
+
+            return false;
+        }
+
+        sb.append(s);
+
+        return true;
+    }
+
     /**
      * The field separator.
      */
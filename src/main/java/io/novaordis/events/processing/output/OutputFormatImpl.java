@@ -17,7 +17,10 @@
 package io.novaordis.events.processing.output;
 
 import java.text.DateFormat;
+import java.text.FieldPosition;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
 
@@ -31,6 +34,10 @@ import io.novaordis.events.api.event.TimedEvent;
  * format the events that are being handed over. For timed events, the representation starts with a timestamp, whether
  * it was requested or not via format. If it was requested via format, it will displayed twice (or multiple times).
  *
+ * The property identifiers are compiled, as they are added, into a field accessor plan (a property name or a property
+ * index per position), so rendering an event is a single pass over the plan that appends directly into a
+ * StringBuilder, without intermediate Strings. The instance is not thread-safe.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 8/1/17
  */
@@ -52,8 +59,36 @@ public class OutputFormatImpl implements OutputFormat {
 
     private List<Object> propertyIdentifiers;
 
+    //
+    // the compiled accessor plan: for position i, names[i] is the property name, or, if null, indices[i] is the
+    // property index
+    //
+
+    private String[] names;
+
+    private int[] indices;
+
+    //
+    // the last header rendered, and what it depends on: whether the event was timed, and the names of the properties
+    // found at the index positions of the plan (null for name positions, or if there was no property at the index)
+    //
+
+    private String header;
+
+    private boolean headerTimed;
+
+    private String[] headerIndexNames;
+
     private DateFormat timestampFormat;
 
+    // reused by format(Event)
+    private final StringBuilder rendering;
+
+    // reused for timestamp rendering
+    private final Date date;
+    private final StringBuffer timestampBuffer;
+    private final FieldPosition fieldPosition;
+
     // Constructors ----------------------------------------------------------------------------------------------------
 
     public OutputFormatImpl() {
@@ -72,8 +107,15 @@ public class OutputFormatImpl implements OutputFormat {
     public OutputFormatImpl(Object ... propertyIdentifiers) throws IllegalArgumentException {
 
         this.propertyIdentifiers = new ArrayList<>();
+        this.names = new String[0];
+        this.indices = new int[0];
+        this.headerIndexNames = new String[0];
+        this.rendering = new StringBuilder();
+        this.date = new Date(0L);
+        this.timestampBuffer = new StringBuffer();
+        this.fieldPosition = new FieldPosition(0);
         this.separator = "" + DEFAULT_SEPARATOR;
-        this.timestampFormat = DefaultOutputFormat.DEFAULT_TIMESTAMP_FORMAT;
+        this.timestampFormat = DefaultOutputFormat.newDefaultTimestampFormat();
 
         if (propertyIdentifiers != null && propertyIdentifiers.length > 0) {
 
@@ -101,55 +143,52 @@ public class OutputFormatImpl implements OutputFormat {
     /**
      * We return *all* property names, irrespective of the event, because different events may carry different subsets
      * of properties, and we want the union of those.
+     *
+     * The header only depends on whether the event is timed and on the names of the properties found at the requested
+     * indices, so the last header is cached and returned as long as those do not change.
      */
     @Override
     public String formatHeader(Event e) {
 
-        String s = HEADER_MARKER;
+        boolean timed = e instanceof TimedEvent;
 
-        if (e instanceof TimedEvent) {
+        if (header != null && headerTimed == timed && headerMatches(e)) {
 
-            s += TimedEvent.TIME_PROPERTY_NAME;
+            return header;
         }
 
-        boolean first = true;
+        StringBuilder sb = new StringBuilder(HEADER_MARKER);
 
-        for(Iterator<Object> i = propertyIdentifiers.iterator(); i.hasNext(); first = false) {
+        if (timed) {
 
-            if (first && !HEADER_MARKER.equals(s)) {
-
-                s += ", ";
-            }
+            sb.append(TimedEvent.TIME_PROPERTY_NAME);
+        }
 
-            Object identifier = i.next();
+        for(int i = 0; i < names.length; i ++) {
 
-            if (identifier instanceof String) {
+            if (i == 0 && timed) {
 
-                s += identifier;
+                sb.append(", ");
             }
-            else if (identifier instanceof Integer) {
-
-                Property p = e.getProperty((Integer)identifier);
 
-                if (p == null) {
+            if (names[i] != null) {
 
-                    s += " ";
-                }
-                else {
-
-                    s += p.getName();
-                }
+                sb.append(names[i]);
             }
             else {
 
-                throw new IllegalStateException(
-                        "invalid property identifier " + identifier +
-                                (identifier == null ? "" : "(" + identifier.getClass().getName() + ")"));
+                Property p = e.getProperty(indices[i]);
+
+                String name = p == null ? null : p.getName();
+
+                headerIndexNames[i] = name;
+
+                sb.append(name == null ? " " : name);
             }
 
-            if (i.hasNext()) {
+            if (i < names.length - 1) {
 
-                s += getSeparator();
+                sb.append(getSeparator());
             }
         }
 
@@ -157,97 +196,111 @@ public class OutputFormatImpl implements OutputFormat {
         // we manage the new line
         //
 
-        s += "\n";
+        sb.append('\n');
 
-        return s;
+        header = sb.toString();
+        headerTimed = timed;
+
+        return header;
     }
 
     @Override
     public String format(Event e) {
 
+        rendering.setLength(0);
+
+        if (!format(e, rendering)) {
+
+            return null;
+        }
+
+        return rendering.toString();
+    }
+
+    /**
+     * Renders the event in a single pass over the compiled plan. The timestamp, if any, is appended optimistically,
+     * and the builder is rolled back if no property matches.
+     */
+    @Override
+    public boolean format(Event e, StringBuilder sb) {
+
         if (e == null) {
 
             throw new IllegalArgumentException("null event");
         }
 
-        int i = 0;
+        if (sb == null) {
 
-        String s = null;
+            throw new IllegalArgumentException("null StringBuilder");
+        }
 
-        for(Iterator<Object> si = propertyIdentifiers.iterator(); si.hasNext(); i ++) {
+        int start = sb.length();
 
-            Object propertyIdentifier = si.next();
+        if (e instanceof TimedEvent) {
 
-            Property p;
+            Long t = ((TimedEvent) e).getTime();
 
-            if (propertyIdentifier instanceof String) {
+            if (t != null) {
 
-                p = e.getProperty((String)propertyIdentifier);
+                appendTimestamp(t, sb);
+                sb.append(", ");
             }
-            else if (propertyIdentifier instanceof Integer) {
+        }
 
-                p = e.getProperty((Integer)propertyIdentifier);
-            }
-            else {
+        boolean matched = false;
 
-                throw new IllegalStateException(
-                        "invalid property identifier " + propertyIdentifier +
-                                (propertyIdentifier == null ? "" : "(" + propertyIdentifier.getClass().getName() + ")"));
-            }
+        int last = names.length - 1;
+
+        for(int i = 0; i <= last; i ++) {
+
+            String name = names[i];
+
+            Property p = name != null ? e.getProperty(name) : e.getProperty(indices[i]);
 
             Object v = p == null ? null : p.getValue();
 
             if (v != null) {
 
-                if (s == null) {
+                if (!matched) {
+
+                    matched = true;
 
                     //
                     // add all previous commas and placeholders
                     //
 
-                    s = "";
+                    for(int j = 0; j < i; j ++) {
 
-                    while(i-- > 0) {
-
-                        s += ", ";
+                        sb.append(", ");
                     }
-
-                    s += v.toString();
                 }
                 else {
 
-                    s += " " + v;
+                    sb.append(' ');
                 }
-            }
-
-            if (s != null && si.hasNext()) {
 
-                s += ",";
+                appendValue(v, sb);
             }
-        }
-
-        if (s != null && e instanceof TimedEvent) {
 
-            Long t = ((TimedEvent) e).getTime();
+            if (matched && i < last) {
 
-            if (t != null) {
-
-                s = timestampFormat.format(t) + ", " + s;
+                sb.append(',');
             }
         }
 
-        if (s == null) {
+        if (!matched) {
 
-            return null;
+            sb.setLength(start);
+            return false;
         }
 
-        s  += "\n";
-
         //
         // we manage the new line
         //
 
-        return s;
+        sb.append('\n');
+
+        return true;
     }
 
     @Override
@@ -294,6 +347,8 @@ public class OutputFormatImpl implements OutputFormat {
         }
 
         propertyIdentifiers.add(s);
+
+        compile(s, -1);
     }
 
     /**
@@ -312,6 +367,8 @@ public class OutputFormatImpl implements OutputFormat {
         }
 
         propertyIdentifiers.add(index);
+
+        compile(null, index);
     }
 
     @Override
@@ -358,6 +415,99 @@ public class OutputFormatImpl implements OutputFormat {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Extends the accessor plan with one position.
+     */
+    private void compile(String name, int index) {
+
+        int n = names.length;
+
+        names = Arrays.copyOf(names, n + 1);
+        indices = Arrays.copyOf(indices, n + 1);
+
+        names[n] = name;
+        indices[n] = index;
+
+        headerIndexNames = new String[n + 1];
+        header = null;
+    }
+
+    /**
+     * @return true if the properties found at the index positions of the plan have the same names as when the cached
+     * header was rendered.
+     */
+    private boolean headerMatches(Event e) {
+
+        for(int i = 0; i < names.length; i ++) {
+
+            if (names[i] != null) {
+
+                continue;
+            }
+
+            Property p = e.getProperty(indices[i]);
+
+            String name = p == null ? null : p.getName();
+
+            if (name == null ? headerIndexNames[i] != null : !name.equals(headerIndexNames[i])) {
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private void appendTimestamp(long t, StringBuilder sb) {
+
+        if (timestampFormat instanceof CachedTimestampFormat) {
+
+            ((CachedTimestampFormat)timestampFormat).format(t, sb);
+            return;
+        }
+
+        date.setTime(t);
+        timestampBuffer.setLength(0);
+        timestampFormat.format(date, timestampBuffer, fieldPosition);
+        sb.append(timestampBuffer);
+    }
+
+    /**
+     * Appends the value without going through toString() for the common boxed primitives. The rendering is identical
+     * to String.valueOf().
+     */
+    private static void appendValue(Object v, StringBuilder sb) {
+
+        if (v instanceof String) {
+
+            sb.append((String)v);
+        }
+        else if (v instanceof Long) {
+
+            sb.append(((Long)v).longValue());
+        }
+        else if (v instanceof Integer) {
+
+            sb.append(((Integer)v).intValue());
+        }
+        else if (v instanceof Double) {
+
+            sb.append(((Double)v).doubleValue());
+        }
+        else if (v instanceof Float) {
+
+            sb.append(((Float)v).floatValue());
+        }
+        else if (v instanceof Boolean) {
+
+            sb.append(((Boolean)v).booleanValue());
+        }
+        else {
+
+            sb.append(v);
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
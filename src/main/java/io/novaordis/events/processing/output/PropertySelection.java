@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+
+/**
+ * An ordered list of property identifiers (property names or 0-based property indices), specified on the command line
+ * the same way Output's format is: after an option, as space and/or comma separated identifiers; identifiers that can
+ * be converted to ints are indices. It is used by the procedures that aggregate the values of selected properties.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PropertySelection {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Collects, and removes from the list, the property identifiers that follow the given option, up to the next
+     * argument that starts with '-' or the end of the list.
+     *
+     * @return the selection, or null if the option is not present.
+     */
+    public static PropertySelection fromCommandLine(String option, int from, List<String> mutableCommandLineArguments) {
+
+        PropertySelection result = null;
+
+        boolean collect = false;
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArguments.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (collect) {
+
+                if (arg.startsWith("-")) {
+
+                    collect = false;
+                }
+                else {
+
+                    si.remove();
+
+                    for(String identifier: Output.cleanCommas(arg)) {
+
+                        result.add(identifier);
+                    }
+
+                    continue;
+                }
+            }
+
+            if (option.equals(arg)) {
+
+                si.remove();
+
+                if (result == null) {
+
+                    result = new PropertySelection();
+                }
+
+                collect = true;
+            }
+        }
+
+        return result;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // a property name or null, per position
+    private final List<String> names;
+
+    // a property index or -1, per position
+    private final List<Integer> indices;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public PropertySelection() {
+
+        this.names = new ArrayList<>();
+        this.indices = new ArrayList<>();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Adds a property index if the identifier can be converted to an int, and a property name otherwise.
+     *
+     * @exception IllegalArgumentException on null identifier or negative index.
+     */
+    public void add(String identifier) {
+
+        if (identifier == null) {
+
+            throw new IllegalArgumentException("null property identifier");
+        }
+
+        int index;
+
+        try {
+
+            index = Integer.parseInt(identifier);
+        }
+        catch(NumberFormatException e) {
+
+            addPropertyName(identifier);
+            return;
+        }
+
+        addPropertyIndex(index);
+    }
+
+    /**
+     * @exception IllegalArgumentException on null name.
+     */
+    public void addPropertyName(String name) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        names.add(name);
+        indices.add(-1);
+    }
+
+    /**
+     * @exception IllegalArgumentException on negative index.
+     */
+    public void addPropertyIndex(int index) {
+
+        if (index < 0) {
+
+            throw new IllegalArgumentException("invalid property index: " + index);
+        }
+
+        names.add(null);
+        indices.add(index);
+    }
+
+    public int size() {
+
+        return names.size();
+    }
+
+    public boolean isEmpty() {
+
+        return names.isEmpty();
+    }
+
+    /**
+     * @return the property name, or the index rendered as a string.
+     */
+    public String getLabel(int position) {
+
+        String name = names.get(position);
+
+        return name != null ? name : Integer.toString(indices.get(position));
+    }
+
+    /**
+     * @return the event's property at the given position of the selection, or null if the event does not carry it.
+     */
+    public Property select(Event e, int position) {
+
+        String name = names.get(position);
+
+        return name != null ? e.getProperty(name) : e.getProperty(indices.get(position));
+    }
+
+    @Override
+    public String toString() {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < size(); i ++) {
+
+            if (i > 0) {
+
+                sb.append(", ");
+            }
+
+            sb.append(getLabel(i));
+        }
+
+        return sb.toString();
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * A strategy that displays a header before the first event, and then again every time the shape of the events changes,
+ * so a stream that mixes event types gets a header that matches each run of events of the same type. The shape of an
+ * event is its class and the names of its properties, in order.
+ *
+ * The headers are cached by shape, so a stream that alternates between a few shapes does not render the headers again.
+ * This assumes the header the format produces for an event only depends on the event's shape. The cache is bounded,
+ * and it is cleared when it fills up, or when the strategy is used with a different format.
+ *
+ * Not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ShapeAwareHeaderOutputStrategy implements HeaderOutputStrategy {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_CACHE_CAPACITY = 1024;
+
+    // caches the fact that the format produces no header for a shape; compared by identity
+    @SuppressWarnings("RedundantStringConstructorCall")
+    private static final String NO_HEADER = new String("");
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int cacheCapacity;
+
+    private final Map<EventShape, String> headers;
+
+    private OutputFormat cachedFormat;
+
+    // the shape of the events whose header was displayed last, or that do not need a header
+    private EventShape current;
+
+    // the shape whose header was handed over by the last formatHeader() invocation
+    private EventShape pending;
+
+    private long renderedHeaders;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ShapeAwareHeaderOutputStrategy() {
+
+        this(DEFAULT_CACHE_CAPACITY);
+    }
+
+    /**
+     * @exception IllegalArgumentException on zero or negative capacity.
+     */
+    public ShapeAwareHeaderOutputStrategy(int cacheCapacity) {
+
+        if (cacheCapacity <= 0) {
+
+            throw new IllegalArgumentException("invalid cache capacity: " + cacheCapacity);
+        }
+
+        this.cacheCapacity = cacheCapacity;
+        this.headers = new HashMap<>();
+    }
+
+    // HeaderOutputStrategy implementation -----------------------------------------------------------------------------
+
+    @Override
+    public boolean shouldDisplayHeader(Event e) {
+
+        insureNotNull(e);
+
+        return current == null || !current.matches(e);
+    }
+
+    @Override
+    public void headerDisplayed(Event e) {
+
+        insureNotNull(e);
+
+        current = pending != null && pending.matches(e) ? pending : EventShape.of(e);
+
+        pending = null;
+    }
+
+    @Override
+    public String formatHeader(Event e, OutputFormat format) {
+
+        insureNotNull(e);
+
+        if (format == null) {
+
+            throw new IllegalArgumentException("null output format");
+        }
+
+        if (format != cachedFormat) {
+
+            headers.clear();
+            cachedFormat = format;
+        }
+
+        EventShape shape = EventShape.of(e);
+
+        String header = headers.get(shape);
+
+        if (header == null) {
+
+            header = format.formatHeader(e);
+
+            renderedHeaders ++;
+
+            if (headers.size() >= cacheCapacity) {
+
+                headers.clear();
+            }
+
+            headers.put(shape, header == null ? NO_HEADER : header);
+        }
+        else if (header == NO_HEADER) {
+
+            header = null;
+        }
+
+        if (header == null) {
+
+            //
+            // nothing to display for this shape, no need to check again until the shape changes
+            //
+
+            current = shape;
+            pending = null;
+        }
+        else {
+
+            pending = shape;
+        }
+
+        return header;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public int getCacheCapacity() {
+
+        return cacheCapacity;
+    }
+
+    /**
+     * @return the number of headers cached.
+     */
+    public int getCacheSize() {
+
+        return headers.size();
+    }
+
+    /**
+     * @return the number of times a header was obtained from the format, as opposed to the cache.
+     */
+    public long getRenderedHeaderCount() {
+
+        return renderedHeaders;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ShapeAwareHeaderOutputStrategy[" + headers.size() + "/" + cacheCapacity + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void insureNotNull(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
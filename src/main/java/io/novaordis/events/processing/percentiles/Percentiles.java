@@ -0,0 +1,545 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.percentiles;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.TimedEvent;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.events.processing.output.CachedTimestampFormat;
+import io.novaordis.events.processing.output.DefaultOutputFormat;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.output.PropertySelection;
+import io.novaordis.utilities.UserErrorException;
+
+/**
+ * A procedure that estimates quantiles (p50, p99, p99.9 ...) of numeric properties, in fixed memory, with a
+ * QuantileSketch per property. The quantiles are reported on EndOfStreamEvent and, optionally, per tumbling time
+ * window, as the windows end. Window boundaries are aligned to the epoch, and an event is counted in the window open
+ * when it arrives, so slightly out-of-order events are not lost. Non-numeric values are ignored.
+ *
+ * All events are passed on to the downstream procedure, if any, as they arrive.
+ *
+ * Command line options:
+ *
+ * -o <property-list> - the properties, specified the same way as for the output procedure: names, or 0-based indices,
+ * separated by spaces or commas.
+ *
+ * --quantiles <list> - comma separated percentages. Default 50,90,99,99.9.
+ *
+ * --accuracy <relative-accuracy> - the relative accuracy of the estimates. Default 0.01.
+ *
+ * --window <ms> - also report the quantiles per window of the given size.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class Percentiles extends TextOutputProcedure {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String COMMAND_LINE_LABEL = "percentiles";
+
+    public static final String PROPERTIES_OPTION = Output.OUTPUT_FORMAT_OPTION;
+    public static final String QUANTILES_OPTION = "--quantiles";
+    public static final String ACCURACY_OPTION = "--accuracy";
+    public static final String WINDOW_OPTION = "--window";
+
+    public static final double[] DEFAULT_QUANTILES = { 50d, 90d, 99d, 99.9d };
+
+    private static final long NO_WINDOW = Long.MIN_VALUE;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertySelection properties;
+
+    // percentages
+    private double[] quantiles;
+
+    private double relativeAccuracy;
+
+    // 0 means no per-window reporting
+    private long window;
+
+    //
+    // built when the first event arrives
+    //
+
+    private QuantileSketch[] totals;
+    private QuantileSketch[] current;
+
+    private long windowStart;
+
+    private final CachedTimestampFormat timestampFormat;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public Percentiles() {
+
+        this(null);
+    }
+
+    public Percentiles(OutputStream os) {
+
+        super(os);
+
+        this.properties = new PropertySelection();
+        this.quantiles = DEFAULT_QUANTILES.clone();
+        this.relativeAccuracy = QuantileSketch.DEFAULT_RELATIVE_ACCURACY;
+        this.windowStart = NO_WINDOW;
+        this.timestampFormat = DefaultOutputFormat.newDefaultTimestampFormat();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public Percentiles(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.singletonList(COMMAND_LINE_LABEL);
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
+
+        if (in instanceof EndOfStreamEvent) {
+
+            if (totals != null) {
+
+                closeWindow();
+                report(NO_WINDOW, totals);
+            }
+
+            return;
+        }
+
+        emit(in);
+
+        if (totals == null) {
+
+            initialize();
+        }
+
+        if (window > 0 && in instanceof TimedEvent) {
+
+            Long t = ((TimedEvent)in).getTime();
+
+            if (t != null) {
+
+                if (windowStart == NO_WINDOW) {
+
+                    windowStart = Math.floorDiv(t, window) * window;
+                }
+                else if (t >= windowStart + window) {
+
+                    closeWindow();
+                    windowStart = Math.floorDiv(t, window) * window;
+                }
+            }
+        }
+
+        for(int i = 0; i < current.length; i ++) {
+
+            Property p = properties.select(in, i);
+
+            if (p == null) {
+
+                continue;
+            }
+
+            Object value = p.getValue();
+
+            if (value instanceof Number) {
+
+                current[i].add(((Number)value).doubleValue());
+            }
+        }
+    }
+
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The selection can be modified before processing starts.
+     */
+    public PropertySelection getProperties() {
+
+        return properties;
+    }
+
+    /**
+     * @return the reported quantiles, as percentages.
+     */
+    public double[] getQuantiles() {
+
+        return quantiles.clone();
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @param percentages values in [0, 100].
+     *
+     * @exception IllegalArgumentException on empty list or invalid values.
+     */
+    public void setQuantiles(double ... percentages) {
+
+        if (percentages == null || percentages.length == 0) {
+
+            throw new IllegalArgumentException("null or empty quantile list");
+        }
+
+        for(double p: percentages) {
+
+            if (!(p >= 0d && p <= 100d)) {
+
+                throw new IllegalArgumentException("invalid quantile: " + p);
+            }
+        }
+
+        this.quantiles = percentages.clone();
+    }
+
+    public double getRelativeAccuracy() {
+
+        return relativeAccuracy;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @exception IllegalArgumentException on invalid values, see QuantileSketch.
+     */
+    public void setRelativeAccuracy(double relativeAccuracy) {
+
+        if (!(relativeAccuracy >= QuantileSketch.MIN_RELATIVE_ACCURACY && relativeAccuracy < 1d)) {
+
+            throw new IllegalArgumentException("invalid relative accuracy: " + relativeAccuracy);
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * @return the window size, in milliseconds, or 0 if the quantiles are only reported at the end of the stream.
+     */
+    public long getWindow() {
+
+        return window;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @param ms the window size, 0 disables per-window reporting.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setWindow(long ms) {
+
+        if (ms < 0) {
+
+            throw new IllegalArgumentException("invalid window size: " + ms);
+        }
+
+        this.window = ms;
+    }
+
+    /**
+     * @return the sketch of all the values of the property at the given position in the selection, seen so far, or
+     * null if processing did not start. In window mode, the values of the current window are merged in when the window
+     * ends.
+     */
+    public QuantileSketch getSketch(int position) {
+
+        return totals == null ? null : totals[position];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        PropertySelection selection = PropertySelection.fromCommandLine(
+                PROPERTIES_OPTION, from, mutableCommandLineArgumentsList);
+
+        if (selection != null) {
+
+            properties = selection;
+        }
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (QUANTILES_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(QUANTILES_OPTION, si);
+                String[] tokens = value.split(",");
+                double[] percentages = new double[tokens.length];
+
+                try {
+
+                    for(int j = 0; j < tokens.length; j ++) {
+
+                        percentages[j] = Double.parseDouble(tokens[j].trim());
+                    }
+
+                    setQuantiles(percentages);
+                }
+                catch(IllegalArgumentException e) {
+
+                    //
+                    // NumberFormatException is an IllegalArgumentException
+                    //
+
+                    throw new UserErrorException("invalid " + QUANTILES_OPTION + " value: " + value);
+                }
+            }
+            else if (ACCURACY_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(ACCURACY_OPTION, si);
+
+                try {
+
+                    setRelativeAccuracy(Double.parseDouble(value));
+                }
+                catch(IllegalArgumentException e) {
+
+                    throw new UserErrorException("invalid " + ACCURACY_OPTION + " value: " + value);
+                }
+            }
+            else if (WINDOW_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(WINDOW_OPTION, si);
+
+                long ms;
+
+                try {
+
+                    ms = Long.parseLong(value);
+                }
+                catch(NumberFormatException e) {
+
+                    throw new UserErrorException("invalid " + WINDOW_OPTION + " value: " + value);
+                }
+
+                if (ms <= 0) {
+
+                    throw new UserErrorException("invalid " + WINDOW_OPTION + " value: " + value);
+                }
+
+                setWindow(ms);
+            }
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Consumes and removes the value that follows the option.
+     */
+    private static String optionValue(String option, Iterator<String> si) throws UserErrorException {
+
+        if (!si.hasNext()) {
+
+            throw new UserErrorException("missing value after " + option);
+        }
+
+        String s = si.next();
+        si.remove();
+        return s;
+    }
+
+    private void initialize() {
+
+        int n = properties.size();
+
+        totals = new QuantileSketch[n];
+
+        for(int i = 0; i < n; i ++) {
+
+            totals[i] = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BUCKETS);
+        }
+
+        if (window == 0) {
+
+            //
+            // the values go straight into the totals
+            //
+
+            current = totals;
+            return;
+        }
+
+        current = new QuantileSketch[n];
+
+        for(int i = 0; i < n; i ++) {
+
+            current[i] = new QuantileSketch(relativeAccuracy, QuantileSketch.DEFAULT_MAX_BUCKETS);
+        }
+    }
+
+    /**
+     * Reports the current window, if not empty, and merges it into the totals.
+     */
+    private void closeWindow() throws EventProcessingException {
+
+        if (current == totals) {
+
+            return;
+        }
+
+        boolean empty = true;
+
+        for(QuantileSketch s: current) {
+
+            if (s.getCount() > 0) {
+
+                empty = false;
+                break;
+            }
+        }
+
+        if (empty) {
+
+            return;
+        }
+
+        report(windowStart, current);
+
+        for(int i = 0; i < current.length; i ++) {
+
+            totals[i].merge(current[i]);
+            current[i].clear();
+        }
+    }
+
+    /**
+     * @param start the window start, or NO_WINDOW for the totals.
+     */
+    private void report(long start, QuantileSketch[] sketches) throws EventProcessingException {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < sketches.length; i ++) {
+
+            QuantileSketch s = sketches[i];
+
+            if (start != NO_WINDOW) {
+
+                timestampFormat.format(start, sb);
+                sb.append(": ");
+            }
+
+            sb.append(properties.getLabel(i)).append(": ");
+
+            if (s.getCount() == 0) {
+
+                sb.append("no values\n");
+                continue;
+            }
+
+            sb.append(s.getCount()).append(" values, min ");
+            appendValue(s.getMin(), sb);
+
+            for(double q: quantiles) {
+
+                sb.append(", p");
+                appendValue(q, sb);
+                sb.append(' ');
+                appendValue(s.getQuantile(q / 100d), sb);
+            }
+
+            sb.append(", max ");
+            appendValue(s.getMax(), sb);
+            sb.append('\n');
+        }
+
+        try {
+
+            print(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    /**
+     * At most three decimals, no trailing zeros, no exponent.
+     */
+    private static void appendValue(double v, StringBuilder sb) {
+
+        if (Double.isNaN(v) || Double.isInfinite(v)) {
+
+            sb.append(v);
+            return;
+        }
+
+        sb.append(BigDecimal.valueOf(v).setScale(3, RoundingMode.HALF_UP).stripTrailingZeros().toPlainString());
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,540 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.percentiles;
+
+import java.util.Arrays;
+
+/**
+ * A mergeable quantile sketch with a relative error guarantee and a fixed memory ceiling.
+ *
+ * Values are counted in logarithmic buckets: bucket i holds the values in (gamma^(i-1), gamma^i], where
+ * gamma = (1 + a) / (1 - a) and a is the relative accuracy, so any quantile is estimated within a relative error a of
+ * a value of the stream, irrespective of the distribution. Positive and negative values are counted in separate
+ * stores; values whose magnitude is too small to be indexed are counted as zero. Each store is a dense long array that
+ * grows up to the maximum number of buckets; when a store would exceed it, the buckets that hold its lowest values are
+ * collapsed into one: the smallest positive values, or the negative values of the largest magnitude. For a stream of
+ * values of the same sign, this only affects the accuracy of the lowest quantiles; if negative values are present too,
+ * collapsing the positive store also affects the quantiles just above zero. The exact minimum and maximum are tracked,
+ * and the estimates are clamped to them.
+ *
+ * Two sketches with the same relative accuracy can be merged, the result is the sketch of the combined streams.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class QuantileSketch {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final double DEFAULT_RELATIVE_ACCURACY = 0.01d;
+
+    public static final double MIN_RELATIVE_ACCURACY = 1e-6d;
+
+    public static final int DEFAULT_MAX_BUCKETS = 2048;
+
+    private static final int INITIAL_LENGTH = 64;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final double relativeAccuracy;
+
+    private final double gamma;
+
+    private final double logGamma;
+
+    // magnitudes below this are counted as zero
+    private final double minIndexable;
+
+    private final Store positive;
+
+    private final Store negative;
+
+    private long zeroCount;
+
+    private long count;
+
+    private double sum;
+
+    private double min;
+
+    private double max;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public QuantileSketch() {
+
+        this(DEFAULT_RELATIVE_ACCURACY, DEFAULT_MAX_BUCKETS);
+    }
+
+    /**
+     * @param relativeAccuracy in [MIN_RELATIVE_ACCURACY, 1), for example 0.01 for 1%.
+     * @param maxBuckets the maximum number of buckets of each of the positive and negative stores.
+     *
+     * @exception IllegalArgumentException on invalid accuracy or bucket count.
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBuckets) {
+
+        if (!(relativeAccuracy >= MIN_RELATIVE_ACCURACY && relativeAccuracy < 1d)) {
+
+            throw new IllegalArgumentException("invalid relative accuracy: " + relativeAccuracy);
+        }
+
+        if (maxBuckets < 2) {
+
+            throw new IllegalArgumentException("invalid maximum bucket count: " + maxBuckets);
+        }
+
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1d + relativeAccuracy) / (1d - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.minIndexable = Double.MIN_NORMAL * gamma;
+        this.positive = new Store(maxBuckets, false);
+        this.negative = new Store(maxBuckets, true);
+
+        clear();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * NaN is ignored.
+     */
+    public void add(double v) {
+
+        if (v != v) {
+
+            return;
+        }
+
+        if (v > minIndexable) {
+
+            positive.add(index(v), 1L);
+        }
+        else if (v < -minIndexable) {
+
+            negative.add(index(-v), 1L);
+        }
+        else {
+
+            zeroCount ++;
+        }
+
+        count ++;
+        sum += v;
+
+        if (v < min) {
+
+            min = v;
+        }
+
+        if (v > max) {
+
+            max = v;
+        }
+    }
+
+    /**
+     * @param q the quantile, in [0, 1].
+     *
+     * @return the estimate, or NaN if the sketch is empty. The 0 and 1 quantiles are the exact minimum and maximum.
+     *
+     * @exception IllegalArgumentException on invalid quantile.
+     */
+    public double getQuantile(double q) {
+
+        if (!(q >= 0d && q <= 1d)) {
+
+            throw new IllegalArgumentException("invalid quantile: " + q);
+        }
+
+        if (count == 0) {
+
+            return Double.NaN;
+        }
+
+        if (q == 0d) {
+
+            return min;
+        }
+
+        if (q == 1d) {
+
+            return max;
+        }
+
+        //
+        // the 0-based rank of the value we are looking for
+        //
+
+        double rank = q * (count - 1);
+
+        long seen = 0L;
+
+        double estimate = Double.NaN;
+
+        if (negative.total > 0) {
+
+            //
+            // the most negative values first: descending bucket indices
+            //
+
+            for(int i = negative.maxIndex; i >= negative.minIndex; i --) {
+
+                seen += negative.get(i);
+
+                if (seen > rank) {
+
+                    estimate = -value(i);
+                    break;
+                }
+            }
+        }
+
+        if (estimate != estimate) {
+
+            seen += zeroCount;
+
+            if (seen > rank) {
+
+                estimate = 0d;
+            }
+            else if (positive.total > 0) {
+
+                for(int i = positive.minIndex; i <= positive.maxIndex; i ++) {
+
+                    seen += positive.get(i);
+
+                    if (seen > rank) {
+
+                        estimate = value(i);
+                        break;
+                    }
+                }
+            }
+        }
+
+        if (estimate != estimate || estimate > max) {
+
+            return max;
+        }
+
+        return estimate < min ? min : estimate;
+    }
+
+    /**
+     * Adds the content of the given sketch to this one. The given sketch is not modified.
+     *
+     * @exception IllegalArgumentException on null sketch or sketch with a different relative accuracy.
+     */
+    public void merge(QuantileSketch other) {
+
+        if (other == null) {
+
+            throw new IllegalArgumentException("null sketch");
+        }
+
+        if (other.relativeAccuracy != relativeAccuracy) {
+
+            throw new IllegalArgumentException(
+                    "incompatible relative accuracy: " + other.relativeAccuracy + ", expected " + relativeAccuracy);
+        }
+
+        if (other.count == 0) {
+
+            return;
+        }
+
+        positive.merge(other.positive);
+        negative.merge(other.negative);
+
+        zeroCount += other.zeroCount;
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public void clear() {
+
+        positive.clear();
+        negative.clear();
+        zeroCount = 0L;
+        count = 0L;
+        sum = 0d;
+        min = Double.POSITIVE_INFINITY;
+        max = Double.NEGATIVE_INFINITY;
+    }
+
+    public double getRelativeAccuracy() {
+
+        return relativeAccuracy;
+    }
+
+    public long getCount() {
+
+        return count;
+    }
+
+    public double getSum() {
+
+        return sum;
+    }
+
+    /**
+     * @return the exact minimum, or NaN if the sketch is empty.
+     */
+    public double getMin() {
+
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return the exact maximum, or NaN if the sketch is empty.
+     */
+    public double getMax() {
+
+        return count == 0 ? Double.NaN : max;
+    }
+
+    /**
+     * @return the number of long counters currently allocated, over both stores. Never exceeds twice the maximum
+     * bucket count.
+     */
+    public int getAllocatedBucketCount() {
+
+        return positive.length() + negative.length();
+    }
+
+    @Override
+    public String toString() {
+
+        return "QuantileSketch[" + relativeAccuracy + ", " + count + " values]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    int index(double magnitude) {
+
+        return (int)Math.ceil(Math.log(magnitude) / logGamma);
+    }
+
+    /**
+     * @return the value that represents bucket i with a relative error of at most the relative accuracy.
+     */
+    double value(int index) {
+
+        return 2d * Math.pow(gamma, index) / (gamma + 1d);
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Dense bucket counters for the contiguous range of bucket indices [minIndex, maxIndex], collapsing the lowest
+     * buckets, or the highest, when the range would exceed the maximum bucket count.
+     */
+    private static class Store {
+
+        private final int maxBuckets;
+
+        // the negative store collapses its highest buckets, which hold the lowest values of the stream
+        private final boolean collapseHighest;
+
+        private long[] counts;
+
+        // the bucket index of counts[0]
+        private int offset;
+
+        private int minIndex;
+
+        private int maxIndex;
+
+        private long total;
+
+        Store(int maxBuckets, boolean collapseHighest) {
+
+            this.maxBuckets = maxBuckets;
+            this.collapseHighest = collapseHighest;
+        }
+
+        long get(int index) {
+
+            return counts[index - offset];
+        }
+
+        void add(int index, long n) {
+
+            if (total == 0) {
+
+                if (counts == null) {
+
+                    counts = new long[Math.min(INITIAL_LENGTH, maxBuckets)];
+                }
+
+                offset = index - counts.length / 2;
+                minIndex = index;
+                maxIndex = index;
+            }
+            else if (index < minIndex || index > maxIndex) {
+
+                int lo = Math.min(minIndex, index);
+                int hi = Math.max(maxIndex, index);
+
+                if ((long)hi - lo + 1 > maxBuckets) {
+
+                    if (collapseHighest) {
+
+                        hi = lo + maxBuckets - 1;
+
+                        if (index > hi) {
+
+                            index = hi;
+                        }
+                    }
+                    else {
+
+                        lo = hi - maxBuckets + 1;
+
+                        if (index < lo) {
+
+                            index = lo;
+                        }
+                    }
+                }
+
+                resize(lo, hi);
+            }
+
+            counts[index - offset] += n;
+            total += n;
+        }
+
+        void merge(Store other) {
+
+            if (other.total == 0) {
+
+                return;
+            }
+
+            //
+            // add the bucket at the end we keep first, so the range is extended, and collapsed, at most once
+            //
+
+            if (collapseHighest) {
+
+                for(int i = other.minIndex; i <= other.maxIndex; i ++) {
+
+                    long n = other.counts[i - other.offset];
+
+                    if (n != 0) {
+
+                        add(i, n);
+                    }
+                }
+            }
+            else {
+
+                for(int i = other.maxIndex; i >= other.minIndex; i --) {
+
+                    long n = other.counts[i - other.offset];
+
+                    if (n != 0) {
+
+                        add(i, n);
+                    }
+                }
+            }
+        }
+
+        void clear() {
+
+            if (counts != null) {
+
+                Arrays.fill(counts, 0L);
+            }
+
+            total = 0L;
+        }
+
+        int length() {
+
+            return counts == null ? 0 : counts.length;
+        }
+
+        /**
+         * Makes the array cover [lo, hi], folding the counts of the buckets below lo into lo, and of the buckets above
+         * hi into hi.
+         */
+        private void resize(int lo, int hi) {
+
+            long foldedLow = 0L;
+
+            for(int i = minIndex; i < lo && i <= maxIndex; i ++) {
+
+                foldedLow += counts[i - offset];
+                counts[i - offset] = 0L;
+            }
+
+            long foldedHigh = 0L;
+
+            for(int i = maxIndex; i > hi && i >= minIndex; i --) {
+
+                foldedHigh += counts[i - offset];
+                counts[i - offset] = 0L;
+            }
+
+            if (lo < offset || hi >= offset + counts.length) {
+
+                int span = hi - lo + 1;
+                int length = counts.length;
+
+                while(length < span) {
+
+                    length *= 2;
+                }
+
+                length = Math.min(length, maxBuckets);
+
+                long[] c = new long[length];
+
+                int o = lo - (length - span) / 2;
+
+                for(int i = Math.max(minIndex, lo); i <= Math.min(maxIndex, hi); i ++) {
+
+                    c[i - o] = counts[i - offset];
+                }
+
+                counts = c;
+                offset = o;
+            }
+
+            counts[lo - offset] += foldedLow;
+            counts[hi - offset] += foldedHigh;
+            minIndex = lo;
+            maxIndex = hi;
+        }
+    }
+
+}
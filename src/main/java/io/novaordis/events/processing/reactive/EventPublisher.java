@@ -0,0 +1,468 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.reactive;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.ProcedureBase;
+
+/**
+ * Publishes the events pushed into it to a single subscriber, at the rate the subscriber requests them. It is a
+ * procedure, so any push-based event source can feed it (MappedFileEventSource.feed(), an event loop, etc.): when the
+ * subscriber has no outstanding demand, process() blocks the source thread until demand arrives, so the ingestion rate
+ * adapts to the subscriber, and nothing is buffered here. The EndOfStreamEvent is signaled as onComplete().
+ *
+ * A subscriber that cancels makes isExitLoop() return true, so the source can stop; events pushed after cancellation
+ * are discarded. Events pushed before a subscriber arrives wait for it.
+ *
+ * All subscriber signals are sent from the thread that pushes the events, except for the onSubscribe() and for the
+ * onError() sent to a second subscriber, which are sent from the subscribing thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class EventPublisher extends ProcedureBase implements Publisher<Event> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    //
+    // a lock, as opposed to monitors, so a waiting virtual thread does not pin its carrier
+    //
+
+    private final ReentrantLock lock;
+
+    private final Condition demandChanged;
+
+    private volatile Subscriber<? super Event> subscriber;
+
+    // guarded by lock
+    private long demand;
+
+    private volatile boolean cancelled;
+
+    // a protocol violation detected in request(), delivered as onError() by the pushing thread; guarded by lock
+    private Throwable pendingError;
+
+    private boolean terminated;
+
+    private final AtomicLong demandWaitNanos;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public EventPublisher() {
+
+        this.lock = new ReentrantLock();
+        this.demandChanged = lock.newCondition();
+        this.demandWaitNanos = new AtomicLong(0L);
+    }
+
+    // Publisher implementation ----------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null subscriber.
+     */
+    @Override
+    public void subscribe(Subscriber<? super Event> s) {
+
+        if (s == null) {
+
+            throw new IllegalArgumentException("null subscriber");
+        }
+
+        boolean accepted;
+
+        lock.lock();
+
+        try {
+
+            accepted = subscriber == null && !cancelled && !terminated;
+
+            if (accepted) {
+
+                subscriber = s;
+                demandChanged.signalAll();
+            }
+        }
+        finally {
+
+            lock.unlock();
+        }
+
+        if (accepted) {
+
+            s.onSubscribe(new EventSubscription());
+        }
+        else {
+
+            reject(s);
+        }
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return true if the subscriber cancelled, or the stream ended.
+     */
+    @Override
+    public boolean isExitLoop() {
+
+        return cancelled || super.isExitLoop();
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+        if (e instanceof EndOfStreamEvent) {
+
+            complete();
+            return;
+        }
+
+        if (acquire(1) == 0) {
+
+            return;
+        }
+
+        Subscriber<? super Event> s = subscriber;
+
+        if (s != null) {
+
+            s.onNext(e);
+        }
+    }
+
+    /**
+     * Acquires demand for as many events of the batch as possible at once.
+     */
+    @Override
+    protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+        int n = events.size();
+
+        int i = 0;
+
+        while(i < n) {
+
+            long granted = acquire(n - i);
+
+            if (granted == 0) {
+
+                return;
+            }
+
+            Subscriber<? super Event> s = subscriber;
+
+            if (s == null) {
+
+                return;
+            }
+
+            for(long j = 0; j < granted; j ++) {
+
+                s.onNext(events.get(i ++));
+            }
+        }
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the subscriber's outstanding demand.
+     */
+    public long getDemand() {
+
+        lock.lock();
+
+        try {
+
+            return demand;
+        }
+        finally {
+
+            lock.unlock();
+        }
+    }
+
+    public boolean isCancelled() {
+
+        return cancelled;
+    }
+
+    /**
+     * @return the time, in nanoseconds, the pushing thread spent waiting for demand.
+     */
+    public long getDemandWaitNanos() {
+
+        return demandWaitNanos.get();
+    }
+
+    @Override
+    public String toString() {
+
+        return "EventPublisher[" + Integer.toHexString(System.identityHashCode(this)) + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Waits until there is demand, and takes as much of it as possible, up to the given count.
+     *
+     * @return the number of events that can be sent, 0 if the subscription was cancelled or terminated.
+     */
+    private long acquire(long count) throws EventProcessingException {
+
+        Throwable error;
+
+        lock.lock();
+
+        try {
+
+            if (demand == 0 && !cancelled && pendingError == null) {
+
+                long start = System.nanoTime();
+
+                try {
+
+                    while(demand == 0 && !cancelled && pendingError == null) {
+
+                        demandChanged.await();
+                    }
+                }
+                catch(InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                    throw new EventProcessingException(e);
+                }
+                finally {
+
+                    demandWaitNanos.addAndGet(System.nanoTime() - start);
+                }
+            }
+
+            error = pendingError;
+
+            if (error == null) {
+
+                if (cancelled) {
+
+                    return 0L;
+                }
+
+                long granted = Math.min(demand, count);
+
+                demand -= granted;
+
+                return granted;
+            }
+
+            pendingError = null;
+        }
+        finally {
+
+            lock.unlock();
+        }
+
+        terminate(error);
+
+        return 0L;
+    }
+
+    private void complete() throws EventProcessingException {
+
+        //
+        // a subscriber may not have arrived yet; it must learn the stream ended
+        //
+
+        lock.lock();
+
+        try {
+
+            while(subscriber == null && !cancelled) {
+
+                try {
+
+                    demandChanged.await();
+                }
+                catch(InterruptedException e) {
+
+                    Thread.currentThread().interrupt();
+                    throw new EventProcessingException(e);
+                }
+            }
+        }
+        finally {
+
+            lock.unlock();
+        }
+
+        terminate(null);
+    }
+
+    /**
+     * Sends the terminal signal, if the subscription is still active.
+     *
+     * @param error null for onComplete().
+     */
+    private void terminate(Throwable error) {
+
+        Subscriber<? super Event> s;
+
+        lock.lock();
+
+        try {
+
+            s = subscriber;
+
+            if (terminated || s == null) {
+
+                return;
+            }
+
+            terminated = true;
+
+            if (error == null && cancelled) {
+
+                return;
+            }
+
+            cancelled = true;
+            subscriber = null;
+        }
+        finally {
+
+            lock.unlock();
+        }
+
+        if (error == null) {
+
+            s.onComplete();
+        }
+        else {
+
+            s.onError(error);
+        }
+    }
+
+    /**
+     * Rejects a second subscriber, as the specification requires, with onSubscribe() followed by onError().
+     */
+    private void reject(Subscriber<? super Event> s) {
+
+        s.onSubscribe(new Subscription() {
+
+            @Override
+            public void request(long n) {
+
+                // noop
+            }
+
+            @Override
+            public void cancel() {
+
+                // noop
+            }
+        });
+
+        s.onError(new IllegalStateException(this + " supports a single subscriber"));
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private class EventSubscription implements Subscription {
+
+        @Override
+        public void request(long n) {
+
+            lock.lock();
+
+            try {
+
+                if (cancelled) {
+
+                    return;
+                }
+
+                if (n <= 0) {
+
+                    pendingError = new IllegalArgumentException("invalid request: " + n);
+                }
+                else {
+
+                    demand += n;
+
+                    if (demand < 0) {
+
+                        //
+                        // overflow, effectively unbounded
+                        //
+
+                        demand = Long.MAX_VALUE;
+                    }
+                }
+
+                demandChanged.signalAll();
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void cancel() {
+
+            lock.lock();
+
+            try {
+
+                cancelled = true;
+                subscriber = null;
+                demandChanged.signalAll();
+            }
+            finally {
+
+                lock.unlock();
+            }
+        }
+    }
+
+}
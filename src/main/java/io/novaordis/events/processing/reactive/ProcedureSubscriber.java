@@ -0,0 +1,447 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.reactive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+
+/**
+ * Adapts a procedure to the subscriber side of a demand-driven event stream. The subscriber requests as many events as
+ * its buffer holds, hands them over to the procedure in batches, on an executor thread, and requests more only after
+ * the procedure processed them. The number of events requested but not yet processed never exceeds the buffer size,
+ * so memory is bounded, and a slow procedure slows the publisher down instead of making it buffer.
+ *
+ * Stream completion, upstream errors included, is delivered to the procedure as an EndOfStreamEvent, so it gets to
+ * flush its output. If the procedure signals isExitLoop(), the subscription is cancelled and the procedure receives
+ * the EndOfStreamEvent right away.
+ *
+ * Unless an executor is provided, the subscriber runs the procedure on its own daemon thread, which exits when the
+ * stream ends.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureSubscriber implements Subscriber<Event> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(ProcedureSubscriber.class);
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Procedure procedure;
+
+    private final int bufferSize;
+
+    // the size of the batches handed over to the procedure, and the demand replenishment unit
+    private final int batchSize;
+
+    private final Executor executor;
+
+    // not null if we own the executor
+    private final ExecutorService ownExecutor;
+
+    private final BlockingQueue<Event> queue;
+
+    private final AtomicInteger workInProgress;
+
+    private final CountDownLatch terminated;
+
+    private final Runnable drain;
+
+    private volatile Subscription subscription;
+
+    private volatile boolean done;
+
+    private volatile Throwable failure;
+
+    //
+    // accessed only by the drain loop, which is never concurrent with itself
+    //
+
+    private long consumed;
+
+    private boolean endOfStreamDelivered;
+
+    private boolean finished;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public ProcedureSubscriber(Procedure procedure) {
+
+        this(procedure, DEFAULT_BUFFER_SIZE);
+    }
+
+    public ProcedureSubscriber(Procedure procedure, int bufferSize) {
+
+        this(procedure, bufferSize, null);
+    }
+
+    /**
+     * @param bufferSize the maximum number of events requested but not yet processed.
+     * @param executor runs the procedure. May be null, in which case the subscriber starts its own thread.
+     *
+     * @exception IllegalArgumentException on null procedure or invalid buffer size.
+     */
+    public ProcedureSubscriber(Procedure procedure, int bufferSize, Executor executor) {
+
+        if (procedure == null) {
+
+            throw new IllegalArgumentException("null procedure");
+        }
+
+        if (bufferSize <= 0) {
+
+            throw new IllegalArgumentException("invalid buffer size: " + bufferSize);
+        }
+
+        this.procedure = procedure;
+        this.bufferSize = bufferSize;
+        this.batchSize = Math.max(1, bufferSize / 4);
+        this.queue = new ArrayBlockingQueue<>(bufferSize);
+        this.workInProgress = new AtomicInteger(0);
+        this.terminated = new CountDownLatch(1);
+
+        if (executor == null) {
+
+            final String name = "subscriber-" + procedure;
+
+            this.ownExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+                @Override
+                public Thread newThread(Runnable r) {
+
+                    Thread t = new Thread(r, name);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+
+            this.executor = ownExecutor;
+        }
+        else {
+
+            this.ownExecutor = null;
+            this.executor = executor;
+        }
+
+        this.drain = new Runnable() {
+
+            @Override
+            public void run() {
+
+                drain();
+            }
+        };
+    }
+
+    // Subscriber implementation ---------------------------------------------------------------------------------------
+
+    @Override
+    public void onSubscribe(Subscription s) {
+
+        if (s == null) {
+
+            throw new IllegalArgumentException("null subscription");
+        }
+
+        if (subscription != null || done) {
+
+            s.cancel();
+            return;
+        }
+
+        subscription = s;
+
+        s.request(bufferSize);
+    }
+
+    @Override
+    public void onNext(Event e) {
+
+        if (e == null) {
+
+            throw new IllegalArgumentException("null event");
+        }
+
+        if (done) {
+
+            return;
+        }
+
+        if (!queue.offer(e)) {
+
+            //
+            // the publisher sent more than we requested
+            //
+
+            failure = new IllegalStateException(this + " received more events than it requested");
+            subscription.cancel();
+            done = true;
+        }
+
+        schedule();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+
+        if (t == null) {
+
+            throw new IllegalArgumentException("null throwable");
+        }
+
+        if (done) {
+
+            return;
+        }
+
+        failure = t;
+        done = true;
+        schedule();
+    }
+
+    @Override
+    public void onComplete() {
+
+        done = true;
+        schedule();
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public Procedure getProcedure() {
+
+        return procedure;
+    }
+
+    public int getBufferSize() {
+
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of events received but not yet handed over to the procedure.
+     */
+    public int getBufferedEventCount() {
+
+        return queue.size();
+    }
+
+    /**
+     * Waits until the procedure processed the EndOfStreamEvent.
+     *
+     * @return true if it did, false if the timeout elapsed.
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+        return terminated.await(timeout, unit);
+    }
+
+    public boolean isTerminated() {
+
+        return terminated.getCount() == 0;
+    }
+
+    /**
+     * @return the upstream error, the protocol violation or the procedure failure that ended the stream abnormally,
+     * or null.
+     */
+    public Throwable getFailure() {
+
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+
+        return "ProcedureSubscriber[" + procedure + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void schedule() {
+
+        if (workInProgress.getAndIncrement() == 0) {
+
+            executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+
+        int missed = 1;
+
+        while(true) {
+
+            while(!finished) {
+
+                //
+                // read "done" before looking at the queue: once it is set, no more events arrive
+                //
+
+                boolean d = done;
+
+                List<Event> batch = new ArrayList<>(batchSize);
+
+                queue.drainTo(batch, batchSize);
+
+                if (batch.isEmpty()) {
+
+                    if (d) {
+
+                        finish();
+                    }
+
+                    break;
+                }
+
+                if (!deliver(batch)) {
+
+                    break;
+                }
+
+                consumed += batch.size();
+
+                if (consumed >= batchSize) {
+
+                    subscription.request(consumed);
+                    consumed = 0;
+                }
+            }
+
+            missed = workInProgress.addAndGet(-missed);
+
+            if (missed == 0) {
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return false if the stream was finished as a consequence of the delivery.
+     */
+    private boolean deliver(List<Event> batch) {
+
+        try {
+
+            procedure.process(batch);
+
+            endOfStreamDelivered = batch.get(batch.size() - 1) instanceof EndOfStreamEvent;
+        }
+        catch(EventProcessingException e) {
+
+            String msg = procedure + " failed to process event";
+            log.warn(msg);
+            log.debug(msg, e);
+        }
+        catch(RuntimeException e) {
+
+            log.error(procedure + " failed", e);
+
+            failure = e;
+            subscription.cancel();
+            finish();
+            return false;
+        }
+
+        if (endOfStreamDelivered || procedure.isExitLoop()) {
+
+            subscription.cancel();
+            finish();
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Delivers the EndOfStreamEvent, unless the procedure processed it already, and releases the resources. The
+     * delivery is attempted even after a procedure failure, as the procedure may still be able to flush its output.
+     */
+    private void finish() {
+
+        if (finished) {
+
+            return;
+        }
+
+        finished = true;
+
+        queue.clear();
+
+        try {
+
+            if (!endOfStreamDelivered) {
+
+                procedure.process(Collections.<Event>singletonList(new EndOfStreamEvent()));
+                endOfStreamDelivered = true;
+            }
+        }
+        catch(Exception e) {
+
+            String msg = procedure + " failed to process EndOfStream";
+            log.warn(msg);
+            log.debug(msg, e);
+        }
+        finally {
+
+            if (failure != null) {
+
+                log.debug(this + " ended abnormally", failure);
+            }
+
+            terminated.countDown();
+
+            if (ownExecutor != null) {
+
+                ownExecutor.shutdown();
+            }
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.reactive;
+
+/**
+ * Mirrors org.reactivestreams.Subscriber (java.util.concurrent.Flow.Subscriber since Java 9), which the Java 8 baseline
+ * cannot depend on. The semantics are the Reactive Streams specification's: the signals are never concurrent, onNext()
+ * is invoked at most as many times as requested, and onError() or onComplete() terminate the subscription.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface Subscriber<T> {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    void onSubscribe(Subscription s);
+
+    void onNext(T item);
+
+    void onError(Throwable t);
+
+    void onComplete();
+
+}
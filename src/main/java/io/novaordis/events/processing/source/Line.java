@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A view of one line of the source, handed over to the LineParser. The instance is reused for all lines, so parsers
+ * must extract what they need and not keep references to it, or to its buffer.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public final class Line {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private ByteBuffer buffer;
+    private int start;
+    private int end;
+    private long lineNumber;
+    private long sourceOffset;
+    private long sourceLength;
+
+    private byte[] scratch;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    Line() {
+
+        this.scratch = new byte[256];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the buffer that contains the line, between getStart() and getEnd(). Do not modify.
+     */
+    public ByteBuffer getBuffer() {
+
+        return buffer;
+    }
+
+    /**
+     * @return the buffer index of the first byte of the line.
+     */
+    public int getStart() {
+
+        return start;
+    }
+
+    /**
+     * @return the buffer index after the last byte of the line content, not including the line terminator.
+     */
+    public int getEnd() {
+
+        return end;
+    }
+
+    /**
+     * @return the length of the line content, not including the line terminator.
+     */
+    public int getLength() {
+
+        return end - start;
+    }
+
+    /**
+     * @return the 1-based line number.
+     */
+    public long getLineNumber() {
+
+        return lineNumber;
+    }
+
+    /**
+     * @return the offset of the first byte of the line in the source.
+     */
+    public long getSourceOffset() {
+
+        return sourceOffset;
+    }
+
+    /**
+     * @return the length of the line in the source, including the line terminator.
+     */
+    public long getSourceLength() {
+
+        return sourceLength;
+    }
+
+    /**
+     * @return the byte at the given position within the line content.
+     */
+    public byte byteAt(int index) {
+
+        return buffer.get(start + index);
+    }
+
+    /**
+     * Decodes the line content, without the line terminator.
+     */
+    public String toString(Charset charset) {
+
+        int length = end - start;
+
+        if (scratch.length < length) {
+
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+
+        for(int i = 0; i < length; i ++) {
+
+            scratch[i] = buffer.get(start + i);
+        }
+
+        return new String(scratch, 0, length, charset);
+    }
+
+    @Override
+    public String toString() {
+
+        return "Line[" + lineNumber + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void set(ByteBuffer buffer, int start, int end, long lineNumber, long sourceOffset, long sourceLength) {
+
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+        this.lineNumber = lineNumber;
+        this.sourceOffset = sourceOffset;
+        this.sourceLength = sourceLength;
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+
+/**
+ * Turns lines into events. Plugged into MappedFileEventSource. Implementations are invoked from a single thread.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public interface LineParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @param line a reused view, do not keep references to it.
+     *
+     * @return the event, or null if the line does not produce an event (for example, a comment, or a line that
+     * continues the previous event, when the parser accumulates multi-line events).
+     *
+     * @exception EventProcessingException on unrecoverable parsing failures.
+     */
+    Event parse(Line line) throws EventProcessingException;
+
+    /**
+     * Invoked after the last line, for parsers that accumulate state.
+     *
+     * @return the last event, or null.
+     */
+    Event close() throws EventProcessingException;
+
+}
@@ -0,0 +1,381 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+
+/**
+ * An event source that memory-maps a file, a chunk at a time, splits the chunks into lines, turns the lines into
+ * events with a pluggable LineParser and delivers the events to a procedure in batches, via process(List<Event>).
+ *
+ * Each chunk is a read-only mapping that ends on a line boundary: the mapping is cut after its last '\n', and the next
+ * chunk starts right after. A line longer than the chunk size causes the window to be enlarged until it fits. Both
+ * '\n' and "\r\n" are recognized as line terminators; the last line of the file does not need a terminator.
+ *
+ * Unless disabled, an EndOfStreamEvent is delivered after the last batch. If the procedure signals isExitLoop(), no
+ * more lines are read, but the EndOfStreamEvent is still delivered.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class MappedFileEventSource {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(MappedFileEventSource.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Path path;
+
+    private final LineParser parser;
+
+    private int batchSize;
+
+    private int chunkSize;
+
+    private boolean endOfStream;
+
+    private long bytesRead;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    /**
+     * @exception IllegalArgumentException on null path or parser.
+     */
+    public MappedFileEventSource(Path path, LineParser parser) {
+
+        if (path == null) {
+
+            throw new IllegalArgumentException("null path");
+        }
+
+        if (parser == null) {
+
+            throw new IllegalArgumentException("null parser");
+        }
+
+        this.path = path;
+        this.parser = parser;
+        this.batchSize = DEFAULT_BATCH_SIZE;
+        this.chunkSize = DEFAULT_CHUNK_SIZE;
+        this.endOfStream = true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    public Path getPath() {
+
+        return path;
+    }
+
+    public LineParser getParser() {
+
+        return parser;
+    }
+
+    public int getBatchSize() {
+
+        return batchSize;
+    }
+
+    /**
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setBatchSize(int batchSize) {
+
+        if (batchSize <= 0) {
+
+            throw new IllegalArgumentException("invalid batch size: " + batchSize);
+        }
+
+        this.batchSize = batchSize;
+    }
+
+    public int getChunkSize() {
+
+        return chunkSize;
+    }
+
+    /**
+     * @param chunkSize the size, in bytes, of the mapped window. The actual window may be shorter, because it is cut
+     * on the last line boundary, or longer, if a single line does not fit.
+     *
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setChunkSize(int chunkSize) {
+
+        if (chunkSize <= 0) {
+
+            throw new IllegalArgumentException("invalid chunk size: " + chunkSize);
+        }
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * @return true if an EndOfStreamEvent is delivered after the last batch (the default).
+     */
+    public boolean isEndOfStream() {
+
+        return endOfStream;
+    }
+
+    public void setEndOfStream(boolean endOfStream) {
+
+        this.endOfStream = endOfStream;
+    }
+
+    /**
+     * @return the number of bytes consumed by the last feed() invocation.
+     */
+    public long getBytesRead() {
+
+        return bytesRead;
+    }
+
+    /**
+     * Reads the whole file and delivers the events to the procedure.
+     *
+     * @return the number of events delivered, not counting the EndOfStreamEvent.
+     *
+     * @exception IllegalArgumentException on null procedure.
+     * @exception IOException on failure to read the file.
+     * @exception EventProcessingException if the parser or the procedure fail.
+     */
+    public long feed(Procedure procedure) throws IOException, EventProcessingException {
+
+        if (procedure == null) {
+
+            throw new IllegalArgumentException("null procedure");
+        }
+
+        bytesRead = 0L;
+
+        long events = 0L;
+        long lineNumber = 0L;
+
+        Line line = new Line();
+        List<Event> batch = new ArrayList<>(batchSize);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+
+            long size = channel.size();
+            long position = 0L;
+            int window = chunkSize;
+
+            while(position < size && !procedure.isExitLoop()) {
+
+                int length = (int)Math.min(window, size - position);
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                boolean last = position + length == size;
+
+                //
+                // cut the window after its last line terminator, unless this is the end of the file
+                //
+
+                int limit = length;
+
+                if (!last) {
+
+                    limit = lastIndexOf(buffer, (byte)'\n', length) + 1;
+
+                    if (limit == 0) {
+
+                        //
+                        // no complete line in the window, enlarge it and map again
+                        //
+
+                        if (window == Integer.MAX_VALUE) {
+
+                            throw new IOException(
+                                    "line " + (lineNumber + 1) + " exceeds the maximum mappable size, in " + path);
+                        }
+
+                        window = (int)Math.min((long)window * 2, Integer.MAX_VALUE);
+
+                        continue;
+                    }
+                }
+
+                //
+                // split into lines
+                //
+
+                int start = 0;
+
+                while(start < limit) {
+
+                    int end = indexOf(buffer, (byte)'\n', start, limit);
+
+                    int next = end < 0 ? limit : end + 1;
+
+                    if (end < 0) {
+
+                        end = limit;
+                    }
+
+                    int contentEnd = end;
+
+                    if (contentEnd > start && buffer.get(contentEnd - 1) == '\r') {
+
+                        contentEnd --;
+                    }
+
+                    line.set(buffer, start, contentEnd, ++ lineNumber, position + start, next - start);
+
+                    start = next;
+
+                    Event e = parser.parse(line);
+
+                    if (e != null) {
+
+                        batch.add(e);
+
+                        if (batch.size() == batchSize) {
+
+                            events += deliver(procedure, batch);
+                            batch = new ArrayList<>(batchSize);
+
+                            if (procedure.isExitLoop()) {
+
+                                break;
+                            }
+                        }
+                    }
+                }
+
+                position += start;
+                bytesRead += start;
+                window = chunkSize;
+            }
+        }
+
+        if (!procedure.isExitLoop()) {
+
+            Event e = parser.close();
+
+            if (e != null) {
+
+                batch.add(e);
+            }
+
+            events += batch.size();
+
+            //
+            // the EndOfStreamEvent travels with the last batch
+            //
+
+            if (endOfStream) {
+
+                batch.add(new EndOfStreamEvent());
+            }
+
+            if (!batch.isEmpty()) {
+
+                procedure.process(batch);
+            }
+        }
+        else if (endOfStream) {
+
+            procedure.process(new EndOfStreamEvent());
+        }
+
+        log.debug(this + " delivered " + events + " event(s) from " + bytesRead + " byte(s)");
+
+        return events;
+    }
+
+    @Override
+    public String toString() {
+
+        return "MappedFileEventSource[" + path + "]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static int deliver(Procedure procedure, List<Event> batch) throws EventProcessingException {
+
+        procedure.process(batch);
+
+        return batch.size();
+    }
+
+    /**
+     * @return the index of the first occurrence of b in [from, to), or -1.
+     */
+    private static int indexOf(MappedByteBuffer buffer, byte b, int from, int to) {
+
+        for(int i = from; i < to; i ++) {
+
+            if (buffer.get(i) == b) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * @return the index of the last occurrence of b in [0, to), or -1.
+     */
+    private static int lastIndexOf(MappedByteBuffer buffer, byte b, int to) {
+
+        for(int i = to - 1; i >= 0; i --) {
+
+            if (buffer.get(i) == b) {
+
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
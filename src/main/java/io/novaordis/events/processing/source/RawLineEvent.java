@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.processing.SourceByteRange;
+
+/**
+ * An event that carries one raw line, and knows where the line is in the source.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class RawLineEvent extends GenericEvent implements SourceByteRange {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final String line;
+    private final long sourceOffset;
+    private final long sourceLength;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public RawLineEvent(String line, long lineNumber, long sourceOffset, long sourceLength) {
+
+        this.line = line;
+        this.sourceOffset = sourceOffset;
+        this.sourceLength = sourceLength;
+
+        setLineNumber(lineNumber);
+    }
+
+    // SourceByteRange implementation ----------------------------------------------------------------------------------
+
+    @Override
+    public long getSourceOffset() {
+
+        return sourceOffset;
+    }
+
+    @Override
+    public long getSourceLength() {
+
+        return sourceLength;
+    }
+
+    // GenericEvent overrides ------------------------------------------------------------------------------------------
+
+    /**
+     * @return the line, without the line terminator.
+     */
+    @Override
+    public String getRawRepresentation() {
+
+        return line;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    @Override
+    public String toString() {
+
+        return line;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
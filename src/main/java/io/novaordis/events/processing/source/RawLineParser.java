@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import io.novaordis.events.api.event.Event;
+
+/**
+ * Produces a RawLineEvent per line.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class RawLineParser implements LineParser {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final Charset charset;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public RawLineParser() {
+
+        this(StandardCharsets.UTF_8);
+    }
+
+    public RawLineParser(Charset charset) {
+
+        if (charset == null) {
+
+            throw new IllegalArgumentException("null charset");
+        }
+
+        this.charset = charset;
+    }
+
+    // LineParser implementation ---------------------------------------------------------------------------------------
+
+    @Override
+    public Event parse(Line line) {
+
+        return new RawLineEvent(
+                line.toString(charset), line.getLineNumber(), line.getSourceOffset(), line.getSourceLength());
+    }
+
+    @Override
+    public Event close() {
+
+        return null;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
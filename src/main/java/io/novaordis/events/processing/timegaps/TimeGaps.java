@@ -16,19 +16,51 @@
 
 package io.novaordis.events.processing.timegaps;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.TimedEvent;
 import io.novaordis.events.processing.EventProcessingException;
 import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.utilities.UserErrorException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
+import java.util.PriorityQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * A procedure that looks at the time gaps between consecutive timed events. It keeps the largest K gaps in a bounded
+ * heap and a histogram of all gaps, bucketed by powers of two, so the memory footprint does not depend on the length
+ * of the stream. Nothing is written until the EndOfStreamEvent arrives; then the procedure emits a single report.
+ *
+ * Slightly out-of-order timestamps are handled by holding the most recent events in a small reorder window, sorted by
+ * timestamp, and measuring the gaps only for the events that leave the window. Events that arrive too late to be
+ * re-ordered (older than the last event that left the window, by no more than the cutoff) are counted and otherwise
+ * ignored. Gaps longer than the cutoff, forward or backward, are counted and otherwise ignored, they usually indicate
+ * concatenated logs rather than stalls. A backward jump longer than the cutoff is a discontinuity: the measurement
+ * restarts from the event that jumped back, instead of treating all the events that follow as late.
+ *
+ * If a downstream procedure is installed, the events are passed on as they leave the reorder window, so the downstream
+ * procedure sees the timed events in timestamp order. Late events are passed on too, when they leave the reorder
+ * window, and events that are not timed are passed on immediately.
+ *
+ * Command line options:
+ *
+ * --top <K> - the number of largest gaps to report. Default 10.
+ *
+ * --cutoff <ms> - gaps longer than this are ignored. Default one hour.
+ *
+ * --reorder-window <events> - the size of the reorder window, 0 disables re-ordering. Default 16.
+ *
+ * The instance is not thread safe.
+ *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 7/19/17
  */
@@ -40,14 +72,57 @@ public class TimeGaps extends TextOutputProcedure {
 
     public static final String COMMAND_LINE_LABEL = "time-gaps";
 
+    public static final String TOP_OPTION = "--top";
+    public static final String CUTOFF_OPTION = "--cutoff";
+    public static final String REORDER_WINDOW_OPTION = "--reorder-window";
+
+    public static final int DEFAULT_TOP = 10;
+    public static final long DEFAULT_CUTOFF_MS = 3600 * 1000L;
+    public static final int DEFAULT_REORDER_WINDOW = 16;
+
+    //
+    // bucket 0 holds zero gaps, bucket b > 0 holds gaps in [2^(b-1), 2^b)
+    //
+    static final int BUCKET_COUNT = 64;
+
+    private static final Comparator<Gap> BY_DURATION = new Comparator<Gap>() {
+
+        @Override
+        public int compare(Gap o1, Gap o2) {
+
+            return Long.compare(o1.getDuration(), o2.getDuration());
+        }
+    };
+
     // Static ----------------------------------------------------------------------------------------------------------
 
     // Attributes ------------------------------------------------------------------------------------------------------
 
+    private int top;
+    private long cutoff;
+
+    //
+    // the reorder window, sorted by timestamp, stable for equal timestamps. It is a ring: the earliest event is at
+    // windowHead, so it can be removed without shifting the others
+    //
+
+    private TimedEvent[] window;
+    private long[] windowTimes;
+    private int windowHead;
+    private int windowSize;
+
     private TimedEvent previous;
-    private long maxTimeGap;
-    private TimedEvent maxTimeGapFirst;
-    private TimedEvent maxTimeGapSecond;
+    private long previousTime;
+
+    // min-heap by duration, holds at most 'top' gaps
+    private PriorityQueue<Gap> largest;
+
+    private final long[] histogram;
+
+    private long timedEventCount;
+    private long gapCount;
+    private long lateEventCount;
+    private long cutoffGapCount;
 
     // Constructors ----------------------------------------------------------------------------------------------------
 
@@ -59,6 +134,22 @@ public class TimeGaps extends TextOutputProcedure {
     public TimeGaps(OutputStream os) {
 
         super(os);
+
+        this.histogram = new long[BUCKET_COUNT];
+        this.cutoff = DEFAULT_CUTOFF_MS;
+
+        setTop(DEFAULT_TOP);
+        setReorderWindow(DEFAULT_REORDER_WINDOW);
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public TimeGaps(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
     }
 
     // Procedure implementation ----------------------------------------------------------------------------------------
@@ -74,8 +165,21 @@ public class TimeGaps extends TextOutputProcedure {
     @Override
     public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
 
+        if (in instanceof EndOfStreamEvent) {
+
+            while(windowSize > 0) {
+
+                measure(removeEarliest());
+            }
+
+            report();
+
+            return;
+        }
+
         if (!(in instanceof TimedEvent)) {
 
+            emit(in);
             return;
         }
 
@@ -86,58 +190,451 @@ public class TimeGaps extends TextOutputProcedure {
         if (t == null) {
 
             log.warn("null timestamp time event: " + te);
+            emit(te);
+            return;
         }
-        else {
 
-            if (previous != null) {
+        timedEventCount ++;
 
-                Long pt = previous.getTime();
+        if (window.length == 0) {
 
-                long delta = Math.abs(t - pt);
+            measure(te);
+            return;
+        }
 
-                if (delta > 3600 * 1000L) {
+        if (windowSize == window.length) {
 
-                    //
-                    // ignore
-                    //
-                    log.warn("ignored delta " + delta + " ms");
-                }
-                else if (delta > maxTimeGap) {
+            measure(removeEarliest());
+        }
+
+        insert(te, t);
+    }
+
+    @Override
+    protected boolean isChainable() {
 
-                    maxTimeGap = delta;
-                    maxTimeGapFirst = previous;
-                    maxTimeGapSecond = te;
+        return true;
+    }
 
-                    try {
+    // Public ----------------------------------------------------------------------------------------------------------
 
-                        println(maxTimeGap + " ms, lines " + maxTimeGapFirst.getLineNumber() + ", " + maxTimeGapSecond.getLineNumber());
-                        println("line " + maxTimeGapFirst.getLineNumber() + ":");
-                        println(maxTimeGapFirst);
-                        println("line " + maxTimeGapSecond.getLineNumber() + ":");
-                        println(maxTimeGapSecond);
+    public int getTop() {
 
-                    }
-                    catch(Exception e) {
+        return top;
+    }
 
-                        log.warn("failed to write output", e);
-                    }
-                }
-            }
+    /**
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setTop(int top) {
 
-            previous = te;
+        if (top <= 0) {
+
+            throw new IllegalArgumentException("invalid top gap count: " + top);
         }
+
+        this.top = top;
+        this.largest = new PriorityQueue<>(top, BY_DURATION);
     }
 
-    // Public ----------------------------------------------------------------------------------------------------------
+    /**
+     * @return the cutoff, in milliseconds.
+     */
+    public long getCutoff() {
+
+        return cutoff;
+    }
+
+    /**
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setCutoff(long ms) {
+
+        if (ms <= 0) {
+
+            throw new IllegalArgumentException("invalid cutoff: " + ms);
+        }
+
+        this.cutoff = ms;
+    }
+
+    public int getReorderWindow() {
+
+        return window.length;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @param size the number of events held for re-ordering. 0 disables re-ordering.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setReorderWindow(int size) {
+
+        if (size < 0) {
+
+            throw new IllegalArgumentException("invalid reorder window size: " + size);
+        }
+
+        this.window = new TimedEvent[size];
+        this.windowTimes = new long[size];
+        this.windowHead = 0;
+        this.windowSize = 0;
+    }
+
+    /**
+     * @return the largest gaps measured so far, in descending order of their duration.
+     */
+    public List<Gap> getLargestGaps() {
+
+        List<Gap> result = new ArrayList<>(largest);
+
+        result.sort(Collections.reverseOrder(BY_DURATION));
+
+        return result;
+    }
+
+    /**
+     * @return the number of gaps measured and recorded, excluding those longer than the cutoff.
+     */
+    public long getGapCount() {
+
+        return gapCount;
+    }
+
+    /**
+     * @return the number of events that arrived too late to be re-ordered.
+     */
+    public long getLateEventCount() {
+
+        return lateEventCount;
+    }
+
+    /**
+     * @return the number of gaps that were longer than the cutoff, including the backward jumps longer than the cutoff.
+     */
+    public long getCutoffGapCount() {
+
+        return cutoffGapCount;
+    }
 
     // Package protected -----------------------------------------------------------------------------------------------
 
+    /**
+     * @return the histogram storage. Bucket 0 counts zero gaps, bucket b > 0 counts gaps in [2^(b-1), 2^b) ms.
+     */
+    long[] getHistogram() {
+
+        return histogram;
+    }
+
+    static int bucket(long gap) {
+
+        return 64 - Long.numberOfLeadingZeros(gap);
+    }
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (TOP_OPTION.equals(arg)) {
+
+                si.remove();
+
+                long value = optionValue(TOP_OPTION, si);
+
+                if (value > Integer.MAX_VALUE) {
+
+                    throw new UserErrorException("invalid " + TOP_OPTION + " value: " + value);
+                }
+
+                setTop((int)value);
+            }
+            else if (CUTOFF_OPTION.equals(arg)) {
+
+                si.remove();
+                setCutoff(optionValue(CUTOFF_OPTION, si));
+            }
+            else if (REORDER_WINDOW_OPTION.equals(arg)) {
+
+                si.remove();
+
+                long value = optionValue(REORDER_WINDOW_OPTION, si);
+
+                if (value > Integer.MAX_VALUE) {
+
+                    throw new UserErrorException("invalid " + REORDER_WINDOW_OPTION + " value: " + value);
+                }
+
+                setReorderWindow((int)value);
+            }
+        }
+    }
+
     // Protected -------------------------------------------------------------------------------------------------------
 
     // Static Protected ------------------------------------------------------------------------------------------------
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    /**
+     * Consumes and removes the value that follows the option. Values must be positive, except for the reorder window,
+     * which may be zero.
+     */
+    private static long optionValue(String option, Iterator<String> si) throws UserErrorException {
+
+        if (!si.hasNext()) {
+
+            throw new UserErrorException("missing value after " + option);
+        }
+
+        String s = si.next();
+        si.remove();
+
+        long value;
+
+        try {
+
+            value = Long.parseLong(s);
+        }
+        catch(NumberFormatException e) {
+
+            throw new UserErrorException("invalid " + option + " value: " + s);
+        }
+
+        if (value < 0 || (value == 0 && !REORDER_WINDOW_OPTION.equals(option))) {
+
+            throw new UserErrorException("invalid " + option + " value: " + s);
+        }
+
+        return value;
+    }
+
+    /**
+     * Insert in timestamp order, after the events with the same timestamp.
+     */
+    private void insert(TimedEvent te, long t) {
+
+        int i = slot(windowSize);
+
+        for(int k = windowSize; k > 0; k --) {
+
+            int previousSlot = i == 0 ? window.length - 1 : i - 1;
+
+            if (windowTimes[previousSlot] <= t) {
+
+                break;
+            }
+
+            window[i] = window[previousSlot];
+            windowTimes[i] = windowTimes[previousSlot];
+            i = previousSlot;
+        }
+
+        window[i] = te;
+        windowTimes[i] = t;
+        windowSize ++;
+    }
+
+    private TimedEvent removeEarliest() {
+
+        TimedEvent earliest = window[windowHead];
+
+        window[windowHead] = null;
+        windowHead = slot(1);
+        windowSize --;
+
+        return earliest;
+    }
+
+    /**
+     * @return the array index of the k-th event in the reorder window, in timestamp order.
+     */
+    private int slot(int k) {
+
+        int i = windowHead + k;
+
+        return i < window.length ? i : i - window.length;
+    }
+
+    /**
+     * Measures the gap between the given event and the previous event that left the reorder window.
+     */
+    private void measure(TimedEvent te) throws EventProcessingException {
+
+        emit(te);
+
+        long t = te.getTime();
+
+        if (previous == null) {
+
+            previous = te;
+            previousTime = t;
+            return;
+        }
+
+        long gap = t - previousTime;
+
+        if (gap < 0 && -gap <= cutoff) {
+
+            lateEventCount ++;
+
+            if (log.isDebugEnabled()) {
+
+                log.debug("event arrived " + (-gap) + " ms late, ignoring it: " + te);
+            }
+
+            return;
+        }
+
+        if (gap > cutoff || gap < 0) {
+
+            cutoffGapCount ++;
+
+            if (log.isDebugEnabled()) {
+
+                log.debug("ignored gap " + gap + " ms");
+            }
+        }
+        else {
+
+            gapCount ++;
+            histogram[bucket(gap)] ++;
+
+            if (largest.size() < top) {
+
+                largest.add(new Gap(gap, previous, te));
+            }
+            else if (gap > largest.peek().getDuration()) {
+
+                largest.poll();
+                largest.add(new Gap(gap, previous, te));
+            }
+        }
+
+        previous = te;
+        previousTime = t;
+    }
+
+    private void report() throws EventProcessingException {
+
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(timedEventCount).append(" timed events, ").append(gapCount).append(" gaps");
+
+        if (cutoffGapCount > 0) {
+
+            sb.append(", ").append(cutoffGapCount).append(" gaps longer than ").append(cutoff).append(" ms ignored");
+        }
+
+        if (lateEventCount > 0) {
+
+            sb.append(", ").append(lateEventCount).append(" late events ignored");
+        }
+
+        sb.append('\n');
+
+        List<Gap> gaps = getLargestGaps();
+
+        if (!gaps.isEmpty()) {
+
+            sb.append('\n').append("largest ").append(gaps.size()).append(" gaps:\n");
+
+            for(Gap g: gaps) {
+
+                Long firstLine = g.getFirst().getLineNumber();
+                Long secondLine = g.getSecond().getLineNumber();
+
+                sb.append('\n');
+                sb.append(g.getDuration()).append(" ms, lines ").append(firstLine).append(", ").append(secondLine);
+                sb.append('\n');
+                sb.append("line ").append(firstLine).append(":\n").append(g.getFirst()).append('\n');
+                sb.append("line ").append(secondLine).append(":\n").append(g.getSecond()).append('\n');
+            }
+        }
+
+        sb.append('\n').append("gap histogram:\n");
+
+        for(int b = 0; b < BUCKET_COUNT; b ++) {
+
+            if (histogram[b] == 0) {
+
+                continue;
+            }
+
+            if (b == 0) {
+
+                sb.append("0 ms");
+            }
+            else {
+
+                sb.append('[').append(1L << (b - 1)).append(", ").append(1L << b).append(") ms");
+            }
+
+            sb.append(": ").append(histogram[b]).append('\n');
+        }
+
+        try {
+
+            print(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    /**
+     * The gap between two consecutive (in timestamp order) timed events.
+     */
+    public static class Gap {
+
+        private final long duration;
+        private final TimedEvent first;
+        private final TimedEvent second;
+
+        Gap(long duration, TimedEvent first, TimedEvent second) {
+
+            this.duration = duration;
+            this.first = first;
+            this.second = second;
+        }
+
+        /**
+         * @return the duration, in milliseconds.
+         */
+        public long getDuration() {
+
+            return duration;
+        }
+
+        public TimedEvent getFirst() {
+
+            return first;
+        }
+
+        public TimedEvent getSecond() {
+
+            return second;
+        }
+
+        @Override
+        public String toString() {
+
+            return duration + " ms";
+        }
+    }
+
 }
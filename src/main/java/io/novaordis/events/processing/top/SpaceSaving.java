@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.top;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frequency estimation for the most frequent values of a stream, in bounded memory, with the Space-Saving algorithm
+ * (Metwally, Agrawal, El Abbadi, "Efficient Computation of Frequent and Top-k Elements in Data Streams", 2005).
+ *
+ * At most capacity values are tracked. When a value that is not tracked arrives and all counters are in use, the
+ * counter with the smallest count is taken over by the new value, which inherits the count, plus one, and records the
+ * inherited count as its error. A tracked count never underestimates the true frequency, and overestimates it by at
+ * most its error. Any value whose frequency exceeds total/capacity is guaranteed to be tracked, and the frequency of a
+ * value that is not tracked does not exceed getMaxError().
+ *
+ * The counters are kept in a min-heap indexed by a hash map, so an update is O(log capacity) in the worst case, and O(1)
+ * for the frequent values, whose counters rarely move.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class SpaceSaving {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private final int capacity;
+
+    private final Map<String, Counter> counters;
+
+    // min-heap by count
+    private final Counter[] heap;
+
+    private int size;
+
+    private long total;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public SpaceSaving() {
+
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @exception IllegalArgumentException on non-positive capacity.
+     */
+    public SpaceSaving(int capacity) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.capacity = capacity;
+        this.counters = new HashMap<>();
+        this.heap = new Counter[capacity];
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * Null is ignored.
+     */
+    public void add(String value) {
+
+        if (value == null) {
+
+            return;
+        }
+
+        total ++;
+
+        Counter c = counters.get(value);
+
+        if (c != null) {
+
+            c.count ++;
+            siftDown(c.index);
+            return;
+        }
+
+        if (size < capacity) {
+
+            c = new Counter(value, 1L, 0L);
+            c.index = size;
+            heap[size ++] = c;
+            counters.put(value, c);
+            siftUp(c.index);
+            return;
+        }
+
+        //
+        // take over the counter with the smallest count
+        //
+
+        c = heap[0];
+        counters.remove(c.value);
+
+        c.value = value;
+        c.error = c.count;
+        c.count ++;
+
+        counters.put(value, c);
+        siftDown(0);
+    }
+
+    /**
+     * @return at most n counters, in descending order of their count, ties in ascending order of their value.
+     */
+    public List<Counter> getTop(int n) {
+
+        Counter[] sorted = Arrays.copyOf(heap, size);
+
+        Arrays.sort(sorted, new Comparator<Counter>() {
+
+            @Override
+            public int compare(Counter c, Counter c2) {
+
+                int result = Long.compare(c2.count, c.count);
+
+                return result != 0 ? result : c.value.compareTo(c2.value);
+            }
+        });
+
+        List<Counter> result = new ArrayList<>(Math.min(n, size));
+
+        for(int i = 0; i < sorted.length && i < n; i ++) {
+
+            Counter c = sorted[i];
+            result.add(new Counter(c.value, c.count, c.error));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the number of values seen.
+     */
+    public long getTotal() {
+
+        return total;
+    }
+
+    /**
+     * @return an upper bound for the frequency of any value that is not tracked, and for the overestimation of any
+     * tracked count. 0 as long as fewer distinct values than the capacity were seen: all counts are exact.
+     */
+    public long getMaxError() {
+
+        return size < capacity ? 0L : heap[0].count;
+    }
+
+    public int getCapacity() {
+
+        return capacity;
+    }
+
+    /**
+     * @return the number of values tracked.
+     */
+    public int size() {
+
+        return size;
+    }
+
+    public void clear() {
+
+        Arrays.fill(heap, 0, size, null);
+        counters.clear();
+        size = 0;
+        total = 0L;
+    }
+
+    @Override
+    public String toString() {
+
+        return "SpaceSaving[" + capacity + ", " + size + " values tracked, " + total + " seen]";
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private void siftUp(int i) {
+
+        Counter c = heap[i];
+
+        while(i > 0) {
+
+            int parent = (i - 1) >>> 1;
+            Counter p = heap[parent];
+
+            if (p.count <= c.count) {
+
+                break;
+            }
+
+            heap[i] = p;
+            p.index = i;
+            i = parent;
+        }
+
+        heap[i] = c;
+        c.index = i;
+    }
+
+    private void siftDown(int i) {
+
+        Counter c = heap[i];
+
+        int half = size >>> 1;
+
+        while(i < half) {
+
+            int child = 2 * i + 1;
+            Counter smallest = heap[child];
+
+            int right = child + 1;
+
+            if (right < size && heap[right].count < smallest.count) {
+
+                child = right;
+                smallest = heap[right];
+            }
+
+            if (c.count <= smallest.count) {
+
+                break;
+            }
+
+            heap[i] = smallest;
+            smallest.index = i;
+            i = child;
+        }
+
+        heap[i] = c;
+        c.index = i;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * A tracked value. The instances returned by getTop() are snapshots.
+     */
+    public static class Counter {
+
+        private String value;
+
+        private long count;
+
+        private long error;
+
+        // the position in the heap
+        private int index;
+
+        private Counter(String value, long count, long error) {
+
+            this.value = value;
+            this.count = count;
+            this.error = error;
+        }
+
+        public String getValue() {
+
+            return value;
+        }
+
+        /**
+         * @return the estimated frequency, never lower than the true frequency.
+         */
+        public long getCount() {
+
+            return count;
+        }
+
+        /**
+         * @return the maximum overestimation of the count.
+         */
+        public long getError() {
+
+            return error;
+        }
+
+        /**
+         * @return the frequency the value is guaranteed to have.
+         */
+        public long getGuaranteedCount() {
+
+            return count - error;
+        }
+
+        @Override
+        public String toString() {
+
+            return value + ": " + count + (error == 0 ? "" : " (error " + error + ")");
+        }
+    }
+
+}
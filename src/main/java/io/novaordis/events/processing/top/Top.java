@@ -0,0 +1,480 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.top;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.TimedEvent;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.events.processing.output.CachedTimestampFormat;
+import io.novaordis.events.processing.output.DefaultOutputFormat;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.output.PropertySelection;
+import io.novaordis.utilities.UserErrorException;
+
+/**
+ * A procedure that reports the most frequent values (heavy hitters) of one or more properties - URLs, error codes,
+ * client IPs - in bounded memory, with a SpaceSaving summary per property. Values are compared by their string
+ * representation; events that do not carry the property, or carry it with a null value, are not counted.
+ *
+ * The top values are reported on EndOfStreamEvent and, optionally, each time the event time crosses an interval
+ * boundary. The interval reports are cumulative, they cover the stream from its beginning. Each value is reported with
+ * its estimated count; when the summary could not keep all the values, the count may be overestimated, and the lower
+ * bound of the true count is also reported.
+ *
+ * All events are passed on to the downstream procedure, if any, as they arrive.
+ *
+ * Command line options:
+ *
+ * -o <property-list> - the properties, specified the same way as for the output procedure: names, or 0-based indices,
+ * separated by spaces or commas.
+ *
+ * -n <count> - the number of values reported per property. Default 20.
+ *
+ * --capacity <count> - the number of values tracked per property, which bounds the memory and the error: any value
+ * more frequent than 1/capacity of the stream is reported accurately enough to be ranked. Default the larger of 1000
+ * and ten times the number of values reported.
+ *
+ * --interval <ms> - also report every time the event time crosses a multiple of the interval.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class Top extends TextOutputProcedure {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    public static final String COMMAND_LINE_LABEL = "top";
+
+    public static final String PROPERTIES_OPTION = Output.OUTPUT_FORMAT_OPTION;
+    public static final String COUNT_OPTION = "-n";
+    public static final String CAPACITY_OPTION = "--capacity";
+    public static final String INTERVAL_OPTION = "--interval";
+
+    public static final int DEFAULT_COUNT = 20;
+
+    private static final long NO_INTERVAL = Long.MIN_VALUE;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private PropertySelection properties;
+
+    private int count;
+
+    // 0 means the default
+    private int capacity;
+
+    // 0 means no interval reports
+    private long interval;
+
+    // built when the first event arrives
+    private SpaceSaving[] summaries;
+
+    private long intervalStart;
+
+    private final CachedTimestampFormat timestampFormat;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public Top() {
+
+        this(null);
+    }
+
+    public Top(OutputStream os) {
+
+        super(os);
+
+        this.properties = new PropertySelection();
+        this.count = DEFAULT_COUNT;
+        this.intervalStart = NO_INTERVAL;
+        this.timestampFormat = DefaultOutputFormat.newDefaultTimestampFormat();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public Top(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.singletonList(COMMAND_LINE_LABEL);
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
+
+        if (summaries == null) {
+
+            initialize();
+        }
+
+        if (in instanceof EndOfStreamEvent) {
+
+            report(NO_INTERVAL);
+            return;
+        }
+
+        emit(in);
+
+        if (interval > 0 && in instanceof TimedEvent) {
+
+            Long t = ((TimedEvent)in).getTime();
+
+            if (t != null) {
+
+                long start = Math.floorDiv(t, interval) * interval;
+
+                if (intervalStart == NO_INTERVAL) {
+
+                    intervalStart = start;
+                }
+                else if (start > intervalStart) {
+
+                    report(start);
+                    intervalStart = start;
+                }
+            }
+        }
+
+        for(int i = 0; i < summaries.length; i ++) {
+
+            Property p = properties.select(in, i);
+
+            if (p == null) {
+
+                continue;
+            }
+
+            Object value = p.getValue();
+
+            if (value != null) {
+
+                summaries[i].add(value.toString());
+            }
+        }
+    }
+
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * The selection can be modified before processing starts.
+     */
+    public PropertySelection getProperties() {
+
+        return properties;
+    }
+
+    /**
+     * @return the number of values reported per property.
+     */
+    public int getCount() {
+
+        return count;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setCount(int count) {
+
+        if (count <= 0) {
+
+            throw new IllegalArgumentException("invalid count: " + count);
+        }
+
+        this.count = count;
+    }
+
+    /**
+     * @return the number of values tracked per property.
+     */
+    public int getCapacity() {
+
+        return capacity != 0 ? capacity : Math.max(SpaceSaving.DEFAULT_CAPACITY, 10 * count);
+    }
+
+    /**
+     * Must be invoked before processing starts. The capacity must not be smaller than the count.
+     *
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setCapacity(int capacity) {
+
+        if (capacity <= 0) {
+
+            throw new IllegalArgumentException("invalid capacity: " + capacity);
+        }
+
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the report interval, in milliseconds, or 0 if the values are only reported at the end of the stream.
+     */
+    public long getInterval() {
+
+        return interval;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @param ms the interval, 0 disables interval reports.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setInterval(long ms) {
+
+        if (ms < 0) {
+
+            throw new IllegalArgumentException("invalid interval: " + ms);
+        }
+
+        this.interval = ms;
+    }
+
+    /**
+     * @return the summary of the property at the given position in the selection, or null if processing did not start.
+     */
+    public SpaceSaving getSummary(int position) {
+
+        return summaries == null ? null : summaries[position];
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        PropertySelection selection = PropertySelection.fromCommandLine(
+                PROPERTIES_OPTION, from, mutableCommandLineArgumentsList);
+
+        if (selection != null) {
+
+            properties = selection;
+        }
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (COUNT_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(COUNT_OPTION, si);
+
+                try {
+
+                    setCount(Integer.parseInt(value));
+                }
+                catch(IllegalArgumentException e) {
+
+                    //
+                    // NumberFormatException is an IllegalArgumentException
+                    //
+
+                    throw new UserErrorException("invalid " + COUNT_OPTION + " value: " + value);
+                }
+            }
+            else if (CAPACITY_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(CAPACITY_OPTION, si);
+
+                try {
+
+                    setCapacity(Integer.parseInt(value));
+                }
+                catch(IllegalArgumentException e) {
+
+                    throw new UserErrorException("invalid " + CAPACITY_OPTION + " value: " + value);
+                }
+            }
+            else if (INTERVAL_OPTION.equals(arg)) {
+
+                si.remove();
+
+                String value = optionValue(INTERVAL_OPTION, si);
+
+                long ms;
+
+                try {
+
+                    ms = Long.parseLong(value);
+                }
+                catch(NumberFormatException e) {
+
+                    throw new UserErrorException("invalid " + INTERVAL_OPTION + " value: " + value);
+                }
+
+                if (ms <= 0) {
+
+                    throw new UserErrorException("invalid " + INTERVAL_OPTION + " value: " + value);
+                }
+
+                setInterval(ms);
+            }
+        }
+
+        if (getCapacity() < count) {
+
+            throw new UserErrorException(
+                    CAPACITY_OPTION + " " + getCapacity() + " is smaller than " + COUNT_OPTION + " " + count);
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Consumes and removes the value that follows the option.
+     */
+    private static String optionValue(String option, Iterator<String> si) throws UserErrorException {
+
+        if (!si.hasNext()) {
+
+            throw new UserErrorException("missing value after " + option);
+        }
+
+        String s = si.next();
+        si.remove();
+        return s;
+    }
+
+    private void initialize() throws EventProcessingException {
+
+        int c = getCapacity();
+
+        if (c < count) {
+
+            throw new EventProcessingException("capacity " + c + " is smaller than the count " + count);
+        }
+
+        summaries = new SpaceSaving[properties.size()];
+
+        for(int i = 0; i < summaries.length; i ++) {
+
+            summaries[i] = new SpaceSaving(c);
+        }
+    }
+
+    /**
+     * @param time the time the report is issued at, or NO_INTERVAL for the end of stream report.
+     */
+    private void report(long time) throws EventProcessingException {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < summaries.length; i ++) {
+
+            SpaceSaving s = summaries[i];
+
+            if (time != NO_INTERVAL) {
+
+                timestampFormat.format(time, sb);
+                sb.append(": ");
+            }
+
+            sb.append(properties.getLabel(i)).append(": ");
+
+            if (s.getTotal() == 0) {
+
+                sb.append("no values\n");
+                continue;
+            }
+
+            List<SpaceSaving.Counter> top = s.getTop(count);
+
+            sb.append("top ").append(top.size()).append(" of ").append(s.getTotal()).append(" values");
+
+            long maxError = s.getMaxError();
+
+            if (maxError > 0) {
+
+                sb.append(", counts overestimated by at most ").append(maxError);
+            }
+
+            sb.append('\n');
+
+            for(SpaceSaving.Counter c: top) {
+
+                sb.append("  ").append(c.getValue()).append(": ").append(c.getCount());
+
+                if (c.getError() > 0) {
+
+                    sb.append(" (at least ").append(c.getGuaranteedCount()).append(')');
+                }
+
+                sb.append('\n');
+            }
+        }
+
+        try {
+
+            print(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,771 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.window;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.Property;
+import io.novaordis.events.api.event.TimedEvent;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.TextOutputProcedure;
+import io.novaordis.events.processing.output.CachedTimestampFormat;
+import io.novaordis.events.processing.output.DefaultOutputFormat;
+import io.novaordis.utilities.UserErrorException;
+
+/**
+ * A procedure that aggregates timed events over time windows: for each window, it reports the number of events, the
+ * rate, and the sum, minimum and maximum of the configured numeric properties. The windows are tumbling (the default)
+ * or sliding (a slide shorter than the window size), and they are aligned to the epoch.
+ *
+ * The time is divided in panes, whose length is the greatest common divisor of the window size and the slide, and the
+ * aggregates are maintained per pane, in primitive arrays used as a ring. A window is the union of size/pane
+ * consecutive panes. The ring only holds the panes that can still contribute to an open window, so the memory
+ * footprint depends on the window size, the slide and the allowed lateness, not on the length of the stream.
+ *
+ * The watermark is the largest timestamp seen so far minus the allowed lateness. A window is closed, and reported,
+ * when the watermark reaches its end. Events that only belong to windows that were already closed are counted as late
+ * and otherwise ignored. Windows without events are not reported. The windows still open when the EndOfStreamEvent
+ * arrives are closed then.
+ *
+ * All events are passed on to the downstream procedure, if any, as they arrive.
+ *
+ * Command line options:
+ *
+ * --size <ms> - the window size. Default one minute.
+ *
+ * --slide <ms> - the interval between the starts of consecutive windows, not longer than the size. Default: the size
+ * (tumbling windows).
+ *
+ * --lateness <ms> - how far behind the largest timestamp seen so far an event can be and still be counted. Default 0.
+ *
+ * --property <name> - a numeric property to aggregate. May be repeated. Non-numeric values are ignored.
+ *
+ * The instance is not thread safe.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class Window extends TextOutputProcedure {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final Logger log = LoggerFactory.getLogger(Window.class);
+
+    public static final String COMMAND_LINE_LABEL = "window";
+
+    public static final String SIZE_OPTION = "--size";
+    public static final String SLIDE_OPTION = "--slide";
+    public static final String LATENESS_OPTION = "--lateness";
+    public static final String PROPERTY_OPTION = "--property";
+
+    public static final long DEFAULT_SIZE_MS = 60 * 1000L;
+
+    /**
+     * The largest number of panes the ring may hold.
+     */
+    public static final int MAX_PANES = 1024 * 1024;
+
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static long gcd(long a, long b) {
+
+        while(b != 0) {
+
+            long r = a % b;
+            a = b;
+            b = r;
+        }
+
+        return a;
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    private long size;
+
+    // 0 means "same as the size"
+    private long slide;
+
+    private long lateness;
+
+    private final List<String> propertyNames;
+
+    //
+    // the ring, built when the first timed event arrives
+    //
+
+    private String[] properties;
+    private long pane;
+    private int panesPerWindow;
+    private long[] paneIds;
+    private long[] counts;
+
+    // indexed by slot * properties.length + property index
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+    private long[] valueCounts;
+
+    // the number of slots that hold a pane
+    private int occupied;
+
+    private long maxTime;
+
+    // the start of the earliest window that was not closed yet
+    private long nextWindowStart;
+
+    //
+    // the aggregates of the window being closed
+    //
+
+    private double[] windowSums;
+    private double[] windowMins;
+    private double[] windowMaxs;
+    private long[] windowValueCounts;
+
+    private final StringBuilder line;
+
+    private final CachedTimestampFormat timestampFormat;
+
+    private long timedEventCount;
+    private long lateEventCount;
+    private long windowCount;
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    public Window() {
+
+        this(null);
+    }
+
+    public Window(OutputStream os) {
+
+        super(os);
+
+        this.size = DEFAULT_SIZE_MS;
+        this.propertyNames = new ArrayList<>();
+        this.line = new StringBuilder();
+        this.timestampFormat = DefaultOutputFormat.newDefaultTimestampFormat();
+    }
+
+    /**
+     * @exception UserErrorException on invalid procedure arguments.
+     */
+    public Window(OutputStream os, int from, List<String> commandLineArguments) throws UserErrorException {
+
+        this(os);
+
+        configureFromCommandLine(from, commandLineArguments);
+    }
+
+    // Procedure implementation ----------------------------------------------------------------------------------------
+
+    @Override
+    public List<String> getCommandLineLabels() {
+
+        return Collections.singletonList(COMMAND_LINE_LABEL);
+    }
+
+    // ProcedureBase implementation ------------------------------------------------------------------------------------
+
+    @Override
+    public void process(AtomicLong invocationCount, Event in) throws EventProcessingException {
+
+        if (in instanceof EndOfStreamEvent) {
+
+            while(occupied > 0) {
+
+                closeWindow();
+            }
+
+            return;
+        }
+
+        emit(in);
+
+        if (!(in instanceof TimedEvent)) {
+
+            return;
+        }
+
+        Long time = ((TimedEvent)in).getTime();
+
+        if (time == null) {
+
+            log.warn("null timestamp time event: " + in);
+            return;
+        }
+
+        long t = time;
+
+        timedEventCount ++;
+
+        if (paneIds == null) {
+
+            initialize(t);
+        }
+
+        if (t > maxTime) {
+
+            maxTime = t;
+            advance(t - lateness);
+        }
+
+        //
+        // the latest window the event belongs to starts at the slide boundary at or before the event
+        //
+
+        if (Math.floorDiv(t, getSlide()) * getSlide() < nextWindowStart) {
+
+            lateEventCount ++;
+
+            if (log.isDebugEnabled()) {
+
+                log.debug("event arrived too late, ignoring it: " + in);
+            }
+
+            return;
+        }
+
+        add(t, in);
+    }
+
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    /**
+     * @return the window size, in milliseconds.
+     */
+    public long getSize() {
+
+        return size;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setSize(long ms) {
+
+        if (ms <= 0) {
+
+            throw new IllegalArgumentException("invalid window size: " + ms);
+        }
+
+        this.size = ms;
+    }
+
+    /**
+     * @return the slide, in milliseconds. Equal to the size for tumbling windows.
+     */
+    public long getSlide() {
+
+        return slide == 0 ? size : slide;
+    }
+
+    /**
+     * Must be invoked before processing starts. The slide must not be longer than the size when processing starts.
+     *
+     * @exception IllegalArgumentException on non-positive values.
+     */
+    public void setSlide(long ms) {
+
+        if (ms <= 0) {
+
+            throw new IllegalArgumentException("invalid slide: " + ms);
+        }
+
+        this.slide = ms;
+    }
+
+    /**
+     * @return the allowed lateness, in milliseconds.
+     */
+    public long getLateness() {
+
+        return lateness;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @exception IllegalArgumentException on negative values.
+     */
+    public void setLateness(long ms) {
+
+        if (ms < 0) {
+
+            throw new IllegalArgumentException("invalid lateness: " + ms);
+        }
+
+        this.lateness = ms;
+    }
+
+    /**
+     * Must be invoked before processing starts.
+     *
+     * @exception IllegalArgumentException on null property name.
+     */
+    public void addProperty(String name) {
+
+        if (name == null) {
+
+            throw new IllegalArgumentException("null property name");
+        }
+
+        propertyNames.add(name);
+    }
+
+    /**
+     * @return the names of the aggregated numeric properties.
+     */
+    public List<String> getProperties() {
+
+        return Collections.unmodifiableList(propertyNames);
+    }
+
+    public long getTimedEventCount() {
+
+        return timedEventCount;
+    }
+
+    /**
+     * @return the number of events that arrived after all the windows they belong to were closed.
+     */
+    public long getLateEventCount() {
+
+        return lateEventCount;
+    }
+
+    /**
+     * @return the number of windows reported so far.
+     */
+    public long getWindowCount() {
+
+        return windowCount;
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    /**
+     * @return the pane length, in milliseconds, or 0 if processing did not start.
+     */
+    long getPane() {
+
+        return pane;
+    }
+
+    /**
+     * @return the number of panes the ring can hold, or 0 if processing did not start.
+     */
+    int getRingCapacity() {
+
+        return paneIds == null ? 0 : paneIds.length;
+    }
+
+    void configureFromCommandLine(int from, List<String> mutableCommandLineArgumentsList) throws UserErrorException {
+
+        int i = 0;
+
+        for(Iterator<String> si = mutableCommandLineArgumentsList.iterator(); si.hasNext(); i ++) {
+
+            String arg = si.next();
+
+            if (i < from) {
+
+                continue;
+            }
+
+            if (SIZE_OPTION.equals(arg)) {
+
+                si.remove();
+                setSize(optionValue(SIZE_OPTION, si));
+            }
+            else if (SLIDE_OPTION.equals(arg)) {
+
+                si.remove();
+                setSlide(optionValue(SLIDE_OPTION, si));
+            }
+            else if (LATENESS_OPTION.equals(arg)) {
+
+                si.remove();
+                setLateness(optionValue(LATENESS_OPTION, si));
+            }
+            else if (PROPERTY_OPTION.equals(arg)) {
+
+                si.remove();
+
+                if (!si.hasNext()) {
+
+                    throw new UserErrorException("missing value after " + PROPERTY_OPTION);
+                }
+
+                addProperty(si.next());
+                si.remove();
+            }
+        }
+
+        if (getSlide() > size) {
+
+            throw new UserErrorException(
+                    "invalid " + SLIDE_OPTION + " value: " + getSlide() + ", it must not exceed the window size");
+        }
+    }
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Consumes and removes the value that follows the option. Values must be positive, except for the lateness, which
+     * may be zero.
+     */
+    private static long optionValue(String option, Iterator<String> si) throws UserErrorException {
+
+        if (!si.hasNext()) {
+
+            throw new UserErrorException("missing value after " + option);
+        }
+
+        String s = si.next();
+        si.remove();
+
+        long value;
+
+        try {
+
+            value = Long.parseLong(s);
+        }
+        catch(NumberFormatException e) {
+
+            throw new UserErrorException("invalid " + option + " value: " + s);
+        }
+
+        if (value < 0 || (value == 0 && !LATENESS_OPTION.equals(option))) {
+
+            throw new UserErrorException("invalid " + option + " value: " + s);
+        }
+
+        return value;
+    }
+
+    /**
+     * Builds the ring and positions the first window, when the first timed event arrives.
+     */
+    private void initialize(long t) throws EventProcessingException {
+
+        long slideMs = getSlide();
+
+        if (slideMs > size) {
+
+            throw new EventProcessingException("slide " + slideMs + " ms exceeds the window size " + size + " ms");
+        }
+
+        pane = gcd(size, slideMs);
+        panesPerWindow = (int)Math.min(Integer.MAX_VALUE, size / pane);
+
+        //
+        // after the windows closed by an event are reported, the ring must span from the start of the earliest open
+        // window to the latest timestamp, which is less than size + lateness ahead of it
+        //
+
+        long capacity = size / pane + (lateness + pane - 1) / pane + 1;
+
+        if (capacity > MAX_PANES) {
+
+            throw new EventProcessingException(
+                    "window size " + size + " ms, slide " + slideMs + " ms and lateness " + lateness + " ms require " +
+                            capacity + " panes, more than " + MAX_PANES);
+        }
+
+        int n = (int)capacity;
+
+        properties = propertyNames.toArray(new String[propertyNames.size()]);
+
+        paneIds = new long[n];
+        Arrays.fill(paneIds, EMPTY);
+        counts = new long[n];
+        sums = new double[n * properties.length];
+        mins = new double[n * properties.length];
+        maxs = new double[n * properties.length];
+        valueCounts = new long[n * properties.length];
+
+        windowSums = new double[properties.length];
+        windowMins = new double[properties.length];
+        windowMaxs = new double[properties.length];
+        windowValueCounts = new long[properties.length];
+
+        maxTime = Long.MIN_VALUE;
+        nextWindowStart = firstOpenWindowStart(t - lateness);
+    }
+
+    /**
+     * @return the start of the earliest window that ends after the given time.
+     */
+    private long firstOpenWindowStart(long time) {
+
+        long slideMs = getSlide();
+
+        return (Math.floorDiv(time - size, slideMs) + 1) * slideMs;
+    }
+
+    /**
+     * Closes the windows that end at or before the watermark.
+     */
+    private void advance(long watermark) throws EventProcessingException {
+
+        while(nextWindowStart + size <= watermark) {
+
+            if (occupied == 0) {
+
+                //
+                // nothing to report until the watermark, skip the empty windows in one step
+                //
+
+                nextWindowStart = Math.max(nextWindowStart, firstOpenWindowStart(watermark));
+                return;
+            }
+
+            closeWindow();
+        }
+    }
+
+    private void add(long t, Event e) {
+
+        long p = Math.floorDiv(t, pane);
+        int slot = (int)Math.floorMod(p, (long)paneIds.length);
+
+        if (paneIds[slot] != p) {
+
+            if (paneIds[slot] != EMPTY) {
+
+                throw new IllegalStateException("pane " + paneIds[slot] + " was not evicted before pane " + p);
+            }
+
+            paneIds[slot] = p;
+            counts[slot] = 0L;
+
+            int base = slot * properties.length;
+
+            for(int i = 0; i < properties.length; i ++) {
+
+                sums[base + i] = 0d;
+                mins[base + i] = Double.POSITIVE_INFINITY;
+                maxs[base + i] = Double.NEGATIVE_INFINITY;
+                valueCounts[base + i] = 0L;
+            }
+
+            occupied ++;
+        }
+
+        counts[slot] ++;
+
+        int base = slot * properties.length;
+
+        for(int i = 0; i < properties.length; i ++) {
+
+            Property prop = e.getProperty(properties[i]);
+
+            if (prop == null) {
+
+                continue;
+            }
+
+            Object value = prop.getValue();
+
+            if (!(value instanceof Number)) {
+
+                continue;
+            }
+
+            double v = ((Number)value).doubleValue();
+
+            sums[base + i] += v;
+
+            if (v < mins[base + i]) {
+
+                mins[base + i] = v;
+            }
+
+            if (v > maxs[base + i]) {
+
+                maxs[base + i] = v;
+            }
+
+            valueCounts[base + i] ++;
+        }
+    }
+
+    /**
+     * Aggregates the panes of the earliest open window, reports the window if it is not empty, moves to the next window
+     * and evicts the panes that do not belong to any open window.
+     */
+    private void closeWindow() throws EventProcessingException {
+
+        long count = 0L;
+
+        Arrays.fill(windowSums, 0d);
+        Arrays.fill(windowMins, Double.POSITIVE_INFINITY);
+        Arrays.fill(windowMaxs, Double.NEGATIVE_INFINITY);
+        Arrays.fill(windowValueCounts, 0L);
+
+        long first = Math.floorDiv(nextWindowStart, pane);
+
+        for(long p = first; p < first + panesPerWindow; p ++) {
+
+            int slot = (int)Math.floorMod(p, (long)paneIds.length);
+
+            if (paneIds[slot] != p) {
+
+                continue;
+            }
+
+            count += counts[slot];
+
+            int base = slot * properties.length;
+
+            for(int i = 0; i < properties.length; i ++) {
+
+                windowSums[i] += sums[base + i];
+                windowMins[i] = Math.min(windowMins[i], mins[base + i]);
+                windowMaxs[i] = Math.max(windowMaxs[i], maxs[base + i]);
+                windowValueCounts[i] += valueCounts[base + i];
+            }
+        }
+
+        if (count > 0) {
+
+            report(nextWindowStart, count);
+        }
+
+        long slideMs = getSlide();
+
+        nextWindowStart += slideMs;
+
+        for(long p = first; p < first + slideMs / pane; p ++) {
+
+            int slot = (int)Math.floorMod(p, (long)paneIds.length);
+
+            if (paneIds[slot] == p) {
+
+                paneIds[slot] = EMPTY;
+                occupied --;
+            }
+        }
+    }
+
+    private void report(long start, long count) throws EventProcessingException {
+
+        windowCount ++;
+
+        StringBuilder sb = line;
+
+        sb.setLength(0);
+
+        timestampFormat.format(start, sb);
+        sb.append(" - ");
+        timestampFormat.format(start + size, sb);
+        sb.append(": ").append(count).append(" events, ");
+        appendRate(count * 1000d / size, sb);
+        sb.append(" events/s");
+
+        for(int i = 0; i < properties.length; i ++) {
+
+            sb.append(", ").append(properties[i]).append(": ");
+
+            if (windowValueCounts[i] == 0) {
+
+                sb.append("no values");
+                continue;
+            }
+
+            sb.append("sum ");
+            appendValue(windowSums[i], sb);
+            sb.append(", min ");
+            appendValue(windowMins[i], sb);
+            sb.append(", max ");
+            appendValue(windowMaxs[i], sb);
+        }
+
+        try {
+
+            println(sb);
+        }
+        catch(IOException e) {
+
+            throw new EventProcessingException(e);
+        }
+    }
+
+    /**
+     * Two decimals.
+     */
+    private static void appendRate(double rate, StringBuilder sb) {
+
+        long hundredths = Math.round(rate * 100d);
+
+        sb.append(hundredths / 100).append('.');
+
+        long fraction = hundredths % 100;
+
+        if (fraction < 10) {
+
+            sb.append('0');
+        }
+
+        sb.append(fraction);
+    }
+
+    /**
+     * Integral values are rendered without a fractional part.
+     */
+    private static void appendValue(double v, StringBuilder sb) {
+
+        if (v == Math.rint(v) && Math.abs(v) < 1e15) {
+
+            sb.append((long)v);
+        }
+        else {
+
+            sb.append(v);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The Java 21 version of VirtualThreads, packaged under META-INF/versions/21 in the multi-release jar. It must keep the
+ * same signatures as the Java 8 version in src/main/java.
+ *
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+final class VirtualThreads {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    static final String UNSUPPORTED = "virtual threads require Java 21 or newer";
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    static boolean isSupported() {
+
+        return true;
+    }
+
+    static boolean isVirtual(Thread t) {
+
+        return t.isVirtual();
+    }
+
+    static ThreadFactory factory(String prefix) {
+
+        return Thread.ofVirtual().name(prefix, 0L).factory();
+    }
+
+    static Thread newThread(String name, Runnable r) {
+
+        return Thread.ofVirtual().name(name).unstarted(r);
+    }
+
+    static ExecutorService newThreadPerTaskExecutor(String prefix) {
+
+        return Executors.newThreadPerTaskExecutor(factory(prefix));
+    }
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    private VirtualThreads() {
+    }
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class AsyncWriterTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullOutputStream() throws Exception {
+
+        try {
+
+            new AsyncWriter(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null output stream"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidQueueCapacity() throws Exception {
+
+        try {
+
+            new AsyncWriter(new ByteArrayOutputStream(), 0, AsyncWriter.OverflowPolicy.BLOCK, 10, null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid queue capacity"));
+        }
+    }
+
+    @Test
+    public void queueCapacityIsRoundedUpToAPowerOfTwo() throws Exception {
+
+        AsyncWriter w = new AsyncWriter(new ByteArrayOutputStream(), 5, AsyncWriter.OverflowPolicy.BLOCK, 10, null);
+
+        assertEquals(8, w.getQueueCapacity());
+    }
+
+    @Test
+    public void nothingIsHandedOverUntilTheChunkFillsUp() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        AsyncWriter w = new AsyncWriter(baos, 4, AsyncWriter.OverflowPolicy.BLOCK, 10, null);
+
+        w.write("abc");
+
+        assertFalse(w.isRunning());
+        assertEquals(0L, w.getQueuedChunks());
+
+        w.write("defghijklm");
+
+        assertTrue(w.isRunning());
+        assertEquals(1L, w.getQueuedChunks());
+
+        w.drain();
+
+        assertEquals("abcdefghijklm", new String(baos.toByteArray()));
+        assertEquals(0, w.getQueueDepth());
+
+        w.close();
+
+        assertFalse(w.isRunning());
+    }
+
+    @Test
+    public void flushHandsOverDrainWaits() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        AsyncWriter w = new AsyncWriter(baos);
+
+        for(int i = 0; i < 1000; i ++) {
+
+            w.write("line " + i + "\n");
+            w.flush();
+        }
+
+        w.drain();
+
+        String s = new String(baos.toByteArray());
+
+        assertTrue(s.startsWith("line 0\nline 1\n"));
+        assertTrue(s.endsWith("line 999\n"));
+        assertEquals(1000L, w.getQueuedChunks());
+        assertEquals(0L, w.getDroppedChunks());
+
+        w.close();
+    }
+
+    @Test
+    public void closeDoesNotCloseTheOutputStream_WriterRestarts() throws Exception {
+
+        final boolean[] closed = new boolean[1];
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream() {
+
+            @Override
+            public void close() throws IOException {
+
+                closed[0] = true;
+            }
+        };
+
+        AsyncWriter w = new AsyncWriter(baos);
+
+        w.write("a");
+        w.close();
+
+        assertFalse(closed[0]);
+        assertFalse(w.isRunning());
+        assertEquals("a", new String(baos.toByteArray()));
+
+        w.write("b");
+        w.drain();
+
+        assertTrue(w.isRunning());
+        assertEquals("ab", new String(baos.toByteArray()));
+
+        w.close();
+    }
+
+    @Test
+    public void overflow_Drop() throws Exception {
+
+        BlockedOutputStream os = new BlockedOutputStream();
+
+        AsyncWriter w = new AsyncWriter(os, 2, AsyncWriter.OverflowPolicy.DROP, 1, null);
+
+        //
+        // the first chunk is taken by the I/O thread, which blocks writing it; the next two fill the queue
+        //
+
+        w.write("a");
+        assertTrue(os.writing.await(5, TimeUnit.SECONDS));
+
+        w.write("b");
+        w.write("c");
+        w.write("d");
+        w.write("e");
+
+        assertEquals(2, w.getQueueDepth());
+        assertEquals(2L, w.getMaxQueueDepth());
+        assertEquals(2L, w.getDroppedChunks());
+        assertEquals(2L, w.getDroppedCharacters());
+        assertEquals(0L, w.getStallCount());
+
+        os.release.countDown();
+
+        w.close();
+
+        assertEquals("abc", new String(os.baos.toByteArray()));
+    }
+
+    @Test
+    public void overflow_Block() throws Exception {
+
+        final BlockedOutputStream os = new BlockedOutputStream();
+
+        AsyncWriter w = new AsyncWriter(os, 1, AsyncWriter.OverflowPolicy.BLOCK, 1, null);
+
+        w.write("a");
+        assertTrue(os.writing.await(5, TimeUnit.SECONDS));
+
+        w.write("b");
+
+        new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    Thread.sleep(50L);
+                }
+                catch(InterruptedException e) {
+
+                    // ignore
+                }
+
+                os.release.countDown();
+            }
+        }).start();
+
+        //
+        // the queue is full, this blocks until the I/O thread is released
+        //
+
+        w.write("c");
+
+        assertEquals(1L, w.getStallCount());
+        assertTrue(w.getStallTimeNanos() > 0);
+        assertEquals(0L, w.getDroppedChunks());
+
+        w.close();
+
+        assertEquals("abc", new String(os.baos.toByteArray()));
+    }
+
+    @Test
+    public void writeFailuresAreCountedAndRethrown() throws Exception {
+
+        OutputStream os = new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+
+                throw new IOException("SYNTHETIC");
+            }
+        };
+
+        AsyncWriter w = new AsyncWriter(os);
+
+        w.write("something");
+
+        try {
+
+            w.drain();
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("SYNTHETIC", e.getCause().getMessage());
+        }
+
+        assertTrue(w.getWriteFailures() > 0);
+
+        //
+        // the failure is sticky
+        //
+
+        try {
+
+            w.write("something else");
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("SYNTHETIC", e.getCause().getMessage());
+        }
+
+        try {
+
+            w.close();
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            assertEquals("SYNTHETIC", e.getCause().getMessage());
+        }
+
+        assertFalse(w.isRunning());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    /**
+     * Blocks the first write until released.
+     */
+    private static class BlockedOutputStream extends OutputStream {
+
+        private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void write(int b) throws IOException {
+
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            writing.countDown();
+
+            try {
+
+                release.await();
+            }
+            catch(InterruptedException e) {
+
+                throw new IOException(e);
+            }
+
+            baos.write(b, off, len);
+        }
+    }
+
+}
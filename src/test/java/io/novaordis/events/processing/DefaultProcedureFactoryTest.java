@@ -16,15 +16,30 @@
 
 package io.novaordis.events.processing;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.processing.exclude.EventPredicates;
+import io.novaordis.events.processing.exclude.Exclude;
 import io.novaordis.events.processing.help.Help;
-
+import io.novaordis.events.processing.metrics.MetricsRegistry;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.timegaps.TimeGaps;
+import io.novaordis.utilities.UserErrorException;
+import io.novaordis.utilities.time.TimestampImpl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -86,6 +101,224 @@ public class DefaultProcedureFactoryTest extends ProcedureFactoryTest {
         assertTrue(procedure instanceof Help);
     }
 
+    // pipe ------------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void pipe() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("test", "a", "|", "test", "b", "|", "test"));
+
+        Procedure procedure = d.find("test", 1, args);
+
+        TestProcedure first = (TestProcedure)procedure;
+        TestProcedure second = (TestProcedure)first.getDownstream();
+        TestProcedure third = (TestProcedure)second.getDownstream();
+
+        assertNull(third.getDownstream());
+
+        //
+        // the separators and the labels that follow them are consumed, the arguments nobody recognized are left
+        //
+
+        assertEquals(Arrays.asList("test", "a", "b"), args);
+
+        MockTimedEvent e = new MockTimedEvent();
+
+        first.process(Arrays.asList(e, new EndOfStreamEvent()));
+
+        assertEquals(2, third.getReceived().size());
+        assertSame(e, third.getReceived().get(0));
+        assertTrue(third.getReceived().get(1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void pipe_SeparatorBeforeTheProcedureArguments() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("|", "test"));
+
+        Procedure procedure = d.find("test", 2, args);
+
+        assertNull(procedure.getDownstream());
+        assertEquals(Arrays.asList("|", "test"), args);
+    }
+
+    @Test
+    public void pipe_SeparatorsBeforeAndAfterTheProcedureArguments() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("|", "test", "a", "|", "test"));
+
+        TestProcedure procedure = (TestProcedure)d.find("test", 2, args);
+
+        assertNotNull(procedure.getDownstream());
+        assertEquals(Arrays.asList("|", "test", "a"), args);
+    }
+
+    @Test
+    public void pipe_MissingProcedure() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("test", "|"));
+
+        try {
+
+            d.find("test", 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing procedure after '|'"));
+        }
+    }
+
+    @Test
+    public void pipe_UnknownProcedure() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("test", "|", "no-such-procedure"));
+
+        try {
+
+            d.find("test", 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("unknown procedure: no-such-procedure"));
+        }
+    }
+
+    @Test
+    public void pipe_ProcedureCannotBeFollowed() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("help", "|", "test"));
+
+        try {
+
+            d.find("help", 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("help cannot be followed by another procedure"));
+        }
+    }
+
+    @Test
+    public void pipe_ProcedureThatDoesNotEmitEventsCannotBeFollowed() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("count", "|", "output"));
+
+        try {
+
+            d.find("count", 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("count cannot be followed by another procedure"));
+        }
+    }
+
+    @Test
+    public void pipe_ProceduresAreRegisteredWithTheMetricsRegistry() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        MetricsRegistry r = new MetricsRegistry(false);
+        d.setMetricsRegistry(r);
+
+        List<String> args = new ArrayList<>(Arrays.asList("exclude", "|", "output"));
+
+        Procedure p = d.find("exclude", 1, args);
+
+        assertEquals(2, r.getMetrics().size());
+        assertNotNull(((ProcedureBase)p).getMetrics());
+        assertNotNull(((ProcedureBase)p.getDownstream()).getMetrics());
+    }
+
+    @Test
+    public void pipe_InvalidPipeDoesNotRegisterProcedures() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        MetricsRegistry r = new MetricsRegistry(false);
+        d.setMetricsRegistry(r);
+
+        List<String> args = new ArrayList<>(Arrays.asList("exclude", "|", "count", "|", "output"));
+
+        try {
+
+            d.find("exclude", 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("count cannot be followed by another procedure"));
+        }
+
+        assertTrue(r.getMetrics().isEmpty());
+    }
+
+    @Test
+    public void pipe_ExcludeTimeGapsOutput() throws Exception {
+
+        DefaultProcedureFactory d = getProcedureFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList("exclude", "|", "time-gaps", "|", "output"));
+
+        Exclude exclude = (Exclude)d.find("exclude", 1, args);
+        exclude.setPredicate(EventPredicates.propertyEquals("color", "red"));
+
+        ByteArrayOutputStream gaps = new ByteArrayOutputStream();
+        TimeGaps timeGaps = (TimeGaps)exclude.getDownstream();
+        timeGaps.setOutputStream(gaps);
+        timeGaps.setReorderWindow(0);
+
+        ByteArrayOutputStream events = new ByteArrayOutputStream();
+        Output output = (Output)timeGaps.getDownstream();
+        output.setOutputStream(events);
+
+        MockTimedEvent red = new MockTimedEvent(new TimestampImpl(10L));
+        red.setStringProperty("color", "red");
+        red.setPreferredRepresentation("red\n");
+
+        MockTimedEvent blue = new MockTimedEvent(new TimestampImpl(20L));
+        blue.setStringProperty("color", "blue");
+        blue.setPreferredRepresentation("blue\n");
+
+        MockTimedEvent green = new MockTimedEvent(new TimestampImpl(50L));
+        green.setStringProperty("color", "green");
+        green.setPreferredRepresentation("green\n");
+
+        exclude.process(Arrays.asList(red, blue, green, new EndOfStreamEvent()));
+
+        assertEquals(1L, timeGaps.getGapCount());
+        assertEquals(30L, timeGaps.getLargestGaps().get(0).getDuration());
+        assertTrue(new String(gaps.toByteArray()).startsWith("2 timed events, 1 gaps\n"));
+
+        assertEquals("blue\ngreen\n", new String(events.toByteArray()));
+
+        assertTrue(exclude.isExitLoop());
+        assertTrue(output.isExitLoop());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
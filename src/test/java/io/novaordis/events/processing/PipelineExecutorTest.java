@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PipelineExecutorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NoProcedures() throws Exception {
+
+        try {
+
+            new PipelineExecutor(Collections.emptyList());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null or empty procedure list"));
+        }
+    }
+
+    @Test
+    public void process_NotStarted() throws Exception {
+
+        PipelineExecutor pe = new PipelineExecutor(Collections.singletonList(new TestProcedure()));
+
+        try {
+
+            pe.process(new MockEvent());
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not started"));
+        }
+    }
+
+    @Test
+    public void fanOut() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+        TestProcedure p2 = new TestProcedure();
+        TestProcedure p3 = new TestProcedure();
+
+        PipelineExecutor pe = new PipelineExecutor(Arrays.asList(p, p2, p3), 3, 2);
+
+        pe.start();
+
+        List<Event> events = new ArrayList<>();
+
+        for(int i = 0; i < 10; i ++) {
+
+            events.add(new MockEvent());
+        }
+
+        pe.process(events);
+
+        assertFalse(pe.isExitLoop());
+
+        pe.process(new EndOfStreamEvent());
+
+        assertTrue(pe.awaitTermination(5, TimeUnit.SECONDS));
+
+        for(TestProcedure tp: Arrays.asList(p, p2, p3)) {
+
+            List<Event> received = tp.getReceived();
+
+            assertEquals(11, received.size());
+
+            for(int i = 0; i < 10; i ++) {
+
+                assertEquals(events.get(i), received.get(i));
+            }
+
+            assertTrue(received.get(10) instanceof EndOfStreamEvent);
+
+            assertEquals(11, tp.getInvocationCount());
+            assertTrue(tp.isExitLoop());
+        }
+
+        assertTrue(pe.isExitLoop());
+        assertTrue(pe.getFailures().isEmpty());
+    }
+
+    @Test
+    public void process_AfterEndOfStream() throws Exception {
+
+        PipelineExecutor pe = new PipelineExecutor(Collections.singletonList(new TestProcedure()));
+
+        pe.start();
+
+        pe.process(new EndOfStreamEvent());
+
+        try {
+
+            pe.process(new MockEvent());
+            fail("should have thrown exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("event beyond EndOfStream"));
+        }
+
+        assertTrue(pe.awaitTermination(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void branchExitsLoopEarly() throws Exception {
+
+        EarlyExitProcedure early = new EarlyExitProcedure(2);
+        TestProcedure p = new TestProcedure();
+
+        PipelineExecutor pe = new PipelineExecutor(Arrays.asList(early, p), 1, 1);
+
+        pe.start();
+
+        for(int i = 0; i < 20; i ++) {
+
+            pe.process(new MockEvent());
+        }
+
+        pe.process(new EndOfStreamEvent());
+
+        assertTrue(pe.awaitTermination(5, TimeUnit.SECONDS));
+
+        //
+        // the early exit procedure does not get all events, but it gets EndOfStream
+        //
+
+        List<Event> received = early.getReceived();
+        assertTrue(received.size() < 21);
+        assertTrue(received.get(received.size() - 1) instanceof EndOfStreamEvent);
+
+        assertEquals(21, p.getReceived().size());
+    }
+
+    @Test
+    public void failingBranchDoesNotBlockTheOthers() throws Exception {
+
+        TestProcedure failing = new TestProcedure() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+                throw new RuntimeException("SYNTHETIC");
+            }
+        };
+
+        TestProcedure p = new TestProcedure();
+
+        PipelineExecutor pe = new PipelineExecutor(Arrays.asList(failing, p), 1, 1);
+
+        pe.start();
+
+        for(int i = 0; i < 20; i ++) {
+
+            pe.process(new MockEvent());
+        }
+
+        pe.process(new EndOfStreamEvent());
+
+        assertTrue(pe.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(21, p.getReceived().size());
+
+        List<Throwable> failures = pe.getFailures();
+        assertEquals(1, failures.size());
+        assertEquals("SYNTHETIC", failures.get(0).getMessage());
+    }
+
+    @Test
+    public void endOfStreamIsDeliveredEvenIfTheBatchThatCarriesItFails() throws Exception {
+
+        MockEvent bad = new MockEvent();
+
+        TestProcedure failing = new TestProcedure() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+                super.process(invocationCount, e);
+
+                if (e == bad) {
+
+                    throw new EventProcessingException("SYNTHETIC");
+                }
+            }
+        };
+
+        PipelineExecutor pe = new PipelineExecutor(Collections.singletonList(failing), 10, 1);
+
+        pe.start();
+
+        pe.process(Arrays.asList(new MockEvent(), bad, new MockEvent(), new EndOfStreamEvent()));
+
+        assertTrue(pe.awaitTermination(5, TimeUnit.SECONDS));
+
+        List<Event> received = failing.getReceived();
+        assertEquals(4, received.size());
+        assertTrue(received.get(3) instanceof EndOfStreamEvent);
+
+        assertTrue(pe.getFailures().isEmpty());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class EarlyExitProcedure extends TestProcedure {
+
+        private final int exitAfter;
+
+        EarlyExitProcedure(int exitAfter) {
+
+            this.exitAfter = exitAfter;
+        }
+
+        @Override
+        public boolean isExitLoop() {
+
+            return getReceived().size() >= exitAfter;
+        }
+    }
+}
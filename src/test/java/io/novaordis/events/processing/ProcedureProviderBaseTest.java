@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.processing.count.Count;
+import io.novaordis.events.processing.count.CountProvider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureProviderBaseTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NoLabels() throws Exception {
+
+        try {
+
+            new ProcedureProviderBase((from, arguments, asb) -> new TestProcedure()) {};
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("no command line labels"));
+        }
+    }
+
+    @Test
+    public void labelsAndFactory() throws Exception {
+
+        CountProvider p = new CountProvider();
+
+        assertEquals(Arrays.asList(Count.COMMAND_LINE_LABEL, Count.ABBREVIATED_COMMAND_LINE_LABEL),
+                p.getCommandLineLabels());
+
+        try {
+
+            p.getCommandLineLabels().add("something");
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            // ok
+        }
+
+        List<String> args = new ArrayList<>(Arrays.asList(Count.COMMAND_LINE_LABEL));
+
+        Procedure procedure = p.newProcedure(Count.COMMAND_LINE_LABEL, 1, args, null);
+
+        assertTrue(procedure instanceof Count);
+        assertEquals("CountProvider", p.toString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.processing.count.Count;
+import io.novaordis.events.processing.count.CountProvider;
+import io.novaordis.events.processing.describe.Describe;
+import io.novaordis.events.processing.exclude.Exclude;
+import io.novaordis.events.processing.help.Help;
+import io.novaordis.events.processing.output.Output;
+import io.novaordis.events.processing.timegaps.TimeGaps;
+import io.novaordis.utilities.appspec.ApplicationSpecificBehavior;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureRegistryTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_Null() throws Exception {
+
+        try {
+
+            new ProcedureRegistry(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null providers"));
+        }
+    }
+
+    @Test
+    public void defaultRegistry_StandardProcedures() throws Exception {
+
+        ProcedureRegistry r = ProcedureRegistry.getDefault();
+
+        List<String> labels = Arrays.asList(
+                Help.COMMAND_LINE_LABEL, Help.COMMAND_LINE_LABEL_2, Help.COMMAND_LINE_LABEL_3,
+                Describe.COMMAND_LINE_LABEL,
+                TimeGaps.COMMAND_LINE_LABEL,
+                Count.COMMAND_LINE_LABEL, Count.ABBREVIATED_COMMAND_LINE_LABEL,
+                Exclude.COMMAND_LINE_LABEL, Exclude.ABBREVIATED_COMMAND_LINE_LABEL,
+                Output.COMMAND_LINE_LABEL);
+
+        assertTrue(r.getCommandLineLabels().containsAll(labels));
+
+        //
+        // the provider labels must match the procedure labels
+        //
+
+        for(String label: labels) {
+
+            Procedure p = r.find(label).newProcedure(label, 1, new ArrayList<>(Collections.singletonList(label)), null);
+
+            assertTrue(p.getCommandLineLabels().contains(label));
+        }
+    }
+
+    @Test
+    public void defaultRegistry_ProviderFromAnotherJar() throws Exception {
+
+        //
+        // registered in src/test/resources
+        //
+
+        ProcedureRegistry r = ProcedureRegistry.getDefault();
+
+        assertTrue(r.find("test") instanceof TestProcedureProvider);
+
+        Procedure p = new DefaultProcedureFactory(null).find("test", 0, new ArrayList<>());
+
+        assertTrue(p instanceof TestProcedure);
+    }
+
+    @Test
+    public void defaultRegistry_IsASingleton() throws Exception {
+
+        assertTrue(ProcedureRegistry.getDefault() == ProcedureRegistry.getDefault());
+    }
+
+    @Test
+    public void find_UnknownLabel() throws Exception {
+
+        ProcedureRegistry r = new ProcedureRegistry(Collections.singletonList(new CountProvider()));
+
+        assertNull(r.find("no-such-procedure"));
+        assertNull(r.find(null));
+    }
+
+    @Test
+    public void find_DuplicateLabel_FirstProviderWins() throws Exception {
+
+        ProcedureProvider first = new CountProvider();
+
+        ProcedureProvider second = new TestProcedureProvider() {
+
+            @Override
+            public List<String> getCommandLineLabels() {
+
+                return Collections.singletonList(Count.COMMAND_LINE_LABEL);
+            }
+        };
+
+        ProcedureRegistry r = new ProcedureRegistry(Arrays.asList(first, second));
+
+        assertTrue(r.find(Count.COMMAND_LINE_LABEL) == first);
+        assertTrue(r.find(Count.ABBREVIATED_COMMAND_LINE_LABEL) == first);
+        assertEquals(2, r.getCommandLineLabels().size());
+    }
+
+    @Test
+    public void providersAreNotAskedForProceduresUntilFound() throws Exception {
+
+        final int[] instances = new int[1];
+
+        ProcedureProvider p = new TestProcedureProvider() {
+
+            @Override
+            public Procedure newProcedure(String commandLineLabel, int from, List<String> commandLineArguments,
+                                          ApplicationSpecificBehavior asb) {
+
+                instances[0] ++;
+                return super.newProcedure(commandLineLabel, from, commandLineArguments, asb);
+            }
+        };
+
+        DefaultProcedureFactory f =
+                new DefaultProcedureFactory(null, new ProcedureRegistry(Collections.singletonList(p)));
+
+        assertEquals(0, instances[0]);
+
+        assertNull(f.find("something-else", 0, new ArrayList<>()));
+        assertEquals(0, instances[0]);
+
+        assertTrue(f.find("test", 0, new ArrayList<>()) instanceof TestProcedure);
+        assertEquals(1, instances[0]);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
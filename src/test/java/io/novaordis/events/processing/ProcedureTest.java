@@ -22,6 +22,7 @@ import org.junit.Test;
 
 import java.lang.reflect.Constructor;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -137,6 +138,71 @@ public abstract class ProcedureTest {
         assertTrue(p.isExitLoop());
     }
 
+    @Test
+    public void processListOfEvents_EmptyList() throws Exception {
+
+        Procedure p = getProcedureToTest();
+
+        p.process(Collections.emptyList());
+
+        assertEquals(0, p.getInvocationCount());
+
+        assertFalse(p.isExitLoop());
+    }
+
+    @Test
+    public void processListOfEvents_EndOfStreamLast() throws Exception {
+
+        Procedure p = getProcedureToTest();
+
+        p.process(Arrays.asList(new MockTimedEvent(), new MockTimedEvent(), new EndOfStreamEvent()));
+
+        assertEquals(3, p.getInvocationCount());
+
+        assertTrue(p.isExitLoop());
+    }
+
+    @Test
+    public void processListOfEvents_AfterEndOfStream() throws Exception {
+
+        Procedure p = getProcedureToTest();
+
+        p.process(Collections.singletonList(new EndOfStreamEvent()));
+
+        assertTrue(p.isExitLoop());
+
+        try {
+
+            p.process(Arrays.asList(new MockTimedEvent(), new MockTimedEvent()));
+            fail("should throw exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("event beyond EndOfStream"));
+        }
+
+        assertTrue(p.isExitLoop());
+    }
+
+    @Test
+    public void processListOfEvents_InvocationCountMatchesPerEventProcessing() throws Exception {
+
+        Procedure p = getProcedureToTest();
+        Procedure p2 = getProcedureToTest();
+
+        List<Event> events = Arrays.asList(new MockTimedEvent(), new MockTimedEvent(), new MockTimedEvent());
+
+        p.process(events);
+
+        for(Event e: events) {
+
+            p2.process(e);
+        }
+
+        assertEquals(p2.getInvocationCount(), p.getInvocationCount());
+    }
+
     // isExitLoop() ----------------------------------------------------------------------------------------------------
 
     @Test
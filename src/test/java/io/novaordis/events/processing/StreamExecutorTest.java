@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.processing.source.MappedFileEventSource;
+import io.novaordis.events.processing.source.RawLineParser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class StreamExecutorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullMode() throws Exception {
+
+        try {
+
+            new StreamExecutor(null, 1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null mode"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidThreadCount() throws Exception {
+
+        try {
+
+            new StreamExecutor(StreamExecutor.Mode.PLATFORM, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid thread count: 0"));
+        }
+    }
+
+    @Test
+    public void constructor_Default() throws Exception {
+
+        StreamExecutor e = new StreamExecutor();
+
+        try {
+
+            if (StreamExecutor.isVirtualThreadSupported()) {
+
+                assertEquals(StreamExecutor.Mode.VIRTUAL, e.getMode());
+                assertEquals(0, e.getThreadCount());
+            }
+            else {
+
+                assertEquals(StreamExecutor.Mode.PLATFORM, e.getMode());
+                assertEquals(Runtime.getRuntime().availableProcessors(), e.getThreadCount());
+            }
+        }
+        finally {
+
+            e.shutdown();
+        }
+    }
+
+    @Test
+    public void virtualMode_NotSupported() throws Exception {
+
+        if (StreamExecutor.isVirtualThreadSupported()) {
+
+            return;
+        }
+
+        try {
+
+            new StreamExecutor(StreamExecutor.Mode.VIRTUAL);
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("Java 21"));
+        }
+    }
+
+    @Test
+    public void platformMode() throws Exception {
+
+        manyStreams(new StreamExecutor(StreamExecutor.Mode.PLATFORM, 4));
+    }
+
+    @Test
+    public void virtualMode() throws Exception {
+
+        if (!StreamExecutor.isVirtualThreadSupported()) {
+
+            return;
+        }
+
+        manyStreams(new StreamExecutor(StreamExecutor.Mode.VIRTUAL));
+    }
+
+    @Test
+    public void submit_NullSource() throws Exception {
+
+        StreamExecutor e = new StreamExecutor(StreamExecutor.Mode.PLATFORM, 1);
+
+        try {
+
+            e.submit(null, new TestProcedure());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException ex) {
+
+            String msg = ex.getMessage();
+            assertTrue(msg.contains("null source"));
+        }
+        finally {
+
+            e.shutdown();
+        }
+    }
+
+    @Test
+    public void submit_AfterShutdown() throws Exception {
+
+        StreamExecutor e = new StreamExecutor(StreamExecutor.Mode.PLATFORM, 1);
+
+        e.shutdown();
+
+        try {
+
+            e.submit(new MappedFileEventSource(file("a\n"), new RawLineParser()), new TestProcedure());
+            fail("should have thrown exception");
+        }
+        catch(RejectedExecutionException ex) {
+
+            // expected
+        }
+    }
+
+    @Test
+    public void activeStreamCount() throws Exception {
+
+        StreamExecutor e = new StreamExecutor(StreamExecutor.Mode.PLATFORM, 2);
+
+        final CountDownLatch started = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        try {
+
+            List<Future<Void>> futures = new ArrayList<>();
+
+            for(int i = 0; i < 3; i ++) {
+
+                futures.add(e.submit(new Callable<Void>() {
+
+                    @Override
+                    public Void call() throws Exception {
+
+                        started.countDown();
+                        release.await();
+                        return null;
+                    }
+                }));
+            }
+
+            assertTrue(started.await(5L, TimeUnit.SECONDS));
+
+            //
+            // the third chain waits for a pool thread, it is not active
+            //
+
+            assertEquals(2, e.getActiveStreamCount());
+
+            release.countDown();
+
+            for(Future<Void> f: futures) {
+
+                f.get(5L, TimeUnit.SECONDS);
+            }
+
+            assertEquals(0, e.getActiveStreamCount());
+        }
+        finally {
+
+            e.shutdown();
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static void manyStreams(StreamExecutor e) throws Exception {
+
+        int streams = 20;
+
+        List<TestProcedure> procedures = new ArrayList<>();
+        List<Future<Long>> futures = new ArrayList<>();
+
+        try {
+
+            for(int i = 0; i < streams; i ++) {
+
+                StringBuilder content = new StringBuilder();
+
+                for(int j = 0; j <= i; j ++) {
+
+                    content.append("line ").append(j).append('\n');
+                }
+
+                TestProcedure p = new TestProcedure();
+                procedures.add(p);
+                futures.add(e.submit(new MappedFileEventSource(file(content.toString()), new RawLineParser()), p));
+            }
+
+            for(int i = 0; i < streams; i ++) {
+
+                assertEquals(i + 1, futures.get(i).get(10L, TimeUnit.SECONDS).longValue());
+
+                TestProcedure p = procedures.get(i);
+
+                assertEquals(i + 2, p.getReceived().size());
+                assertTrue(p.getReceived().get(i + 1) instanceof EndOfStreamEvent);
+            }
+        }
+        finally {
+
+            e.shutdown();
+        }
+
+        assertTrue(e.awaitTermination(5L, TimeUnit.SECONDS));
+        assertEquals(0, e.getActiveStreamCount());
+    }
+
+    private static Path file(String content) throws Exception {
+
+        File f = File.createTempFile("stream-executor", ".txt");
+        f.deleteOnExit();
+
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return f.toPath();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
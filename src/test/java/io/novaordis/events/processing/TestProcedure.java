@@ -16,6 +16,7 @@
 
 package io.novaordis.events.processing;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
 
 import java.util.ArrayList;
@@ -24,7 +25,8 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
- * We introduced this to insure EndOfStream propagates to ProcedureBase subclasses.
+ * We introduced this to insure EndOfStream propagates to ProcedureBase subclasses. If a downstream procedure is
+ * installed, the events are passed on to it.
  *
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
  * @since 8/10/17
@@ -52,6 +54,11 @@ public class TestProcedure extends ProcedureBase {
     protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
 
         received.add(e);
+
+        if (!(e instanceof EndOfStreamEvent)) {
+
+            emit(e);
+        }
     }
 
     @Override
@@ -60,6 +67,12 @@ public class TestProcedure extends ProcedureBase {
         return Collections.singletonList("test");
     }
 
+    @Override
+    protected boolean isChainable() {
+
+        return true;
+    }
+
     // Public ----------------------------------------------------------------------------------------------------------
 
     public List<Event> getReceived() {
@@ -20,10 +20,18 @@ import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -79,6 +87,347 @@ public class TestProcedureTest extends ProcedureTest {
         assertTrue(received.get(0) instanceof EndOfStreamEvent);
     }
 
+    @Test
+    public void batch_EndOfStreamPropagatesToTheSubclass() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        MockTimedEvent e = new MockTimedEvent();
+
+        p.process(Arrays.asList(e, new EndOfStreamEvent()));
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(2, received.size());
+
+        assertEquals(e, received.get(0));
+        assertTrue(received.get(1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void batch_EventsBeyondEndOfStreamAreNotPropagatedToTheSubclass() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        try {
+
+            p.process(Arrays.asList(new EndOfStreamEvent(), new MockTimedEvent(), new MockTimedEvent()));
+            fail("should throw exception");
+        }
+        catch(IllegalStateException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("event beyond EndOfStream"));
+        }
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) instanceof EndOfStreamEvent);
+
+        assertEquals(2, p.getInvocationCount());
+    }
+
+    @Test
+    public void batch_AFailingEventDoesNotPreventTheFollowingEventsFromBeingProcessed() throws Exception {
+
+        MockTimedEvent bad = new MockTimedEvent();
+
+        TestProcedure p = new TestProcedure() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+                super.process(invocationCount, e);
+
+                if (e == bad) {
+
+                    throw new EventProcessingException("SYNTHETIC");
+                }
+            }
+        };
+
+        MockTimedEvent e = new MockTimedEvent();
+        MockTimedEvent e2 = new MockTimedEvent();
+
+        try {
+
+            p.process(Arrays.asList(e, bad, e2, new EndOfStreamEvent()));
+            fail("should throw exception");
+        }
+        catch(EventProcessingException x) {
+
+            assertEquals("SYNTHETIC", x.getMessage());
+        }
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(3, received.size());
+        assertEquals(e, received.get(0));
+        assertEquals(bad, received.get(1));
+        assertEquals(e2, received.get(2));
+
+        //
+        // the EndOfStream was not consumed, it can be sent again, alone
+        //
+
+        p.process(Collections.singletonList(new EndOfStreamEvent()));
+
+        assertEquals(4, received.size());
+        assertTrue(received.get(3) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void batch_EndOfStreamIsNotConsumedIfTheBatchFails() throws Exception {
+
+        TestProcedure p = new TestProcedure() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, List<Event> events) throws EventProcessingException {
+
+                throw new EventProcessingException("SYNTHETIC");
+            }
+        };
+
+        try {
+
+            p.process(Arrays.asList(new MockTimedEvent(), new EndOfStreamEvent()));
+            fail("should throw exception");
+        }
+        catch(EventProcessingException x) {
+
+            assertEquals("SYNTHETIC", x.getMessage());
+        }
+
+        assertTrue(p.getReceived().isEmpty());
+
+        //
+        // the EndOfStream can be sent again, alone
+        //
+
+        p.process(Collections.singletonList(new EndOfStreamEvent()));
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) instanceof EndOfStreamEvent);
+    }
+
+    // downstream ------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void downstream_Default() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        assertNull(p.getDownstream());
+        assertEquals(ProcedureBase.DEFAULT_EMIT_BATCH_SIZE, p.getEmitBatchSize());
+    }
+
+    @Test
+    public void setDownstream_Itself() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        try {
+
+            p.setDownstream(p);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("cannot be its own downstream procedure"));
+        }
+    }
+
+    @Test
+    public void setEmitBatchSize_Invalid() throws Exception {
+
+        try {
+
+            new TestProcedure().setEmitBatchSize(0);
+            fail("should throw exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid emit batch size"));
+        }
+    }
+
+    @Test
+    public void downstream_EventsArePassedOnByReference() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+        TestProcedure d = new TestProcedure();
+        p.setDownstream(d);
+
+        assertSame(d, p.getDownstream());
+
+        MockTimedEvent e = new MockTimedEvent();
+        MockTimedEvent e2 = new MockTimedEvent();
+        EndOfStreamEvent eos = new EndOfStreamEvent();
+
+        p.process(Arrays.asList(e, e2, eos));
+
+        List<Event> received = d.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertSame(eos, received.get(2));
+
+        assertTrue(p.isExitLoop());
+        assertTrue(d.isExitLoop());
+    }
+
+    @Test
+    public void downstream_EmittedEventsAreBatched() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+        p.setEmitBatchSize(2);
+
+        BatchRecorder d = new BatchRecorder();
+        p.setDownstream(d);
+
+        p.process(new MockTimedEvent());
+
+        assertTrue(d.batches.isEmpty());
+
+        p.process(new MockTimedEvent());
+
+        assertEquals(1, d.batches.size());
+        assertEquals(2, d.batches.get(0).size());
+
+        p.process(new MockTimedEvent());
+
+        assertEquals(1, d.batches.size());
+
+        //
+        // EndOfStream hands over the incomplete batch
+        //
+
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(2, d.batches.size());
+        assertEquals(2, d.batches.get(1).size());
+        assertTrue(d.batches.get(1).get(1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void downstream_IncomingBatchBoundaryHandsOverEmittedEvents() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        BatchRecorder d = new BatchRecorder();
+        p.setDownstream(d);
+
+        p.process(Arrays.asList(new MockTimedEvent(), new MockTimedEvent()));
+
+        assertEquals(1, d.batches.size());
+        assertEquals(2, d.batches.get(0).size());
+        assertFalse(d.isExitLoop());
+    }
+
+    @Test
+    public void downstream_EndOfStreamIsForwardedEvenIfNothingIsEmitted() throws Exception {
+
+        ProcedureBase p = new ProcedureBase() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+                //
+                // swallows everything
+                //
+            }
+
+            @Override
+            protected boolean isChainable() {
+
+                return true;
+            }
+
+            @Override
+            public List<String> getCommandLineLabels() {
+
+                return new ArrayList<>();
+            }
+        };
+
+        TestProcedure d = new TestProcedure();
+        p.setDownstream(d);
+
+        p.process(new MockTimedEvent());
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(1, d.getReceived().size());
+        assertTrue(d.getReceived().get(0) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void setDownstream_ProcedureIsNotChainable() throws Exception {
+
+        ProcedureBase p = new ProcedureBase() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+            }
+
+            @Override
+            public List<String> getCommandLineLabels() {
+
+                return Collections.singletonList("sink");
+            }
+        };
+
+        try {
+
+            p.setDownstream(new TestProcedure());
+            fail("should have thrown exception");
+        }
+        catch(UnsupportedOperationException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("sink procedure cannot be followed by another procedure"));
+        }
+
+        p.setDownstream(null);
+
+        assertNull(p.getDownstream());
+    }
+
+    @Test
+    public void downstream_ExitLoopPropagatesUpstream() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        BatchRecorder d = new BatchRecorder();
+        p.setDownstream(d);
+
+        assertFalse(p.isExitLoop());
+
+        d.exitLoop = true;
+
+        assertTrue(p.isExitLoop());
+    }
+
+    @Test
+    public void emit_NoDownstream() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        //
+        // the events are discarded
+        //
+
+        p.process(new MockTimedEvent());
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(2, p.getReceived().size());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -94,4 +443,25 @@ public class TestProcedureTest extends ProcedureTest {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    private static class BatchRecorder extends TestProcedure {
+
+        private final List<List<Event>> batches = new ArrayList<>();
+
+        private boolean exitLoop;
+
+        @Override
+        public void process(List<Event> events) throws EventProcessingException {
+
+            batches.add(events);
+
+            super.process(events);
+        }
+
+        @Override
+        public boolean isExitLoop() {
+
+            return exitLoop || super.isExitLoop();
+        }
+    }
+
 }
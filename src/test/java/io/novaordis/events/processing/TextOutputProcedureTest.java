@@ -16,12 +16,17 @@
 
 package io.novaordis.events.processing;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.processing.metrics.ProcedureMetrics;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.CharBuffer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -208,6 +213,35 @@ public abstract class TextOutputProcedureTest extends ProcedureTest {
         assertEquals("null", new String(baos.toByteArray()));
     }
 
+    @Test
+    public void print_CharSequence() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        //
+        // longer than the transfer chunk, so it is handed over in several pieces
+        //
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; sb.length() < 20000; i ++) {
+
+            sb.append(i).append('\n');
+        }
+
+        p.print(sb);
+
+        assertEquals(sb.toString(), new String(baos.toByteArray()));
+
+        p.print(CharBuffer.wrap("else"));
+
+        assertEquals(sb + "else", new String(baos.toByteArray()));
+    }
+
 
     // printf() --------------------------------------------------------------------------------------------------------
 
@@ -301,6 +335,455 @@ public abstract class TextOutputProcedureTest extends ProcedureTest {
         assertEquals("red\n", new String(baos.toByteArray()));
     }
 
+    // buffered mode --------------------------------------------------------------------------------------------------
+
+    @Test
+    public void interactiveByDefault() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        assertTrue(p.isInteractive());
+        assertEquals(TextOutputProcedure.DEFAULT_BUFFER_SIZE, p.getBufferSize());
+        assertEquals(0L, p.getFlushInterval());
+    }
+
+    @Test
+    public void buffered_NoFlushUntilExplicitFlush() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+
+        assertFalse(p.isInteractive());
+
+        p.println("something");
+        p.print("else");
+        p.printf("%3s", 1);
+        p.println();
+
+        assertEquals(0, baos.toByteArray().length);
+
+        p.flush();
+
+        assertEquals("something\nelse  1\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void buffered_BufferFillTriggersWrite() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+        p.setBufferSize(4);
+
+        p.print("ab");
+
+        assertEquals(0, baos.toByteArray().length);
+
+        //
+        // exceeding the character buffer sends the content downstream; the encoder may still hold it, so we only
+        // check that nothing is lost after a flush
+        //
+
+        p.print("cdefghijkl");
+
+        p.flush();
+
+        assertEquals("abcdefghijkl", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void buffered_FlushInterval() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+        p.setFlushInterval(1L);
+
+        Thread.sleep(10L);
+
+        p.println("something");
+
+        assertEquals("something\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void buffered_EndOfStreamFlushes() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+
+        p.println("something");
+
+        assertEquals(0, baos.toByteArray().length);
+
+        p.process(new EndOfStreamEvent());
+
+        assertTrue(new String(baos.toByteArray()).startsWith("something\n"));
+    }
+
+    @Test
+    public void buffered_SwitchingBackToInteractiveFlushes() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+
+        p.print("something");
+
+        assertEquals(0, baos.toByteArray().length);
+
+        p.setInteractive(TextOutputProcedure.INTERACTIVE);
+
+        assertEquals("something", new String(baos.toByteArray()));
+
+        p.print("else");
+
+        assertEquals("somethingelse", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void buffered_ReplacingTheStreamFlushes() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+
+        p.println("red");
+
+        p.setOutputStream(new ByteArrayOutputStream());
+
+        assertEquals("red\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void setBufferSize_Invalid() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        try {
+
+            p.setBufferSize(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid buffer size"));
+        }
+    }
+
+    @Test
+    public void setFlushInterval_Invalid() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        try {
+
+            p.setFlushInterval(-1L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid flush interval"));
+        }
+    }
+
+    // asynchronous mode ----------------------------------------------------------------------------------------------
+
+    @Test
+    public void synchronousByDefault() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        assertFalse(p.isAsynchronous());
+        assertNull(p.getAsyncWriter());
+        assertEquals(AsyncWriter.DEFAULT_QUEUE_CAPACITY, p.getQueueCapacity());
+        assertEquals(AsyncWriter.OverflowPolicy.BLOCK, p.getOverflowPolicy());
+    }
+
+    @Test
+    public void asynchronous_Interactive_FlushWaitsForTheIOThread() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setAsynchronous(true);
+
+        assertTrue(p.isAsynchronous());
+
+        AsyncWriter w = p.getAsyncWriter();
+        assertNotNull(w);
+
+        p.println("something");
+        p.print("else");
+
+        //
+        // in interactive mode, every print*() hands its text over to the I/O thread
+        //
+
+        assertEquals(2L, w.getQueuedChunks());
+
+        p.flush();
+
+        assertEquals("something\nelse", new String(baos.toByteArray()));
+        assertEquals(0, w.getQueueDepth());
+    }
+
+    @Test
+    public void asynchronous_Buffered() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+        p.setAsynchronous(true);
+
+        AsyncWriter w = p.getAsyncWriter();
+
+        p.println("something");
+
+        assertEquals(0L, w.getQueuedChunks());
+
+        p.flush();
+
+        assertEquals("something\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void asynchronous_EndOfStreamDrains() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setAsynchronous(true);
+        p.setOverflowPolicy(AsyncWriter.OverflowPolicy.DROP);
+
+        for(int i = 0; i < 10; i ++) {
+
+            p.println("line " + i);
+        }
+
+        p.process(new EndOfStreamEvent());
+
+        AsyncWriter w = p.getAsyncWriter();
+
+        assertEquals(0, w.getQueueDepth());
+        assertFalse(w.isRunning());
+
+        String s = new String(baos.toByteArray());
+        assertTrue(s.startsWith("line 0\n"));
+        assertTrue(s.contains("line 9\n"));
+    }
+
+    @Test
+    public void asynchronous_SwitchingBackToSynchronousDrains() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+        p.setAsynchronous(true);
+
+        p.print("something");
+
+        p.setAsynchronous(false);
+
+        assertNull(p.getAsyncWriter());
+        assertEquals("something", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void asynchronous_ReplacingTheStreamDrains() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        p.setOutputStream(baos);
+
+        p.setAsynchronous(true);
+
+        p.println("red");
+
+        p.setOutputStream(new ByteArrayOutputStream());
+
+        assertEquals("red\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void setQueueCapacity_Invalid() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        try {
+
+            p.setQueueCapacity(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid queue capacity"));
+        }
+    }
+
+    @Test
+    public void asynchronous_EndOfStreamReportsIOThreadFailure() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        p.setOutputStream(new OutputStream() {
+
+            @Override
+            public void write(int b) throws IOException {
+
+                throw new IOException("SYNTHETIC");
+            }
+        });
+
+        p.setAsynchronous(true);
+
+        p.println("something");
+
+        try {
+
+            p.process(new EndOfStreamEvent());
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException e) {
+
+            Throwable t = e;
+
+            while(t.getCause() != null) {
+
+                t = t.getCause();
+            }
+
+            assertEquals("SYNTHETIC", t.getMessage());
+        }
+
+        assertFalse(p.getAsyncWriter().isRunning());
+    }
+
+    @Test
+    public void asynchronous_QueueIsBoundedByCharacters() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        p.setOutputStream(new ByteArrayOutputStream());
+        p.setInteractive(TextOutputProcedure.BUFFERED);
+        p.setAsynchronous(true);
+
+        //
+        // 1024 chunks of the default buffer size would queue 64M characters
+        //
+
+        assertEquals(AsyncWriter.DEFAULT_QUEUE_CAPACITY, p.getQueueCapacity());
+        assertEquals(TextOutputProcedure.MAX_QUEUED_CHARACTERS / TextOutputProcedure.DEFAULT_BUFFER_SIZE,
+                p.getAsyncWriter().getQueueCapacity());
+
+        p.setBufferSize(1024);
+
+        assertEquals(AsyncWriter.DEFAULT_QUEUE_CAPACITY, p.getAsyncWriter().getQueueCapacity());
+
+        p.setBufferSize(TextOutputProcedure.MAX_QUEUED_CHARACTERS);
+
+        assertEquals(2, p.getAsyncWriter().getQueueCapacity());
+
+        p.flush();
+    }
+
+    @Test
+    public void setOverflowPolicy_Null() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        try {
+
+            p.setOverflowPolicy(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null overflow policy"));
+        }
+    }
+
+    // metrics ---------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void bytesWritten() throws Exception {
+
+        TextOutputProcedure p = getTextOutputProcedureToTest();
+
+        p.setOutputStream(new ByteArrayOutputStream());
+
+        assertEquals(0L, p.getBytesWritten());
+
+        p.println("something");
+
+        assertEquals(10L, p.getBytesWritten());
+        assertTrue(p.getOutputBlockedNanos() > 0L);
+
+        //
+        // the count survives stream and mode changes
+        //
+
+        p.setOutputStream(new ByteArrayOutputStream());
+        p.setAsynchronous(true);
+
+        p.print("else");
+        p.flush();
+
+        assertEquals(14L, p.getBytesWritten());
+
+        ProcedureMetrics m = p.enableMetrics();
+
+        assertTrue(m.hasOutputCounters());
+        assertEquals(14L, m.getBytesWritten());
+        assertEquals(p.getOutputBlockedNanos(), m.getOutputBlockedNanos());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
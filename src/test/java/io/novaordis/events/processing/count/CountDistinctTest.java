@@ -0,0 +1,376 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.count;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class CountDistinctTest extends TextOutputProcedureTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    @Test
+    @Override
+    public void procedureFactoryFind() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        CountDistinct p = (CountDistinct) f.find(CountDistinct.COMMAND_LINE_LABEL, 0, Collections.emptyList());
+        assertNotNull(p);
+        assertNotNull(p.getOutputStream());
+    }
+
+    @Test
+    @Override
+    public void commandLineLabel() throws Exception {
+
+        Procedure p = getTextOutputProcedureToTest();
+
+        List<String> commandLineLabels = p.getCommandLineLabels();
+        assertEquals(1, commandLineLabels.size());
+        assertTrue(commandLineLabels.contains(CountDistinct.COMMAND_LINE_LABEL));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void defaults() throws Exception {
+
+        CountDistinct c = new CountDistinct();
+
+        assertEquals(HyperLogLog.DEFAULT_PRECISION, c.getPrecision());
+        assertEquals(HyperLogLog.defaultExactThreshold(HyperLogLog.DEFAULT_PRECISION), c.getExactThreshold());
+        assertTrue(c.getProperties().isEmpty());
+        assertNull(c.getCounter(0));
+
+        c.setPrecision(16);
+
+        assertEquals(HyperLogLog.defaultExactThreshold(16), c.getExactThreshold());
+    }
+
+    @Test
+    public void exactCount() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        CountDistinct c = new CountDistinct(baos);
+        c.getProperties().add("user");
+        c.getProperties().add("host");
+        c.getProperties().add("missing");
+
+        for(int i = 0; i < 100; i ++) {
+
+            c.process(event("user-" + (i % 7), "host-" + (i % 3)));
+        }
+
+        //
+        // no value, not counted
+        //
+
+        c.process(new GenericEvent());
+
+        assertEquals(0, baos.size());
+
+        c.process(new EndOfStreamEvent());
+
+        assertEquals("user: 7\nhost: 3\nmissing: 0\n", new String(baos.toByteArray()));
+        assertTrue(c.getCounter(0).isExact());
+    }
+
+    @Test
+    public void estimatedCount() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        CountDistinct c = new CountDistinct(baos);
+        c.getProperties().add("user");
+        c.setExactThreshold(0);
+
+        for(int i = 0; i < 50000; i ++) {
+
+            c.process(event("user-" + i, null));
+        }
+
+        c.process(new EndOfStreamEvent());
+
+        HyperLogLog h = c.getCounter(0);
+
+        assertFalse(h.isExact());
+        assertEquals(50000d, h.getCount(), 50000d * 0.06d);
+        assertEquals("user: ~" + h.getCount() + " (standard error 1.63%)\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void propertiesByIndex() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        CountDistinct c = new CountDistinct(baos);
+        c.getProperties().add("1");
+
+        for(long i = 0; i < 10; i ++) {
+
+            GenericEvent e = new GenericEvent();
+            e.setProperty(new StringProperty("a", "A"));
+            e.setProperty(new LongProperty("b", i % 4));
+            c.process(e);
+        }
+
+        c.process(new EndOfStreamEvent());
+
+        assertEquals("1: 4\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void shards() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final CountDistinct c = getTextOutputProcedureToTest(baos);
+        c.getProperties().add("user");
+        c.setExactThreshold(0);
+
+        int threadCount = 4;
+        final int eventsPerThread = 20000;
+
+        Thread[] threads = new Thread[threadCount];
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        for(int i = 0; i < threadCount; i ++) {
+
+            final Procedure shard = c.newShard();
+            final int offset = i * eventsPerThread / 2;
+
+            //
+            // the shards' value ranges overlap by half
+            //
+
+            threads[i] = new Thread(() -> {
+
+                try {
+
+                    for(int j = 0; j < eventsPerThread; j ++) {
+
+                        shard.process(event("user-" + (offset + j), null));
+                    }
+
+                    shard.process(new EndOfStreamEvent());
+                }
+                catch(Throwable t) {
+
+                    failures.add(t);
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for(Thread t: threads) {
+
+            t.join();
+        }
+
+        assertTrue(failures.isEmpty());
+
+        //
+        // shards do not report
+        //
+
+        assertEquals(0, baos.toByteArray().length);
+
+        c.process(new EndOfStreamEvent());
+
+        //
+        // a single counter fed the whole stream estimates the same, merging is lossless
+        //
+
+        HyperLogLog expected = new HyperLogLog(HyperLogLog.DEFAULT_PRECISION, 0);
+
+        for(int i = 0; i < (threadCount + 1) * eventsPerThread / 2; i ++) {
+
+            expected.add("user-" + i);
+        }
+
+        assertEquals(expected.getCount(), c.getCounter(0).getCount());
+    }
+
+    @Test
+    public void eventsArePassedDownstream() throws Exception {
+
+        CountDistinct c = new CountDistinct(new ByteArrayOutputStream());
+        c.getProperties().add("user");
+
+        TestProcedure downstream = new TestProcedure();
+        c.setDownstream(downstream);
+
+        GenericEvent e = event("a", "b");
+        GenericEvent e2 = new GenericEvent();
+
+        c.process(Arrays.asList(e, e2, new EndOfStreamEvent()));
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "count-distinct", "-o", "user,", "host", "--precision", "14", "--exact-threshold", "100", "something"));
+
+        CountDistinct c = new CountDistinct(new ByteArrayOutputStream(), 1, args);
+
+        assertEquals("user, host", c.getProperties().toString());
+        assertEquals(14, c.getPrecision());
+        assertEquals(100, c.getExactThreshold());
+
+        assertEquals(Arrays.asList("count-distinct", "something"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingValue() throws Exception {
+
+        try {
+
+            new CountDistinct(new ByteArrayOutputStream(), 0, new ArrayList<>(Collections.singletonList("--precision")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after --precision"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidPrecision() throws Exception {
+
+        try {
+
+            new CountDistinct(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--precision", "20")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --precision value: 20"));
+        }
+
+        try {
+
+            new CountDistinct(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--precision", "x")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --precision value: x"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidExactThreshold() throws Exception {
+
+        try {
+
+            new CountDistinct(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--exact-threshold", "-1")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --exact-threshold value: -1"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected CountDistinct getTextOutputProcedureToTest(OutputStream os) throws Exception {
+
+        return new CountDistinct(os);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericEvent event(String user, String host) {
+
+        GenericEvent e = new GenericEvent();
+
+        e.setProperty(new StringProperty("user", user));
+
+        if (host != null) {
+
+            e.setProperty(new StringProperty("host", host));
+        }
+
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
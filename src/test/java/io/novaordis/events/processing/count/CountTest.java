@@ -18,19 +18,28 @@ package io.novaordis.events.processing.count;
 
 import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.MockEvent;
 import io.novaordis.events.processing.MockTimedEvent;
+import io.novaordis.events.processing.Procedure;
 import io.novaordis.events.processing.ProcedureFactory;
 import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
 import org.junit.Test;
 
 import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.SortedMap;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -130,6 +139,204 @@ public class CountTest extends TextOutputProcedureTest {
         assertEquals(expected, new String(baos.toByteArray()));
     }
     
+    @Test
+    public void count_Batch() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Count d = getTextOutputProcedureToTest(baos);
+
+        d.process(Arrays.asList(new MockTimedEvent(), new MockTimedEvent(), new MockTimedEvent()));
+
+        assertEquals(3L, d.getCount());
+
+        assertTrue(baos.toByteArray().length == 0);
+
+        d.process(Arrays.asList(new MockTimedEvent(), new EndOfStreamEvent()));
+
+        assertEquals(4L, d.getCount());
+
+        assertEquals(5L, d.getInvocationCount());
+
+        assertEquals("4\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void count_ByEventClass() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Count d = getTextOutputProcedureToTest(baos);
+
+        d.setGroupByEventClass(true);
+
+        d.process(Arrays.asList(new MockTimedEvent(), new MockEvent(), new MockTimedEvent()));
+
+        assertEquals(3L, d.getCount());
+
+        SortedMap<String, Long> counts = d.getCounts();
+        assertEquals(2, counts.size());
+        assertEquals(1L, counts.get("MockEvent").longValue());
+        assertEquals(2L, counts.get("MockTimedEvent").longValue());
+
+        d.process(new EndOfStreamEvent());
+
+        assertEquals("3\nMockEvent: 1\nMockTimedEvent: 2\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void count_ByProperty() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Count d = getTextOutputProcedureToTest(baos);
+
+        d.setGroupByPropertyName("color");
+
+        MockEvent e = new MockEvent();
+        e.setStringProperty("color", "red");
+        MockEvent e2 = new MockEvent();
+        e2.setStringProperty("color", "blue");
+        MockEvent e3 = new MockEvent();
+        e3.setStringProperty("color", "red");
+        MockEvent e4 = new MockEvent();
+
+        d.process(e);
+        d.process(Arrays.asList(e2, e3, e4, new EndOfStreamEvent()));
+
+        assertEquals(4L, d.getCount());
+
+        assertEquals("4\nblue: 1\n" + Count.NULL_GROUP_KEY + ": 1\nred: 2\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void shards() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        final Count d = getTextOutputProcedureToTest(baos);
+
+        d.setGroupByEventClass(true);
+
+        int threadCount = 4;
+        final int eventsPerThread = 10000;
+
+        Thread[] threads = new Thread[threadCount];
+
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+
+        for(int i = 0; i < threadCount; i ++) {
+
+            final Procedure shard = d.newShard();
+
+            threads[i] = new Thread(() -> {
+
+                try {
+
+                    for(int j = 0; j < eventsPerThread; j ++) {
+
+                        shard.process(new MockTimedEvent());
+                    }
+
+                    shard.process(Arrays.asList(new MockEvent(), new EndOfStreamEvent()));
+                }
+                catch(Throwable t) {
+
+                    failures.add(t);
+                }
+            });
+
+            threads[i].start();
+        }
+
+        for(Thread t: threads) {
+
+            t.join();
+        }
+
+        assertTrue(failures.isEmpty());
+
+        //
+        // shards do not report
+        //
+
+        assertEquals(0, baos.toByteArray().length);
+
+        //
+        // the shards count independently, their counts are merged when the EndOfStream is sent to the parent
+        //
+
+        assertEquals(0L, d.getCount());
+        assertTrue(d.getCounts().isEmpty());
+
+        d.process(new EndOfStreamEvent());
+
+        long expected = threadCount * (eventsPerThread + 1);
+
+        assertEquals(expected, d.getCount());
+
+        assertEquals(expected + "\nMockEvent: " + threadCount + "\nMockTimedEvent: " + threadCount * eventsPerThread + "\n",
+                new String(baos.toByteArray()));
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine_ByClass() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("count", "--by-class", "something"));
+
+        Count c = new Count(null, 1, args);
+
+        assertTrue(c.isGroupByEventClass());
+        assertNull(c.getGroupByPropertyName());
+
+        assertEquals(Arrays.asList("count", "something"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_ByProperty() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("count", "--by", "color", "something"));
+
+        Count c = new Count(null, 1, args);
+
+        assertFalse(c.isGroupByEventClass());
+        assertEquals("color", c.getGroupByPropertyName());
+
+        assertEquals(Arrays.asList("count", "something"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_ByProperty_MissingPropertyName() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("count", "--by"));
+
+        try {
+
+            new Count(null, 1, args);
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing property name"));
+        }
+    }
+
+    @Test
+    public void procedureFactoryFind_ByProperty() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        List<String> args = new ArrayList<>(Arrays.asList("count", "--by", "color"));
+
+        Count c = (Count) f.find(Count.COMMAND_LINE_LABEL, 1, args);
+
+        assertEquals("color", c.getGroupByPropertyName());
+        assertEquals(Collections.singletonList("count"), args);
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
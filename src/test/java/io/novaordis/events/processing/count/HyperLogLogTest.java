@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.count;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class HyperLogLogTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidPrecision() throws Exception {
+
+        try {
+
+            new HyperLogLog(3);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid precision: 3"));
+        }
+
+        try {
+
+            new HyperLogLog(19, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid precision: 19"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidExactThreshold() throws Exception {
+
+        try {
+
+            new HyperLogLog(12, -1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid exact threshold: -1"));
+        }
+    }
+
+    @Test
+    public void defaults() throws Exception {
+
+        HyperLogLog h = new HyperLogLog();
+
+        assertEquals(HyperLogLog.DEFAULT_PRECISION, h.getPrecision());
+        assertEquals(512, h.getExactThreshold());
+        assertTrue(h.isExact());
+        assertEquals(0L, h.getCount());
+        assertEquals(0d, h.getStandardError(), 0d);
+    }
+
+    @Test
+    public void hash_IntegralNumbersHashByValue() throws Exception {
+
+        assertEquals(HyperLogLog.hash(7L), HyperLogLog.hash(7));
+        assertEquals(HyperLogLog.hash(7L), HyperLogLog.hash(7d));
+        assertTrue(HyperLogLog.hash(7L) != HyperLogLog.hash(7.5d));
+        assertTrue(HyperLogLog.hash("a") != HyperLogLog.hash("b"));
+        assertEquals(HyperLogLog.hash("abc"), HyperLogLog.hash(new StringBuilder("abc")));
+    }
+
+    @Test
+    public void exactBelowTheThreshold() throws Exception {
+
+        HyperLogLog h = new HyperLogLog(12, 1000);
+
+        for(int round = 0; round < 3; round ++) {
+
+            for(int i = 0; i < 1000; i ++) {
+
+                h.add("user-" + i);
+            }
+        }
+
+        h.add(null);
+
+        assertTrue(h.isExact());
+        assertEquals(1000L, h.getCount());
+
+        h.add("one more");
+
+        assertFalse(h.isExact());
+        assertEquals(4096, h.getAllocatedBytes());
+        assertEquals(1001d, h.getCount(), 1001d * 0.05d);
+        assertEquals(1.04d / 64d, h.getStandardError(), 1e-12d);
+    }
+
+    @Test
+    public void estimate_MemoryDoesNotGrow() throws Exception {
+
+        HyperLogLog h = new HyperLogLog(12, 0);
+
+        assertFalse(h.isExact());
+        assertEquals(0L, h.getCount());
+
+        for(long i = 0; i < 1000000L; i ++) {
+
+            h.add(i);
+        }
+
+        assertEquals(4096, h.getAllocatedBytes());
+
+        //
+        // 1.6% standard error, allow for more than 3 standard deviations
+        //
+
+        assertEquals(1000000d, h.getCount(), 1000000d * 0.06d);
+    }
+
+    @Test
+    public void estimate_AcrossCardinalities() throws Exception {
+
+        for(int n: new int[] { 10, 100, 1000, 10000, 100000 }) {
+
+            HyperLogLog h = new HyperLogLog(14, 0);
+
+            for(int i = 0; i < n; i ++) {
+
+                h.add("session-" + i);
+            }
+
+            //
+            // 0.8% standard error
+            //
+
+            assertEquals(n, h.getCount(), Math.max(1d, n * 0.04d));
+        }
+    }
+
+    @Test
+    public void merge_Estimating() throws Exception {
+
+        HyperLogLog a = new HyperLogLog(12, 0);
+        HyperLogLog b = new HyperLogLog(12, 0);
+        HyperLogLog all = new HyperLogLog(12, 0);
+
+        //
+        // overlapping ranges
+        //
+
+        for(int i = 0; i < 60000; i ++) {
+
+            a.add(i);
+            all.add(i);
+        }
+
+        for(int i = 40000; i < 100000; i ++) {
+
+            b.add(i);
+            all.add(i);
+        }
+
+        a.merge(b);
+
+        assertEquals(all.getCount(), a.getCount());
+    }
+
+    @Test
+    public void merge_ExactIntoExact() throws Exception {
+
+        HyperLogLog a = new HyperLogLog(12, 100);
+        HyperLogLog b = new HyperLogLog(12, 100);
+
+        for(int i = 0; i < 30; i ++) {
+
+            a.add(i);
+            b.add(i + 20);
+        }
+
+        a.merge(b);
+
+        assertTrue(a.isExact());
+        assertEquals(50L, a.getCount());
+
+        //
+        // the argument is not modified
+        //
+
+        assertEquals(30L, b.getCount());
+    }
+
+    @Test
+    public void merge_ExactIntoExact_ThresholdExceeded() throws Exception {
+
+        HyperLogLog a = new HyperLogLog(12, 100);
+        HyperLogLog b = new HyperLogLog(12, 100);
+
+        for(int i = 0; i < 80; i ++) {
+
+            a.add(i);
+            b.add(i + 1000);
+        }
+
+        a.merge(b);
+
+        assertFalse(a.isExact());
+        assertEquals(160d, a.getCount(), 160d * 0.05d);
+    }
+
+    @Test
+    public void merge_EstimatingIntoExact() throws Exception {
+
+        HyperLogLog a = new HyperLogLog(12, 100);
+        HyperLogLog b = new HyperLogLog(12, 0);
+
+        for(int i = 0; i < 10; i ++) {
+
+            a.add(i);
+        }
+
+        for(int i = 0; i < 10000; i ++) {
+
+            b.add(i);
+        }
+
+        a.merge(b);
+
+        assertFalse(a.isExact());
+        assertEquals(b.getCount(), a.getCount());
+    }
+
+    @Test
+    public void merge_IncompatiblePrecision() throws Exception {
+
+        try {
+
+            new HyperLogLog(12).merge(new HyperLogLog(14));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("incompatible precision: 14, expected 12"));
+        }
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        HyperLogLog h = new HyperLogLog(12, 10);
+
+        for(int i = 0; i < 100; i ++) {
+
+            h.add(i);
+        }
+
+        assertFalse(h.isExact());
+
+        h.clear();
+
+        assertTrue(h.isExact());
+        assertEquals(0L, h.getCount());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
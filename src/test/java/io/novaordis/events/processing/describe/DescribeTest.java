@@ -166,6 +166,43 @@ public class DescribeTest extends TextOutputProcedureTest {
 
     }
     
+    @Test
+    public void identicallyShapedEventsAreDescribedOnce() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Describe d = new Describe(baos);
+
+        MockTimedEvent e = new MockTimedEvent(new TimestampImpl(1));
+        e.setProperty(new StringProperty("a", "x"));
+        e.setProperty(new IntegerProperty("b", 1));
+
+        d.process(e);
+
+        String expected = Describe.getSignature(e, Describe.YAML) + "\n";
+
+        assertEquals(expected, new String(baos.toByteArray()));
+
+        MockTimedEvent e2 = new MockTimedEvent(new TimestampImpl(2));
+        e2.setProperty(new IntegerProperty("b", 2));
+        e2.setProperty(new StringProperty("a", "y"));
+
+        d.process(e2);
+
+        assertEquals(expected, new String(baos.toByteArray()));
+
+        Map<String, Object> map = new HashMap<>();
+        map.put("k", "v");
+
+        MockTimedEvent e3 = new MockTimedEvent(new TimestampImpl(3));
+        e3.setProperty(new StringProperty("a", "x"));
+        e3.setProperty(new MapProperty("b", map));
+
+        d.process(e3);
+
+        assertEquals(expected + Describe.getSignature(e3, Describe.YAML) + "\n", new String(baos.toByteArray()));
+    }
+
     // getSignature() --------------------------------------------------------------------------------------------------
 
     @Test
@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.describe;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.IntegerProperty;
+import io.novaordis.events.api.event.MapProperty;
+import io.novaordis.events.api.event.StringProperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ShapeCacheTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void sameShape_DifferentPropertyOrderAndValues() throws Exception {
+
+        ShapeCache c = new ShapeCache();
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "x"));
+        e.setProperty(new IntegerProperty("b", 1));
+
+        assertFalse(c.contains(e));
+
+        c.add(e);
+
+        assertTrue(c.contains(e));
+        assertEquals(1, c.size());
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setProperty(new IntegerProperty("b", 2));
+        e2.setProperty(new StringProperty("a", "y"));
+
+        assertEquals(ShapeCache.fingerprint(e), ShapeCache.fingerprint(e2));
+        assertTrue(c.contains(e2));
+
+        c.add(e2);
+        assertEquals(1, c.size());
+    }
+
+    @Test
+    public void differentShapes() throws Exception {
+
+        ShapeCache c = new ShapeCache();
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "x"));
+        c.add(e);
+
+        GenericEvent differentType = new GenericEvent();
+        differentType.setProperty(new IntegerProperty("a", 1));
+        assertFalse(c.contains(differentType));
+
+        GenericEvent differentName = new GenericEvent();
+        differentName.setProperty(new StringProperty("b", "x"));
+        assertFalse(c.contains(differentName));
+
+        GenericEvent moreProperties = new GenericEvent();
+        moreProperties.setProperty(new StringProperty("a", "x"));
+        moreProperties.setProperty(new StringProperty("b", "x"));
+        assertFalse(c.contains(moreProperties));
+
+        GenericTimedEvent differentClass = new GenericTimedEvent();
+        differentClass.setProperty(new StringProperty("a", "x"));
+        assertFalse(c.contains(differentClass));
+    }
+
+    @Test
+    public void mapKeys() throws Exception {
+
+        ShapeCache c = new ShapeCache();
+
+        Map<String, Object> m = new HashMap<>();
+        m.put("k1", "v1");
+        m.put("k2", "v2");
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new MapProperty("m", m));
+        c.add(e);
+
+        Map<String, Object> sameKeys = new HashMap<>();
+        sameKeys.put("k2", "other");
+        sameKeys.put("k1", "other");
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setProperty(new MapProperty("m", sameKeys));
+        assertTrue(c.contains(e2));
+
+        Map<String, Object> otherKeys = new HashMap<>();
+        otherKeys.put("k1", "v1");
+        otherKeys.put("k3", "v3");
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setProperty(new MapProperty("m", otherKeys));
+        assertFalse(c.contains(e3));
+    }
+
+    @Test
+    public void mapKeys_DuplicateStringRepresentations() throws Exception {
+
+        ShapeCache c = new ShapeCache();
+
+        Map<Object, Object> m = new HashMap<>();
+        m.put("1", "a");
+        m.put("2", "b");
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new MapProperty("m", m));
+        c.add(e);
+
+        Map<Object, Object> m2 = new HashMap<>();
+        m2.put("1", "a");
+        m2.put(1, "b");
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setProperty(new MapProperty("m", m2));
+        assertFalse(c.contains(e2));
+
+        //
+        // such a shape is not cacheable
+        //
+
+        c.add(e2);
+        assertEquals(1, c.size());
+        assertFalse(c.contains(e2));
+    }
+
+    @Test
+    public void manyShapes() throws Exception {
+
+        ShapeCache c = new ShapeCache();
+
+        for(int i = 0; i < 1000; i ++) {
+
+            GenericEvent e = new GenericEvent();
+            e.setProperty(new StringProperty("p" + i, "x"));
+            c.add(e);
+        }
+
+        assertEquals(1000, c.size());
+
+        for(int i = 0; i < 1000; i ++) {
+
+            GenericEvent e = new GenericEvent();
+            e.setProperty(new StringProperty("p" + i, "y"));
+            assertTrue(c.contains(e));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.exclude;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.query.FieldQuery;
+import io.novaordis.events.query.KeywordQuery;
+import io.novaordis.events.query.MatchAll;
+import io.novaordis.events.query.MatchNone;
+import io.novaordis.events.query.MixedQuery;
+import io.novaordis.events.query.NullQuery;
+import io.novaordis.events.query.Query;
+import io.novaordis.events.query.TimeQuery;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class EventPredicatesTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void of_Null() throws Exception {
+
+        try {
+
+            EventPredicates.of(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null query"));
+        }
+    }
+
+    @Test
+    public void of_MatchNone() throws Exception {
+
+        assertTrue(EventPredicates.of(new MatchNone()) == EventPredicates.FALSE);
+    }
+
+    @Test
+    public void of_MatchAll() throws Exception {
+
+        assertTrue(EventPredicates.of(new MatchAll()) == EventPredicates.TRUE);
+    }
+
+    @Test
+    public void of_FieldQuery() throws Exception {
+
+        EventPredicate p = EventPredicates.of(new FieldQuery("status", "200"));
+
+        assertEquals(EventPredicates.FIELD_QUERY_COST, p.getCost());
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new LongProperty("status", 200L));
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setProperty(new StringProperty("status", "404"));
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setProperty(new StringProperty("other", "200"));
+
+        assertTrue(p.test(e));
+        assertFalse(p.test(e2));
+        assertFalse(p.test(e3));
+    }
+
+    @Test
+    public void of_TimeQuery() throws Exception {
+
+        EventPredicate p = EventPredicates.of(new TimeQuery(10L, 20L));
+
+        assertEquals(EventPredicates.TIME_COST, p.getCost());
+
+        assertFalse(p.test(new GenericTimedEvent(9L)));
+        assertTrue(p.test(new GenericTimedEvent(10L)));
+        assertFalse(p.test(new GenericTimedEvent(20L)));
+        assertFalse(p.test(new GenericEvent()));
+    }
+
+    @Test
+    public void of_MixedQuery_ComponentsAreTranslatedAndOrderedByCost() throws Exception {
+
+        KeywordQuery keyword = new KeywordQuery("error");
+        FieldQuery field = new FieldQuery("status", "500");
+        TimeQuery time = new TimeQuery(0L, 100L);
+
+        MixedQuery q = new MixedQuery();
+        q.addQuery(keyword);
+        q.addQuery(field);
+        q.addQuery(time);
+
+        EventPredicate p = EventPredicates.of(q);
+
+        assertTrue(q.isCompiled());
+        assertTrue(p instanceof EventPredicates.And);
+
+        List<EventPredicate> clauses = ((EventPredicates.And)p).getClauses();
+
+        assertEquals(3, clauses.size());
+        assertEquals(EventPredicates.TIME_COST, clauses.get(0).getCost());
+        assertEquals(EventPredicates.FIELD_QUERY_COST, clauses.get(1).getCost());
+        assertEquals(EventPredicates.QUERY_COST, clauses.get(2).getCost());
+
+        GenericTimedEvent e = new GenericTimedEvent(50L);
+        e.setProperty(new StringProperty("status", "500"));
+        e.setProperty(new StringProperty("message", "an error occurred"));
+
+        GenericTimedEvent e2 = new GenericTimedEvent(150L);
+        e2.setProperty(new StringProperty("status", "500"));
+        e2.setProperty(new StringProperty("message", "an error occurred"));
+
+        assertTrue(p.test(e));
+        assertFalse(p.test(e2));
+        assertEquals(q.selects(e), p.test(e));
+        assertEquals(q.selects(e2), p.test(e2));
+    }
+
+    @Test
+    public void of_MixedQuery_ConstantComponentsAreFolded() throws Exception {
+
+        MixedQuery q = new MixedQuery();
+        q.addQuery(new MatchAll());
+        q.addQuery(new FieldQuery("a", "b"));
+
+        assertEquals(EventPredicates.FIELD_QUERY_COST, EventPredicates.of(q).getCost());
+
+        q.addQuery(new MatchNone());
+
+        assertTrue(EventPredicates.of(q) == EventPredicates.FALSE);
+    }
+
+    @Test
+    public void of_ParsedQuery() throws Exception {
+
+        Query q = Query.fromArguments(Arrays.asList("status:500", "error"), 0);
+
+        EventPredicate p = EventPredicates.of(q);
+
+        assertTrue(p instanceof EventPredicates.And);
+        assertEquals(EventPredicates.FIELD_QUERY_COST, ((EventPredicates.And)p).getClauses().get(0).getCost());
+    }
+
+    @Test
+    public void of_Query() throws Exception {
+
+        Query q = new NullQuery();
+
+        EventPredicate p = EventPredicates.of(q);
+
+        assertEquals(EventPredicates.QUERY_COST, p.getCost());
+
+        GenericEvent e = new GenericEvent();
+        assertEquals(q.selects(e), p.test(e));
+    }
+
+    @Test
+    public void and_ClausesAreOrderedByCost() throws Exception {
+
+        EventPredicate matches = EventPredicates.propertyMatches("a", Pattern.compile("x.*"));
+        EventPredicate exists = EventPredicates.propertyExists("b");
+        EventPredicate time = EventPredicates.timeBetween(0L, 10L);
+
+        EventPredicate p = EventPredicates.and(matches, EventPredicates.and(exists, time));
+
+        assertTrue(p instanceof EventPredicates.And);
+
+        List<EventPredicate> clauses = ((EventPredicates.And)p).getClauses();
+        assertEquals(Arrays.asList(time, exists, matches), clauses);
+        assertEquals(EventPredicates.TIME_COST + EventPredicates.PROPERTY_EXISTS_COST +
+                EventPredicates.PROPERTY_MATCHES_COST, p.getCost());
+    }
+
+    @Test
+    public void and_ShortCircuitsOnTheCheapestClause() throws Exception {
+
+        final int[] evaluations = new int[1];
+
+        EventPredicate expensive = new EventPredicate() {
+
+            @Override
+            public boolean test(Event e) {
+
+                evaluations[0] ++;
+                return true;
+            }
+
+            @Override
+            public int getCost() {
+
+                return 1000;
+            }
+        };
+
+        EventPredicate p = EventPredicates.and(expensive, EventPredicates.propertyExists("a"));
+
+        assertFalse(p.test(new GenericEvent()));
+        assertEquals(0, evaluations[0]);
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "x");
+
+        assertTrue(p.test(e));
+        assertEquals(1, evaluations[0]);
+    }
+
+    @Test
+    public void constantFolding() throws Exception {
+
+        EventPredicate exists = EventPredicates.propertyExists("a");
+
+        assertTrue(EventPredicates.and(exists, EventPredicates.FALSE) == EventPredicates.FALSE);
+        assertTrue(EventPredicates.and(exists, EventPredicates.TRUE) == exists);
+        assertTrue(EventPredicates.and() == EventPredicates.TRUE);
+        assertTrue(EventPredicates.or(exists, EventPredicates.TRUE) == EventPredicates.TRUE);
+        assertTrue(EventPredicates.or(exists, EventPredicates.FALSE) == exists);
+        assertTrue(EventPredicates.or() == EventPredicates.FALSE);
+        assertTrue(EventPredicates.not(EventPredicates.TRUE) == EventPredicates.FALSE);
+        assertTrue(EventPredicates.not(EventPredicates.not(exists)) == exists);
+    }
+
+    @Test
+    public void or() throws Exception {
+
+        EventPredicate p = EventPredicates.or(
+                EventPredicates.propertyEquals("a", "x"), EventPredicates.propertyEquals("b", 1));
+
+        GenericEvent e = new GenericEvent();
+        e.setIntegerProperty("b", 1);
+        assertTrue(p.test(e));
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("a", "y");
+        assertFalse(p.test(e2));
+    }
+
+    @Test
+    public void timeBetween() throws Exception {
+
+        EventPredicate p = EventPredicates.timeBetween(10L, 20L);
+
+        assertFalse(p.test(new GenericTimedEvent(9L)));
+        assertTrue(p.test(new GenericTimedEvent(10L)));
+        assertTrue(p.test(new GenericTimedEvent(19L)));
+        assertFalse(p.test(new GenericTimedEvent(20L)));
+        assertFalse(p.test(new GenericEvent()));
+    }
+
+    @Test
+    public void propertyMatches() throws Exception {
+
+        EventPredicate p = EventPredicates.propertyMatches("a", Pattern.compile("[0-9]+"));
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "123");
+        assertTrue(p.test(e));
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setIntegerProperty("a", 7);
+        assertTrue(p.test(e2));
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setStringProperty("a", "x1");
+        assertFalse(p.test(e3));
+
+        assertFalse(p.test(new GenericEvent()));
+    }
+
+    @Test
+    public void not() throws Exception {
+
+        EventPredicate p = EventPredicates.not(EventPredicates.propertyExists("a"));
+
+        assertTrue(p.test(new GenericEvent()));
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "x");
+        assertFalse(p.test(e));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
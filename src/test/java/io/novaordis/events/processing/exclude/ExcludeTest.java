@@ -17,16 +17,26 @@
 package io.novaordis.events.processing.exclude;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.junit.Test;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
 import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.processing.DefaultProcedureFactory;
 import io.novaordis.events.processing.MockTimedEvent;
 import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.SourceByteRange;
 import io.novaordis.events.processing.TextOutputProcedureTest;
 import io.novaordis.events.query.MatchNone;
 import io.novaordis.events.query.NullQuery;
@@ -216,6 +226,129 @@ public class ExcludeTest extends TextOutputProcedureTest {
         assertEquals("something\n", s);
     }
 
+    @Test
+    public void process_Predicate() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Exclude e = getTextOutputProcedureToTest(baos);
+
+        e.setPredicate(EventPredicates.propertyEquals("color", "red"));
+
+        assertNull(e.getQuery());
+
+        MockTimedEvent red = new MockTimedEvent();
+        red.setStringProperty("color", "red");
+        red.setRawRepresentation("red");
+
+        MockTimedEvent blue = new MockTimedEvent();
+        blue.setStringProperty("color", "blue");
+        blue.setRawRepresentation("blue");
+
+        e.process(red);
+        e.process(blue);
+
+        assertEquals("blue\n", new String(baos.toByteArray()));
+    }
+
+    // passthrough -----------------------------------------------------------------------------------------------------
+
+    @Test
+    public void passthrough_CoalescesAdjacentRanges() throws Exception {
+
+        File source = sourceFile("a\nbb\nccc\ndddd\n");
+
+        try(FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+            Exclude e = getTextOutputProcedureToTest(baos);
+            e.setPredicate(EventPredicates.propertyEquals("line", "bb"));
+            e.setPassthroughSource(channel);
+
+            for(Event event: sourceEvents("a\nbb\nccc\ndddd\n")) {
+
+                e.process(event);
+            }
+
+            //
+            // nothing is copied until the adjacency is broken or the stream ends
+            //
+
+            assertEquals("a\n", new String(baos.toByteArray()));
+
+            e.process(new EndOfStreamEvent());
+
+            assertEquals("a\nccc\ndddd\n", new String(baos.toByteArray()));
+            assertEquals(2L, e.getTransferCount());
+        }
+    }
+
+    @Test
+    public void passthrough_FileOutput() throws Exception {
+
+        File source = sourceFile("a\nbb\nccc\n");
+        File target = File.createTempFile("exclude-target", ".txt");
+        target.deleteOnExit();
+
+        try(FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+            FileOutputStream fos = new FileOutputStream(target)) {
+
+            Exclude e = getTextOutputProcedureToTest(fos);
+            e.setPredicate(EventPredicates.propertyEquals("line", "a"));
+            e.setPassthroughSource(channel);
+
+            List<Event> events = sourceEvents("a\nbb\nccc\n");
+            events.add(new EndOfStreamEvent());
+
+            e.process(events);
+        }
+
+        assertEquals("bb\nccc\n", new String(Files.readAllBytes(target.toPath()), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void passthrough_EventsWithoutRangeKeepTheirOrder() throws Exception {
+
+        File source = sourceFile("a\nbb\n");
+
+        try(FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+            Exclude e = getTextOutputProcedureToTest(baos);
+            e.setPredicate(EventPredicates.FALSE);
+            e.setPassthroughSource(channel);
+
+            List<Event> events = sourceEvents("a\nbb\n");
+
+            MockTimedEvent noRange = new MockTimedEvent();
+            noRange.setRawRepresentation("no range");
+
+            e.process(events.get(0));
+            e.process(noRange);
+            e.process(events.get(1));
+            e.process(new EndOfStreamEvent());
+
+            assertEquals("a\nno range\nbb\n", new String(baos.toByteArray()));
+        }
+    }
+
+    @Test
+    public void setPassthroughSource_Null() throws Exception {
+
+        try {
+
+            new Exclude().setPassthroughSource(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null passthrough source"));
+        }
+    }
+
     // setQuery() ------------------------------------------------------------------------------------------------------
 
     @Test
@@ -235,6 +368,23 @@ public class ExcludeTest extends TextOutputProcedureTest {
         }
     }
 
+    @Test
+    public void setPredicate_Null() throws Exception {
+
+        Exclude ex = getTextOutputProcedureToTest(System.out);
+
+        try {
+
+            ex.setPredicate(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.equals("null predicate"));
+        }
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -258,6 +408,58 @@ public class ExcludeTest extends TextOutputProcedureTest {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private static File sourceFile(String content) throws Exception {
+
+        File f = File.createTempFile("exclude-source", ".txt");
+        f.deleteOnExit();
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        return f;
+    }
+
+    /**
+     * One event per line, carrying the line as "line" property and its byte range, including the new line.
+     */
+    private static List<Event> sourceEvents(String content) {
+
+        List<Event> events = new ArrayList<>();
+
+        long offset = 0;
+
+        for(String line: content.split("\n")) {
+
+            long length = line.getBytes(StandardCharsets.UTF_8).length + 1;
+            events.add(new SourceEvent(line, offset, length));
+            offset += length;
+        }
+
+        return events;
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    private static class SourceEvent extends GenericEvent implements SourceByteRange {
+
+        private final long offset;
+        private final long length;
+
+        SourceEvent(String line, long offset, long length) {
+
+            setStringProperty("line", line);
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public long getSourceOffset() {
+
+            return offset;
+        }
+
+        @Override
+        public long getSourceLength() {
+
+            return length;
+        }
+    }
+
 }
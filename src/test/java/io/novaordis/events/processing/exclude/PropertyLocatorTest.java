@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.exclude;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.Property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PropertyLocatorTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void locate_DifferentLayoutsAndClasses() throws Exception {
+
+        PropertyLocator l = new PropertyLocator("b");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "1");
+        e.setStringProperty("b", "2");
+
+        Property p = l.locate(e);
+        assertEquals("2", p.getValue());
+
+        //
+        // same class, different layout, the hint misses and is re-learned
+        //
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("b", "3");
+        e2.setStringProperty("a", "4");
+
+        assertEquals("3", l.locate(e2).getValue());
+        assertEquals("2", l.locate(e).getValue());
+
+        //
+        // different class
+        //
+
+        GenericTimedEvent e3 = new GenericTimedEvent(1L);
+        e3.setStringProperty("b", "5");
+
+        assertEquals("5", l.locate(e3).getValue());
+        assertEquals("2", l.locate(e).getValue());
+    }
+
+    @Test
+    public void locate_Missing() throws Exception {
+
+        PropertyLocator l = new PropertyLocator("b");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "1");
+
+        assertNull(l.locate(e));
+        assertNull(l.locate(new GenericEvent()));
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
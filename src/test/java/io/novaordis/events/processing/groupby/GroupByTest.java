@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.groupby;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.LongProperty;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class GroupByTest extends TextOutputProcedureTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    @Test
+    @Override
+    public void procedureFactoryFind() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        GroupBy g = (GroupBy) f.find(GroupBy.COMMAND_LINE_LABEL, 0, Collections.emptyList());
+        assertNotNull(g);
+        assertNotNull(g.getOutputStream());
+    }
+
+    @Test
+    @Override
+    public void commandLineLabel() throws Exception {
+
+        Procedure p = getTextOutputProcedureToTest();
+
+        List<String> commandLineLabels = p.getCommandLineLabels();
+        assertEquals(1, commandLineLabels.size());
+        assertTrue(commandLineLabels.contains(GroupBy.COMMAND_LINE_LABEL));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void defaults() throws Exception {
+
+        GroupBy g = new GroupBy();
+
+        assertTrue(g.getKeys().isEmpty());
+        assertTrue(g.getValues().isEmpty());
+        assertNull(g.getTable());
+        assertTrue(g.getResults().isEmpty());
+    }
+
+    @Test
+    public void groupBy() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        GroupBy g = new GroupBy(baos);
+        g.getKeys().add("host");
+        g.getValues().add("duration");
+
+        g.process(event("h1", 10L));
+        g.process(event("h2", 5L));
+        g.process(event("h1", 20L));
+        g.process(event("h1", 3L));
+
+        assertEquals(0, baos.size());
+
+        g.process(new EndOfStreamEvent());
+
+        assertEquals(
+                "# host, count, sum(duration), avg(duration), min(duration), max(duration)\n" +
+                        "h1, 3, 33, 11.0, 3, 20\n" +
+                        "h2, 1, 5, 5.0, 5, 5\n",
+                new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void nonIntegralValues() throws Exception {
+
+        GroupBy g = new GroupBy(new ByteArrayOutputStream());
+        g.getKeys().add("host");
+        g.getValues().add("duration");
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("host", "h1"));
+        e.setProperty(new DoubleProperty("duration", 0.5d));
+
+        g.process(e);
+        g.process(event("h1", 2L));
+        g.process(new EndOfStreamEvent());
+
+        Event result = g.getResults().get(0);
+
+        assertEquals(2.5d, result.getProperty("sum(duration)").getValue());
+        assertEquals(1.25d, result.getProperty("avg(duration)").getValue());
+        assertEquals(0.5d, result.getProperty("min(duration)").getValue());
+        assertEquals(2.0d, result.getProperty("max(duration)").getValue());
+    }
+
+    @Test
+    public void missingKeysAndValues() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        GroupBy g = new GroupBy(baos);
+        g.getKeys().add("host");
+        g.getValues().add("duration");
+
+        GenericEvent noHost = new GenericEvent();
+        noHost.setProperty(new LongProperty("duration", 7L));
+
+        GenericEvent noDuration = new GenericEvent();
+        noDuration.setProperty(new StringProperty("host", "h1"));
+
+        GenericEvent nonNumeric = new GenericEvent();
+        nonNumeric.setProperty(new StringProperty("host", "h1"));
+        nonNumeric.setProperty(new StringProperty("duration", "blah"));
+
+        g.process(noDuration);
+        g.process(noHost);
+        g.process(nonNumeric);
+        g.process(new EndOfStreamEvent());
+
+        String[] lines = new String(baos.toByteArray()).split("\n");
+
+        //
+        // the missing aggregates are rendered as empty fields by the output format
+        //
+
+        assertEquals(3, lines.length);
+        assertEquals("h1, 2,,,,", lines[1]);
+        assertEquals(", 1, 7, 7.0, 7, 7", lines[2]);
+    }
+
+    @Test
+    public void noKeys_SingleGroup() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        GroupBy g = new GroupBy(baos);
+        g.getValues().add("duration");
+
+        g.process(event("h1", 1L));
+        g.process(event("h2", 2L));
+        g.process(new EndOfStreamEvent());
+
+        assertEquals(
+                "# count, sum(duration), avg(duration), min(duration), max(duration)\n" +
+                        "2, 3, 1.5, 1, 2\n",
+                new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void propertiesByIndex_ResultsAreNamedAfterTheProperties() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        GroupBy g = new GroupBy(baos);
+        g.getKeys().add("0");
+        g.getValues().add("1");
+        g.getValues().add("5");
+
+        g.process(event("h1", 1L));
+        g.process(new EndOfStreamEvent());
+
+        assertEquals(
+                "# host, count, sum(duration), avg(duration), min(duration), max(duration), " +
+                        "sum(field[5]), avg(field[5]), min(field[5]), max(field[5])\n" +
+                        "h1, 1, 1, 1.0, 1, 1,,,,\n",
+                new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void manyGroups() throws Exception {
+
+        GroupBy g = new GroupBy(new ByteArrayOutputStream());
+        g.getKeys().add("host");
+        g.getValues().add("duration");
+
+        for(int i = 0; i < 100000; i ++) {
+
+            g.process(event("h" + (i % 1000), i % 1000));
+        }
+
+        g.process(new EndOfStreamEvent());
+
+        GroupTable t = g.getTable();
+
+        assertEquals(1000, t.size());
+
+        for(int i = 0; i < t.size(); i ++) {
+
+            assertEquals("h" + i, t.getKey(i, 0));
+            assertEquals(100L, t.getCount(i));
+            assertEquals(100L * i, t.getLongSum(i, 0));
+        }
+    }
+
+    @Test
+    public void noEvents_NoOutput() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        GroupBy g = new GroupBy(baos);
+        g.getKeys().add("host");
+
+        g.process(new EndOfStreamEvent());
+
+        assertEquals(0, baos.size());
+    }
+
+    @Test
+    public void eventsArePassedDownstream() throws Exception {
+
+        GroupBy g = new GroupBy(new ByteArrayOutputStream());
+        g.getKeys().add("host");
+
+        TestProcedure downstream = new TestProcedure();
+        g.setDownstream(downstream);
+
+        GenericEvent e = event("h1", 1L);
+        GenericEvent e2 = new GenericEvent();
+
+        g.process(Arrays.asList(e, e2, new EndOfStreamEvent()));
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "group-by", "--key", "host,", "2", "--value", "duration", "size", "--other"));
+
+        GroupBy g = new GroupBy(new ByteArrayOutputStream(), 1, args);
+
+        assertEquals("host, 2", g.getKeys().toString());
+        assertEquals("duration, size", g.getValues().toString());
+
+        assertEquals(Arrays.asList("group-by", "--other"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingKey() throws Exception {
+
+        try {
+
+            new GroupBy(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--key", "--value", "a")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after --key"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingValue() throws Exception {
+
+        try {
+
+            new GroupBy(new ByteArrayOutputStream(), 0, new ArrayList<>(Collections.singletonList("--value")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after --value"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected GroupBy getTextOutputProcedureToTest(OutputStream os) throws Exception {
+
+        return new GroupBy(os);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericEvent event(String host, long duration) {
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("host", host));
+        e.setProperty(new LongProperty("duration", duration));
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.groupby;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class GroupTableTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_Invalid() throws Exception {
+
+        try {
+
+            new GroupTable(-1, 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid key count: -1"));
+        }
+
+        try {
+
+            new GroupTable(0, -1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid value count: -1"));
+        }
+    }
+
+    @Test
+    public void groups() throws Exception {
+
+        GroupTable t = new GroupTable(2, 0);
+
+        Object[] key = new Object[2];
+
+        key[0] = "a";
+        key[1] = 1L;
+        assertEquals(0, t.add(key));
+
+        key[0] = "b";
+        assertEquals(1, t.add(key));
+
+        key[0] = "a";
+        assertEquals(0, t.add(key));
+
+        key[1] = null;
+        assertEquals(2, t.add(key));
+        assertEquals(2, t.add(key));
+
+        assertEquals(3, t.size());
+
+        assertEquals("a", t.getKey(0, 0));
+        assertEquals(1L, t.getKey(0, 1));
+        assertEquals("b", t.getKey(1, 0));
+        assertNull(t.getKey(2, 1));
+
+        assertEquals(2L, t.getCount(0));
+        assertEquals(1L, t.getCount(1));
+        assertEquals(2L, t.getCount(2));
+    }
+
+    @Test
+    public void noKeys_SingleGroup() throws Exception {
+
+        GroupTable t = new GroupTable(0, 1);
+
+        Object[] key = new Object[0];
+
+        for(int i = 0; i < 5; i ++) {
+
+            t.addValue(t.add(key), 0, i);
+        }
+
+        assertEquals(1, t.size());
+        assertEquals(5L, t.getCount(0));
+        assertEquals(10L, t.getLongSum(0, 0));
+    }
+
+    @Test
+    public void values() throws Exception {
+
+        GroupTable t = new GroupTable(1, 2);
+
+        int g = t.add(new Object[] { "a" });
+
+        assertEquals(0L, t.getValueCount(g, 0));
+        assertTrue(Double.isNaN(t.getMin(g, 0)));
+        assertTrue(Double.isNaN(t.getMax(g, 0)));
+
+        t.addValue(g, 0, 5L);
+        t.addValue(g, 0, -3L);
+        t.addValue(g, 0, 10L);
+
+        assertEquals(3L, t.getValueCount(g, 0));
+        assertTrue(t.isIntegral(g, 0));
+        assertEquals(12L, t.getLongSum(g, 0));
+        assertEquals(12d, t.getSum(g, 0), 0d);
+        assertEquals(-3d, t.getMin(g, 0), 0d);
+        assertEquals(10d, t.getMax(g, 0), 0d);
+
+        t.addValue(g, 1, 1L);
+        t.addValue(g, 1, 0.5d);
+        t.addValue(g, 1, Double.NaN);
+
+        assertEquals(2L, t.getValueCount(g, 1));
+        assertFalse(t.isIntegral(g, 1));
+        assertEquals(1.5d, t.getSum(g, 1), 0d);
+        assertEquals(0.5d, t.getMin(g, 1), 0d);
+        assertEquals(1d, t.getMax(g, 1), 0d);
+
+        //
+        // the columns do not interfere
+        //
+
+        assertEquals(3L, t.getValueCount(g, 0));
+    }
+
+    @Test
+    public void integralSumsAreExact() throws Exception {
+
+        GroupTable t = new GroupTable(0, 1);
+
+        int g = t.add(new Object[0]);
+
+        t.addValue(g, 0, Long.MAX_VALUE / 2);
+        t.addValue(g, 0, 1L);
+
+        assertEquals(Long.MAX_VALUE / 2 + 1, t.getLongSum(g, 0));
+    }
+
+    @Test
+    public void growth() throws Exception {
+
+        GroupTable t = new GroupTable(1, 1);
+
+        Map<String, Long> counts = new HashMap<>();
+
+        Random r = new Random(11L);
+
+        Object[] key = new Object[1];
+
+        for(int i = 0; i < 100000; i ++) {
+
+            String k = "key-" + r.nextInt(5000);
+
+            key[0] = k;
+
+            int g = t.add(key);
+
+            t.addValue(g, 0, 1L);
+
+            counts.merge(k, 1L, Long::sum);
+        }
+
+        assertEquals(counts.size(), t.size());
+
+        //
+        // load factor at most 1/2
+        //
+
+        assertTrue(t.getIndexCapacity() >= 2 * t.size());
+
+        for(int g = 0; g < t.size(); g ++) {
+
+            long expected = counts.get((String)t.getKey(g, 0));
+
+            assertEquals(expected, t.getCount(g));
+            assertEquals(expected, t.getLongSum(g, 0));
+        }
+    }
+
+    @Test
+    public void hashCollisionsAreResolvedByEquality() throws Exception {
+
+        //
+        // "Aa" and "BB" have the same String hash code
+        //
+
+        assertEquals(GroupTable.hash(new Object[] { "Aa" }, 1), GroupTable.hash(new Object[] { "BB" }, 1));
+
+        GroupTable t = new GroupTable(1, 0);
+
+        assertEquals(0, t.add(new Object[] { "Aa" }));
+        assertEquals(1, t.add(new Object[] { "BB" }));
+        assertEquals(0, t.add(new Object[] { "Aa" }));
+
+        assertEquals(2, t.size());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
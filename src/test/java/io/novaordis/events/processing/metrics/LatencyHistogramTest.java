@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class LatencyHistogramTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void bucket() throws Exception {
+
+        assertEquals(0, LatencyHistogram.bucket(-1L));
+        assertEquals(0, LatencyHistogram.bucket(0L));
+        assertEquals(1, LatencyHistogram.bucket(1L));
+        assertEquals(2, LatencyHistogram.bucket(2L));
+        assertEquals(2, LatencyHistogram.bucket(3L));
+        assertEquals(3, LatencyHistogram.bucket(4L));
+        assertEquals(63, LatencyHistogram.bucket(Long.MAX_VALUE));
+
+        assertEquals(1L, LatencyHistogram.upperBound(0));
+        assertEquals(4L, LatencyHistogram.upperBound(2));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.upperBound(63));
+    }
+
+    @Test
+    public void empty() throws Exception {
+
+        LatencyHistogram h = new LatencyHistogram();
+
+        assertEquals(0L, h.getCount());
+        assertEquals(0L, h.getSum());
+        assertEquals(0L, h.getMax());
+        assertEquals(0d, h.getMean(), 0d);
+        assertEquals(0L, h.getPercentile(99d));
+    }
+
+    @Test
+    public void record() throws Exception {
+
+        LatencyHistogram h = new LatencyHistogram();
+
+        h.record(100L, 98);
+        h.record(5000L, 2);
+
+        assertEquals(100L, h.getCount());
+        assertEquals(100L * 98 + 5000L * 2, h.getSum());
+        assertEquals(5000L, h.getMax());
+        assertEquals(198d, h.getMean(), 0.001d);
+
+        assertEquals(98L, h.getBucketCount(LatencyHistogram.bucket(100L)));
+        assertEquals(2L, h.getBucketCount(LatencyHistogram.bucket(5000L)));
+
+        //
+        // 100 ns is in [64, 128)
+        //
+
+        assertEquals(128L, h.getPercentile(50d));
+        assertEquals(128L, h.getPercentile(98d));
+
+        //
+        // capped to the max
+        //
+
+        assertEquals(5000L, h.getPercentile(99d));
+        assertEquals(5000L, h.getPercentile(100d));
+    }
+
+    @Test
+    public void add() throws Exception {
+
+        LatencyHistogram h = new LatencyHistogram();
+        h.record(10L, 1);
+
+        LatencyHistogram h2 = new LatencyHistogram();
+        h2.record(1000L, 3);
+
+        h.add(h2);
+
+        assertEquals(4L, h.getCount());
+        assertEquals(3010L, h.getSum());
+        assertEquals(1000L, h.getMax());
+        assertEquals(3L, h.getBucketCount(LatencyHistogram.bucket(1000L)));
+    }
+
+    @Test
+    public void getPercentile_Invalid() throws Exception {
+
+        try {
+
+            new LatencyHistogram().getPercentile(101d);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid percentile"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
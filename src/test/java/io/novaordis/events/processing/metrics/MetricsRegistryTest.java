@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.processing.MockTimedEvent;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.exclude.EventPredicates;
+import io.novaordis.events.processing.exclude.Exclude;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class MetricsRegistryTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void register_Null() throws Exception {
+
+        try {
+
+            new MetricsRegistry(false).register(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null procedure"));
+        }
+    }
+
+    @Test
+    public void register_NoJmx() throws Exception {
+
+        MetricsRegistry r = new MetricsRegistry(false);
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureMetrics m = r.register(p);
+
+        assertSame(m, p.getMetrics());
+        assertSame(m, r.register(p));
+        assertEquals(1, r.getMetrics().size());
+        assertNull(r.getObjectName(m));
+
+        r.unregister(p);
+
+        assertTrue(r.getMetrics().isEmpty());
+
+        //
+        // the procedure keeps collecting
+        //
+
+        assertSame(m, p.getMetrics());
+    }
+
+    @Test
+    public void register_Jmx() throws Exception {
+
+        MetricsRegistry r = new MetricsRegistry(true);
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureMetrics m = r.register(p);
+
+        ObjectName name = r.getObjectName(m);
+
+        assertNotNull(name);
+        assertEquals(MetricsRegistry.JMX_DOMAIN, name.getDomain());
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        assertTrue(server.isRegistered(name));
+
+        p.process(new MockTimedEvent());
+        p.process(new MockTimedEvent());
+
+        assertEquals(2L, server.getAttribute(name, "EventCount"));
+        assertEquals(m.getProcedure(), server.getAttribute(name, "Procedure"));
+
+        r.unregister(p);
+
+        assertFalse(server.isRegistered(name));
+    }
+
+    @Test
+    public void writeText() throws Exception {
+
+        MetricsRegistry r = new MetricsRegistry(false);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Exclude p = new Exclude(baos);
+        p.setPredicate(EventPredicates.propertyEquals("color", "red"));
+
+        ProcedureMetrics m = r.register(p);
+
+        MockTimedEvent e = new MockTimedEvent();
+        e.setRawRepresentation("blue");
+
+        p.process(e);
+        p.process(new EndOfStreamEvent());
+
+        StringWriter sw = new StringWriter();
+
+        r.writeText(sw);
+
+        String text = sw.toString();
+
+        String labels = "{procedure=\"exclude\",id=\"" + m.getId() + "\"";
+
+        assertTrue(text.contains("# TYPE events_procedure_events_total counter\n"));
+        assertTrue(text.contains("events_procedure_events_total" + labels + "} 2\n"));
+        assertTrue(text.contains("events_procedure_exceptions_total" + labels + "} 0\n"));
+        assertTrue(text.contains("events_procedure_output_bytes_total" + labels + "} 5\n"));
+        assertTrue(text.contains("# TYPE events_procedure_latency_seconds histogram\n"));
+        assertTrue(text.contains("events_procedure_latency_seconds_bucket" + labels + ",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("events_procedure_latency_seconds_count" + labels + "} 1\n"));
+        assertTrue(text.contains("# TYPE events_procedure_recent_latency_seconds histogram\n"));
+
+        assertEquals(5L, p.getBytesWritten());
+    }
+
+    @Test
+    public void exporter() throws Exception {
+
+        File dir = Files.createTempDirectory("metrics").toFile();
+        File f = new File(dir, "events.prom");
+
+        try {
+
+            MetricsRegistry r = new MetricsRegistry(false);
+
+            TestProcedure p = new TestProcedure();
+            r.register(p);
+
+            p.process(new MockTimedEvent());
+
+            r.startExporter(f, 10L);
+
+            try {
+
+                r.startExporter(f, 10L);
+                fail("should have thrown exception");
+            }
+            catch(IllegalStateException e) {
+
+                String msg = e.getMessage();
+                assertTrue(msg.contains("exporter already started"));
+            }
+
+            long deadline = System.currentTimeMillis() + 5000L;
+
+            while(!f.isFile() && System.currentTimeMillis() < deadline) {
+
+                Thread.sleep(10L);
+            }
+
+            p.process(new MockTimedEvent());
+
+            r.stop();
+
+            String text = new String(Files.readAllBytes(f.toPath()), StandardCharsets.UTF_8);
+
+            assertTrue(text.contains("events_procedure_events_total{procedure=\"test\""));
+            assertTrue(text.contains("} 2\n"));
+            assertFalse(new File(dir, "events.prom.tmp").exists());
+        }
+        finally {
+
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            //noinspection ResultOfMethodCallIgnored
+            dir.delete();
+        }
+    }
+
+    @Test
+    public void startExporter_InvalidPeriod() throws Exception {
+
+        try {
+
+            new MetricsRegistry(false).startExporter(new File("something"), 0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid period"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
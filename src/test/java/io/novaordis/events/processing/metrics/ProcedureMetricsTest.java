@@ -0,0 +1,250 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.metrics;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.MockTimedEvent;
+import io.novaordis.events.processing.ProcedureBase;
+import io.novaordis.events.processing.TestProcedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureMetricsTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidSamplingInterval() throws Exception {
+
+        try {
+
+            new ProcedureMetrics(new TestProcedure(), 3, 1000L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid sampling interval: 3"));
+        }
+    }
+
+    @Test
+    public void constructor_NullProcedure() throws Exception {
+
+        try {
+
+            new ProcedureMetrics(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null procedure"));
+        }
+    }
+
+    @Test
+    public void identity() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureMetrics m = new ProcedureMetrics(p);
+
+        assertEquals("test", m.getLabel());
+        assertEquals(Integer.toHexString(System.identityHashCode(p)), m.getId());
+        assertEquals("test-" + m.getId(), m.getProcedure());
+    }
+
+    @Test
+    public void sample() throws Exception {
+
+        ProcedureMetrics m = new ProcedureMetrics(new TestProcedure(), 4, 1000L);
+
+        assertTrue(m.sample());
+        assertFalse(m.sample());
+        assertFalse(m.sample());
+        assertFalse(m.sample());
+        assertTrue(m.sample());
+    }
+
+    @Test
+    public void record() throws Exception {
+
+        ProcedureMetrics m = new ProcedureMetrics(new TestProcedure());
+
+        m.record(1000L, 1400L, 4);
+
+        assertEquals(4L, m.getLatencySampleCount());
+        assertEquals(100d, m.getLatencyMeanNanos(), 0d);
+        assertEquals(100L, m.getLatencyMaxNanos());
+        assertEquals(100L, m.getLatencyP99Nanos());
+
+        assertEquals(4L, m.getRecentLatency().getCount());
+        assertEquals(100d, m.getRecentLatencyMeanNanos(), 0d);
+    }
+
+    @Test
+    public void recentWindowRotates() throws Exception {
+
+        ProcedureMetrics m = new ProcedureMetrics(new TestProcedure(), 1, 1L);
+
+        long start = System.nanoTime();
+
+        m.record(start, start + 10L, 1);
+
+        Thread.sleep(5L);
+
+        long later = System.nanoTime();
+
+        m.record(later, later + 1000L, 1);
+
+        assertEquals(2L, m.getCumulativeLatency().getCount());
+
+        //
+        // nothing was recorded for more than two windows
+        //
+
+        Thread.sleep(5L);
+
+        assertEquals(0L, m.getRecentLatency().getCount());
+        assertEquals(2L, m.getCumulativeLatency().getCount());
+    }
+
+    @Test
+    public void procedureIntegration() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        assertNull(p.getMetrics());
+
+        ProcedureMetrics m = p.enableMetrics();
+
+        assertSame(m, p.enableMetrics());
+        assertSame(m, p.getMetrics());
+
+        p.process(new MockTimedEvent());
+        p.process(Arrays.<Event>asList(new MockTimedEvent(), new MockTimedEvent(), new EndOfStreamEvent()));
+
+        assertEquals(4L, m.getEventCount());
+
+        //
+        // the first individually processed event is sampled, the batch is always timed
+        //
+
+        assertEquals(4L, m.getLatencySampleCount());
+        assertEquals(0L, m.getExceptionCount());
+
+        assertFalse(m.hasOutputCounters());
+        assertEquals(0L, m.getBytesWritten());
+    }
+
+    @Test
+    public void exceptionsAreCounted() throws Exception {
+
+        ProcedureBase p = new ProcedureBase() {
+
+            @Override
+            protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+                throw new EventProcessingException("SYNTHETIC");
+            }
+
+            @Override
+            public List<String> getCommandLineLabels() {
+
+                return Arrays.asList("failing");
+            }
+        };
+
+        ProcedureMetrics m = p.enableMetrics();
+
+        for(int i = 0; i < 3; i ++) {
+
+            try {
+
+                p.process(new MockTimedEvent());
+                fail("should have thrown exception");
+            }
+            catch(EventProcessingException e) {
+
+                assertEquals("SYNTHETIC", e.getMessage());
+            }
+        }
+
+        try {
+
+            p.process(Arrays.<Event>asList(new MockTimedEvent()));
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException e) {
+
+            assertEquals("SYNTHETIC", e.getMessage());
+        }
+
+        assertEquals(4L, m.getExceptionCount());
+    }
+
+    @Test
+    public void eventsPerSecond() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureMetrics m = p.enableMetrics();
+
+        p.process(new MockTimedEvent());
+        p.process(new MockTimedEvent());
+
+        assertTrue(m.getEventsPerSecond() > 0d);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
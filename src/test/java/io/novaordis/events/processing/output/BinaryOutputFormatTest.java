@@ -0,0 +1,435 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.BooleanProperty;
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.TimedEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class BinaryOutputFormatTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void textMethods_HexadecimalRendering() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+        BinaryOutputFormat reference = new BinaryOutputFormat();
+
+        assertEquals("", f.formatHeader(new GenericEvent()));
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("a", 1L);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+        for(int i = 0; i < 2; i ++) {
+
+            buffer.clear();
+            assertTrue(reference.format(e, buffer));
+
+            StringBuilder expected = new StringBuilder();
+
+            for(int j = 0; j < buffer.position(); j ++) {
+
+                expected.append(String.format("%02x", buffer.get(j) & 0xff));
+            }
+
+            expected.append('\n');
+
+            assertEquals(expected.toString(), f.format(e));
+        }
+    }
+
+    @Test
+    public void textMethods_RecordLargerThanTheScratchBuffer() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        char[] c = new char[5000];
+        Arrays.fill(c, 'x');
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", new String(c));
+
+        String s = f.format(e);
+
+        assertTrue(s.length() > 10000);
+        assertTrue(s.endsWith("\n"));
+    }
+
+    @Test
+    public void textMethods_EventDoesNotMatch() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+        f.addPropertyName("no-such-property");
+
+        assertNull(f.format(new GenericEvent()));
+    }
+
+    @Test
+    public void format_NullEvent() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        try {
+
+            f.format(null, ByteBuffer.allocate(10));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null event"));
+        }
+    }
+
+    @Test
+    public void formatHeader_NoHeader() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer b = ByteBuffer.allocate(10);
+
+        assertFalse(f.formatHeader(new GenericEvent(), b));
+        assertEquals(0, b.position());
+    }
+
+    @Test
+    public void roundTrip() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        GenericTimedEvent e = new GenericTimedEvent(1000L);
+        e.setStringProperty("color", "blue");
+        e.setLongProperty("size", -7L);
+        e.setIntegerProperty("count", 3);
+        e.setProperty(new DoubleProperty("ratio", 0.5));
+        e.setProperty(new BooleanProperty("valid", true));
+        e.setStringProperty("text", "d\u00e9j\u00e0 vu \ud83d\ude00");
+
+        GenericTimedEvent e2 = new GenericTimedEvent(990L);
+        e2.setStringProperty("color", "blue");
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setStringProperty("color", "red");
+
+        assertTrue(f.format(e, b));
+        assertTrue(f.format(e2, b));
+        assertTrue(f.format(e3, b));
+
+        b.flip();
+
+        BinaryEventReader r = new BinaryEventReader();
+
+        TimedEvent d = (TimedEvent)r.next(b);
+
+        assertEquals(1000L, d.getTime().longValue());
+        assertEquals("blue", d.getProperty("color").getValue());
+        assertEquals(-7L, d.getProperty("size").getValue());
+        assertEquals(3L, d.getProperty("count").getValue());
+        assertEquals(0.5, d.getProperty("ratio").getValue());
+        assertEquals(Boolean.TRUE, d.getProperty("valid").getValue());
+        assertEquals("d\u00e9j\u00e0 vu \ud83d\ude00", d.getProperty("text").getValue());
+
+        TimedEvent d2 = (TimedEvent)r.next(b);
+
+        assertEquals(990L, d2.getTime().longValue());
+        assertEquals("blue", d2.getProperty("color").getValue());
+
+        Event d3 = r.next(b);
+
+        assertFalse(d3 instanceof TimedEvent);
+        assertEquals("red", d3.getProperty("color").getValue());
+
+        assertNull(r.next(b));
+        assertFalse(b.hasRemaining());
+
+        assertEquals(f.getDictionarySize(), r.getDictionarySize());
+    }
+
+    @Test
+    public void repeatedStringsAreDictionaryEncoded() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("level", "INFO");
+
+        f.format(e, b);
+
+        int first = b.position();
+
+        f.format(e, b);
+
+        int second = b.position() - first;
+
+        //
+        // flags, field count, name reference, type, value reference
+        //
+
+        assertEquals(5, second);
+        assertEquals(2, f.getDictionarySize());
+    }
+
+    @Test
+    public void longStringsAreWrittenLiterally() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i <= BinaryOutputFormat.MAX_DICTIONARY_STRING_LENGTH; i ++) {
+
+            sb.append('x');
+        }
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("message", sb.toString());
+
+        f.format(e, b);
+
+        assertEquals(1, f.getDictionarySize());
+
+        b.flip();
+
+        assertEquals(sb.toString(), new BinaryEventReader().next(b).getProperty("message").getValue());
+    }
+
+    @Test
+    public void dictionaryCapacity() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat(1);
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        for(int i = 0; i < 3; i ++) {
+
+            GenericEvent e = new GenericEvent();
+            e.setStringProperty("name", "value" + i);
+            f.format(e, b);
+        }
+
+        assertEquals(1, f.getDictionarySize());
+
+        b.flip();
+
+        BinaryEventReader r = new BinaryEventReader();
+
+        for(int i = 0; i < 3; i ++) {
+
+            assertEquals("value" + i, r.next(b).getProperty("name").getValue());
+        }
+    }
+
+    @Test
+    public void timestampsAreDeltaEncoded() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        f.format(new GenericTimedEvent(1508000000000L), b);
+
+        int first = b.position();
+
+        f.format(new GenericTimedEvent(1508000000001L), b);
+
+        //
+        // flags, a one-byte delta, field count
+        //
+
+        assertEquals(3, b.position() - first);
+    }
+
+    @Test
+    public void selectedProperties() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+        f.addPropertyName("b");
+        f.addPropertyIndex(0);
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "x");
+        e.setStringProperty("b", "y");
+        e.setStringProperty("c", "z");
+
+        assertTrue(f.format(e, b));
+
+        int position = b.position();
+
+        GenericEvent nothing = new GenericEvent();
+
+        assertFalse(f.format(nothing, b));
+        assertEquals(position, b.position());
+
+        b.flip();
+
+        Event d = new BinaryEventReader().next(b);
+
+        assertEquals(2, d.getProperties().size());
+        assertEquals("y", d.getProperty(0).getValue());
+        assertEquals("x", d.getProperty(1).getValue());
+        assertNull(d.getProperty("c"));
+    }
+
+    @Test
+    public void overflow_RollsBack() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        GenericTimedEvent e = new GenericTimedEvent(100L);
+        e.setStringProperty("color", "blue");
+
+        ByteBuffer small = ByteBuffer.allocate(8);
+
+        try {
+
+            f.format(e, small);
+            fail("should have thrown exception");
+        }
+        catch(BufferOverflowException ex) {
+
+            // expected
+        }
+
+        assertEquals(0, small.position());
+        assertEquals(0, f.getDictionarySize());
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+
+        assertTrue(f.format(e, b));
+
+        b.flip();
+
+        TimedEvent d = (TimedEvent)new BinaryEventReader().next(b);
+
+        assertEquals(100L, d.getTime().longValue());
+        assertEquals("blue", d.getProperty("color").getValue());
+    }
+
+    @Test
+    public void reader_IncompleteRecord() throws Exception {
+
+        BinaryOutputFormat f = new BinaryOutputFormat();
+
+        ByteBuffer all = ByteBuffer.allocate(1024);
+
+        for(int i = 0; i < 10; i ++) {
+
+            GenericTimedEvent e = new GenericTimedEvent(1000L + i);
+            e.setStringProperty("color", i % 2 == 0 ? "blue" : "red");
+            e.setLongProperty("index", i);
+            f.format(e, all);
+        }
+
+        all.flip();
+
+        //
+        // feed the reader one byte at a time
+        //
+
+        BinaryEventReader r = new BinaryEventReader();
+
+        ByteBuffer b = ByteBuffer.allocate(1024);
+        b.flip();
+
+        int events = 0;
+
+        while(all.hasRemaining()) {
+
+            b.compact();
+            b.put(all.get());
+            b.flip();
+
+            Event e;
+
+            while((e = r.next(b)) != null) {
+
+                assertEquals(1000L + events, ((TimedEvent)e).getTime().longValue());
+                assertEquals((long)events, e.getProperty("index").getValue());
+                assertEquals(events % 2 == 0 ? "blue" : "red", e.getProperty("color").getValue());
+                events ++;
+            }
+        }
+
+        assertEquals(10, events);
+    }
+
+    @Test
+    public void reader_NotABinaryStream() throws Exception {
+
+        try {
+
+            new BinaryEventReader().next(ByteBuffer.wrap("something, else\n".getBytes()));
+            fail("should have thrown exception");
+        }
+        catch(IOException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("not a binary event stream"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
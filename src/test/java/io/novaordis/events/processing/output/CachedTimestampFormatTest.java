@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class CachedTimestampFormatTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void millisecondDigits() throws Exception {
+
+        assertEquals(3, CachedTimestampFormat.millisecondDigits("MM/dd/yy HH:mm:ss.SSS"));
+        assertEquals(0, CachedTimestampFormat.millisecondDigits("HH:mm:ss"));
+        assertEquals(1, CachedTimestampFormat.millisecondDigits("s.S"));
+        assertEquals(2, CachedTimestampFormat.millisecondDigits("s.SS 'S'"));
+        assertEquals(0, CachedTimestampFormat.millisecondDigits("'SSS' s"));
+        assertEquals(-1, CachedTimestampFormat.millisecondDigits("SSS s SSS"));
+    }
+
+    @Test
+    public void sameRenderingAsSimpleDateFormat() throws Exception {
+
+        String[] patterns = {
+                "MM/dd/yy HH:mm:ss.SSS",
+                "HH:mm:ss",
+                "s.S",
+                "s.SS 'S'",
+                "SSSS ss",
+                "SSS s SSS",
+                "G yyyy ss.SSS",
+        };
+
+        long[] timestamps = { 0L, 7L, 10L, 99L, 100L, 999L, 1000L, 1001L, 1500000000123L, 1500000000987L,
+                1500000001005L, -1L, -999L, -1001L };
+
+        for(String pattern: patterns) {
+
+            SimpleDateFormat reference = new SimpleDateFormat(pattern);
+            CachedTimestampFormat f = new CachedTimestampFormat(pattern);
+
+            for(long t: timestamps) {
+
+                String expected = reference.format(t);
+
+                assertEquals(pattern + ", " + t, expected, f.format(t));
+                assertEquals(pattern + ", " + t, expected, f.format(new Date(t)));
+
+                StringBuilder sb = new StringBuilder("x");
+                f.format(t, sb);
+                assertEquals(pattern + ", " + t, "x" + expected, sb.toString());
+            }
+        }
+    }
+
+    @Test
+    public void setTimeZone_InvalidatesTheCache() throws Exception {
+
+        CachedTimestampFormat f = new CachedTimestampFormat("HH:mm:ss.SSS");
+        f.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        assertEquals("00:00:01.001", f.format(1001L));
+
+        f.setTimeZone(TimeZone.getTimeZone("GMT+01:00"));
+
+        assertEquals("01:00:01.002", f.format(1002L));
+    }
+
+    @Test
+    public void applyPattern_InvalidatesTheCache() throws Exception {
+
+        CachedTimestampFormat f = new CachedTimestampFormat("ss.SSS");
+
+        assertEquals(new SimpleDateFormat("ss.SSS").format(1001L), f.format(1001L));
+
+        f.applyPattern("ss");
+
+        assertEquals(new SimpleDateFormat("ss").format(1002L), f.format(1002L));
+    }
+
+    @Test
+    public void parse() throws Exception {
+
+        CachedTimestampFormat f = new CachedTimestampFormat("MM/dd/yy HH:mm:ss.SSS");
+
+        assertEquals(1500000000123L, f.parse(f.format(1500000000123L)).getTime());
+        assertNull(f.parse("not a date", new java.text.ParsePosition(0)));
+    }
+
+    @Test
+    public void concurrentUse() throws Exception {
+
+        final CachedTimestampFormat f = new CachedTimestampFormat("MM/dd/yy HH:mm:ss.SSS");
+
+        int threads = 4;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+        try {
+
+            List<Future<Integer>> results = new ArrayList<>();
+
+            for(int i = 0; i < threads; i ++) {
+
+                final long base = 1500000000000L + i * 3600000L;
+
+                results.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+
+                        SimpleDateFormat reference = new SimpleDateFormat("MM/dd/yy HH:mm:ss.SSS");
+
+                        int mismatches = 0;
+
+                        for(long t = base; t < base + 20000L; t += 7) {
+
+                            if (!reference.format(t).equals(f.format(t))) {
+
+                                mismatches ++;
+                            }
+                        }
+
+                        return mismatches;
+                    }
+                }));
+            }
+
+            for(Future<Integer> r: results) {
+
+                assertEquals(0, r.get().intValue());
+            }
+        }
+        finally {
+
+            executor.shutdownNow();
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -166,6 +166,34 @@ public class DefaultOutputFormatFactoryTest extends OutputFormatFactoryTest {
         assertNull(s);
     }
 
+    @Test
+    public void fromArguments_Binary() throws Exception {
+
+        DefaultOutputFormatFactory f = getOutputFormatFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList(BinaryOutputFormat.LABEL));
+
+        BinaryOutputFormat fmt = (BinaryOutputFormat) f.fromArguments(args);
+
+        assertNotNull(fmt);
+
+        assertTrue(args.isEmpty());
+        assertEquals("BinaryOutputFormat[]", fmt.toString());
+    }
+
+    @Test
+    public void fromArguments_Binary_PropertyNamesAndIndices() throws Exception {
+
+        DefaultOutputFormatFactory f = getOutputFormatFactoryToTest();
+
+        List<String> args = new ArrayList<>(Arrays.asList(BinaryOutputFormat.LABEL, "blue", "2"));
+
+        BinaryOutputFormat fmt = (BinaryOutputFormat) f.fromArguments(args);
+
+        assertTrue(args.isEmpty());
+        assertEquals("BinaryOutputFormat[\"blue\", field[2]]", fmt.toString());
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -16,6 +16,8 @@
 
 package io.novaordis.events.processing.output;
 
+import java.text.SimpleDateFormat;
+
 import org.junit.Test;
 
 import io.novaordis.events.processing.MockEvent;
@@ -23,6 +25,7 @@ import io.novaordis.events.processing.MockTimedEvent;
 import io.novaordis.utilities.time.TimestampImpl;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -45,6 +48,26 @@ public class DefaultOutputFormatTest extends OutputFormatTest {
 
     // Tests -----------------------------------------------------------------------------------------------------------
 
+    // timestamp format ------------------------------------------------------------------------------------------------
+
+    @Test
+    public void timestampFormatIsNotShared() throws Exception {
+
+        DefaultOutputFormat f = new DefaultOutputFormat();
+        DefaultOutputFormat f2 = new DefaultOutputFormat();
+
+        assertEquals(DefaultOutputFormat.DEFAULT_TIMESTAMP_PATTERN,
+                ((SimpleDateFormat)f.getTimestampFormat()).toPattern());
+        assertNotSame(f.getTimestampFormat(), f2.getTimestampFormat());
+
+        ((SimpleDateFormat)f.getTimestampFormat()).applyPattern("yyyy");
+
+        assertEquals(DefaultOutputFormat.DEFAULT_TIMESTAMP_PATTERN,
+                ((SimpleDateFormat)f2.getTimestampFormat()).toPattern());
+        assertEquals(DefaultOutputFormat.DEFAULT_TIMESTAMP_PATTERN,
+                DefaultOutputFormat.newDefaultTimestampFormat().toPattern());
+    }
+
     // format() --------------------------------------------------------------------------------------------------------
 
     @Test
@@ -192,6 +215,42 @@ public class DefaultOutputFormatTest extends OutputFormatTest {
         assertEquals("event type", header);
     }
 
+    @Test
+    public void formatHeader_format_PreferredRepresentationIsRenderedOnlyOnce() throws Exception {
+
+        DefaultOutputFormat f = getOutputFormatToTest();
+
+        CountingMockEvent me = new CountingMockEvent();
+        me.setPreferredRepresentation("blue");
+        me.setPreferredRepresentationHeader("red");
+
+        assertEquals("red", f.formatHeader(me));
+        assertEquals("blue", f.format(me));
+
+        assertEquals(1, me.preferredRepresentationCalls);
+
+        //
+        // a subsequent format() renders again
+        //
+
+        assertEquals("blue", f.format(me));
+
+        assertEquals(2, me.preferredRepresentationCalls);
+
+        //
+        // format() for a different event does not use the representation rendered by formatHeader()
+        //
+
+        MockEvent other = new MockEvent();
+        other.setPreferredRepresentation("green");
+
+        assertEquals("red", f.formatHeader(me));
+        assertEquals("green", f.format(other));
+        assertEquals("blue", f.format(me));
+
+        assertEquals(4, me.preferredRepresentationCalls);
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -206,4 +265,17 @@ public class DefaultOutputFormatTest extends OutputFormatTest {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    private static class CountingMockEvent extends MockEvent {
+
+        private int preferredRepresentationCalls;
+
+        @Override
+        public String getPreferredRepresentation(String fieldSeparator) {
+
+            preferredRepresentationCalls ++;
+
+            return super.getPreferredRepresentation(fieldSeparator);
+        }
+    }
+
 }
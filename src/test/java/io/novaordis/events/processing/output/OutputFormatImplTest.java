@@ -27,7 +27,9 @@ import io.novaordis.events.api.event.GenericTimedEvent;
 import io.novaordis.events.api.event.TimedEvent;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -204,6 +206,110 @@ public class OutputFormatImplTest extends OutputFormatTest {
         assertEquals("coffee, leaf\n", s);
     }
 
+    @Test
+    public void format_ThreeProperties_MissingValuesInVariousPositions() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+        f.addPropertyName("a");
+        f.addPropertyName("b");
+        f.addPropertyName("c");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "x");
+        e.setStringProperty("c", "z");
+        assertEquals("x,, z\n", f.format(e));
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("b", "y");
+        assertEquals(", y,\n", f.format(e2));
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setStringProperty("c", "z");
+        assertEquals(", , z\n", f.format(e3));
+    }
+
+    @Test
+    public void format_NonStringValues() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+        f.addPropertyName("l");
+        f.addPropertyName("i");
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("l", -7L);
+        e.setIntegerProperty("i", 8);
+
+        assertEquals("-7, 8\n", f.format(e));
+    }
+
+    @Test
+    public void format_TimedEvent_NoMatchingProperty() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+        f.addPropertyName("a");
+
+        GenericTimedEvent e = new GenericTimedEvent(777L);
+
+        assertNull(f.format(e));
+    }
+
+    @Test
+    public void format_StringBuilder() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+        f.addPropertyName("a");
+
+        StringBuilder sb = new StringBuilder("header\n");
+
+        GenericTimedEvent e = new GenericTimedEvent(777L);
+        e.setStringProperty("a", "blue");
+
+        assertTrue(f.format(e, sb));
+        assertEquals("header\n" + f.getTimestampFormat().format(777L) + ", blue\n", sb.toString());
+
+        //
+        // a non-matching event leaves the builder untouched, including the optimistically appended timestamp
+        //
+
+        assertFalse(f.format(new GenericTimedEvent(778L), sb));
+        assertEquals("header\n" + f.getTimestampFormat().format(777L) + ", blue\n", sb.toString());
+    }
+
+    @Test
+    public void format_StringBuilder_SameResultAsFormat() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+        f.addPropertyIndex(0);
+        f.addPropertyName("b");
+        f.addPropertyIndex(2);
+
+        GenericTimedEvent e = new GenericTimedEvent(1000L);
+        e.setStringProperty("a", "x");
+        e.setIntegerProperty("b", 2);
+
+        StringBuilder sb = new StringBuilder();
+
+        assertTrue(f.format(e, sb));
+        assertEquals(f.format(e), sb.toString());
+    }
+
+    @Test
+    public void format_StringBuilder_Null() throws Exception {
+
+        OutputFormatImpl f = getOutputFormatToTest();
+
+        try {
+
+            f.format(new GenericEvent(), null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null StringBuilder"));
+        }
+    }
+
     @Test
     public void format_formatHeader_TimedEvent_TimestampNotRequestedInFormat() throws Exception {
 
@@ -480,6 +586,68 @@ public class OutputFormatImplTest extends OutputFormatTest {
         assertEquals("# test-property, test-property2\n", header);
     }
 
+    @Test
+    public void getHeader_IsReusedForEventsWithTheSameShape() throws Exception {
+
+        OutputFormatImpl f = new OutputFormatImpl(0, "b");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "a value");
+        e.setStringProperty("b", "b value");
+
+        String header = f.formatHeader(e);
+
+        assertEquals("# a, b\n", header);
+
+        GenericEvent e2 = new GenericEvent();
+        e2.setStringProperty("a", "another a value");
+
+        assertSame(header, f.formatHeader(e2));
+
+        //
+        // a different name at the index position
+        //
+
+        GenericEvent e3 = new GenericEvent();
+        e3.setStringProperty("c", "c value");
+
+        assertEquals("# c, b\n", f.formatHeader(e3));
+
+        //
+        // no property at the index position
+        //
+
+        assertEquals("# " + " " + ", b\n", f.formatHeader(new GenericEvent()));
+
+        //
+        // timed event
+        //
+
+        GenericTimedEvent te = new GenericTimedEvent(1L);
+        te.setStringProperty("c", "c value");
+
+        String timedHeader = f.formatHeader(te);
+
+        assertTrue(timedHeader.startsWith("# " + TimedEvent.TIME_PROPERTY_NAME + ", "));
+        assertTrue(timedHeader.endsWith(", b\n"));
+    }
+
+    @Test
+    public void getHeader_CachedHeaderIsInvalidatedWhenTheFormatChanges() throws Exception {
+
+        OutputFormatImpl f = new OutputFormatImpl("a");
+
+        GenericEvent e = new GenericEvent();
+        e.setStringProperty("a", "a value");
+        e.setStringProperty("b", "b value");
+
+        assertEquals("# a\n", f.formatHeader(e));
+
+        f.addPropertyName("b");
+
+        assertEquals("# a, b\n", f.formatHeader(e));
+    }
+
     // addPropertyName()/addPropertyIndex() ----------------------------------------------------------------------------
 
     @Test
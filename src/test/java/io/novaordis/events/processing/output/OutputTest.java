@@ -17,7 +17,10 @@
 package io.novaordis.events.processing.output;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -26,11 +29,14 @@ import java.util.List;
 
 import org.junit.Test;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
 import io.novaordis.events.api.event.GenericEvent;
 import io.novaordis.events.api.event.GenericTimedEvent;
 import io.novaordis.events.api.event.StringProperty;
 import io.novaordis.events.api.event.TimedEvent;
 import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.EventProcessingException;
 import io.novaordis.events.processing.MockTimedEvent;
 import io.novaordis.events.processing.ProcedureFactory;
 import io.novaordis.events.processing.TextOutputProcedureTest;
@@ -687,6 +693,50 @@ public class OutputTest extends TextOutputProcedureTest {
         assertEquals("1, A\n3, C\n", result);
     }
 
+    @Test
+    public void process_Batch_SameOutputAsPerEventProcessing() throws Exception {
+
+        List<Event> events = new ArrayList<>();
+
+        for(int i = 0; i < 5; i ++) {
+
+            GenericTimedEvent e = new GenericTimedEvent();
+            e.setTimestamp(new TimestampImpl(1000L * i));
+
+            if (i != 2) {
+
+                e.setStringProperty("test-property", "value-" + i);
+            }
+
+            events.add(e);
+        }
+
+        events.add(new EndOfStreamEvent());
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Output o = getTextOutputProcedureToTest(baos);
+        o.setOutputFormat(new OutputFormatImpl("test-property"));
+
+        for(Event e: events) {
+
+            o.process(e);
+        }
+
+        ByteArrayOutputStream baos2 = new ByteArrayOutputStream();
+        Output o2 = getTextOutputProcedureToTest(baos2);
+        o2.setOutputFormat(new OutputFormatImpl("test-property"));
+
+        o2.process(events);
+
+        String expected = new String(baos.toByteArray());
+
+        assertTrue(expected.contains("value-4"));
+        assertEquals(expected, new String(baos2.toByteArray()));
+
+        assertEquals(o.getInvocationCount(), o2.getInvocationCount());
+        assertTrue(o2.isExitLoop());
+    }
+
     // header tests ----------------------------------------------------------------------------------------------------
 
     @Test
@@ -935,6 +985,128 @@ public class OutputTest extends TextOutputProcedureTest {
         }
     }
 
+    @Test
+    public void binaryFormat_CommandLine() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Output o = new Output(baos, null, 0, new ArrayList<>(Arrays.asList("-o", "binary", "color")));
+
+        assertTrue(o.getFormat() instanceof BinaryOutputFormat);
+
+        List<Event> events = new ArrayList<>();
+
+        for(int i = 0; i < 5; i ++) {
+
+            GenericTimedEvent e = new GenericTimedEvent(1000L * i);
+            e.setStringProperty("color", i % 2 == 0 ? "blue" : "red");
+            e.setStringProperty("ignored", "something");
+            events.add(e);
+        }
+
+        o.process(events.get(0));
+
+        //
+        // interactive mode, the bytes must have been written
+        //
+
+        assertTrue(baos.size() > 0);
+
+        o.process(events.subList(1, events.size()));
+        o.process(new EndOfStreamEvent());
+
+        ByteBuffer b = ByteBuffer.wrap(baos.toByteArray());
+
+        BinaryEventReader r = new BinaryEventReader();
+
+        for(int i = 0; i < 5; i ++) {
+
+            Event e = r.next(b);
+
+            assertEquals(1000L * i, ((TimedEvent)e).getTime().longValue());
+            assertEquals(i % 2 == 0 ? "blue" : "red", e.getProperty("color").getValue());
+            assertNull(e.getProperty("ignored"));
+        }
+
+        assertNull(r.next(b));
+    }
+
+    @Test
+    public void binaryFormat_Buffered_WrittenOnEndOfStream() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Output o = getTextOutputProcedureToTest(baos);
+        o.setOutputFormat(new BinaryOutputFormat());
+        o.setInteractive(false);
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("size", 10L);
+
+        o.process(e);
+
+        assertEquals(0, baos.size());
+
+        o.process(new EndOfStreamEvent());
+
+        Event d = new BinaryEventReader().next(ByteBuffer.wrap(baos.toByteArray()));
+
+        assertEquals(10L, d.getProperty("size").getValue());
+    }
+
+    @Test
+    public void binaryFormat_WriteFailureOnEndOfStreamIsPropagated() throws Exception {
+
+        Output o = getTextOutputProcedureToTest(new FailingOutputStream());
+        o.setOutputFormat(new BinaryOutputFormat());
+        o.setInteractive(false);
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("size", 10L);
+
+        o.process(e);
+
+        try {
+
+            o.process(new EndOfStreamEvent());
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException ex) {
+
+            IOException cause = (IOException)ex.getCause();
+            assertEquals("disk full", cause.getMessage());
+        }
+    }
+
+    @Test
+    public void binaryFormat_WriteFailureOnFlushIsPropagated() throws Exception {
+
+        Output o = getTextOutputProcedureToTest(new FailingOutputStream());
+        o.setOutputFormat(new BinaryOutputFormat());
+        o.setInteractive(false);
+
+        GenericEvent e = new GenericEvent();
+        e.setLongProperty("size", 10L);
+
+        o.process(e);
+
+        try {
+
+            o.flush();
+            fail("should have thrown exception");
+        }
+        catch(UncheckedIOException ex) {
+
+            assertEquals("disk full", ex.getCause().getMessage());
+        }
+
+        //
+        // the bytes that could not be written are discarded
+        //
+
+        o.flush();
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -949,4 +1121,19 @@ public class OutputTest extends TextOutputProcedureTest {
 
     // Inner classes ---------------------------------------------------------------------------------------------------
 
+    private static class FailingOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+
+            throw new IOException("disk full");
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+
+            throw new IOException("disk full");
+        }
+    }
+
 }
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.StringProperty;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PropertySelectionTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void add() throws Exception {
+
+        PropertySelection s = new PropertySelection();
+
+        assertTrue(s.isEmpty());
+
+        s.add("b");
+        s.add("0");
+
+        assertEquals(2, s.size());
+        assertEquals("b", s.getLabel(0));
+        assertEquals("0", s.getLabel(1));
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "A"));
+        e.setProperty(new StringProperty("b", "B"));
+
+        assertEquals("B", s.select(e, 0).getValue());
+        assertEquals("A", s.select(e, 1).getValue());
+    }
+
+    @Test
+    public void select_MissingProperty() throws Exception {
+
+        PropertySelection s = new PropertySelection();
+        s.addPropertyName("c");
+        s.addPropertyIndex(5);
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "A"));
+
+        assertNull(s.select(e, 0));
+        assertNull(s.select(e, 1));
+    }
+
+    @Test
+    public void addPropertyIndex_Invalid() throws Exception {
+
+        try {
+
+            new PropertySelection().add("-1");
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid property index: -1"));
+        }
+    }
+
+    @Test
+    public void fromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("x", "-o", "a,b", "c,", "3", "--other", "y"));
+
+        PropertySelection s = PropertySelection.fromCommandLine("-o", 0, args);
+
+        assertEquals("a, b, c, 3", s.toString());
+        assertEquals(Arrays.asList("x", "--other", "y"), args);
+    }
+
+    @Test
+    public void fromCommandLine_OptionNotPresent() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("x", "y"));
+
+        assertNull(PropertySelection.fromCommandLine("-o", 0, args));
+        assertEquals(Arrays.asList("x", "y"), args);
+    }
+
+    @Test
+    public void fromCommandLine_ArgumentsBeforeFromAreIgnored() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList("-o", "a", "-o", "b"));
+
+        PropertySelection s = PropertySelection.fromCommandLine("-o", 2, args);
+
+        assertEquals("b", s.toString());
+        assertEquals(Arrays.asList("-o", "a"), args);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
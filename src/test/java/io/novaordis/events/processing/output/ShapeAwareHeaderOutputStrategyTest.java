@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.output;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ShapeAwareHeaderOutputStrategyTest extends HeaderOutputStrategyTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidCapacity() throws Exception {
+
+        try {
+
+            new ShapeAwareHeaderOutputStrategy(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid cache capacity"));
+        }
+    }
+
+    @Test
+    public void formatHeader_NullFormat() throws Exception {
+
+        ShapeAwareHeaderOutputStrategy s = getHeaderOutputStrategyToTest();
+
+        try {
+
+            s.formatHeader(new GenericEvent(), null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null output format"));
+        }
+    }
+
+    @Test
+    public void headerIsDisplayedAgainWhenTheShapeChanges() throws Exception {
+
+        ShapeAwareHeaderOutputStrategy s = getHeaderOutputStrategyToTest();
+
+        OutputFormatImpl f = new OutputFormatImpl(0, 1);
+
+        GenericEvent a = event("a", "b");
+        GenericEvent a2 = event("a", "b");
+        GenericEvent b = event("c", "d");
+        GenericEvent reordered = event("b", "a");
+        GenericEvent longer = event("a", "b", "c");
+        GenericTimedEvent timed = new GenericTimedEvent(1L);
+
+        assertTrue(s.shouldDisplayHeader(a));
+        assertEquals("# a, b\n", s.formatHeader(a, f));
+        s.headerDisplayed(a);
+
+        assertFalse(s.shouldDisplayHeader(a2));
+
+        assertTrue(s.shouldDisplayHeader(b));
+        assertEquals("# c, d\n", s.formatHeader(b, f));
+        s.headerDisplayed(b);
+
+        assertFalse(s.shouldDisplayHeader(b));
+        assertTrue(s.shouldDisplayHeader(reordered));
+        assertTrue(s.shouldDisplayHeader(longer));
+        assertTrue(s.shouldDisplayHeader(timed));
+
+        //
+        // back to the first shape, the header comes from the cache
+        //
+
+        assertTrue(s.shouldDisplayHeader(a2));
+        assertEquals("# a, b\n", s.formatHeader(a2, f));
+        s.headerDisplayed(a2);
+
+        assertFalse(s.shouldDisplayHeader(a));
+
+        assertEquals(2L, s.getRenderedHeaderCount());
+        assertEquals(2, s.getCacheSize());
+    }
+
+    @Test
+    public void shapesWithoutHeaderAreNotCheckedAgain() throws Exception {
+
+        ShapeAwareHeaderOutputStrategy s = getHeaderOutputStrategyToTest();
+
+        MockOutputFormat f = new MockOutputFormat();
+        f.setProvidingHeader(false);
+
+        GenericEvent e = event("a");
+
+        assertTrue(s.shouldDisplayHeader(e));
+        assertNull(s.formatHeader(e, f));
+
+        assertFalse(s.shouldDisplayHeader(event("a")));
+
+        assertTrue(s.shouldDisplayHeader(event("b")));
+        assertNull(s.formatHeader(event("b"), f));
+
+        assertTrue(s.shouldDisplayHeader(event("a")));
+        assertNull(s.formatHeader(event("a"), f));
+
+        assertEquals(2L, s.getRenderedHeaderCount());
+    }
+
+    @Test
+    public void cacheIsClearedWhenFull_AndWhenTheFormatChanges() throws Exception {
+
+        ShapeAwareHeaderOutputStrategy s = new ShapeAwareHeaderOutputStrategy(2);
+
+        OutputFormatImpl f = new OutputFormatImpl(0);
+
+        s.formatHeader(event("a"), f);
+        s.formatHeader(event("b"), f);
+
+        assertEquals(2, s.getCacheSize());
+
+        s.formatHeader(event("c"), f);
+
+        assertEquals(1, s.getCacheSize());
+
+        s.formatHeader(event("c"), new OutputFormatImpl(0));
+
+        assertEquals(1, s.getCacheSize());
+        assertEquals(4L, s.getRenderedHeaderCount());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected ShapeAwareHeaderOutputStrategy getHeaderOutputStrategyToTest() throws Exception {
+
+        return new ShapeAwareHeaderOutputStrategy();
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericEvent event(String ... names) {
+
+        GenericEvent e = new GenericEvent();
+
+        for(String n: names) {
+
+            e.setStringProperty(n, n + "-value");
+        }
+
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.percentiles;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class PercentilesTest extends TextOutputProcedureTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    @Test
+    @Override
+    public void procedureFactoryFind() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        Percentiles p = (Percentiles) f.find(Percentiles.COMMAND_LINE_LABEL, 0, Collections.emptyList());
+        assertNotNull(p);
+        assertNotNull(p.getOutputStream());
+    }
+
+    @Test
+    @Override
+    public void commandLineLabel() throws Exception {
+
+        Procedure p = getTextOutputProcedureToTest();
+
+        List<String> commandLineLabels = p.getCommandLineLabels();
+        assertEquals(1, commandLineLabels.size());
+        assertTrue(commandLineLabels.contains(Percentiles.COMMAND_LINE_LABEL));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void defaults() throws Exception {
+
+        Percentiles p = new Percentiles();
+
+        assertTrue(Arrays.equals(Percentiles.DEFAULT_QUANTILES, p.getQuantiles()));
+        assertEquals(QuantileSketch.DEFAULT_RELATIVE_ACCURACY, p.getRelativeAccuracy(), 0d);
+        assertEquals(0L, p.getWindow());
+        assertTrue(p.getProperties().isEmpty());
+        assertNull(p.getSketch(0));
+    }
+
+    @Test
+    public void setQuantiles_Invalid() throws Exception {
+
+        Percentiles p = new Percentiles();
+
+        try {
+
+            p.setQuantiles();
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null or empty quantile list"));
+        }
+
+        try {
+
+            p.setQuantiles(50d, 101d);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid quantile: 101.0"));
+        }
+    }
+
+    @Test
+    public void endOfStreamReport() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Percentiles p = new Percentiles(baos);
+        p.getProperties().add("v");
+        p.setQuantiles(0d, 50d, 100d);
+
+        for(int i = 1; i <= 5; i ++) {
+
+            p.process(event(i, i));
+        }
+
+        assertEquals(0, baos.size());
+
+        p.process(new EndOfStreamEvent());
+
+        //
+        // the median is estimated within 1% of 3
+        //
+
+        assertEquals("v: 5 values, min 1, p0 1, p50 2.974, p100 5, max 5\n", new String(baos.toByteArray()));
+
+        QuantileSketch s = p.getSketch(0);
+
+        assertEquals(5L, s.getCount());
+        assertEquals(15d, s.getSum(), 0d);
+    }
+
+    @Test
+    public void estimatesAreWithinTheRelativeAccuracy() throws Exception {
+
+        Percentiles p = new Percentiles(new ByteArrayOutputStream());
+        p.getProperties().add("v");
+        p.setRelativeAccuracy(0.001d);
+
+        for(int i = 1; i <= 10000; i ++) {
+
+            p.process(event(i, i));
+        }
+
+        p.process(new EndOfStreamEvent());
+
+        QuantileSketch s = p.getSketch(0);
+
+        assertEquals(5000d, s.getQuantile(0.5d), 5000d * 0.001d);
+        assertEquals(9900d, s.getQuantile(0.99d), 9900d * 0.001d);
+        assertEquals(9990d, s.getQuantile(0.999d), 9990d * 0.001d);
+    }
+
+    @Test
+    public void perWindowReports() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Percentiles p = new Percentiles(baos);
+        p.getProperties().add("v");
+        p.setQuantiles(50d);
+        p.setWindow(10L);
+
+        p.process(event(0L, 1d));
+        p.process(event(5L, 1d));
+
+        assertEquals(0, baos.size());
+
+        //
+        // closes [0, 10)
+        //
+
+        p.process(event(12L, 100d));
+
+        assertTrue(new String(baos.toByteArray()).endsWith(": v: 2 values, min 1, p50 1, max 1\n"));
+
+        //
+        // a slightly out of order event is counted in the window that is open
+        //
+
+        p.process(event(9L, 100d));
+        p.process(new EndOfStreamEvent());
+
+        String[] lines = new String(baos.toByteArray()).split("\n");
+
+        assertEquals(3, lines.length);
+        assertTrue(lines[1].endsWith(": v: 2 values, min 100, p50 100, max 100"));
+        assertTrue(lines[2].startsWith("v: 4 values, min 1, p50 "));
+        assertTrue(lines[2].endsWith(", max 100"));
+
+        assertEquals(4L, p.getSketch(0).getCount());
+    }
+
+    @Test
+    public void nonNumericAndMissingValues() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Percentiles p = new Percentiles(baos);
+        p.getProperties().add("v");
+        p.getProperties().add("missing");
+        p.setQuantiles(50d);
+
+        GenericTimedEvent e = new GenericTimedEvent(0L);
+        e.setProperty(new StringProperty("v", "blah"));
+
+        p.process(e);
+        p.process(event(1L, 7d));
+        p.process(new EndOfStreamEvent());
+
+        assertEquals("v: 1 values, min 7, p50 7, max 7\nmissing: no values\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void propertiesByIndex() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Percentiles p = new Percentiles(baos);
+        p.getProperties().add("1");
+        p.setQuantiles(50d);
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "A"));
+        e.setProperty(new DoubleProperty("b", 2d));
+
+        p.process(e);
+        p.process(new EndOfStreamEvent());
+
+        assertEquals("1: 1 values, min 2, p50 2, max 2\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void eventsArePassedDownstream() throws Exception {
+
+        Percentiles p = new Percentiles(new ByteArrayOutputStream());
+        p.getProperties().add("v");
+
+        TestProcedure downstream = new TestProcedure();
+        p.setDownstream(downstream);
+
+        GenericTimedEvent e = event(0L, 1d);
+        GenericEvent e2 = new GenericEvent();
+
+        p.process(Arrays.asList(e, e2, new EndOfStreamEvent()));
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-o", "a,", "b", "--quantiles", "50,99.99", "--accuracy", "0.005", "--window", "1000", "something"));
+
+        Percentiles p = new Percentiles(new ByteArrayOutputStream(), 0, args);
+
+        assertEquals("a, b", p.getProperties().toString());
+        assertTrue(Arrays.equals(new double[] { 50d, 99.99d }, p.getQuantiles()));
+        assertEquals(0.005d, p.getRelativeAccuracy(), 0d);
+        assertEquals(1000L, p.getWindow());
+
+        assertEquals(Collections.singletonList("something"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingValue() throws Exception {
+
+        try {
+
+            new Percentiles(new ByteArrayOutputStream(), 0, new ArrayList<>(Collections.singletonList("--window")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after --window"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidQuantiles() throws Exception {
+
+        try {
+
+            new Percentiles(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--quantiles", "50,x")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --quantiles value: 50,x"));
+        }
+
+        try {
+
+            new Percentiles(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--quantiles", "200")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --quantiles value: 200"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidAccuracy() throws Exception {
+
+        try {
+
+            new Percentiles(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--accuracy", "1")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --accuracy value: 1"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidWindow() throws Exception {
+
+        try {
+
+            new Percentiles(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--window", "0")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --window value: 0"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected Percentiles getTextOutputProcedureToTest(OutputStream os) throws Exception {
+
+        return new Percentiles(os);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericTimedEvent event(long time, double v) {
+
+        GenericTimedEvent e = new GenericTimedEvent(time);
+        e.setProperty(new DoubleProperty("v", v));
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
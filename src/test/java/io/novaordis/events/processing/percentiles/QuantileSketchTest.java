@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.percentiles;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class QuantileSketchTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    private static final double[] QUANTILES = { 0d, 0.01d, 0.1d, 0.25d, 0.5d, 0.75d, 0.9d, 0.99d, 0.999d, 1d };
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidAccuracy() throws Exception {
+
+        try {
+
+            new QuantileSketch(0d, 10);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid relative accuracy: 0.0"));
+        }
+
+        try {
+
+            new QuantileSketch(1d, 10);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid relative accuracy: 1.0"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidBucketCount() throws Exception {
+
+        try {
+
+            new QuantileSketch(0.01d, 1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid maximum bucket count: 1"));
+        }
+    }
+
+    @Test
+    public void empty() throws Exception {
+
+        QuantileSketch s = new QuantileSketch();
+
+        assertEquals(0L, s.getCount());
+        assertTrue(Double.isNaN(s.getQuantile(0.5d)));
+        assertTrue(Double.isNaN(s.getMin()));
+        assertTrue(Double.isNaN(s.getMax()));
+    }
+
+    @Test
+    public void getQuantile_Invalid() throws Exception {
+
+        try {
+
+            new QuantileSketch().getQuantile(1.1d);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid quantile: 1.1"));
+        }
+    }
+
+    @Test
+    public void singleValue() throws Exception {
+
+        QuantileSketch s = new QuantileSketch();
+
+        s.add(42d);
+
+        assertEquals(1L, s.getCount());
+        assertEquals(42d, s.getQuantile(0d), 0d);
+        assertEquals(42d, s.getQuantile(0.5d), 0d);
+        assertEquals(42d, s.getQuantile(1d), 0d);
+    }
+
+    @Test
+    public void nanIsIgnored() throws Exception {
+
+        QuantileSketch s = new QuantileSketch();
+
+        s.add(Double.NaN);
+
+        assertEquals(0L, s.getCount());
+    }
+
+    @Test
+    public void relativeAccuracy_Uniform() throws Exception {
+
+        Random r = new Random(1L);
+
+        double[] values = new double[100000];
+
+        for(int i = 0; i < values.length; i ++) {
+
+            values[i] = r.nextDouble() * 1000d;
+        }
+
+        assertAccurate(0.01d, values);
+    }
+
+    @Test
+    public void relativeAccuracy_LongTail() throws Exception {
+
+        Random r = new Random(2L);
+
+        double[] values = new double[100000];
+
+        for(int i = 0; i < values.length; i ++) {
+
+            //
+            // log-normal, like response times
+            //
+
+            values[i] = Math.exp(3d + 1.5d * r.nextGaussian());
+        }
+
+        assertAccurate(0.01d, values);
+        assertAccurate(0.001d, values);
+    }
+
+    @Test
+    public void extremesAreExact() throws Exception {
+
+        QuantileSketch s = new QuantileSketch();
+
+        s.add(0.123d);
+        s.add(7d);
+        s.add(987.654d);
+
+        assertEquals(0.123d, s.getQuantile(0d), 0d);
+        assertEquals(987.654d, s.getQuantile(1d), 0d);
+    }
+
+    @Test
+    public void negativeAndZeroValues() throws Exception {
+
+        Random r = new Random(3L);
+
+        double[] values = new double[50000];
+
+        for(int i = 0; i < values.length; i ++) {
+
+            values[i] = i % 10 == 0 ? 0d : r.nextGaussian() * 100d;
+        }
+
+        assertAccurate(0.01d, values);
+    }
+
+    @Test
+    public void merge() throws Exception {
+
+        Random r = new Random(4L);
+
+        QuantileSketch a = new QuantileSketch();
+        QuantileSketch b = new QuantileSketch();
+        QuantileSketch all = new QuantileSketch();
+
+        for(int i = 0; i < 10000; i ++) {
+
+            double v = r.nextDouble() * 10d;
+            a.add(v);
+            all.add(v);
+        }
+
+        for(int i = 0; i < 10000; i ++) {
+
+            double v = 100d + r.nextDouble() * 10000d;
+            b.add(v);
+            all.add(v);
+        }
+
+        a.merge(b);
+
+        assertEquals(all.getCount(), a.getCount());
+        assertEquals(all.getMin(), a.getMin(), 0d);
+        assertEquals(all.getMax(), a.getMax(), 0d);
+        assertEquals(all.getSum(), a.getSum(), 1e-6d);
+
+        for(double q: QUANTILES) {
+
+            assertEquals(all.getQuantile(q), a.getQuantile(q), 0d);
+        }
+
+        //
+        // the argument is not modified
+        //
+
+        assertEquals(10000L, b.getCount());
+    }
+
+    @Test
+    public void merge_IncompatibleAccuracy() throws Exception {
+
+        try {
+
+            new QuantileSketch(0.01d, 10).merge(new QuantileSketch(0.02d, 10));
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("incompatible relative accuracy"));
+        }
+    }
+
+    @Test
+    public void memoryIsBounded_LowestBucketsAreCollapsed() throws Exception {
+
+        QuantileSketch s = new QuantileSketch(0.01d, 64);
+
+        //
+        // values spanning 12 orders of magnitude need ~1400 buckets at 1%
+        //
+
+        double[] values = new double[10000];
+
+        for(int i = 0; i < values.length; i ++) {
+
+            values[i] = Math.pow(10d, (i % 1200) / 100d);
+            s.add(values[i]);
+        }
+
+        assertTrue(s.getAllocatedBucketCount() <= 2 * 64);
+        assertEquals(10000L, s.getCount());
+
+        //
+        // the upper quantiles keep their accuracy
+        //
+
+        Arrays.sort(values);
+
+        double expected = values[(int)Math.floor(0.99d * (values.length - 1))];
+
+        assertEquals(expected, s.getQuantile(0.99d), expected * 0.01d);
+        assertEquals(1d, s.getQuantile(0d), 0d);
+        assertEquals(Math.pow(10d, 11.99d), s.getQuantile(1d), 0d);
+    }
+
+    @Test
+    public void memoryIsBounded_NegativeValuesOfTheLargestMagnitudeAreCollapsed() throws Exception {
+
+        QuantileSketch s = new QuantileSketch(0.01d, 64);
+
+        double[] values = new double[10000];
+
+        for(int i = 0; i < values.length; i ++) {
+
+            values[i] = -Math.pow(10d, (i % 1200) / 100d);
+            s.add(values[i]);
+        }
+
+        assertTrue(s.getAllocatedBucketCount() <= 2 * 64);
+        assertEquals(10000L, s.getCount());
+
+        //
+        // the upper quantiles, the values closest to zero, keep their accuracy
+        //
+
+        Arrays.sort(values);
+
+        double expected = values[(int)Math.floor(0.99d * (values.length - 1))];
+
+        assertEquals(expected, s.getQuantile(0.99d), -expected * 0.01d);
+        assertEquals(-Math.pow(10d, 11.99d), s.getQuantile(0d), 0d);
+        assertEquals(-1d, s.getQuantile(1d), 0d);
+
+        //
+        // merging collapses the same way
+        //
+
+        QuantileSketch merged = new QuantileSketch(0.01d, 64);
+        merged.merge(s);
+
+        assertEquals(s.getQuantile(0.99d), merged.getQuantile(0.99d), 0d);
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        QuantileSketch s = new QuantileSketch();
+
+        s.add(1d);
+        s.add(-1d);
+        s.clear();
+
+        assertEquals(0L, s.getCount());
+
+        s.add(5d);
+
+        assertEquals(5d, s.getQuantile(0.5d), 0d);
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * The estimate must be within the relative accuracy of a value whose rank is the quantile's rank.
+     */
+    private static void assertAccurate(double accuracy, double[] values) {
+
+        //
+        // enough buckets that nothing is collapsed
+        //
+
+        QuantileSketch s = new QuantileSketch(accuracy, 1 << 16);
+
+        for(double v: values) {
+
+            s.add(v);
+        }
+
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+
+        for(double q: QUANTILES) {
+
+            double exact = sorted[(int)Math.floor(q * (sorted.length - 1))];
+            double estimate = s.getQuantile(q);
+
+            assertEquals(exact, estimate, Math.abs(exact) * accuracy + 1e-9d);
+        }
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
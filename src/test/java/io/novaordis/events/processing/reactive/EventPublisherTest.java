@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.reactive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.MockTimedEvent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class EventPublisherTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void subscribe_Null() throws Exception {
+
+        try {
+
+            new EventPublisher().subscribe(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null subscriber"));
+        }
+    }
+
+    @Test
+    public void eventsWaitForDemand() throws Exception {
+
+        final EventPublisher p = new EventPublisher();
+
+        RecordingSubscriber s = new RecordingSubscriber();
+
+        p.subscribe(s);
+
+        assertEquals(0L, p.getDemand());
+
+        final MockTimedEvent e = new MockTimedEvent();
+        final MockTimedEvent e2 = new MockTimedEvent();
+        final MockTimedEvent e3 = new MockTimedEvent();
+
+        Thread source = new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    p.process(Arrays.<Event>asList(e, e2, e3));
+                    p.process(new EndOfStreamEvent());
+                }
+                catch(Exception ex) {
+
+                    ex.printStackTrace();
+                }
+            }
+        };
+
+        source.start();
+
+        Thread.sleep(50L);
+
+        assertTrue(s.getItems().isEmpty());
+        assertTrue(source.isAlive());
+
+        s.subscription.request(2L);
+
+        s.awaitItems(2);
+
+        Thread.sleep(50L);
+
+        assertEquals(2, s.getItems().size());
+        assertTrue(source.isAlive());
+
+        s.subscription.request(10L);
+
+        source.join(5000L);
+
+        assertFalse(source.isAlive());
+
+        List<Event> items = s.getItems();
+
+        assertEquals(3, items.size());
+        assertSame(e, items.get(0));
+        assertSame(e2, items.get(1));
+        assertSame(e3, items.get(2));
+
+        assertTrue(s.completed);
+        assertNull(s.error);
+
+        //
+        // the unused demand is still there
+        //
+
+        assertEquals(9L, p.getDemand());
+        assertTrue(p.getDemandWaitNanos() > 0L);
+        assertTrue(p.isExitLoop());
+    }
+
+    @Test
+    public void endOfStreamWaitsForTheSubscriber() throws Exception {
+
+        final EventPublisher p = new EventPublisher();
+
+        Thread source = new Thread() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    p.process(new EndOfStreamEvent());
+                }
+                catch(Exception ex) {
+
+                    ex.printStackTrace();
+                }
+            }
+        };
+
+        source.start();
+
+        Thread.sleep(50L);
+
+        assertTrue(source.isAlive());
+
+        RecordingSubscriber s = new RecordingSubscriber();
+
+        p.subscribe(s);
+
+        source.join(5000L);
+
+        assertTrue(s.completed);
+    }
+
+    @Test
+    public void secondSubscriberIsRejected() throws Exception {
+
+        EventPublisher p = new EventPublisher();
+
+        p.subscribe(new RecordingSubscriber());
+
+        RecordingSubscriber s2 = new RecordingSubscriber();
+
+        p.subscribe(s2);
+
+        assertTrue(s2.error instanceof IllegalStateException);
+        assertTrue(s2.error.getMessage().contains("supports a single subscriber"));
+    }
+
+    @Test
+    public void cancel() throws Exception {
+
+        EventPublisher p = new EventPublisher();
+
+        RecordingSubscriber s = new RecordingSubscriber();
+
+        p.subscribe(s);
+
+        s.subscription.request(1L);
+
+        p.process(new MockTimedEvent());
+
+        assertEquals(1, s.getItems().size());
+        assertFalse(p.isExitLoop());
+
+        s.subscription.cancel();
+
+        assertTrue(p.isCancelled());
+        assertTrue(p.isExitLoop());
+
+        //
+        // does not block, and the events are discarded
+        //
+
+        p.process(new MockTimedEvent());
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(1, s.getItems().size());
+        assertFalse(s.completed);
+    }
+
+    @Test
+    public void invalidRequest() throws Exception {
+
+        EventPublisher p = new EventPublisher();
+
+        RecordingSubscriber s = new RecordingSubscriber();
+
+        p.subscribe(s);
+
+        s.subscription.request(0L);
+
+        p.process(new MockTimedEvent());
+
+        assertTrue(s.getItems().isEmpty());
+        assertTrue(s.error instanceof IllegalArgumentException);
+        assertTrue(s.error.getMessage().contains("invalid request: 0"));
+    }
+
+    @Test
+    public void demandOverflowIsCapped() throws Exception {
+
+        EventPublisher p = new EventPublisher();
+
+        RecordingSubscriber s = new RecordingSubscriber();
+
+        p.subscribe(s);
+
+        s.subscription.request(Long.MAX_VALUE);
+        s.subscription.request(1L);
+
+        assertEquals(Long.MAX_VALUE, p.getDemand());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class RecordingSubscriber implements Subscriber<Event> {
+
+        private volatile Subscription subscription;
+
+        private final List<Event> items = Collections.synchronizedList(new ArrayList<Event>());
+
+        private volatile boolean completed;
+
+        private volatile Throwable error;
+
+        @Override
+        public void onSubscribe(Subscription s) {
+
+            this.subscription = s;
+        }
+
+        @Override
+        public void onNext(Event item) {
+
+            items.add(item);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+
+            this.error = t;
+        }
+
+        @Override
+        public void onComplete() {
+
+            this.completed = true;
+        }
+
+        List<Event> getItems() {
+
+            synchronized (items) {
+
+                return new ArrayList<>(items);
+            }
+        }
+
+        void awaitItems(int count) throws InterruptedException {
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+
+            while(items.size() < count && System.nanoTime() < deadline) {
+
+                Thread.sleep(5L);
+            }
+        }
+    }
+
+}
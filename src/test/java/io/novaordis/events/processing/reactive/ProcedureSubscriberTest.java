@@ -0,0 +1,391 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.reactive;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.MockTimedEvent;
+import io.novaordis.events.processing.ProcedureBase;
+import io.novaordis.events.processing.TestProcedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class ProcedureSubscriberTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullProcedure() throws Exception {
+
+        try {
+
+            new ProcedureSubscriber(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null procedure"));
+        }
+    }
+
+    @Test
+    public void constructor_InvalidBufferSize() throws Exception {
+
+        try {
+
+            new ProcedureSubscriber(new TestProcedure(), 0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid buffer size: 0"));
+        }
+    }
+
+    @Test
+    public void constructor() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureSubscriber s = new ProcedureSubscriber(p);
+
+        assertSame(p, s.getProcedure());
+        assertEquals(ProcedureSubscriber.DEFAULT_BUFFER_SIZE, s.getBufferSize());
+        assertEquals(0, s.getBufferedEventCount());
+        assertFalse(s.isTerminated());
+        assertNull(s.getFailure());
+    }
+
+    @Test
+    public void endToEnd() throws Exception {
+
+        final int count = 10000;
+        final int bufferSize = 16;
+
+        final EventPublisher publisher = new EventPublisher();
+
+        SlowProcedure p = new SlowProcedure();
+
+        final ProcedureSubscriber s = new ProcedureSubscriber(p, bufferSize);
+
+        p.publisher = publisher;
+        p.subscriber = s;
+
+        publisher.subscribe(s);
+
+        List<Event> events = new ArrayList<>();
+
+        for(int i = 0; i < count; i ++) {
+
+            events.add(new MockTimedEvent());
+        }
+
+        for(Event e: events) {
+
+            publisher.process(e);
+        }
+
+        publisher.process(new EndOfStreamEvent());
+
+        assertTrue(s.awaitTermination(10L, TimeUnit.SECONDS));
+        assertNull(s.getFailure());
+
+        List<Event> received = p.received;
+
+        assertEquals(count + 1, received.size());
+
+        for(int i = 0; i < count; i ++) {
+
+            assertSame(events.get(i), received.get(i));
+        }
+
+        assertTrue(received.get(count) instanceof EndOfStreamEvent);
+
+        //
+        // the outstanding demand plus the buffered events never exceeded the buffer size
+        //
+
+        assertTrue(p.maxOutstanding <= bufferSize);
+    }
+
+    @Test
+    public void procedureExitLoopCancelsTheSubscription() throws Exception {
+
+        EventPublisher publisher = new EventPublisher();
+
+        ExitingProcedure p = new ExitingProcedure(5);
+
+        ProcedureSubscriber s = new ProcedureSubscriber(p, 4);
+
+        publisher.subscribe(s);
+
+        for(int i = 0; i < 100 && !publisher.isExitLoop(); i ++) {
+
+            publisher.process(new MockTimedEvent());
+        }
+
+        assertTrue(s.awaitTermination(5L, TimeUnit.SECONDS));
+        assertTrue(publisher.isCancelled());
+        assertTrue(publisher.isExitLoop());
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(6, received.size());
+        assertTrue(received.get(5) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void onError_TheProcedureReceivesEndOfStream() throws Exception {
+
+        TestProcedure p = new TestProcedure();
+
+        ProcedureSubscriber s = new ProcedureSubscriber(p, 4);
+
+        s.onSubscribe(new MockSubscription());
+
+        MockTimedEvent e = new MockTimedEvent();
+
+        s.onNext(e);
+
+        RuntimeException upstream = new RuntimeException("SYNTHETIC");
+
+        s.onError(upstream);
+
+        assertTrue(s.awaitTermination(5L, TimeUnit.SECONDS));
+        assertSame(upstream, s.getFailure());
+
+        List<Event> received = p.getReceived();
+
+        assertEquals(2, received.size());
+        assertSame(e, received.get(0));
+        assertTrue(received.get(1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void moreEventsThanRequested() throws Exception {
+
+        ExitingProcedure p = new ExitingProcedure(Integer.MAX_VALUE);
+
+        //
+        // block the procedure so the buffer fills up
+        //
+
+        p.block();
+
+        ProcedureSubscriber s = new ProcedureSubscriber(p, 2);
+
+        MockSubscription subscription = new MockSubscription();
+
+        s.onSubscribe(subscription);
+
+        assertEquals(2L, subscription.requested.get());
+
+        for(int i = 0; i < 4; i ++) {
+
+            s.onNext(new MockTimedEvent());
+        }
+
+        p.unblock();
+
+        assertTrue(s.awaitTermination(5L, TimeUnit.SECONDS));
+
+        assertTrue(subscription.cancelled);
+        assertTrue(s.getFailure() instanceof IllegalStateException);
+        assertTrue(s.getFailure().getMessage().contains("received more events than it requested"));
+
+        List<Event> received = p.getReceived();
+        assertTrue(received.get(received.size() - 1) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void secondSubscriptionIsCancelled() throws Exception {
+
+        ProcedureSubscriber s = new ProcedureSubscriber(new TestProcedure());
+
+        MockSubscription first = new MockSubscription();
+        MockSubscription second = new MockSubscription();
+
+        s.onSubscribe(first);
+        s.onSubscribe(second);
+
+        assertFalse(first.cancelled);
+        assertTrue(second.cancelled);
+        assertEquals(0L, second.requested.get());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class MockSubscription implements Subscription {
+
+        private final AtomicLong requested = new AtomicLong();
+
+        private volatile boolean cancelled;
+
+        @Override
+        public void request(long n) {
+
+            requested.addAndGet(n);
+        }
+
+        @Override
+        public void cancel() {
+
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Records the largest outstanding demand plus buffered event count seen while processing.
+     */
+    private static class SlowProcedure extends ProcedureBase {
+
+        private final List<Event> received = new ArrayList<>();
+
+        private volatile EventPublisher publisher;
+        private volatile ProcedureSubscriber subscriber;
+
+        private long maxOutstanding;
+
+        @Override
+        public List<String> getCommandLineLabels() {
+
+            return Collections.singletonList("slow");
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+            received.add(e);
+
+            //
+            // only this thread adds demand, so reading the buffer first cannot double count events in transit
+            //
+
+            long outstanding = subscriber.getBufferedEventCount();
+            outstanding += publisher.getDemand();
+
+            if (outstanding > maxOutstanding) {
+
+                maxOutstanding = outstanding;
+            }
+
+            if (invocationCount.get() % 1000 == 0) {
+
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Exits the loop after the given number of events; can be blocked.
+     */
+    private static class ExitingProcedure extends TestProcedure {
+
+        private final int limit;
+
+        private final Object lock = new Object();
+
+        private boolean blocked;
+
+        ExitingProcedure(int limit) {
+
+            this.limit = limit;
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) throws EventProcessingException {
+
+            synchronized (lock) {
+
+                while(blocked) {
+
+                    try {
+
+                        lock.wait();
+                    }
+                    catch(InterruptedException ie) {
+
+                        throw new EventProcessingException(ie);
+                    }
+                }
+            }
+
+            super.process(invocationCount, e);
+        }
+
+        @Override
+        public boolean isExitLoop() {
+
+            return getReceived().size() >= limit || super.isExitLoop();
+        }
+
+        void block() {
+
+            synchronized (lock) {
+
+                blocked = true;
+            }
+        }
+
+        void unblock() {
+
+            synchronized (lock) {
+
+                blocked = false;
+                lock.notifyAll();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,395 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.source;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.TestProcedure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class MappedFileEventSourceTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_NullPath() throws Exception {
+
+        try {
+
+            new MappedFileEventSource(null, new RawLineParser());
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null path"));
+        }
+    }
+
+    @Test
+    public void constructor_NullParser() throws Exception {
+
+        try {
+
+            new MappedFileEventSource(file(""), null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null parser"));
+        }
+    }
+
+    @Test
+    public void defaults() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file(""), new RawLineParser());
+
+        assertEquals(MappedFileEventSource.DEFAULT_BATCH_SIZE, s.getBatchSize());
+        assertEquals(MappedFileEventSource.DEFAULT_CHUNK_SIZE, s.getChunkSize());
+        assertTrue(s.isEndOfStream());
+    }
+
+    @Test
+    public void setBatchSize_Invalid() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file(""), new RawLineParser());
+
+        try {
+
+            s.setBatchSize(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid batch size"));
+        }
+    }
+
+    @Test
+    public void setChunkSize_Invalid() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file(""), new RawLineParser());
+
+        try {
+
+            s.setChunkSize(-1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid chunk size"));
+        }
+    }
+
+    @Test
+    public void feed_EmptyFile() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file(""), new RawLineParser());
+
+        TestProcedure p = new TestProcedure();
+
+        assertEquals(0L, s.feed(p));
+
+        List<Event> received = p.getReceived();
+        assertEquals(1, received.size());
+        assertTrue(received.get(0) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void feed_NoEndOfStream() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file("a\nb\n"), new RawLineParser());
+        s.setEndOfStream(false);
+
+        TestProcedure p = new TestProcedure();
+
+        assertEquals(2L, s.feed(p));
+
+        assertEquals(2, p.getReceived().size());
+        assertEquals("b", p.getReceived().get(1).getRawRepresentation());
+    }
+
+    @Test
+    public void feed() throws Exception {
+
+        String content = "first line\nsecond\r\n\nlast, no terminator";
+
+        MappedFileEventSource s = new MappedFileEventSource(file(content), new RawLineParser());
+
+        TestProcedure p = new TestProcedure();
+
+        assertEquals(4L, s.feed(p));
+
+        assertEquals(content.length(), s.getBytesRead());
+
+        List<Event> received = p.getReceived();
+        assertEquals(5, received.size());
+
+        RawLineEvent e = (RawLineEvent)received.get(0);
+        assertEquals("first line", e.getRawRepresentation());
+        assertEquals(1L, e.getLineNumber().longValue());
+        assertEquals(0L, e.getSourceOffset());
+        assertEquals(11L, e.getSourceLength());
+
+        e = (RawLineEvent)received.get(1);
+        assertEquals("second", e.getRawRepresentation());
+        assertEquals(2L, e.getLineNumber().longValue());
+        assertEquals(11L, e.getSourceOffset());
+        assertEquals(8L, e.getSourceLength());
+
+        e = (RawLineEvent)received.get(2);
+        assertEquals("", e.getRawRepresentation());
+        assertEquals(3L, e.getLineNumber().longValue());
+        assertEquals(19L, e.getSourceOffset());
+        assertEquals(1L, e.getSourceLength());
+
+        e = (RawLineEvent)received.get(3);
+        assertEquals("last, no terminator", e.getRawRepresentation());
+        assertEquals(4L, e.getLineNumber().longValue());
+        assertEquals(20L, e.getSourceOffset());
+        assertEquals(19L, e.getSourceLength());
+
+        assertTrue(received.get(4) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void feed_SmallChunks_LinesLongerThanTheChunk() throws Exception {
+
+        StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 100; i ++) {
+
+            for(int j = 0; j < i % 13; j ++) {
+
+                sb.append((char)('a' + j));
+            }
+
+            sb.append(i).append('\n');
+        }
+
+        String content = sb.toString();
+
+        String[] expected = content.split("\n");
+
+        for(int chunkSize = 1; chunkSize < 40; chunkSize ++) {
+
+            MappedFileEventSource s = new MappedFileEventSource(file(content), new RawLineParser());
+            s.setChunkSize(chunkSize);
+
+            TestProcedure p = new TestProcedure();
+
+            assertEquals(100L, s.feed(p));
+
+            List<Event> received = p.getReceived();
+            assertEquals(101, received.size());
+
+            long offset = 0;
+
+            for(int i = 0; i < 100; i ++) {
+
+                RawLineEvent e = (RawLineEvent)received.get(i);
+
+                assertEquals(expected[i], e.getRawRepresentation());
+                assertEquals(i + 1L, e.getLineNumber().longValue());
+                assertEquals(offset, e.getSourceOffset());
+
+                offset += e.getSourceLength();
+            }
+
+            assertEquals(content.length(), offset);
+        }
+    }
+
+    @Test
+    public void feed_Batches() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file("1\n2\n3\n4\n5\n"), new RawLineParser());
+        s.setBatchSize(2);
+
+        BatchRecordingProcedure p = new BatchRecordingProcedure();
+
+        assertEquals(5L, s.feed(p));
+
+        //
+        // 2 + 2 + (1 + EndOfStream)
+        //
+
+        assertEquals(3, p.batches);
+        assertEquals(6, p.getReceived().size());
+        assertEquals(6L, p.getInvocationCount());
+    }
+
+    @Test
+    public void feed_ParserSkipsLines() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file("# comment\nvalue\n"), new LineParser() {
+
+            private RawLineParser delegate = new RawLineParser();
+
+            @Override
+            public Event parse(Line line) {
+
+                return line.getLength() > 0 && line.byteAt(0) == '#' ? null : delegate.parse(line);
+            }
+
+            @Override
+            public Event close() {
+
+                return null;
+            }
+        });
+
+        TestProcedure p = new TestProcedure();
+
+        assertEquals(1L, s.feed(p));
+        assertEquals("value", p.getReceived().get(0).getRawRepresentation());
+        assertEquals(2L, p.getReceived().get(0).getLineNumber().longValue());
+    }
+
+    @Test
+    public void feed_Utf8() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file("d\u00e9j\u00e0 vu\n\u65e5\u672c\n"), new RawLineParser());
+        s.setChunkSize(3);
+
+        TestProcedure p = new TestProcedure();
+
+        assertEquals(2L, s.feed(p));
+        assertEquals("d\u00e9j\u00e0 vu", p.getReceived().get(0).getRawRepresentation());
+        assertEquals("\u65e5\u672c", p.getReceived().get(1).getRawRepresentation());
+    }
+
+    @Test
+    public void feed_ExitLoop() throws Exception {
+
+        MappedFileEventSource s = new MappedFileEventSource(file("1\n2\n3\n4\n5\n"), new RawLineParser());
+        s.setBatchSize(1);
+
+        ExitingProcedure p = new ExitingProcedure(2);
+
+        assertEquals(2L, s.feed(p));
+
+        List<Event> received = p.getReceived();
+        assertEquals(3, received.size());
+        assertEquals("2", received.get(1).getRawRepresentation());
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void rawLineParser_NullCharset() throws Exception {
+
+        try {
+
+            new RawLineParser(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("null charset"));
+        }
+
+        assertNull(new RawLineParser().close());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static Path file(String content) throws Exception {
+
+        File f = File.createTempFile("mapped-source", ".txt");
+        f.deleteOnExit();
+
+        Files.write(f.toPath(), content.getBytes(StandardCharsets.UTF_8));
+
+        return f.toPath();
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+    private static class BatchRecordingProcedure extends TestProcedure {
+
+        private int batches;
+
+        @Override
+        public void process(List<Event> events) throws EventProcessingException {
+
+            batches ++;
+
+            super.process(events);
+        }
+    }
+
+    private static class ExitingProcedure extends TestProcedure {
+
+        private final int after;
+
+        private ExitingProcedure(int after) {
+
+            this.after = after;
+        }
+
+        @Override
+        protected void process(AtomicLong invocationCount, Event e) {
+
+            getReceived().add(e);
+        }
+
+        @Override
+        public boolean isExitLoop() {
+
+            return getReceived().size() >= after;
+        }
+    }
+
+}
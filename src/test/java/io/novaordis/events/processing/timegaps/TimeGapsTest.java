@@ -16,21 +16,32 @@
 
 package io.novaordis.events.processing.timegaps;
 
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.TimedEvent;
 import io.novaordis.events.processing.Procedure;
 import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
 import io.novaordis.events.processing.TextOutputProcedureTest;
 import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.utilities.UserErrorException;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayOutputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author Ovidiu Feodorov <ovidiu@novaordis.com>
@@ -85,6 +96,301 @@ public class TimeGapsTest extends TextOutputProcedureTest {
 
     // Tests -----------------------------------------------------------------------------------------------------------
 
+    @Test
+    public void defaults() throws Exception {
+
+        TimeGaps p = new TimeGaps();
+
+        assertEquals(TimeGaps.DEFAULT_TOP, p.getTop());
+        assertEquals(TimeGaps.DEFAULT_CUTOFF_MS, p.getCutoff());
+        assertEquals(TimeGaps.DEFAULT_REORDER_WINDOW, p.getReorderWindow());
+    }
+
+    @Test
+    public void bucket() throws Exception {
+
+        assertEquals(0, TimeGaps.bucket(0L));
+        assertEquals(1, TimeGaps.bucket(1L));
+        assertEquals(2, TimeGaps.bucket(2L));
+        assertEquals(2, TimeGaps.bucket(3L));
+        assertEquals(3, TimeGaps.bucket(4L));
+        assertEquals(11, TimeGaps.bucket(1024L));
+        assertEquals(63, TimeGaps.bucket(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void largestGapsAndHistogram() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setTop(2);
+
+        process(p, 0L, 1L, 11L, 12L, 112L, 113L, 613L);
+        p.process(new EndOfStreamEvent());
+
+        List<TimeGaps.Gap> gaps = p.getLargestGaps();
+        assertEquals(2, gaps.size());
+        assertEquals(500L, gaps.get(0).getDuration());
+        assertEquals(113L, gaps.get(0).getFirst().getTime().longValue());
+        assertEquals(613L, gaps.get(0).getSecond().getTime().longValue());
+        assertEquals(100L, gaps.get(1).getDuration());
+
+        assertEquals(6L, p.getGapCount());
+
+        long[] h = p.getHistogram();
+        assertEquals(3L, h[TimeGaps.bucket(1L)]);
+        assertEquals(1L, h[TimeGaps.bucket(10L)]);
+        assertEquals(1L, h[TimeGaps.bucket(100L)]);
+        assertEquals(1L, h[TimeGaps.bucket(500L)]);
+    }
+
+    @Test
+    public void reorderWindow_OutOfOrderEventsAreReordered() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setReorderWindow(2);
+
+        process(p, 0L, 20L, 10L, 30L);
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(3L, p.getGapCount());
+        assertEquals(0L, p.getLateEventCount());
+
+        for(TimeGaps.Gap g: p.getLargestGaps()) {
+
+            assertEquals(10L, g.getDuration());
+        }
+    }
+
+    @Test
+    public void reorderWindow_DownstreamSeesTimestampOrder() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setReorderWindow(3);
+
+        TestProcedure downstream = new TestProcedure();
+        p.setDownstream(downstream);
+
+        //
+        // long enough for the window to wrap around several times
+        //
+
+        process(p, 0L, 20L, 10L, 30L, 50L, 40L, 60L, 80L, 70L, 90L, 110L, 100L);
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(11L, p.getGapCount());
+        assertEquals(0L, p.getLateEventCount());
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(13, received.size());
+
+        for(int i = 0; i < 12; i ++) {
+
+            assertEquals(10L * i, ((TimedEvent)received.get(i)).getTime().longValue());
+        }
+
+        assertTrue(received.get(12) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void reorderWindow_LateEventsAreIgnored() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setReorderWindow(0);
+
+        process(p, 0L, 20L, 10L, 30L);
+
+        assertEquals(2L, p.getGapCount());
+        assertEquals(1L, p.getLateEventCount());
+        assertEquals(20L, p.getLargestGaps().get(0).getDuration());
+    }
+
+    @Test
+    public void cutoff() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setCutoff(100L);
+
+        process(p, 0L, 50L, 1050L, 1060L);
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(2L, p.getGapCount());
+        assertEquals(1L, p.getCutoffGapCount());
+        assertEquals(50L, p.getLargestGaps().get(0).getDuration());
+    }
+
+    @Test
+    public void cutoff_BackwardJumpIsADiscontinuity() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+        p.setCutoff(100L);
+        p.setReorderWindow(0);
+
+        //
+        // the second log starts 10 seconds before the first one ends; its events must not be dropped as late
+        //
+
+        process(p, 10000L, 10010L, 10030L, 30L, 40L, 100L, 90L);
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(4L, p.getGapCount());
+        assertEquals(1L, p.getCutoffGapCount());
+        assertEquals(1L, p.getLateEventCount());
+        assertEquals(60L, p.getLargestGaps().get(0).getDuration());
+    }
+
+    @Test
+    public void histogramIsReportedWhenThereAreNoGaps() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        TimeGaps p = new TimeGaps(baos);
+
+        process(p, 0L);
+        p.process(new EndOfStreamEvent());
+
+        String report = new String(baos.toByteArray());
+
+        assertEquals("1 timed events, 0 gaps\n\ngap histogram:\n", report);
+    }
+
+    @Test
+    public void nonTimedEventsAreIgnored() throws Exception {
+
+        TimeGaps p = new TimeGaps(new ByteArrayOutputStream());
+
+        p.process(new GenericTimedEvent(0L));
+        p.process(new GenericEvent());
+        p.process(new GenericTimedEvent(5L));
+        p.process(new EndOfStreamEvent());
+
+        assertEquals(1L, p.getGapCount());
+    }
+
+    @Test
+    public void singleReportOnEndOfStream() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        TimeGaps p = new TimeGaps(baos);
+        p.setTop(1);
+
+        process(p, 0L, 1L, 3L);
+
+        assertEquals(0, baos.toByteArray().length);
+
+        p.process(new EndOfStreamEvent());
+
+        String report = new String(baos.toByteArray());
+
+        assertTrue(report.startsWith("3 timed events, 2 gaps\n"));
+        assertTrue(report.contains("largest 1 gaps:\n"));
+        assertTrue(report.contains("\n2 ms, lines "));
+        assertTrue(report.contains("gap histogram:\n[1, 2) ms: 1\n[2, 4) ms: 1\n"));
+    }
+
+    @Test
+    public void setTop_Invalid() throws Exception {
+
+        try {
+
+            new TimeGaps().setTop(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid top gap count"));
+        }
+    }
+
+    @Test
+    public void setReorderWindow_Invalid() throws Exception {
+
+        try {
+
+            new TimeGaps().setReorderWindow(-1);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid reorder window size"));
+        }
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "something", TimeGaps.TOP_OPTION, "3", TimeGaps.CUTOFF_OPTION, "1000",
+                TimeGaps.REORDER_WINDOW_OPTION, "0", "else"));
+
+        TimeGaps p = new TimeGaps(null, 1, args);
+
+        assertEquals(3, p.getTop());
+        assertEquals(1000L, p.getCutoff());
+        assertEquals(0, p.getReorderWindow());
+
+        assertEquals(Arrays.asList("something", "else"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingValue() throws Exception {
+
+        try {
+
+            new TimeGaps(null, 0, new ArrayList<>(Collections.singletonList(TimeGaps.TOP_OPTION)));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after " + TimeGaps.TOP_OPTION));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidValue() throws Exception {
+
+        try {
+
+            new TimeGaps(null, 0, new ArrayList<>(Arrays.asList(TimeGaps.CUTOFF_OPTION, "0")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid " + TimeGaps.CUTOFF_OPTION + " value: 0"));
+        }
+
+        try {
+
+            new TimeGaps(null, 0, new ArrayList<>(Arrays.asList(TimeGaps.TOP_OPTION, "blah")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid " + TimeGaps.TOP_OPTION + " value: blah"));
+        }
+    }
+
+    @Test
+    public void procedureFactoryFind_WithOptions() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        List<String> args = new ArrayList<>(Arrays.asList(TimeGaps.COMMAND_LINE_LABEL, TimeGaps.TOP_OPTION, "5"));
+
+        TimeGaps p = (TimeGaps) f.find(TimeGaps.COMMAND_LINE_LABEL, 1, args);
+
+        assertEquals(5, p.getTop());
+        assertEquals(Collections.singletonList(TimeGaps.COMMAND_LINE_LABEL), args);
+    }
+
     // Package protected -----------------------------------------------------------------------------------------------
 
     // Protected -------------------------------------------------------------------------------------------------------
@@ -97,6 +403,14 @@ public class TimeGapsTest extends TextOutputProcedureTest {
 
     // Private ---------------------------------------------------------------------------------------------------------
 
+    private static void process(TimeGaps p, long ... timestamps) throws Exception {
+
+        for(long t: timestamps) {
+
+            p.process(new GenericTimedEvent(t));
+        }
+    }
+
     // Inner classes ---------------------------------------------------------------------------------------------------
 
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.top;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class SpaceSavingTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void constructor_InvalidCapacity() throws Exception {
+
+        try {
+
+            new SpaceSaving(0);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid capacity: 0"));
+        }
+    }
+
+    @Test
+    public void exactWhileWithinCapacity() throws Exception {
+
+        SpaceSaving s = new SpaceSaving(10);
+
+        s.add("b");
+        s.add("a");
+        s.add("c");
+        s.add("b");
+        s.add("a");
+        s.add("b");
+        s.add(null);
+
+        assertEquals(6L, s.getTotal());
+        assertEquals(3, s.size());
+        assertEquals(0L, s.getMaxError());
+
+        List<SpaceSaving.Counter> top = s.getTop(10);
+
+        assertEquals(3, top.size());
+        assertEquals("b: 3", top.get(0).toString());
+        assertEquals("a: 2", top.get(1).toString());
+        assertEquals("c: 1", top.get(2).toString());
+
+        assertEquals(2, s.getTop(2).size());
+    }
+
+    @Test
+    public void ties_AreOrderedByValue() throws Exception {
+
+        SpaceSaving s = new SpaceSaving(10);
+
+        s.add("z");
+        s.add("y");
+        s.add("x");
+
+        List<SpaceSaving.Counter> top = s.getTop(3);
+
+        assertEquals("x", top.get(0).getValue());
+        assertEquals("y", top.get(1).getValue());
+        assertEquals("z", top.get(2).getValue());
+    }
+
+    @Test
+    public void takeOver() throws Exception {
+
+        SpaceSaving s = new SpaceSaving(2);
+
+        s.add("a");
+        s.add("a");
+        s.add("b");
+
+        //
+        // "c" takes over "b"'s counter
+        //
+
+        s.add("c");
+
+        assertEquals(2, s.size());
+        assertEquals(2L, s.getMaxError());
+
+        List<SpaceSaving.Counter> top = s.getTop(2);
+
+        assertEquals("a", top.get(0).getValue());
+        assertEquals(2L, top.get(0).getCount());
+        assertEquals(0L, top.get(0).getError());
+
+        SpaceSaving.Counter c = top.get(1);
+
+        assertEquals("c", c.getValue());
+        assertEquals(2L, c.getCount());
+        assertEquals(1L, c.getError());
+        assertEquals(1L, c.getGuaranteedCount());
+        assertEquals("c: 2 (error 1)", c.toString());
+    }
+
+    @Test
+    public void errorBounds_SkewedStream() throws Exception {
+
+        int capacity = 100;
+
+        SpaceSaving s = new SpaceSaving(capacity);
+
+        Map<String, Long> exact = new HashMap<>();
+
+        Random r = new Random(7L);
+
+        int n = 200000;
+
+        for(int i = 0; i < n; i ++) {
+
+            //
+            // Zipf-like: a few frequent values, a long tail of rare ones
+            //
+
+            String v = "url-" + (int)Math.floor(Math.pow(100000d, r.nextDouble()));
+
+            s.add(v);
+            exact.merge(v, 1L, Long::sum);
+        }
+
+        assertEquals(n, s.getTotal());
+        assertEquals(capacity, s.size());
+        assertTrue(s.getMaxError() <= n / capacity);
+
+        Set<String> tracked = new HashSet<>();
+
+        for(SpaceSaving.Counter c: s.getTop(capacity)) {
+
+            long f = exact.get(c.getValue());
+
+            assertTrue(c.getCount() >= f);
+            assertTrue(c.getGuaranteedCount() <= f);
+
+            tracked.add(c.getValue());
+        }
+
+        //
+        // all values more frequent than n/capacity are tracked, and the top 5 are ranked exactly
+        //
+
+        for(Map.Entry<String, Long> e: exact.entrySet()) {
+
+            if (e.getValue() > n / capacity) {
+
+                assertTrue(tracked.contains(e.getKey()));
+            }
+        }
+
+        List<SpaceSaving.Counter> top = s.getTop(5);
+
+        for(int i = 0; i < 5; i ++) {
+
+            assertEquals("url-" + (i + 1), top.get(i).getValue());
+        }
+    }
+
+    @Test
+    public void clear() throws Exception {
+
+        SpaceSaving s = new SpaceSaving(2);
+
+        s.add("a");
+        s.add("b");
+        s.add("c");
+        s.clear();
+
+        assertEquals(0L, s.getTotal());
+        assertEquals(0, s.size());
+        assertTrue(s.getTop(10).isEmpty());
+
+        s.add("d");
+
+        assertEquals("d: 1", s.getTop(1).get(0).toString());
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.top;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.IntegerProperty;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class TopTest extends TextOutputProcedureTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    @Test
+    @Override
+    public void procedureFactoryFind() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        Top t = (Top) f.find(Top.COMMAND_LINE_LABEL, 0, Collections.emptyList());
+        assertNotNull(t);
+        assertNotNull(t.getOutputStream());
+    }
+
+    @Test
+    @Override
+    public void commandLineLabel() throws Exception {
+
+        Procedure p = getTextOutputProcedureToTest();
+
+        List<String> commandLineLabels = p.getCommandLineLabels();
+        assertEquals(1, commandLineLabels.size());
+        assertTrue(commandLineLabels.contains(Top.COMMAND_LINE_LABEL));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void defaults() throws Exception {
+
+        Top t = new Top();
+
+        assertEquals(Top.DEFAULT_COUNT, t.getCount());
+        assertEquals(SpaceSaving.DEFAULT_CAPACITY, t.getCapacity());
+        assertEquals(0L, t.getInterval());
+        assertTrue(t.getProperties().isEmpty());
+        assertNull(t.getSummary(0));
+
+        t.setCount(500);
+
+        assertEquals(5000, t.getCapacity());
+    }
+
+    @Test
+    public void endOfStreamReport_ExactCounts() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Top t = new Top(baos);
+        t.getProperties().add("url");
+        t.getProperties().add("status");
+        t.getProperties().add("missing");
+        t.setCount(2);
+
+        t.process(event(0L, "/a", 200));
+        t.process(event(1L, "/b", 200));
+        t.process(event(2L, "/a", 404));
+        t.process(event(3L, "/c", 500));
+        t.process(event(4L, "/a", 200));
+        t.process(event(5L, "/b", 200));
+
+        assertEquals(0, baos.size());
+
+        t.process(new EndOfStreamEvent());
+
+        assertEquals(
+                "url: top 2 of 6 values\n" +
+                        "  /a: 3\n" +
+                        "  /b: 2\n" +
+                        "status: top 2 of 6 values\n" +
+                        "  200: 4\n" +
+                        "  404: 1\n" +
+                        "missing: no values\n",
+                new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void endOfStreamReport_Overestimates() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Top t = new Top(baos);
+        t.getProperties().add("url");
+        t.setCount(2);
+        t.setCapacity(2);
+
+        t.process(event(0L, "/a", 200));
+        t.process(event(1L, "/a", 200));
+        t.process(event(2L, "/b", 200));
+        t.process(event(3L, "/c", 200));
+        t.process(new EndOfStreamEvent());
+
+        assertEquals(
+                "url: top 2 of 4 values, counts overestimated by at most 2\n" +
+                        "  /a: 2\n" +
+                        "  /c: 2 (at least 1)\n",
+                new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void intervalReports() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Top t = new Top(baos);
+        t.getProperties().add("url");
+        t.setCount(1);
+        t.setInterval(10L);
+
+        t.process(event(0L, "/a", 200));
+        t.process(event(5L, "/b", 200));
+        t.process(event(6L, "/b", 200));
+
+        assertEquals(0, baos.size());
+
+        //
+        // crosses 10
+        //
+
+        t.process(event(12L, "/a", 200));
+
+        assertTrue(new String(baos.toByteArray()).endsWith(": url: top 1 of 3 values\n  /b: 2\n"));
+
+        t.process(event(13L, "/a", 200));
+        t.process(new EndOfStreamEvent());
+
+        String[] lines = new String(baos.toByteArray()).split("\n");
+
+        assertEquals(4, lines.length);
+
+        //
+        // cumulative
+        //
+
+        assertEquals("url: top 1 of 5 values", lines[2]);
+        assertEquals("  /a: 3", lines[3]);
+    }
+
+    @Test
+    public void capacitySmallerThanCount() throws Exception {
+
+        Top t = new Top(new ByteArrayOutputStream());
+        t.setCount(10);
+        t.setCapacity(5);
+
+        try {
+
+            t.process(new GenericEvent());
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("capacity 5 is smaller than the count 10"));
+        }
+    }
+
+    @Test
+    public void propertiesByIndex() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Top t = new Top(baos);
+        t.getProperties().add("1");
+
+        GenericEvent e = new GenericEvent();
+        e.setProperty(new StringProperty("a", "A"));
+        e.setProperty(new StringProperty("b", "B"));
+
+        t.process(e);
+        t.process(new EndOfStreamEvent());
+
+        assertEquals("1: top 1 of 1 values\n  B: 1\n", new String(baos.toByteArray()));
+    }
+
+    @Test
+    public void eventsArePassedDownstream() throws Exception {
+
+        Top t = new Top(new ByteArrayOutputStream());
+        t.getProperties().add("url");
+
+        TestProcedure downstream = new TestProcedure();
+        t.setDownstream(downstream);
+
+        GenericTimedEvent e = event(0L, "/a", 200);
+        GenericEvent e2 = new GenericEvent();
+
+        t.process(Arrays.asList(e, e2, new EndOfStreamEvent()));
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "-o", "url", "status", "-n", "5", "--capacity", "100", "--interval", "60000", "something"));
+
+        Top t = new Top(new ByteArrayOutputStream(), 0, args);
+
+        assertEquals("url, status", t.getProperties().toString());
+        assertEquals(5, t.getCount());
+        assertEquals(100, t.getCapacity());
+        assertEquals(60000L, t.getInterval());
+
+        assertEquals(Collections.singletonList("something"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_MissingValue() throws Exception {
+
+        try {
+
+            new Top(new ByteArrayOutputStream(), 0, new ArrayList<>(Collections.singletonList("-n")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after -n"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidValues() throws Exception {
+
+        try {
+
+            new Top(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("-n", "0")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid -n value: 0"));
+        }
+
+        try {
+
+            new Top(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--capacity", "x")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --capacity value: x"));
+        }
+
+        try {
+
+            new Top(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("--interval", "-5")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid --interval value: -5"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_CapacitySmallerThanCount() throws Exception {
+
+        try {
+
+            new Top(new ByteArrayOutputStream(), 0, new ArrayList<>(Arrays.asList("-n", "10", "--capacity", "5")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("--capacity 5 is smaller than -n 10"));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected Top getTextOutputProcedureToTest(OutputStream os) throws Exception {
+
+        return new Top(os);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericTimedEvent event(long time, String url, int status) {
+
+        GenericTimedEvent e = new GenericTimedEvent(time);
+        e.setProperty(new StringProperty("url", url));
+        e.setProperty(new IntegerProperty("status", status));
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}
@@ -0,0 +1,501 @@
+/*
+ * Copyright (c) 2017 Nova Ordis LLC
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package io.novaordis.events.processing.window;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.novaordis.events.api.event.DoubleProperty;
+import io.novaordis.events.api.event.EndOfStreamEvent;
+import io.novaordis.events.api.event.Event;
+import io.novaordis.events.api.event.GenericEvent;
+import io.novaordis.events.api.event.GenericTimedEvent;
+import io.novaordis.events.api.event.StringProperty;
+import io.novaordis.events.processing.DefaultProcedureFactory;
+import io.novaordis.events.processing.EventProcessingException;
+import io.novaordis.events.processing.Procedure;
+import io.novaordis.events.processing.ProcedureFactory;
+import io.novaordis.events.processing.TestProcedure;
+import io.novaordis.events.processing.TextOutputProcedureTest;
+import io.novaordis.utilities.UserErrorException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author Ovidiu Feodorov <ovidiu@novaordis.com>
+ * @since 10/18/26
+ */
+public class WindowTest extends TextOutputProcedureTest {
+
+    // Constants -------------------------------------------------------------------------------------------------------
+
+    // Static ----------------------------------------------------------------------------------------------------------
+
+    // Attributes ------------------------------------------------------------------------------------------------------
+
+    // Constructors ----------------------------------------------------------------------------------------------------
+
+    // Public ----------------------------------------------------------------------------------------------------------
+
+    // Overrides -------------------------------------------------------------------------------------------------------
+
+    @Test
+    @Override
+    public void procedureFactoryFind() throws Exception {
+
+        ProcedureFactory f = new DefaultProcedureFactory(null);
+
+        Window w = (Window) f.find(Window.COMMAND_LINE_LABEL, 0, Collections.emptyList());
+        assertNotNull(w);
+        assertNotNull(w.getOutputStream());
+    }
+
+    @Test
+    @Override
+    public void commandLineLabel() throws Exception {
+
+        Procedure p = getTextOutputProcedureToTest();
+
+        List<String> commandLineLabels = p.getCommandLineLabels();
+        assertEquals(1, commandLineLabels.size());
+        assertTrue(commandLineLabels.contains(Window.COMMAND_LINE_LABEL));
+    }
+
+    // Tests -----------------------------------------------------------------------------------------------------------
+
+    @Test
+    public void defaults() throws Exception {
+
+        Window w = new Window();
+
+        assertEquals(Window.DEFAULT_SIZE_MS, w.getSize());
+        assertEquals(Window.DEFAULT_SIZE_MS, w.getSlide());
+        assertEquals(0L, w.getLateness());
+        assertTrue(w.getProperties().isEmpty());
+    }
+
+    @Test
+    public void gcd() throws Exception {
+
+        assertEquals(10L, Window.gcd(10L, 10L));
+        assertEquals(5L, Window.gcd(10L, 5L));
+        assertEquals(1L, Window.gcd(10L, 3L));
+        assertEquals(250L, Window.gcd(1000L, 750L));
+    }
+
+    @Test
+    public void tumbling() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Window w = new Window(baos);
+        w.setSize(10L);
+        w.addProperty("v");
+
+        w.process(event(0L, 1d));
+        w.process(event(1L, 2d));
+        w.process(event(5L, 3.5d));
+
+        assertEquals(0, baos.size());
+
+        //
+        // closes [0, 10)
+        //
+
+        w.process(event(10L, 10d));
+
+        assertEquals(1L, w.getWindowCount());
+
+        String first = new String(baos.toByteArray());
+
+        assertTrue(first.endsWith(": 3 events, 300.00 events/s, v: sum 6.5, min 1, max 3.5\n"));
+
+        w.process(event(15L, 20d));
+        w.process(event(25L, 30d));
+        w.process(new EndOfStreamEvent());
+
+        String[] lines = new String(baos.toByteArray()).split("\n");
+
+        assertEquals(3, lines.length);
+        assertEquals(3L, w.getWindowCount());
+        assertTrue(lines[1].endsWith(": 2 events, 200.00 events/s, v: sum 30, min 10, max 20"));
+        assertTrue(lines[2].endsWith(": 1 events, 100.00 events/s, v: sum 30, min 30, max 30"));
+
+        assertEquals(6L, w.getTimedEventCount());
+        assertEquals(0L, w.getLateEventCount());
+    }
+
+    @Test
+    public void sliding() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Window w = new Window(baos);
+        w.setSize(10L);
+        w.setSlide(5L);
+
+        w.process(new GenericTimedEvent(0L));
+        w.process(new GenericTimedEvent(6L));
+        w.process(new GenericTimedEvent(12L));
+        w.process(new EndOfStreamEvent());
+
+        assertEquals(5L, w.getPane());
+
+        //
+        // [-5, 5), [0, 10), [5, 15), [10, 20)
+        //
+
+        String[] lines = new String(baos.toByteArray()).split("\n");
+
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].endsWith(": 1 events, 100.00 events/s"));
+        assertTrue(lines[1].endsWith(": 2 events, 200.00 events/s"));
+        assertTrue(lines[2].endsWith(": 2 events, 200.00 events/s"));
+        assertTrue(lines[3].endsWith(": 1 events, 100.00 events/s"));
+    }
+
+    @Test
+    public void sliding_SlideDoesNotDivideTheSize() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Window w = new Window(baos);
+        w.setSize(10L);
+        w.setSlide(4L);
+
+        w.process(new GenericTimedEvent(9L));
+        w.process(new EndOfStreamEvent());
+
+        assertEquals(2L, w.getPane());
+
+        //
+        // [0, 10), [4, 14), [8, 18)
+        //
+
+        assertEquals(3L, w.getWindowCount());
+    }
+
+    @Test
+    public void lateEvents_NoLateness() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(10L);
+
+        w.process(new GenericTimedEvent(0L));
+        w.process(new GenericTimedEvent(12L));
+
+        assertEquals(1L, w.getWindowCount());
+
+        w.process(new GenericTimedEvent(3L));
+
+        assertEquals(1L, w.getLateEventCount());
+    }
+
+    @Test
+    public void lateEvents_AllowedLateness() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Window w = new Window(baos);
+        w.setSize(10L);
+        w.setLateness(5L);
+
+        w.process(new GenericTimedEvent(0L));
+        w.process(new GenericTimedEvent(12L));
+
+        assertEquals(0L, w.getWindowCount());
+
+        //
+        // within the allowed lateness
+        //
+
+        w.process(new GenericTimedEvent(3L));
+
+        assertEquals(0L, w.getLateEventCount());
+
+        //
+        // the watermark moves to 11, [0, 10) closes
+        //
+
+        w.process(new GenericTimedEvent(16L));
+
+        assertEquals(1L, w.getWindowCount());
+        assertTrue(new String(baos.toByteArray()).endsWith(": 2 events, 200.00 events/s\n"));
+
+        w.process(new GenericTimedEvent(4L));
+
+        assertEquals(1L, w.getLateEventCount());
+    }
+
+    @Test
+    public void memoryIsBoundedByTheNumberOfPanes() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(1000L);
+        w.setSlide(250L);
+        w.setLateness(100L);
+
+        for(long t = 0; t < 100000L; t ++) {
+
+            w.process(new GenericTimedEvent(t));
+        }
+
+        w.process(new EndOfStreamEvent());
+
+        //
+        // 4 panes per window, 1 for the lateness, 1 for the pane in progress
+        //
+
+        assertEquals(6, w.getRingCapacity());
+        assertEquals(100000L, w.getTimedEventCount());
+        assertEquals(0L, w.getLateEventCount());
+        assertEquals(100000L / 250L + 3L, w.getWindowCount());
+    }
+
+    @Test
+    public void emptyWindowsAreSkipped() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(1L);
+
+        w.process(new GenericTimedEvent(0L));
+        w.process(new GenericTimedEvent(1000000000000L));
+        w.process(new EndOfStreamEvent());
+
+        assertEquals(2L, w.getWindowCount());
+    }
+
+    @Test
+    public void nonNumericAndMissingValues() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        Window w = new Window(baos);
+        w.setSize(10L);
+        w.addProperty("v");
+        w.addProperty("missing");
+
+        GenericTimedEvent e = new GenericTimedEvent(0L);
+        e.setProperty(new StringProperty("v", "blah"));
+
+        w.process(e);
+        w.process(event(1L, 7d));
+        w.process(new EndOfStreamEvent());
+
+        assertTrue(new String(baos.toByteArray()).endsWith(
+                ": 2 events, 200.00 events/s, v: sum 7, min 7, max 7, missing: no values\n"));
+    }
+
+    @Test
+    public void eventsArePassedDownstream() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(10L);
+
+        TestProcedure downstream = new TestProcedure();
+        w.setDownstream(downstream);
+
+        GenericTimedEvent e = new GenericTimedEvent(0L);
+        GenericEvent e2 = new GenericEvent();
+
+        w.process(Arrays.asList(e, e2, new EndOfStreamEvent()));
+
+        List<Event> received = downstream.getReceived();
+
+        assertEquals(3, received.size());
+        assertSame(e, received.get(0));
+        assertSame(e2, received.get(1));
+        assertTrue(received.get(2) instanceof EndOfStreamEvent);
+    }
+
+    @Test
+    public void slideLongerThanTheSize() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(10L);
+        w.setSlide(20L);
+
+        try {
+
+            w.process(new GenericTimedEvent(0L));
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("slide 20 ms exceeds the window size 10 ms"));
+        }
+    }
+
+    @Test
+    public void tooManyPanes() throws Exception {
+
+        Window w = new Window(new ByteArrayOutputStream());
+        w.setSize(Window.MAX_PANES * 2L);
+        w.setSlide(Window.MAX_PANES * 2L - 1);
+
+        try {
+
+            w.process(new GenericTimedEvent(0L));
+            fail("should have thrown exception");
+        }
+        catch(EventProcessingException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("panes, more than " + Window.MAX_PANES));
+        }
+    }
+
+    @Test
+    public void setters_Invalid() throws Exception {
+
+        Window w = new Window();
+
+        try {
+
+            w.setSize(0L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid window size: 0"));
+        }
+
+        try {
+
+            w.setSlide(-1L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid slide: -1"));
+        }
+
+        try {
+
+            w.setLateness(-1L);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("invalid lateness: -1"));
+        }
+
+        try {
+
+            w.addProperty(null);
+            fail("should have thrown exception");
+        }
+        catch(IllegalArgumentException e) {
+
+            assertTrue(e.getMessage().contains("null property name"));
+        }
+    }
+
+    // configureFromCommandLine() --------------------------------------------------------------------------------------
+
+    @Test
+    public void configureFromCommandLine() throws Exception {
+
+        List<String> args = new ArrayList<>(Arrays.asList(
+                "something", Window.SIZE_OPTION, "1000", Window.SLIDE_OPTION, "100", Window.LATENESS_OPTION, "0",
+                Window.PROPERTY_OPTION, "a", Window.PROPERTY_OPTION, "b", "else"));
+
+        Window w = new Window(null, 1, args);
+
+        assertEquals(1000L, w.getSize());
+        assertEquals(100L, w.getSlide());
+        assertEquals(0L, w.getLateness());
+        assertEquals(Arrays.asList("a", "b"), w.getProperties());
+
+        assertEquals(Arrays.asList("something", "else"), args);
+    }
+
+    @Test
+    public void configureFromCommandLine_SlideLongerThanTheSize() throws Exception {
+
+        try {
+
+            new Window(null, 0, new ArrayList<>(Arrays.asList(Window.SIZE_OPTION, "10", Window.SLIDE_OPTION, "20")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid " + Window.SLIDE_OPTION + " value: 20"));
+        }
+    }
+
+    @Test
+    public void configureFromCommandLine_InvalidValue() throws Exception {
+
+        try {
+
+            new Window(null, 0, new ArrayList<>(Arrays.asList(Window.SIZE_OPTION, "0")));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("invalid " + Window.SIZE_OPTION + " value: 0"));
+        }
+
+        try {
+
+            new Window(null, 0, new ArrayList<>(Collections.singletonList(Window.PROPERTY_OPTION)));
+            fail("should have thrown exception");
+        }
+        catch(UserErrorException e) {
+
+            String msg = e.getMessage();
+            assertTrue(msg.contains("missing value after " + Window.PROPERTY_OPTION));
+        }
+    }
+
+    // Package protected -----------------------------------------------------------------------------------------------
+
+    // Protected -------------------------------------------------------------------------------------------------------
+
+    @Override
+    protected Window getTextOutputProcedureToTest(OutputStream os) throws Exception {
+
+        return new Window(os);
+    }
+
+    // Private ---------------------------------------------------------------------------------------------------------
+
+    private static GenericTimedEvent event(long time, double v) {
+
+        GenericTimedEvent e = new GenericTimedEvent(time);
+        e.setProperty(new DoubleProperty("v", v));
+        return e;
+    }
+
+    // Inner classes ---------------------------------------------------------------------------------------------------
+
+}